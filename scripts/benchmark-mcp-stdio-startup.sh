@@ -0,0 +1,88 @@
+#!/bin/bash
+# MCP Server Stdio Startup Benchmark
+#
+# Measures, for each available launch mode (jar, cds, native), the time from
+# process spawn until the server answers the MCP "initialize" request, and
+# the peak resident set size (VmHWM) at that point.
+#
+# Usage:
+#   ./scripts/benchmark-mcp-stdio-startup.sh [runs]
+#
+# Prerequisites:
+#   - Linux (reads /proc/<pid>/status)
+#   - At least one artifact built:
+#       ./gradlew bootJar
+#       ./gradlew mcpStdioCdsArchive
+#       ./gradlew -PmcpNative nativeCompile
+
+set -e
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+PROJECT_ROOT="$(cd "${SCRIPT_DIR}/.." && pwd)"
+
+RUNS="${1:-5}"
+TIMEOUT_SECONDS=120
+INIT_REQUEST='{"jsonrpc":"2.0","id":1,"method":"initialize","params":{"protocolVersion":"2024-11-05","capabilities":{},"clientInfo":{"name":"startup-benchmark","version":"1.0.0"}}}'
+
+available_modes() {
+    [ -f "${PROJECT_ROOT}/build/libs/spring-agent-0.0.1-SNAPSHOT.jar" ] && echo "jar"
+    [ -f "${PROJECT_ROOT}/build/mcp-stdio-cds/application.jsa" ] && echo "cds"
+    [ -x "${PROJECT_ROOT}/build/native/nativeCompile/spring-agent-mcp" ] && echo "native"
+    return 0
+}
+
+# Runs one measurement and prints "<startup_ms> <peak_rss_kb>"
+measure() {
+    local mode="$1"
+    local start end pid rss line answered=false
+
+    start=$(date +%s%N)
+    coproc SERVER { exec env MCP_LAUNCH_MODE="$mode" "${SCRIPT_DIR}/mcp-server-stdio.sh" 2>/dev/null; }
+    pid=$SERVER_PID
+
+    echo "$INIT_REQUEST" >&"${SERVER[1]}"
+    while read -r -t "$TIMEOUT_SECONDS" line <&"${SERVER[0]}"; do
+        if [[ "$line" == *'"id":1'* ]]; then
+            answered=true
+            break
+        fi
+    done
+    end=$(date +%s%N)
+
+    rss=$(awk '/VmHWM/ {print $2}' "/proc/${pid}/status" 2>/dev/null || echo 0)
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+
+    if [ "$answered" != true ]; then
+        echo "timeout 0"
+        return
+    fi
+    echo "$(( (end - start) / 1000000 )) ${rss}"
+}
+
+MODES=$(available_modes)
+if [ -z "$MODES" ]; then
+    echo "Error: no artifacts found. Build with ./gradlew bootJar first." >&2
+    exit 1
+fi
+
+printf "%-8s %5s %12s %14s\n" "mode" "run" "startup_ms" "peak_rss_mb"
+for mode in $MODES; do
+    total_ms=0
+    total_rss=0
+    ok_runs=0
+    for run in $(seq 1 "$RUNS"); do
+        read -r ms rss <<< "$(measure "$mode")"
+        if [ "$ms" = "timeout" ]; then
+            printf "%-8s %5d %12s %14s\n" "$mode" "$run" "timeout" "-"
+            continue
+        fi
+        printf "%-8s %5d %12d %14d\n" "$mode" "$run" "$ms" "$(( rss / 1024 ))"
+        total_ms=$(( total_ms + ms ))
+        total_rss=$(( total_rss + rss ))
+        ok_runs=$(( ok_runs + 1 ))
+    done
+    if [ "$ok_runs" -gt 0 ]; then
+        printf "%-8s %5s %12d %14d\n" "$mode" "avg" "$(( total_ms / ok_runs ))" "$(( total_rss / ok_runs / 1024 ))"
+    fi
+done
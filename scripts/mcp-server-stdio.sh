@@ -8,9 +8,15 @@
 # Usage:
 #   ./scripts/mcp-server-stdio.sh
 #
+# Launch mode is picked automatically, fastest first:
+#   1. Native executable  (./gradlew -PmcpNative nativeCompile)
+#   2. JAR + AppCDS archive (./gradlew mcpStdioCdsArchive)
+#   3. Plain JAR          (./gradlew bootJar)
+# Set MCP_LAUNCH_MODE=native|cds|jar to force a mode.
+#
 # Prerequisites:
-#   - Java 21 or higher
-#   - Application JAR file built (run: ./gradlew bootJar)
+#   - Java 21 or higher (not needed for the native executable)
+#   - Application built with one of the commands above
 #   - Ollama running on http://localhost:11434
 
 set -e
@@ -19,35 +25,77 @@ set -e
 SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
 PROJECT_ROOT="$(cd "${SCRIPT_DIR}/.." && pwd)"
 
-# JAR file path
+# Artifact paths
 JAR_FILE="${PROJECT_ROOT}/build/libs/spring-agent-0.0.1-SNAPSHOT.jar"
+NATIVE_FILE="${PROJECT_ROOT}/build/native/nativeCompile/spring-agent-mcp"
+CDS_DIR="${PROJECT_ROOT}/build/mcp-stdio-cds"
+CDS_JAR="${CDS_DIR}/spring-agent-0.0.1-SNAPSHOT.jar"
+CDS_ARCHIVE="${CDS_DIR}/application.jsa"
+
+# Pick launch mode
+MODE="${MCP_LAUNCH_MODE:-}"
+if [ -z "$MODE" ]; then
+    if [ -x "$NATIVE_FILE" ]; then
+        MODE="native"
+    elif [ -f "$CDS_JAR" ] && [ -f "$CDS_ARCHIVE" ]; then
+        MODE="cds"
+    else
+        MODE="jar"
+    fi
+fi
+
+APP_ARGS=(
+    --spring.profiles.active=mcp-stdio
+    --logging.level.root=ERROR
+    --logging.level.dev.jackelyj.spring_agent=INFO
+    --logging.level.org.springframework.ai.mcp=DEBUG
+)
+
+# Diagnostics go to stderr: stdout carries the JSON-RPC stream
+if [ "$MODE" = "native" ]; then
+    if [ ! -x "$NATIVE_FILE" ]; then
+        echo "Error: native executable not found at $NATIVE_FILE" >&2
+        echo "Please build it first: ./gradlew -PmcpNative nativeCompile" >&2
+        exit 1
+    fi
+    echo "Starting MCP Server in Stdio mode (native)..." >&2
+    exec "$NATIVE_FILE" "${APP_ARGS[@]}"
+fi
+
+if [ "$MODE" = "cds" ]; then
+    if [ ! -f "$CDS_JAR" ] || [ ! -f "$CDS_ARCHIVE" ]; then
+        echo "Error: AppCDS archive not found in $CDS_DIR" >&2
+        echo "Please build it first: ./gradlew mcpStdioCdsArchive" >&2
+        exit 1
+    fi
+    JAR_FILE="$CDS_JAR"
+    JAVA_OPTS=("-XX:SharedArchiveFile=${CDS_ARCHIVE}")
+else
+    JAVA_OPTS=()
+fi
 
 # Check if JAR exists
 if [ ! -f "$JAR_FILE" ]; then
-    echo "Error: JAR file not found at $JAR_FILE"
-    echo "Please build the project first: ./gradlew bootJar"
+    echo "Error: JAR file not found at $JAR_FILE" >&2
+    echo "Please build the project first: ./gradlew bootJar" >&2
     exit 1
 fi
 
 # Check Java version
 JAVA_VERSION=$(java -version 2>&1 | awk -F '"' '/version/ {print $2}' | awk -F '.' '{print $1}')
 if [ "$JAVA_VERSION" -lt 21 ]; then
-    echo "Error: Java 21 or higher is required (current: Java $JAVA_VERSION)"
+    echo "Error: Java 21 or higher is required (current: Java $JAVA_VERSION)" >&2
     exit 1
 fi
 
-echo "Starting MCP Server in Stdio mode..."
-echo "JAR: $JAR_FILE"
-echo "Profile: mcp-stdio"
-echo ""
-echo "The server will communicate via stdin/stdout"
-echo "Press Ctrl+C to stop"
-echo ""
+echo "Starting MCP Server in Stdio mode ($MODE)..." >&2
+echo "JAR: $JAR_FILE" >&2
+echo "Profile: mcp-stdio" >&2
+echo "" >&2
+echo "The server will communicate via stdin/stdout" >&2
+echo "Press Ctrl+C to stop" >&2
+echo "" >&2
 
 # Start the application in stdio mode
-exec java -jar "$JAR_FILE" \
-    --spring.profiles.active=mcp-stdio \
-    --logging.level.root=ERROR \
-    --logging.level.dev.jackelyj.spring_agent=INFO \
-    --logging.level.org.springframework.ai.mcp=DEBUG
+exec java "${JAVA_OPTS[@]}" -jar "$JAR_FILE" "${APP_ARGS[@]}"
 
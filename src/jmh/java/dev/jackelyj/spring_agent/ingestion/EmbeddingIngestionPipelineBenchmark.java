@@ -0,0 +1,195 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VectorStore#add vs. EmbeddingIngestionPipeline: time to ingest one upload.
+ *
+ * Embeddings come from a stub Ollama /api/embed server that charges a fixed
+ * cost per request plus a cost per input and serves requests in parallel, as
+ * an Ollama instance with several parallel slots would. Both paths write to
+ * the same pgvector table in a PostgreSQL started with Testcontainers
+ * (requires Docker). Each operation ingests {@value #DOCUMENTS} new documents
+ * into an empty table; {@code requests} counts embedding requests per upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EmbeddingIngestionPipelineBenchmark {
+
+    private static final int DOCUMENTS = 4_000;
+    private static final int DIMENSIONS = 384;
+    private static final long REQUEST_MILLIS = 20;
+    private static final double MILLIS_PER_INPUT = 0.5;
+    private static final String TABLE = "bench_vector_store";
+
+    @Param({"vector-store", "pipeline"})
+    public String path;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger embedRequests = new AtomicInteger();
+    private PostgreSQLContainer<?> postgres;
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private JdbcTemplate jdbcTemplate;
+    private PgVectorStore vectorStore;
+    private EmbeddingIngestionPipeline pipeline;
+    private List<Document> upload;
+
+    /**
+     * Embedding requests made by the measured uploads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+
+        public long requests;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/api/embed", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            embedRequests.incrementAndGet();
+            List<float[]> embeddings = new ArrayList<>();
+            for (JsonNode input : request.path("input")) {
+                embeddings.add(vector(input.asText()));
+            }
+            sleep(REQUEST_MILLIS + (long) (MILLIS_PER_INPUT * embeddings.size()));
+            byte[] body = objectMapper.writeValueAsBytes(Map.of(
+                    "model", request.path("model").asText(),
+                    "embeddings", embeddings,
+                    "total_duration", 0,
+                    "load_duration", 0,
+                    "prompt_eval_count", embeddings.size()));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubExecutor = Executors.newFixedThreadPool(8);
+        stub.setExecutor(stubExecutor);
+        stub.start();
+        EmbeddingModel embeddingModel = OllamaEmbeddingModel.builder()
+                .ollamaApi(OllamaApi.builder().baseUrl("http://127.0.0.1:" + stub.getAddress().getPort()).build())
+                .defaultOptions(OllamaOptions.builder().model("stub-embed").build())
+                .build();
+
+        postgres = new PostgreSQLContainer<>(
+                DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+        postgres.start();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl() + "&reWriteBatchedInserts=true", postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        vectorStore = PgVectorStore.builder(jdbcTemplate, embeddingModel)
+                .dimensions(DIMENSIONS)
+                .distanceType(PgVectorStore.PgDistanceType.COSINE_DISTANCE)
+                .indexType(PgVectorStore.PgIndexType.HNSW)
+                .initializeSchema(true)
+                .vectorTableName(TABLE)
+                .maxDocumentBatchSize(10000)
+                .build();
+        vectorStore.afterPropertiesSet();
+        pipeline = new EmbeddingIngestionPipeline(embeddingModel, jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), objectMapper, "public", TABLE,
+                64, 4);
+    }
+
+    @Setup(Level.Invocation)
+    public void newUpload() {
+        jdbcTemplate.execute("TRUNCATE " + TABLE);
+        upload = new ArrayList<>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            upload.add(Document.builder()
+                    .id(UUID.randomUUID().toString())
+                    .text("Paragraph " + i + " of the upload: embeddings are computed in batches "
+                            + "and stored while the next batch is being embedded.")
+                    .metadata(Map.of("source", path))
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.close();
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public void ingest(Requests requests) {
+        int before = embedRequests.get();
+        if ("pipeline".equals(path)) {
+            pipeline.ingest(upload);
+        } else {
+            vectorStore.add(upload);
+        }
+        requests.requests += embedRequests.get() - before;
+    }
+
+    /**
+     * Deterministic embedding of a text.
+     */
+    private static float[] vector(String text) {
+        float[] vector = new float[DIMENSIONS];
+        int hash = text.hashCode();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = ((hash >>> (i % 32)) & 0xff) / 256f;
+        }
+        return vector;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
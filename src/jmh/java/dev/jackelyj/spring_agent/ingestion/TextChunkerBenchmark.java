@@ -0,0 +1,113 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TextChunker throughput on a corpus of long mixed English/Chinese documents.
+ *
+ * Each operation splits the whole corpus into 512-token chunks with 64 tokens
+ * of overlap. The {@code bytes} counter is UTF-8 input per second; divide by
+ * 1048576 for MB/s. {@code parallelism} 0 means all available processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextChunkerBenchmark {
+
+    private static final int DOCUMENTS = 400;
+    private static final int PARAGRAPHS_PER_DOCUMENT = 40;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private List<Document> corpus;
+    private long corpusBytes;
+    private TextChunker chunker;
+
+    /**
+     * Input consumed, reported as a rate next to the operation rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Input {
+
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = corpus();
+        corpusBytes = corpus.stream()
+                .mapToLong(document -> document.getText().getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        chunker = new TextChunker(new JTokkitTokenCountEstimator(), 512, 64, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        chunker.close();
+    }
+
+    @Benchmark
+    public List<Document> splitAll(Input input) {
+        List<Document> chunks = chunker.splitAll(corpus);
+        input.bytes += corpusBytes;
+        return chunks;
+    }
+
+    private static List<Document> corpus() {
+        String[] english = {
+                "PostgreSQL stores each embedding in a vector column next to the chunk text.",
+                "An HNSW index answers nearest-neighbour queries without scanning the table.",
+                "Long documents are split so every chunk fits the embedding model's context window.",
+                "Overlap between chunks keeps sentences that span a cut searchable from both sides.",
+                "Batching many inputs into one request amortises the round trip to the model server."
+        };
+        String[] chinese = {
+                "向量数据库把文本的嵌入向量与原文一起存储。",
+                "检索时先计算查询的向量，再按余弦距离排序。",
+                "长文档需要先切分成适合模型上下文的片段。"
+        };
+        Random random = new Random(42);
+        List<Document> documents = new ArrayList<>(DOCUMENTS);
+        for (int d = 0; d < DOCUMENTS; d++) {
+            StringBuilder text = new StringBuilder();
+            for (int p = 0; p < PARAGRAPHS_PER_DOCUMENT; p++) {
+                int sentences = 3 + random.nextInt(8);
+                for (int s = 0; s < sentences; s++) {
+                    text.append(random.nextInt(4) == 0
+                            ? chinese[random.nextInt(chinese.length)]
+                            : english[random.nextInt(english.length)] + " ");
+                }
+                text.append("\n\n");
+            }
+            documents.add(Document.builder().id("doc-" + d).text(text.toString()).build());
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,142 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.PostgresChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only vs. Spring AI JDBC chat memory: write cost of a chat workload.
+ *
+ * Each operation replays 40 turns over 200 conversations through
+ * MessageWindowChatMemory, starting from empty tables in a PostgreSQL
+ * started with Testcontainers (requires Docker). Besides the time, the
+ * {@code walBytes} counter reports the WAL written by the replay, the
+ * database-side cost of every insert, delete and index update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AppendOnlyJdbcChatMemoryBenchmark {
+
+    private static final int CONVERSATIONS = 200;
+    private static final int TURNS = 40;
+    private static final int WINDOW = 20;
+
+    @Param({"spring-ai", "append-only"})
+    public String repository;
+
+    private PostgreSQLContainer<?> postgres;
+    private JdbcTemplate jdbcTemplate;
+    private ChatMemory chatMemory;
+
+    /**
+     * WAL written by the last replay.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wal {
+
+        public long walBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            walBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>(
+                DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+        postgres.start();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        ChatMemoryRepository chatMemoryRepository;
+        if ("spring-ai".equals(repository)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS SPRING_AI_CHAT_MEMORY ("
+                    + "conversation_id VARCHAR(36) NOT NULL, content TEXT NOT NULL, "
+                    + "type VARCHAR(10) NOT NULL, \"timestamp\" TIMESTAMP NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS SPRING_AI_CHAT_MEMORY_CONVERSATION_ID_TIMESTAMP_IDX "
+                    + "ON SPRING_AI_CHAT_MEMORY(conversation_id, \"timestamp\")");
+            chatMemoryRepository = JdbcChatMemoryRepository.builder()
+                    .jdbcTemplate(jdbcTemplate)
+                    .dialect(new PostgresChatMemoryRepositoryDialect())
+                    .transactionManager(transactionManager)
+                    .build();
+        } else {
+            AppendOnlyJdbcChatMemoryRepository appendOnly = new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate,
+                    new TransactionTemplate(transactionManager), "ai_chat_memory", "ai_chat_conversation", 10_000,
+                    Clock.systemUTC());
+            appendOnly.initializeSchema();
+            chatMemoryRepository = appendOnly;
+        }
+        chatMemory = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(chatMemoryRepository)
+                .maxMessages(WINDOW)
+                .build();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTables() {
+        jdbcTemplate.execute("spring-ai".equals(repository)
+                ? "TRUNCATE SPRING_AI_CHAT_MEMORY"
+                : "TRUNCATE ai_chat_memory, ai_chat_conversation");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public void replay(Wal wal) {
+        String startLsn = jdbcTemplate.queryForObject("SELECT pg_current_wal_insert_lsn()::text", String.class);
+        for (int turn = 0; turn < TURNS; turn++) {
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                String conversationId = "conv-" + c;
+                chatMemory.get(conversationId);
+                chatMemory.add(conversationId, List.of(
+                        new UserMessage("Turn " + turn + ": what is " + turn + " squared?"),
+                        new AssistantMessage("The answer to turn " + turn + " is " + (turn * turn)
+                                + ". Let me know if you want to try another calculation.")));
+            }
+        }
+        Long walBytes = jdbcTemplate.queryForObject(
+                "SELECT pg_wal_lsn_diff(pg_current_wal_insert_lsn(), ?::pg_lsn)::bigint", Long.class, startLsn);
+        wal.walBytes = walBytes != null ? walBytes : 0;
+    }
+}
@@ -0,0 +1,48 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Retained heap per conversation for each in-memory storage mode.
+ * 
+ * Fills a repository with full windows, forces GC and reports the growth of
+ * used heap. Run with a single-threaded collector for stable numbers:
+ * {@code ./gradlew chatMemoryFootprint}.
+ */
+public final class ChatMemoryFootprint {
+
+    private static final int CONVERSATIONS = 50_000;
+
+    private ChatMemoryFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int conversations = args.length > 0 ? Integer.parseInt(args[0]) : CONVERSATIONS;
+        System.out.printf("%-10s %14s %14s%n", "storage", "total MB", "bytes/conv");
+        for (String storage : new String[]{"spring-ai", "objects", "compact"}) {
+            long before = usedHeapAfterGc();
+            ChatMemoryRepository repository = ConversationFixtures.repository(storage);
+            for (int i = 0; i < conversations; i++) {
+                repository.saveAll("conv-" + i, ConversationFixtures.window(i));
+            }
+            long retained = usedHeapAfterGc() - before;
+            System.out.printf("%-10s %14.1f %14d%n", storage, retained / (1024.0 * 1024.0), retained / conversations);
+
+            // Keep the repository reachable until measured
+            if (repository.findConversationIds().size() != conversations) {
+                throw new IllegalStateException("Unexpected conversation count for " + storage);
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
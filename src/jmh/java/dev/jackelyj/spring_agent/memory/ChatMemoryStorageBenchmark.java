@@ -0,0 +1,73 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat turn throughput of MessageWindowChatMemory over each in-memory storage mode.
+ * 
+ * A turn is what ChatMemory does per chat request: read the window, then
+ * append the user and assistant messages. Run with the gc profiler (the
+ * default in build.gradle) to compare allocation per turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMemoryStorageBenchmark {
+
+    @Param({"spring-ai", "objects", "compact"})
+    public String storage;
+
+    @Param({"10000"})
+    public int conversations;
+
+    private ChatMemory chatMemory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chatMemory = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(ConversationFixtures.repository(storage))
+                .maxMessages(ConversationFixtures.WINDOW)
+                .build();
+        for (int i = 0; i < conversations; i++) {
+            chatMemory.add("conv-" + i, ConversationFixtures.window(i));
+        }
+    }
+
+    @Benchmark
+    public List<Message> readWindow() {
+        int conversation = ThreadLocalRandom.current().nextInt(conversations);
+        return chatMemory.get("conv-" + conversation);
+    }
+
+    @Benchmark
+    public List<Message> chatTurn() {
+        int conversation = ThreadLocalRandom.current().nextInt(conversations);
+        String conversationId = "conv-" + conversation;
+        List<Message> window = chatMemory.get(conversationId);
+        chatMemory.add(conversationId, List.of(
+                ConversationFixtures.userTurn(conversation, window.size()),
+                ConversationFixtures.assistantTurn(conversation, window.size())));
+        return window;
+    }
+}
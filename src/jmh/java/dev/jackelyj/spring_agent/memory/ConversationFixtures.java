@@ -0,0 +1,62 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared conversation data and storage setups for the chat memory benchmarks.
+ */
+final class ConversationFixtures {
+
+    static final int WINDOW = 10;
+
+    private ConversationFixtures() {
+    }
+
+    /**
+     * Create a repository for a storage mode: {@code spring-ai} (Spring AI's default map),
+     * {@code objects} or {@code compact}.
+     */
+    static ChatMemoryRepository repository(String storage) {
+        return switch (storage) {
+            case "spring-ai" -> new InMemoryChatMemoryRepository();
+            case "objects" -> new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, Clock.systemUTC());
+            case "compact" -> new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, Clock.systemUTC(),
+                    new MessageCodec(1024));
+            default -> throw new IllegalArgumentException("Unknown storage: " + storage);
+        };
+    }
+
+    /**
+     * A full window of alternating user and assistant turns with typical metadata.
+     */
+    static List<Message> window(int conversation) {
+        Message[] messages = new Message[WINDOW];
+        for (int i = 0; i < WINDOW; i += 2) {
+            messages[i] = userTurn(conversation, i);
+            messages[i + 1] = assistantTurn(conversation, i);
+        }
+        return List.of(messages);
+    }
+
+    static Message userTurn(int conversation, int turn) {
+        return new UserMessage("Question " + turn + " in conversation " + conversation
+                + ": what is the square root of " + (turn * 7 + conversation % 100) + "?");
+    }
+
+    static Message assistantTurn(int conversation, int turn) {
+        return new AssistantMessage("The square root of " + (turn * 7 + conversation % 100)
+                + " is approximately " + Math.sqrt(turn * 7 + conversation % 100)
+                + ". I used the calculator tool to compute it, rounding the result to a reasonable "
+                + "number of decimal places. Let me know if you need a more precise value or a different operation.",
+                Map.of("id", "chatcmpl-" + conversation + "-" + turn, "finishReason", "STOP", "model", "gpt-oss"));
+    }
+}
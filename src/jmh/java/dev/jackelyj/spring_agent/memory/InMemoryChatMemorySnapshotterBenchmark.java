@@ -0,0 +1,157 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory chat memory snapshot and restore time at one million messages.
+ *
+ * The store holds 100,000 conversations of 10 messages each. {@code snapshot}
+ * writes them while another thread keeps saving conversations, and reports
+ * the snapshot size and that writer's slowest save (it should not pause);
+ * {@code restore} streams the snapshot back into an empty store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InMemoryChatMemorySnapshotterBenchmark {
+
+    private static final int CONVERSATIONS = 100_000;
+    private static final int MESSAGES_PER_CONVERSATION = 10;
+
+    @Param({"objects", "compact"})
+    public String storage;
+
+    private Path directory;
+    private Path restorePath;
+    private BoundedInMemoryChatMemoryRepository source;
+    private InMemoryChatMemorySnapshotter snapshotter;
+    private BoundedInMemoryChatMemoryRepository target;
+
+    /**
+     * Snapshot size and the slowest concurrent save of the last snapshot.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SnapshotCost {
+
+        public long snapshotBytes;
+        public long maxWriteMicros;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            snapshotBytes = 0;
+            maxWriteMicros = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("chat-memory-snapshot");
+        source = repository();
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            source.saveAll("conv-" + c, window(c));
+        }
+        snapshotter = new InMemoryChatMemorySnapshotter(source, directory.resolve("snapshot"), Duration.ZERO,
+                new MessageCodec(1024), Clock.systemUTC());
+        restorePath = directory.resolve("restore.snapshot");
+        new InMemoryChatMemorySnapshotter(source, restorePath, Duration.ZERO, new MessageCodec(1024),
+                Clock.systemUTC()).snapshot();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTarget() {
+        target = repository();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeTarget() {
+        target.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long snapshot(SnapshotCost cost) throws Exception {
+        AtomicBoolean snapshotting = new AtomicBoolean(true);
+        AtomicLong maxWriteNanos = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            int i = 0;
+            while (snapshotting.get()) {
+                long start = System.nanoTime();
+                source.saveAll("live-" + (i++ % 1000), window(i));
+                maxWriteNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+            }
+        });
+        writer.start();
+        long written;
+        try {
+            written = snapshotter.snapshot();
+        } finally {
+            snapshotting.set(false);
+            writer.join();
+        }
+        cost.snapshotBytes = Files.size(directory.resolve("snapshot"));
+        cost.maxWriteMicros = maxWriteNanos.get() / 1_000;
+        return written;
+    }
+
+    @Benchmark
+    public long restore() throws IOException {
+        return new InMemoryChatMemorySnapshotter(target, restorePath, Duration.ZERO, new MessageCodec(1024),
+                Clock.systemUTC()).restore();
+    }
+
+    private BoundedInMemoryChatMemoryRepository repository() {
+        MessageCodec storeCodec = "compact".equals(storage) ? new MessageCodec(1024) : null;
+        return new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, Clock.systemUTC(), storeCodec);
+    }
+
+    private static List<Message> window(int seed) {
+        List<Message> messages = new ArrayList<>(MESSAGES_PER_CONVERSATION);
+        for (int m = 0; m < MESSAGES_PER_CONVERSATION; m += 2) {
+            messages.add(new UserMessage("Question " + m + " of conversation " + seed + ": what is " + m + " squared?"));
+            messages.add(new AssistantMessage("The answer is " + (m * m)
+                    + ". Let me know if you want to try another calculation."));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,139 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Segment log vs. append-only JDBC chat memory: chat turn throughput.
+ *
+ * Eight writer threads replay chat turns through MessageWindowChatMemory,
+ * each over its own conversations. The segment log fsyncs every acknowledged
+ * write, shared by group commit; the JDBC repository writes to a PostgreSQL
+ * started with Testcontainers (requires Docker).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class SegmentLogChatMemoryBenchmark {
+
+    private static final int CONVERSATIONS_PER_WRITER = 25;
+    private static final int WINDOW = 20;
+
+    @Param({"jdbc", "segment-log"})
+    public String repository;
+
+    private final AtomicInteger writers = new AtomicInteger();
+    private PostgreSQLContainer<?> postgres;
+    private Path directory;
+    private SegmentLogChatMemoryRepository log;
+    private ChatMemory chatMemory;
+
+    /**
+     * A writer's own conversations and its position in them.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private int first;
+        private int turn;
+
+        @Setup(Level.Trial)
+        public void setUp(SegmentLogChatMemoryBenchmark benchmark) {
+            first = benchmark.writers.getAndIncrement() * CONVERSATIONS_PER_WRITER;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("jdbc".equals(repository)) {
+            postgres = new PostgreSQLContainer<>(
+                    DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+            postgres.start();
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+            AppendOnlyJdbcChatMemoryRepository jdbc = new AppendOnlyJdbcChatMemoryRepository(
+                    new JdbcTemplate(dataSource), new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                    "bench_chat_memory", "bench_chat_conversation", 10_000, Clock.systemUTC());
+            jdbc.initializeSchema();
+            chatMemory = chatMemory(jdbc);
+        } else {
+            directory = Files.createTempDirectory("chat-memory-segments");
+            log = new SegmentLogChatMemoryRepository(directory, 64 * 1024 * 1024, true, Duration.ofSeconds(1), 0.5,
+                    Clock.systemUTC(), new MessageCodec(1024));
+            chatMemory = chatMemory(log);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (postgres != null) {
+            postgres.stop();
+        }
+        if (log != null) {
+            log.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Message> chatTurn(Writer writer) {
+        int turn = writer.turn++;
+        String conversationId = "conv-" + (writer.first + turn % CONVERSATIONS_PER_WRITER);
+        List<Message> window = chatMemory.get(conversationId);
+        chatMemory.add(conversationId, List.of(
+                new UserMessage("Turn " + turn + ": what is " + turn + " squared?"),
+                new AssistantMessage("The answer to turn " + turn + " is " + ((long) turn * turn)
+                        + ". Let me know if you want to try another calculation.")));
+        return window;
+    }
+
+    private static ChatMemory chatMemory(ChatMemoryRepository repository) {
+        return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(repository)
+                .maxMessages(WINDOW)
+                .build();
+    }
+}
@@ -0,0 +1,276 @@
+package dev.jackelyj.spring_agent.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Forwards conversation requests that reach a node not owning the
+ * conversation to its owner, and relays the owner's response.
+ *
+ * The conversation ID is taken from the request the same way the controller
+ * reads it: the JSON body of POST /chat and /chat/stream, the conversationId
+ * parameter of GET /chat and /chat/stream, and the path of
+ * /chat/clear/{id} and /conversations/{id}/count|stats. Requests without an
+ * ID, requests owned by this node and requests already forwarded by another
+ * node are handled locally.
+ *
+ * The owner's response body is copied as it arrives and flushed after every
+ * read, so SSE streams reach the client event by event. If the owner cannot
+ * be reached the request fails with 502 rather than being served from an
+ * empty local history.
+ */
+public class ConversationForwardingFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationForwardingFilter.class);
+
+    /**
+     * Marks a forwarded request with the forwarding node, so the owner never forwards it again.
+     */
+    static final String FORWARDED_BY = "X-Conversation-Forwarded-By";
+
+    private static final Pattern PATH_ID = Pattern.compile(
+            "/api/v1/(?:chat/clear/([^/]+)|conversations/([^/]+)/(?:count|stats))");
+    private static final Set<String> CHAT_PATHS = Set.of("/api/v1/chat", "/api/v1/chat/stream");
+
+    /**
+     * Headers managed by the HTTP client or scoped to a single connection.
+     */
+    private static final Set<String> UNFORWARDED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "keep-alive", "proxy-connection",
+            "te", "trailer", "transfer-encoding", "upgrade");
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final ConversationOwnership ownership;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final Duration responseTimeout;
+
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param ownership conversation ownership of the cluster
+     * @param objectMapper mapper reading the conversation ID from JSON bodies
+     * @param httpClient client used to reach the owners
+     * @param responseTimeout maximum time to wait for the owner's response headers
+     */
+    public ConversationForwardingFilter(ConversationOwnership ownership, ObjectMapper objectMapper,
+                                        HttpClient httpClient, Duration responseTimeout) {
+        this.ownership = ownership;
+        this.objectMapper = objectMapper;
+        this.httpClient = httpClient;
+        this.responseTimeout = responseTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return request.getHeader(FORWARDED_BY) != null
+                || !(CHAT_PATHS.contains(path) || PATH_ID.matcher(path).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        byte[] body = null;
+        String conversationId;
+        Matcher matcher = PATH_ID.matcher(path);
+        if (matcher.matches()) {
+            String encoded = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            conversationId = UriUtils.decode(encoded, StandardCharsets.UTF_8);
+        } else if ("POST".equals(request.getMethod())) {
+            body = request.getInputStream().readAllBytes();
+            conversationId = conversationIdOf(body);
+            request = new CachedBodyRequest(request, body);
+        } else {
+            conversationId = request.getParameter("conversationId");
+        }
+
+        if (conversationId == null || conversationId.isEmpty() || ownership.isOwnedLocally(conversationId)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        forward(ownership.ownerOf(conversationId), request, body, response);
+    }
+
+    private String conversationIdOf(byte[] body) {
+        try {
+            JsonNode conversationId = objectMapper.readTree(body).path("conversationId");
+            return conversationId.isTextual() ? conversationId.asText() : null;
+        } catch (IOException e) {
+            // Let the controller reject the malformed body
+            return null;
+        }
+    }
+
+    private void forward(String owner, HttpServletRequest request, byte[] body, HttpServletResponse response)
+            throws IOException {
+        String query = request.getQueryString();
+        HttpRequest.Builder forwardedRequest = HttpRequest.newBuilder(
+                        URI.create(owner + request.getRequestURI() + (query != null ? "?" + query : "")))
+                .timeout(responseTimeout)
+                .method(request.getMethod(), body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody())
+                .header(FORWARDED_BY, ownership.self());
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (!UNFORWARDED_HEADERS.contains(name.toLowerCase())) {
+                for (String value : Collections.list(request.getHeaders(name))) {
+                    forwardedRequest.header(name, value);
+                }
+            }
+        }
+
+        HttpResponse<InputStream> ownerResponse;
+        try {
+            ownerResponse = httpClient.send(forwardedRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            failed.increment();
+            log.warn("Could not forward {} {} to conversation owner {}", request.getMethod(), request.getRequestURI(),
+                    owner, e);
+            response.setStatus(HttpStatus.BAD_GATEWAY.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    Map.of("error", "Conversation owner " + owner + " is unavailable"));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted forwarding to " + owner, e);
+        }
+        forwarded.increment();
+
+        try (InputStream in = ownerResponse.body()) {
+            response.setStatus(ownerResponse.statusCode());
+            for (Map.Entry<String, List<String>> header : ownerResponse.headers().map().entrySet()) {
+                String name = header.getKey();
+                if (!name.startsWith(":") && !UNFORWARDED_HEADERS.contains(name.toLowerCase())) {
+                    header.getValue().forEach(value -> response.addHeader(name, value));
+                }
+            }
+            OutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                // Relay streamed (SSE) responses as they are produced
+                out.flush();
+            }
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cluster.forwards", forwarded, LongAdder::sum)
+                .description("Conversation requests forwarded to the owning node")
+                .tag("outcome", "forwarded")
+                .register(registry);
+        FunctionCounter.builder("cluster.forwards", failed, LongAdder::sum)
+                .description("Conversation requests forwarded to the owning node")
+                .tag("outcome", "failed")
+                .register(registry);
+    }
+
+    /**
+     * Request whose body, already read to find the conversation ID, is replayed to the handler.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Cached request body is read synchronously");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dev.jackelyj.spring_agent.cluster;
+
+import dev.jackelyj.spring_agent.memory.ConsistentHashRing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Assigns every conversation to one node of a statically configured cluster
+ * by rendezvous (highest random weight) hashing.
+ *
+ * Each node scores a conversation ID by mixing the node's hash with the ID's
+ * hash; the highest score owns the conversation. Every node computes the same
+ * owner without coordination, keys spread evenly, and adding or removing a
+ * node only moves the conversations it gains or loses.
+ */
+public class ConversationOwnership {
+
+    private final String self;
+    private final List<String> members;
+    private final long[] memberHashes;
+
+    /**
+     * @param self base URL of this node, as listed in members
+     * @param members base URLs of all nodes, including this one
+     */
+    public ConversationOwnership(String self, List<String> members) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(members));
+        if (distinct.size() != members.size()) {
+            throw new IllegalArgumentException("Duplicate cluster members: " + members);
+        }
+        if (!distinct.contains(self)) {
+            throw new IllegalArgumentException("Cluster members " + members + " do not include this node " + self);
+        }
+        this.self = self;
+        this.members = List.copyOf(distinct);
+        this.memberHashes = new long[distinct.size()];
+        for (int i = 0; i < memberHashes.length; i++) {
+            memberHashes[i] = ConsistentHashRing.hash(distinct.get(i));
+        }
+    }
+
+    /**
+     * Base URL of the node owning a conversation.
+     */
+    public String ownerOf(String conversationId) {
+        long key = ConsistentHashRing.hash(conversationId);
+        int best = 0;
+        long bestScore = score(memberHashes[0], key);
+        for (int i = 1; i < memberHashes.length; i++) {
+            long score = score(memberHashes[i], key);
+            int order = Long.compareUnsigned(score, bestScore);
+            if (order > 0 || (order == 0 && members.get(i).compareTo(members.get(best)) < 0)) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return members.get(best);
+    }
+
+    public boolean isOwnedLocally(String conversationId) {
+        return self.equals(ownerOf(conversationId));
+    }
+
+    /**
+     * A new random conversation ID owned by this node, so a conversation started
+     * here without an ID stays here.
+     */
+    public String newConversationId() {
+        String conversationId;
+        do {
+            conversationId = UUID.randomUUID().toString();
+        } while (!isOwnedLocally(conversationId));
+        return conversationId;
+    }
+
+    /**
+     * Base URL of this node.
+     */
+    public String self() {
+        return self;
+    }
+
+    /**
+     * Base URLs of all nodes, in configuration order.
+     */
+    public List<String> members() {
+        return members;
+    }
+
+    /**
+     * MurmurHash3 finalizer over the combined hashes.
+     */
+    private static long score(long memberHash, long keyHash) {
+        long hash = memberHash ^ keyHash;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
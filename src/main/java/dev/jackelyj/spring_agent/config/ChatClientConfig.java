@@ -24,6 +24,7 @@ import org.springframework.context.annotation.Configuration;
  * which supports both in-memory and JDBC implementations based on configuration.
  */
 @Configuration
+@ConditionalOnFullAgentMode
 public class ChatClientConfig {
 
     @Value("${spring.ai.ollama.chat.options.model:gpt-oss}")
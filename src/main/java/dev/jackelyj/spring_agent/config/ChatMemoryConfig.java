@@ -1,12 +1,44 @@
 package dev.jackelyj.spring_agent.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import dev.jackelyj.spring_agent.memory.AppendOnlyJdbcChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.BoundedInMemoryChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.ChatMemoryPartitionManager;
+import dev.jackelyj.spring_agent.memory.ConversationLockingChatMemory;
+import dev.jackelyj.spring_agent.memory.InMemoryChatMemorySnapshotter;
+import dev.jackelyj.spring_agent.memory.MessageCodec;
+import dev.jackelyj.spring_agent.memory.PostgresChatMemoryInvalidationListener;
+import dev.jackelyj.spring_agent.memory.PostgresConversationLock;
+import dev.jackelyj.spring_agent.memory.SegmentLogChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.ShardedChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.VersionedCachingChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.WriteBehindChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.WriteTrackingChatMemoryRepository;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration for Chat Memory.
@@ -21,11 +53,36 @@ import org.springframework.context.annotation.Configuration;
  * - DIP: Returns ChatMemory abstraction, not concrete types
  */
 @Configuration
+@ConditionalOnFullAgentMode
 public class ChatMemoryConfig {
     
     @Value("${chat.memory.max-messages:10}")
     private int maxMessages;
     
+    /**
+     * Bounded in-memory store backing the in-memory ChatMemory.
+     * 
+     * Evicts idle conversations after the TTL and least recently used
+     * conversations when the conversation or byte limit is exceeded.
+     * With chat.memory.in-memory.storage=compact, windows are held as encoded
+     * byte arrays and decoded on read; windows the codec cannot round-trip
+     * exactly stay as objects.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "in-memory", matchIfMissing = true)
+    public BoundedInMemoryChatMemoryRepository boundedInMemoryChatMemoryRepository(
+            @Value("${chat.memory.in-memory.ttl:24h}") Duration ttl,
+            @Value("${chat.memory.in-memory.max-conversations:100000}") int maxConversations,
+            @Value("${chat.memory.in-memory.max-bytes:256MB}") DataSize maxBytes,
+            @Value("${chat.memory.in-memory.storage:objects}") String storage,
+            @Value("${chat.memory.in-memory.compression-threshold:1KB}") DataSize compressionThreshold) {
+        MessageCodec codec = "compact".equalsIgnoreCase(storage)
+                ? new MessageCodec((int) compressionThreshold.toBytes())
+                : null;
+        return new BoundedInMemoryChatMemoryRepository(ttl, maxConversations, maxBytes.toBytes(),
+                Clock.systemUTC(), codec);
+    }
+    
     /**
      * In-Memory Chat Memory Bean (default).
      * 
@@ -33,25 +90,388 @@ public class ChatMemoryConfig {
      */
     @Bean
     @ConditionalOnProperty(name = "chat.memory.type", havingValue = "in-memory", matchIfMissing = true)
-    public ChatMemory inMemoryChatMemory() {
+    public ChatMemory inMemoryChatMemory(BoundedInMemoryChatMemoryRepository boundedInMemoryChatMemoryRepository) {
+        return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(boundedInMemoryChatMemoryRepository)
+                .maxMessages(maxMessages)
+                .build();
+    }
+    
+    /**
+     * Warm restarts for in-memory chat memory.
+     * 
+     * Active when chat.memory.type=in-memory and chat.memory.in-memory.snapshot.enabled=true:
+     * the store is snapshotted periodically and on shutdown, and restored on startup.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "in-memory", matchIfMissing = true)
+    static class InMemorySnapshotConfig {
+        
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.in-memory.snapshot.enabled", havingValue = "true")
+        public InMemoryChatMemorySnapshotter inMemoryChatMemorySnapshotter(
+                BoundedInMemoryChatMemoryRepository boundedInMemoryChatMemoryRepository,
+                @Value("${chat.memory.in-memory.snapshot.path:data/chat-memory.snapshot}") String path,
+                @Value("${chat.memory.in-memory.snapshot.interval:5m}") Duration interval,
+                @Value("${chat.memory.in-memory.compression-threshold:1KB}") DataSize compressionThreshold) {
+            return new InMemoryChatMemorySnapshotter(boundedInMemoryChatMemoryRepository, Path.of(path), interval,
+                    new MessageCodec((int) compressionThreshold.toBytes()), Clock.systemUTC());
+        }
+    }
+    
+    /**
+     * File-backed store for nodes without a database: memory-mapped append-only
+     * segment files under chat.memory.file.directory, recovered on startup.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "file")
+    public SegmentLogChatMemoryRepository segmentLogChatMemoryRepository(
+            @Value("${chat.memory.file.directory:data/chat-memory}") String directory,
+            @Value("${chat.memory.file.segment-size:64MB}") DataSize segmentSize,
+            @Value("${chat.memory.file.fsync:true}") boolean fsync,
+            @Value("${chat.memory.file.compaction.interval:1m}") Duration compactionInterval,
+            @Value("${chat.memory.file.compaction.live-ratio:0.5}") double compactionLiveRatio,
+            @Value("${chat.memory.file.compression-threshold:1KB}") DataSize compressionThreshold) {
+        return new SegmentLogChatMemoryRepository(Path.of(directory), Math.toIntExact(segmentSize.toBytes()), fsync,
+                compactionInterval, compactionLiveRatio, Clock.systemUTC(),
+                new MessageCodec((int) compressionThreshold.toBytes()));
+    }
+    
+    /**
+     * File Chat Memory Bean.
+     * 
+     * Active when chat.memory.type=file. Reads go through the versioned read
+     * cache when chat.memory.cache.enabled=true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "file")
+    public ChatMemory fileChatMemory(
+            SegmentLogChatMemoryRepository segmentLogChatMemoryRepository,
+            ObjectProvider<VersionedCachingChatMemoryRepository> chatMemoryReadCache) {
         return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(chatMemoryReadCache.getIfAvailable(() -> segmentLogChatMemoryRepository))
                 .maxMessages(maxMessages)
                 .build();
     }
     
+    /**
+     * Versioned read cache for file chat memory.
+     * 
+     * Active when chat.memory.type=file and chat.memory.cache.enabled=true:
+     * repeated reads of a window are served without decoding it from the segment files again.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "file")
+    static class FileReadCacheConfig {
+        
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.cache.enabled", havingValue = "true")
+        public VersionedCachingChatMemoryRepository fileChatMemoryReadCache(
+                SegmentLogChatMemoryRepository segmentLogChatMemoryRepository,
+                @Value("${chat.memory.cache.max-conversations:10000}") int maxConversations) {
+            return new VersionedCachingChatMemoryRepository(segmentLogChatMemoryRepository, maxConversations);
+        }
+    }
+    
     /**
      * JDBC Chat Memory Bean.
      * 
      * Active when chat.memory.type=jdbc.
-     * Requires ChatMemoryRepository to be auto-configured by Spring AI.
+     * Reads go through the versioned read cache when enabled; below it, uses the
+     * write-behind tier when enabled, otherwise the configured durable
+     * repository (append-only, or Spring AI's auto-configured JdbcChatMemoryRepository).
+     * With chat.memory.jdbc.conversation-lock.enabled=true, updates of a
+     * conversation are serialized across nodes.
      */
     @Bean
     @ConditionalOnProperty(name = "chat.memory.type", havingValue = "jdbc")
-    public ChatMemory jdbcChatMemory(ChatMemoryRepository chatMemoryRepository) {
-        return MessageWindowChatMemory.builder()
+    public ChatMemory jdbcChatMemory(
+            ObjectProvider<PostgresConversationLock> chatMemoryConversationLock,
+            ObjectProvider<WriteTrackingChatMemoryRepository> chatMemoryWriteTracker,
+            ObjectProvider<VersionedCachingChatMemoryRepository> chatMemoryReadCache,
+            ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+            ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+            ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+            ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository) {
+        ChatMemoryRepository chatMemoryRepository = chatMemoryWriteTracker.getIfAvailable(
+                () -> JdbcChatMemoryRepositoryConfig.cachedRepository(chatMemoryReadCache,
+                        writeBehindChatMemoryRepository, appendOnlyJdbcChatMemoryRepository,
+                        shardedChatMemoryRepository, jdbcChatMemoryRepository));
+        ChatMemory chatMemory = MessageWindowChatMemory.builder()
                 .chatMemoryRepository(chatMemoryRepository)
                 .maxMessages(maxMessages)
                 .build();
+        PostgresConversationLock lock = chatMemoryConversationLock.getIfAvailable();
+        return lock != null ? new ConversationLockingChatMemory(chatMemory, lock) : chatMemory;
+    }
+    
+    /**
+     * Repositories for JDBC chat memory.
+     * 
+     * Active when chat.memory.type=jdbc.
+     * - chat.memory.jdbc.repository=spring-ai (default): Spring AI's auto-configured JdbcChatMemoryRepository
+     * - chat.memory.jdbc.repository=append-only: incremental, sequence-numbered rows
+     *   (opt-in: with initialize-schema, an existing Spring AI table is migrated in place on startup)
+     * - chat.memory.jdbc.repository=sharded: append-only rows spread over several
+     *   databases (chat.memory.jdbc.sharding.*) by consistent hashing of the conversation ID
+     * - chat.memory.jdbc.write-behind.enabled=true: in-process tier over the durable repository
+     * - chat.memory.cache.enabled=true: versioned read cache in front of both, kept
+     *   coherent across nodes with LISTEN/NOTIFY when chat.memory.cache.notify.enabled=true
+     * - datasource.replicas.enabled=true: records each conversation's last write, so
+     *   read-only queries about it only go to a replica that has replayed it
+     * - chat.memory.jdbc.conversation-lock.enabled=true: per-conversation advisory
+     *   lock around ChatMemory updates, for several nodes serving the same conversations
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "chat.memory.type", havingValue = "jdbc")
+    static class JdbcChatMemoryRepositoryConfig {
+        
+        /**
+         * Range partitioning of the append-only table by row timestamp, with a
+         * background job that drops partitions older than the retention period.
+         */
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.jdbc.partitioning.enabled", havingValue = "true")
+        public ChatMemoryPartitionManager chatMemoryPartitionManager(
+                JdbcTemplate jdbcTemplate,
+                PlatformTransactionManager transactionManager,
+                @Value("${chat.memory.jdbc.table-name:ai_chat_memory}") String tableName,
+                @Value("${chat.memory.jdbc.stats-table-name:ai_chat_conversation}") String statsTableName,
+                @Value("${chat.memory.jdbc.partitioning.interval:day}") String interval,
+                @Value("${chat.memory.jdbc.partitioning.retention:90d}") Duration retention,
+                @Value("${chat.memory.jdbc.partitioning.premake:3}") int premake,
+                @Value("${chat.memory.jdbc.partitioning.maintenance-interval:1h}") Duration maintenanceInterval) {
+            return new ChatMemoryPartitionManager(jdbcTemplate, new TransactionTemplate(transactionManager),
+                    tableName, statsTableName, ChatMemoryPartitionManager.Interval.of(interval), retention, premake,
+                    maintenanceInterval, Clock.systemUTC());
+        }
+        
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.jdbc.repository", havingValue = "append-only")
+        public AppendOnlyJdbcChatMemoryRepository appendOnlyJdbcChatMemoryRepository(
+                JdbcTemplate jdbcTemplate,
+                PlatformTransactionManager transactionManager,
+                ObjectProvider<ChatMemoryPartitionManager> partitionManager,
+                @Value("${chat.memory.jdbc.table-name:ai_chat_memory}") String tableName,
+                @Value("${chat.memory.jdbc.stats-table-name:ai_chat_conversation}") String statsTableName,
+                @Value("${chat.memory.jdbc.initialize-schema:true}") boolean initializeSchema,
+                @Value("${chat.memory.jdbc.cached-windows:10000}") int cachedWindows) {
+            ChatMemoryPartitionManager partitions = partitionManager.getIfAvailable();
+            AppendOnlyJdbcChatMemoryRepository repository = new AppendOnlyJdbcChatMemoryRepository(
+                    jdbcTemplate, new TransactionTemplate(transactionManager), tableName, statsTableName, cachedWindows,
+                    Clock.systemUTC(), partitions);
+            if (partitions != null) {
+                partitions.addDropListener(repository::invalidateWindows);
+            }
+            if (initializeSchema) {
+                repository.initializeSchema();
+            }
+            return repository;
+        }
+        
+        /**
+         * Append-only chat memory sharded over the databases listed in
+         * chat.memory.jdbc.sharding.urls, one connection pool per shard.
+         * 
+         * Shards are named by chat.memory.jdbc.sharding.names (default shard-0,
+         * shard-1, ...); ownership depends only on the names of the shards in
+         * chat.memory.jdbc.sharding.ring (default: all). To reshard, change the
+         * ring and set chat.memory.jdbc.sharding.previous-ring to the old one
+         * until the background migration reports completion.
+         */
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.jdbc.repository", havingValue = "sharded")
+        public ShardedChatMemoryRepository shardedChatMemoryRepository(
+                @Value("${chat.memory.jdbc.sharding.urls}") List<String> urls,
+                @Value("${chat.memory.jdbc.sharding.names:}") List<String> names,
+                @Value("${chat.memory.jdbc.sharding.ring:}") List<String> ring,
+                @Value("${chat.memory.jdbc.sharding.previous-ring:}") List<String> previousRing,
+                @Value("${chat.memory.jdbc.sharding.username:${spring.datasource.username:}}") String username,
+                @Value("${chat.memory.jdbc.sharding.password:${spring.datasource.password:}}") String password,
+                @Value("${chat.memory.jdbc.sharding.pool-size:10}") int poolSize,
+                @Value("${chat.memory.jdbc.sharding.virtual-nodes:160}") int virtualNodes,
+                @Value("${chat.memory.jdbc.sharding.migration-batch-size:500}") int migrationBatchSize,
+                @Value("${chat.memory.jdbc.table-name:ai_chat_memory}") String tableName,
+                @Value("${chat.memory.jdbc.stats-table-name:ai_chat_conversation}") String statsTableName,
+                @Value("${chat.memory.jdbc.initialize-schema:true}") boolean initializeSchema,
+                @Value("${chat.memory.jdbc.cached-windows:10000}") int cachedWindows) {
+            List<String> shardUrls = nonBlank(urls);
+            List<String> shardNames = nonBlank(names);
+            if (shardNames.isEmpty()) {
+                for (int i = 0; i < shardUrls.size(); i++) {
+                    shardNames.add("shard-" + i);
+                }
+            }
+            if (shardUrls.isEmpty() || shardNames.size() != shardUrls.size()) {
+                throw new IllegalStateException("chat.memory.jdbc.sharding.names must name each of the "
+                        + shardUrls.size() + " shard URLs");
+            }
+            
+            Map<String, AppendOnlyJdbcChatMemoryRepository> shards = new LinkedHashMap<>();
+            List<HikariDataSource> dataSources = new ArrayList<>(shardUrls.size());
+            for (int i = 0; i < shardUrls.size(); i++) {
+                HikariDataSource dataSource = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(shardUrls.get(i))
+                        .username(username)
+                        .password(password)
+                        .build();
+                dataSource.setPoolName("chat-memory-" + shardNames.get(i));
+                dataSource.setMaximumPoolSize(poolSize);
+                dataSources.add(dataSource);
+                AppendOnlyJdbcChatMemoryRepository shard = new AppendOnlyJdbcChatMemoryRepository(
+                        new JdbcTemplate(dataSource),
+                        new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                        tableName, statsTableName, Math.max(1, cachedWindows / shardUrls.size()), Clock.systemUTC());
+                if (initializeSchema) {
+                    shard.initializeSchema();
+                }
+                shards.put(shardNames.get(i), shard);
+            }
+            List<String> currentRing = nonBlank(ring);
+            return new ShardedChatMemoryRepository(shards, currentRing.isEmpty() ? shardNames : currentRing,
+                    nonBlank(previousRing), virtualNodes, migrationBatchSize, dataSources);
+        }
+        
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.jdbc.write-behind.enabled", havingValue = "true")
+        public WriteBehindChatMemoryRepository writeBehindChatMemoryRepository(
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository,
+                ObjectProvider<ChatMemoryPartitionManager> partitionManager,
+                PlatformTransactionManager transactionManager,
+                @Value("${chat.memory.jdbc.write-behind.flush-interval:200ms}") Duration flushInterval,
+                @Value("${chat.memory.jdbc.write-behind.max-lag:2s}") Duration maxLag,
+                @Value("${chat.memory.jdbc.write-behind.batch-size:500}") int batchSize,
+                @Value("${chat.memory.jdbc.write-behind.cache.ttl:30m}") Duration cacheTtl,
+                @Value("${chat.memory.jdbc.write-behind.cache.max-conversations:10000}") int cacheMaxConversations,
+                @Value("${chat.memory.jdbc.write-behind.cache.max-bytes:64MB}") DataSize cacheMaxBytes) {
+            BoundedInMemoryChatMemoryRepository cache = new BoundedInMemoryChatMemoryRepository(
+                    cacheTtl, cacheMaxConversations, cacheMaxBytes.toBytes(), Clock.systemUTC());
+            WriteBehindChatMemoryRepository repository = new WriteBehindChatMemoryRepository(
+                    durableRepository(appendOnlyJdbcChatMemoryRepository, shardedChatMemoryRepository,
+                            jdbcChatMemoryRepository),
+                    cache,
+                    new TransactionTemplate(transactionManager), flushInterval, maxLag, batchSize, Clock.systemUTC());
+            partitionManager.ifAvailable(partitions -> partitions.addDropListener(repository::invalidateAll));
+            return repository;
+        }
+        
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.cache.enabled", havingValue = "true")
+        public VersionedCachingChatMemoryRepository jdbcChatMemoryReadCache(
+                ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository,
+                ObjectProvider<ChatMemoryPartitionManager> partitionManager,
+                @Value("${chat.memory.cache.max-conversations:10000}") int maxConversations) {
+            VersionedCachingChatMemoryRepository cache = new VersionedCachingChatMemoryRepository(
+                    storeRepository(writeBehindChatMemoryRepository, appendOnlyJdbcChatMemoryRepository,
+                            shardedChatMemoryRepository, jdbcChatMemoryRepository),
+                    maxConversations);
+            partitionManager.ifAvailable(partitions -> partitions.addDropListener(cache::invalidateAll));
+            return cache;
+        }
+        
+        /**
+         * Advisory lock serializing updates of a conversation across nodes.
+         * 
+         * Write-behind acknowledges writes before they reach the database, so
+         * the lock could not order them; the combination is rejected.
+         */
+        @Bean
+        @ConditionalOnProperty(name = "chat.memory.jdbc.conversation-lock.enabled", havingValue = "true")
+        public PostgresConversationLock chatMemoryConversationLock(
+                JdbcTemplate jdbcTemplate,
+                PlatformTransactionManager transactionManager,
+                ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                ObjectProvider<VersionedCachingChatMemoryRepository> chatMemoryReadCache,
+                @Value("${chat.memory.jdbc.conversation-lock.max-wait:2s}") Duration maxWait) {
+            if (writeBehindChatMemoryRepository.getIfAvailable() != null) {
+                throw new IllegalStateException(
+                        "chat.memory.jdbc.conversation-lock cannot be combined with chat.memory.jdbc.write-behind");
+            }
+            return new PostgresConversationLock(jdbcTemplate, new TransactionTemplate(transactionManager), maxWait,
+                    chatMemoryReadCache.getIfAvailable());
+        }
+        
+        /**
+         * Evicts windows written by other nodes from the read cache.
+         */
+        @Bean
+        @ConditionalOnProperty(name = {"chat.memory.cache.enabled", "chat.memory.cache.notify.enabled"},
+                havingValue = "true")
+        public PostgresChatMemoryInvalidationListener chatMemoryInvalidationListener(
+                VersionedCachingChatMemoryRepository jdbcChatMemoryReadCache,
+                DataSource dataSource,
+                @Value("${chat.memory.cache.notify.channel:chat_memory_invalidation}") String channel) {
+            return new PostgresChatMemoryInvalidationListener(jdbcChatMemoryReadCache, dataSource, channel);
+        }
+        
+        @Bean
+        @ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+        public WriteTrackingChatMemoryRepository chatMemoryWriteTracker(
+                ObjectProvider<VersionedCachingChatMemoryRepository> chatMemoryReadCache,
+                ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository,
+                @Value("${datasource.replicas.max-lag:5s}") Duration maxLag) {
+            return new WriteTrackingChatMemoryRepository(
+                    cachedRepository(chatMemoryReadCache, writeBehindChatMemoryRepository,
+                            appendOnlyJdbcChatMemoryRepository, shardedChatMemoryRepository, jdbcChatMemoryRepository),
+                    maxLag);
+        }
+        
+        /**
+         * The read cache when enabled, otherwise the store repository.
+         */
+        static ChatMemoryRepository cachedRepository(
+                ObjectProvider<VersionedCachingChatMemoryRepository> chatMemoryReadCache,
+                ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository) {
+            return chatMemoryReadCache.getIfAvailable(
+                    () -> storeRepository(writeBehindChatMemoryRepository, appendOnlyJdbcChatMemoryRepository,
+                            shardedChatMemoryRepository, jdbcChatMemoryRepository));
+        }
+        
+        /**
+         * The repository below the read cache: the write-behind tier when enabled, otherwise the durable repository.
+         */
+        static ChatMemoryRepository storeRepository(
+                ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository) {
+            return writeBehindChatMemoryRepository.getIfAvailable(
+                    () -> durableRepository(appendOnlyJdbcChatMemoryRepository, shardedChatMemoryRepository,
+                            jdbcChatMemoryRepository));
+        }
+        
+        private static List<String> nonBlank(List<String> values) {
+            List<String> result = new ArrayList<>(values.size());
+            for (String value : values) {
+                if (StringUtils.hasText(value)) {
+                    result.add(value.trim());
+                }
+            }
+            return result;
+        }
+        
+        static ChatMemoryRepository durableRepository(
+                ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnlyJdbcChatMemoryRepository,
+                ObjectProvider<ShardedChatMemoryRepository> shardedChatMemoryRepository,
+                ObjectProvider<JdbcChatMemoryRepository> jdbcChatMemoryRepository) {
+            AppendOnlyJdbcChatMemoryRepository appendOnly = appendOnlyJdbcChatMemoryRepository.getIfAvailable();
+            if (appendOnly != null) {
+                return appendOnly;
+            }
+            ShardedChatMemoryRepository sharded = shardedChatMemoryRepository.getIfAvailable();
+            return sharded != null ? sharded : jdbcChatMemoryRepository.getObject();
+        }
     }
 }
-
@@ -0,0 +1,61 @@
+package dev.jackelyj.spring_agent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.cluster.ConversationForwardingFilter;
+import dev.jackelyj.spring_agent.cluster.ConversationOwnership;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration for cluster mode.
+ *
+ * Active when cluster.enabled=true. Nodes are listed statically in
+ * cluster.members (base URLs); cluster.self is this node's entry. Every
+ * conversation is owned by one node, and conversation requests reaching
+ * another node are forwarded to the owner, so in-process chat memory works
+ * behind a load balancer without a shared database.
+ *
+ * SOLID Principles:
+ * - SRP: Only responsible for assembling conversation ownership and forwarding
+ * - OCP: Controllers and services are unchanged; forwarding happens in a servlet filter
+ */
+@Configuration
+@ConditionalOnFullAgentMode
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    @Bean
+    public ConversationOwnership conversationOwnership(
+            @Value("${cluster.self}") String self,
+            @Value("${cluster.members}") List<String> members) {
+        return new ConversationOwnership(baseUrl(self), members.stream()
+                .filter(StringUtils::hasText)
+                .map(ClusterConfig::baseUrl)
+                .toList());
+    }
+
+    @Bean
+    public ConversationForwardingFilter conversationForwardingFilter(
+            ConversationOwnership conversationOwnership,
+            ObjectMapper objectMapper,
+            @Value("${cluster.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${cluster.response-timeout:60s}") Duration responseTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        return new ConversationForwardingFilter(conversationOwnership, objectMapper, httpClient, responseTimeout);
+    }
+
+    private static String baseUrl(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
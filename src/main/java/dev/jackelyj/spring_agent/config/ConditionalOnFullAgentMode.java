@@ -0,0 +1,23 @@
+package dev.jackelyj.spring_agent.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks beans that belong to the full chat agent: chat clients, memory,
+ * documents and the REST API.
+ * 
+ * Active unless {@code agent.mode=mcp-server}, the lean mode used by the
+ * mcp-stdio profile where only the tool beans and the MCP server are needed.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
+@ConditionalOnProperty(name = "agent.mode", havingValue = "full", matchIfMissing = true)
+public @interface ConditionalOnFullAgentMode {
+}
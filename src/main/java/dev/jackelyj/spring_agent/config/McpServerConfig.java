@@ -0,0 +1,43 @@
+package dev.jackelyj.spring_agent.config;
+
+import dev.jackelyj.spring_agent.tools.CalculatorTools;
+import dev.jackelyj.spring_agent.tools.DateTimeTools;
+import dev.jackelyj.spring_agent.tools.SystemInfoTools;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Configuration for the tools exposed by the MCP server.
+ * 
+ * The MCP server auto-configuration publishes every ToolCallbackProvider bean,
+ * so the application tools are registered here for both the SSE and stdio transports.
+ * Native-image reflection hints for the tool classes are imported alongside.
+ * 
+ * In the lean mcp-server mode the context is lazily initialised; the MCP
+ * server beans are excluded from lazy initialisation so the transport starts
+ * at boot even though nothing else depends on them.
+ */
+@Configuration
+@ImportRuntimeHints(McpToolRuntimeHints.class)
+public class McpServerConfig {
+
+    @Bean
+    public ToolCallbackProvider mcpToolCallbackProvider(DateTimeTools dateTimeTools,
+                                                        CalculatorTools calculatorTools,
+                                                        SystemInfoTools systemInfoTools) {
+        return MethodToolCallbackProvider.builder()
+                .toolObjects(dateTimeTools, calculatorTools, systemInfoTools)
+                .build();
+    }
+
+    @Bean
+    public static LazyInitializationExcludeFilter mcpServerLazyInitializationExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(McpSyncServer.class, McpAsyncServer.class);
+    }
+}
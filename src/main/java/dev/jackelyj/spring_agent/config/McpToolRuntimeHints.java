@@ -0,0 +1,36 @@
+package dev.jackelyj.spring_agent.config;
+
+import dev.jackelyj.spring_agent.tools.CalculatorTools;
+import dev.jackelyj.spring_agent.tools.DateTimeTools;
+import dev.jackelyj.spring_agent.tools.SystemInfoTools;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * GraalVM native-image hints for the MCP tool classes.
+ * 
+ * Tool callbacks discover {@code @Tool} methods and their parameters through
+ * reflection at runtime, which the native image closed-world analysis cannot
+ * see. Registering the tool types keeps their public methods, annotations and
+ * parameter metadata available in the native executable.
+ */
+public class McpToolRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> TOOL_TYPES = List.of(
+            DateTimeTools.class,
+            CalculatorTools.class,
+            SystemInfoTools.class
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> toolType : TOOL_TYPES) {
+            hints.reflection().registerType(toolType,
+                    MemberCategory.INVOKE_PUBLIC_METHODS,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+}
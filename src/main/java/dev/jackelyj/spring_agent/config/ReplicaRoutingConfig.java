@@ -0,0 +1,79 @@
+package dev.jackelyj.spring_agent.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.jackelyj.spring_agent.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration for read replicas.
+ *
+ * Active when datasource.replicas.enabled=true. Replaces the auto-configured
+ * DataSource with a {@link ReplicaRoutingDataSource} over the primary
+ * (spring.datasource.*, including spring.datasource.hikari.*) and the
+ * replicas listed in datasource.replicas.urls, so JdbcTemplate, transactions,
+ * chat memory and the vector store all share it. Only queries that opt in
+ * with a read-only scope leave the primary.
+ *
+ * SOLID Principles:
+ * - SRP: Only responsible for assembling the routing DataSource
+ * - OCP: Replicas are added by configuration, callers are unchanged
+ * - DIP: Exposes the DataSource abstraction
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    /**
+     * Connection pool of the primary, bound like the auto-configured one.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Value("${datasource.replicas.urls}") List<String> urls,
+            @Value("${datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${datasource.replicas.pool-size:10}") int poolSize,
+            @Value("${datasource.replicas.max-lag:5s}") Duration maxLag,
+            @Value("${datasource.replicas.check-interval:1s}") Duration checkInterval) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName(name);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag, checkInterval);
+    }
+}
@@ -1,16 +1,30 @@
 package dev.jackelyj.spring_agent.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.embedding.CachingEmbeddingModel;
+import dev.jackelyj.spring_agent.embedding.EmbeddingCache;
+import dev.jackelyj.spring_agent.embedding.EmbeddingConcurrencyBudget;
+import dev.jackelyj.spring_agent.ingestion.EmbeddingIngestionPipeline;
+import dev.jackelyj.spring_agent.ingestion.IngestionJobQueue;
+import dev.jackelyj.spring_agent.ingestion.TextChunker;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
 
 /**
  * Configuration for PgVector Vector Store and Embedding Model.
@@ -21,9 +35,12 @@ import org.springframework.jdbc.core.JdbcTemplate;
  * - DIP: Provides VectorStore and EmbeddingModel abstractions
  */
 @Configuration
+@ConditionalOnFullAgentMode
 @ConditionalOnProperty(name = "spring.datasource.url", matchIfMissing = false)
 public class VectorStoreConfig {
     
+    private static final String EMBEDDING_MODEL = "nomic-embed-text";
+    
     @Value("${spring.ai.vectorstore.pgvector.dimensions:1024}")
     private int dimensions;
     
@@ -39,19 +56,64 @@ public class VectorStoreConfig {
     /**
      * Configure Ollama Embedding Model.
      * Uses nomic-embed-text model with 1024 dimensions.
+     * With embedding.cache.enabled=true, repeated texts are served from the embedding cache.
+     * With embedding.concurrency.enabled=true or ingestion jobs enabled, requests
+     * to Ollama share a bounded budget.
      */
     @Bean
-    public EmbeddingModel embeddingModel() {
+    public EmbeddingModel embeddingModel(ObjectProvider<EmbeddingCache> embeddingCache,
+                                         ObjectProvider<EmbeddingConcurrencyBudget> concurrencyBudget) {
         OllamaApi ollamaApi = OllamaApi.builder()
                 .baseUrl(ollamaBaseUrl)
                 .build();
         
-        return OllamaEmbeddingModel.builder()
+        EmbeddingModel embeddingModel = OllamaEmbeddingModel.builder()
                 .ollamaApi(ollamaApi)
                 .defaultOptions(OllamaOptions.builder()
-                        .model("nomic-embed-text")
+                        .model(EMBEDDING_MODEL)
                         .build())
                 .build();
+        EmbeddingConcurrencyBudget budget = concurrencyBudget.getIfAvailable();
+        if (budget != null) {
+            // Below the cache, so cache hits never wait for a slot
+            embeddingModel = budget.limit(embeddingModel);
+        }
+        EmbeddingCache cache = embeddingCache.getIfAvailable();
+        return cache != null
+                ? new CachingEmbeddingModel(embeddingModel, cache, EMBEDDING_MODEL, dimensions)
+                : embeddingModel;
+    }
+    
+    /**
+     * Embedding cache keyed by (model, dimensions, SHA-256 of the text): a bounded
+     * in-process LRU, plus a shared PostgreSQL table when embedding.cache.jdbc.enabled=true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "embedding.cache.enabled", havingValue = "true")
+    public EmbeddingCache embeddingCache(
+            JdbcTemplate jdbcTemplate,
+            @Value("${embedding.cache.max-entries:50000}") int maxEntries,
+            @Value("${embedding.cache.jdbc.enabled:false}") boolean jdbcEnabled,
+            @Value("${embedding.cache.jdbc.table-name:embedding_cache}") String cacheTableName,
+            @Value("${embedding.cache.jdbc.initialize-schema:true}") boolean initializeSchema) {
+        EmbeddingCache cache = new EmbeddingCache(maxEntries, jdbcEnabled ? jdbcTemplate : null, cacheTableName);
+        if (initializeSchema) {
+            cache.initializeSchema();
+        }
+        return cache;
+    }
+    
+    /**
+     * Bounds concurrent requests to the embedding server, keeping part of the
+     * budget for online requests so ingestion jobs cannot starve searches.
+     * Always created when ingestion jobs are enabled, since job workers must share it with searches.
+     */
+    @Bean
+    @ConditionalOnExpression("${embedding.concurrency.enabled:false} or ${ingestion.jobs.enabled:false}")
+    public EmbeddingConcurrencyBudget embeddingConcurrencyBudget(
+            @Value("${embedding.concurrency.max-in-flight:4}") int maxInFlight,
+            @Value("${embedding.concurrency.reserved-for-online:1}") int reservedForOnline) {
+        return new EmbeddingConcurrencyBudget(maxInFlight, reservedForOnline);
     }
     
     /**
@@ -71,5 +133,71 @@ public class VectorStoreConfig {
                 .maxDocumentBatchSize(10000)
                 .build();
     }
+    
+    /**
+     * Ingestion pipeline used by DocumentService#addDocuments: fixed-size embedding
+     * batches, several in flight at once, each stored as soon as it is embedded.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ingestion.pipeline.enabled", havingValue = "true")
+    public EmbeddingIngestionPipeline embeddingIngestionPipeline(
+            EmbeddingModel embeddingModel,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${ingestion.pipeline.batch-size:64}") int batchSize,
+            @Value("${ingestion.pipeline.concurrency:4}") int concurrency) {
+        return new EmbeddingIngestionPipeline(embeddingModel, jdbcTemplate, new TransactionTemplate(transactionManager),
+                objectMapper, schemaName, tableName, batchSize, concurrency);
+    }
+    
+    /**
+     * Splits long documents into overlapping, sentence-aligned chunks before they
+     * are embedded, so no text exceeds what the embedding model handles well.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ingestion.chunking.enabled", havingValue = "true")
+    public TextChunker textChunker(
+            @Value("${ingestion.chunking.max-tokens:512}") int maxTokens,
+            @Value("${ingestion.chunking.overlap-tokens:64}") int overlapTokens,
+            @Value("${ingestion.chunking.parallelism:0}") int parallelism) {
+        return new TextChunker(new JTokkitTokenCountEstimator(), maxTokens, overlapTokens,
+                parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Background ingestion jobs staged in PostgreSQL, with per-batch checkpoints,
+     * retries with backoff and resumption after a restart. Jobs use their own
+     * pipeline, whose embedding requests count as background work in the
+     * concurrency budget.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ingestion.jobs.enabled", havingValue = "true")
+    public IngestionJobQueue ingestionJobQueue(
+            EmbeddingModel embeddingModel,
+            EmbeddingConcurrencyBudget concurrencyBudget,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${ingestion.jobs.workers:2}") int workers,
+            @Value("${ingestion.jobs.batch-size:64}") int batchSize,
+            @Value("${ingestion.jobs.concurrency:2}") int concurrency,
+            @Value("${ingestion.jobs.lease:2m}") Duration lease,
+            @Value("${ingestion.jobs.poll-interval:2s}") Duration pollInterval,
+            @Value("${ingestion.jobs.max-attempts:5}") int maxAttempts,
+            @Value("${ingestion.jobs.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${ingestion.jobs.max-backoff:1m}") Duration maxBackoff,
+            @Value("${ingestion.jobs.table-name:ingestion_job}") String jobTableName,
+            @Value("${ingestion.jobs.initialize-schema:true}") boolean initializeSchema) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        EmbeddingIngestionPipeline pipeline = new EmbeddingIngestionPipeline(
+                concurrencyBudget.background(embeddingModel), jdbcTemplate, transactionTemplate, objectMapper,
+                schemaName, tableName, batchSize, concurrency);
+        IngestionJobQueue queue = new IngestionJobQueue(jdbcTemplate, transactionTemplate, objectMapper, pipeline,
+                jobTableName, workers, lease, pollInterval, maxAttempts, initialBackoff, maxBackoff);
+        if (initializeSchema) {
+            queue.initializeSchema();
+        }
+        return queue;
+    }
 }
-
@@ -0,0 +1,65 @@
+package dev.jackelyj.spring_agent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.service.DocumentService;
+import dev.jackelyj.spring_agent.warmup.CachePrimingWarmupTask;
+import dev.jackelyj.spring_agent.warmup.JsonWarmupTask;
+import dev.jackelyj.spring_agent.warmup.ModelWarmupTask;
+import dev.jackelyj.spring_agent.warmup.ToolCallbackWarmupTask;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Configuration for the startup warmup tasks.
+ * 
+ * Only active when warmup.enabled=true; production profiles leave it off so
+ * rollouts do not spend GPU time on warmup. Tasks run in the order declared
+ * here: model weights first, then JIT-heavy paths, then caches.
+ */
+@Configuration
+@ConditionalOnFullAgentMode
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+public class WarmupConfig {
+
+    @Value("${spring.ai.ollama.chat.options.model:gpt-oss}")
+    private String modelName;
+
+    @Value("${warmup.keep-alive:30m}")
+    private String keepAlive;
+
+    @Value("${warmup.iterations:200}")
+    private int iterations;
+
+    @Bean
+    @Order(1)
+    public ModelWarmupTask modelWarmupTask(OllamaChatModel ollamaChatModel,
+                                           ObjectProvider<EmbeddingModel> embeddingModel) {
+        return new ModelWarmupTask(ollamaChatModel, embeddingModel.getIfAvailable(), modelName, keepAlive);
+    }
+
+    @Bean
+    @Order(2)
+    public ToolCallbackWarmupTask toolCallbackWarmupTask(Object[] toolObjects) {
+        return new ToolCallbackWarmupTask(toolObjects, iterations);
+    }
+
+    @Bean
+    @Order(3)
+    public JsonWarmupTask jsonWarmupTask(ObjectMapper objectMapper) {
+        return new JsonWarmupTask(objectMapper, iterations);
+    }
+
+    @Bean
+    @Order(4)
+    public CachePrimingWarmupTask cachePrimingWarmupTask(ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                                         ObjectProvider<DocumentService> documentService) {
+        return new CachePrimingWarmupTask(jdbcTemplate.getIfAvailable(), documentService.getIfAvailable());
+    }
+}
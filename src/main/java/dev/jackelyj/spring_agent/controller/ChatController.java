@@ -1,23 +1,44 @@
 package dev.jackelyj.spring_agent.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
 import dev.jackelyj.spring_agent.dto.*;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
+import dev.jackelyj.spring_agent.retrieval.RetrievalOptions;
 import dev.jackelyj.spring_agent.service.ChatService;
 import dev.jackelyj.spring_agent.service.ConversationMemoryService;
 import dev.jackelyj.spring_agent.service.DocumentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
 /**
  * 聊天和文档管理控制器
@@ -28,24 +49,32 @@ import java.util.Optional;
  * - ISP: 将文档管理功能整合到一个控制器中（也可以拆分为独立的 DocumentController）
  */
 @RestController
+@ConditionalOnFullAgentMode
 @RequestMapping("/api/v1")
 @CrossOrigin(origins = "*")
 public class ChatController {
 
     private static final Logger log = LoggerFactory.getLogger(ChatController.class);
     
+    private static final int MAX_DELETE_IDS = 10_000;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final String NDJSON = "application/x-ndjson";
+    
     private final ChatService chatService;
     private final ConversationMemoryService conversationMemoryService;
     private final Optional<DocumentService> documentService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public ChatController(
             ChatService chatService, 
             ConversationMemoryService conversationMemoryService,
-            Optional<DocumentService> documentService) {
+            Optional<DocumentService> documentService,
+            ObjectMapper objectMapper) {
         this.chatService = chatService;
         this.conversationMemoryService = conversationMemoryService;
         this.documentService = documentService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/chat")
@@ -162,6 +191,131 @@ public class ChatController {
         }
     }
     
+    /**
+     * 以 NDJSON 流式上传文档（每行一个文档：text，可选 id 与 metadata），边读边写入向量存储
+     * 
+     * 请求体只按嵌入和写库的速度读取，处理不过来时经 TCP 反压到客户端，内存占用与上传规模无关。
+     * 每写入一批返回一行进度，最后一行 done=true；出错时最后一行带 error，之前写入的批次保留。
+     * 请求体可用 gzip 压缩（Content-Encoding: gzip、Content-Type: application/gzip 或 gzip=true）
+     */
+    @PostMapping(value = "/documents/stream", produces = NDJSON)
+    public void streamDocuments(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        boolean compressed = gzip || "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                || "application/gzip".equalsIgnoreCase(request.getContentType());
+        ingestDocuments(List.of(() -> compressed
+                ? new GZIPInputStream(request.getInputStream(), GZIP_BUFFER_SIZE)
+                : request.getInputStream()), response);
+    }
+    
+    /**
+     * 以 multipart 上传 NDJSON 文档文件（字段名 files，格式同 /documents/stream），按文件顺序写入并返回进度
+     * 
+     * 文件由容器先落盘（受 spring.servlet.multipart.* 大小限制），再逐行读取
+     */
+    @PostMapping(value = "/documents/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = NDJSON)
+    public void streamDocumentFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            HttpServletResponse response) throws IOException {
+        ingestDocuments(files, response);
+    }
+    
+    /**
+     * 提交后台导入任务（JSON，格式同 /documents），文档写入任务表后立即返回 202 和任务状态
+     * 
+     * 任务由后台 worker 分批嵌入写入，每批记录检查点；失败批次按指数退避重试，服务重启后从检查点继续
+     */
+    @PostMapping(value = "/ingestion/jobs", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submitIngestionJob(@Valid @RequestBody DocumentRequest request) {
+        return submitIngestionJob(service -> service.submitIngestionJob(request.texts(),
+                request.metadata() != null ? request.metadata() : Map.of()));
+    }
+    
+    /**
+     * 以 NDJSON 提交后台导入任务（格式同 /documents/stream，支持 gzip），整个请求体暂存成功后才返回
+     */
+    @PostMapping(value = "/ingestion/jobs", consumes = {NDJSON, "application/gzip"})
+    public ResponseEntity<?> submitIngestionJobStream(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        boolean compressed = gzip || "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                || "application/gzip".equalsIgnoreCase(request.getContentType());
+        return submitIngestionJob(service -> {
+            try (InputStream in = compressed
+                    ? new GZIPInputStream(request.getInputStream(), GZIP_BUFFER_SIZE)
+                    : request.getInputStream()) {
+                return service.submitIngestionJob(in);
+            } catch (ZipException e) {
+                throw new IllegalArgumentException("Request body is not valid gzip: " + e.getMessage(), e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    /**
+     * 列出最近提交的导入任务（新的在前）
+     */
+    @GetMapping("/ingestion/jobs")
+    public ResponseEntity<?> listIngestionJobs(@RequestParam(defaultValue = "20") int limit) {
+        if (documentService.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Document service is not available"));
+        }
+        if (limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and 1000"));
+        }
+        try {
+            return ResponseEntity.ok(documentService.get().listIngestionJobs(limit));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 查询导入任务进度：已写入/总文档数、当前运行的文档/秒与预计剩余时间、重试次数与最近错误
+     */
+    @GetMapping("/ingestion/jobs/{jobId}")
+    public ResponseEntity<?> getIngestionJob(@PathVariable String jobId) {
+        if (documentService.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Document service is not available"));
+        }
+        try {
+            return documentService.get().getIngestionJob(jobId)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * 重新排队失败的导入任务，从最后一个检查点继续
+     */
+    @PostMapping("/ingestion/jobs/{jobId}/retry")
+    public ResponseEntity<?> retryIngestionJob(@PathVariable String jobId) {
+        if (documentService.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Document service is not available"));
+        }
+        try {
+            DocumentService service = documentService.get();
+            if (service.retryIngestionJob(jobId)) {
+                return ResponseEntity.accepted()
+                        .header("Location", "/api/v1/ingestion/jobs/" + jobId)
+                        .body(service.getIngestionJob(jobId).orElse(null));
+            }
+            return service.getIngestionJob(jobId).isPresent()
+                    ? ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Only failed jobs can be retried"))
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     /**
      * 搜索相似文档
      */
@@ -176,7 +330,16 @@ public class ChatController {
             log.info("Searching documents with query: {}", request.query());
             
             List<DocumentSearchResult> results;
-            if (request.filterExpression() != null && !request.filterExpression().isEmpty()) {
+            if (request.usesRetrievalStage()) {
+                RetrievalOptions options = RetrievalOptions.builder(request.topK() != null ? request.topK() : 5)
+                        .threshold(request.threshold())
+                        .filterExpression(request.filterExpression())
+                        .fetchK(request.fetchK())
+                        .lambda(request.mmrLambda())
+                        .tokenBudget(request.tokenBudget())
+                        .build();
+                results = documentService.get().retrieve(request.query(), options);
+            } else if (request.filterExpression() != null && !request.filterExpression().isEmpty()) {
                 results = documentService.get().searchWithFilter(
                         request.query(), 
                         request.filterExpression(), 
@@ -222,18 +385,30 @@ public class ChatController {
     // ==================== Conversation Management Endpoints ====================
     
     /**
-     * 获取所有会话 ID
+     * 分页获取会话列表
+     * 
+     * 使用键集分页：将响应中的 nextCursor 作为下一次请求的 after 参数，
+     * 每页开销与会话总数和翻页深度无关。sort 支持 id 与 last-activity（最近活跃优先）。
      */
     @GetMapping("/conversations")
-    public ResponseEntity<Map<String, Object>> getAllConversations() {
+    public ResponseEntity<Map<String, Object>> getAllConversations(
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "id") String sort) {
         try {
-            List<String> conversationIds = conversationMemoryService.getAllConversationIds();
+            ConversationSort conversationSort = ConversationSort.valueOf(sort.trim().toUpperCase().replace('-', '_'));
+            ConversationPage page = conversationMemoryService.listConversations(limit, after, conversationSort);
             
             Map<String, Object> response = new HashMap<>();
-            response.put("conversations", conversationIds);
-            response.put("count", conversationIds.size());
+            response.put("conversations", page.conversations().stream().map(ConversationStats::conversationId).toList());
+            response.put("items", page.conversations());
+            response.put("count", page.conversations().size());
+            response.put("nextCursor", page.nextCursor());
+            response.put("hasMore", page.hasMore());
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid listing parameters: " + e.getMessage()));
         } catch (Exception e) {
             log.error("Failed to get all conversations", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -241,19 +416,118 @@ public class ChatController {
         }
     }
     
+    /**
+     * 批量删除指定会话
+     */
+    @DeleteMapping("/conversations")
+    public ResponseEntity<Map<String, Object>> deleteConversations(@RequestBody List<String> conversationIds) {
+        if (conversationIds.size() > MAX_DELETE_IDS) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "At most " + MAX_DELETE_IDS + " conversation IDs per request; use a purge for larger deletes"));
+        }
+        try {
+            int deleted = conversationMemoryService.deleteConversations(conversationIds);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("requested", conversationIds.size());
+            response.put("deleted", deleted);
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Failed to delete conversations", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to delete conversations: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 按条件在后台清理会话（空闲时间、ID 前缀），返回 202 和任务状态
+     */
+    @PostMapping("/conversations/purges")
+    public ResponseEntity<?> startPurge(@RequestBody ConversationPurgeRequest request) {
+        ConversationPurgeCriteria criteria;
+        try {
+            criteria = new ConversationPurgeCriteria(request.idleBefore(), request.idPrefix());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        ConversationPurgeStatus status = conversationMemoryService.startPurge(criteria);
+        return ResponseEntity.accepted()
+                .header("Location", "/api/v1/conversations/purges/" + status.purgeId())
+                .body(status);
+    }
+    
+    /**
+     * 查询清理任务进度
+     */
+    @GetMapping("/conversations/purges/{purgeId}")
+    public ResponseEntity<ConversationPurgeStatus> getPurgeStatus(@PathVariable String purgeId) {
+        return conversationMemoryService.getPurgeStatus(purgeId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 以 NDJSON 流式导出会话（可选 gzip），用于跨环境迁移或备份
+     * 
+     * ids 与 prefix 均为空时导出全部会话。响应在请求线程上边读边写，
+     * 内存占用与导出规模无关，也不受异步请求超时限制
+     */
+    @GetMapping("/conversations/export")
+    public void exportConversations(
+            @RequestParam(required = false) List<String> ids,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        ConversationFilter filter = ConversationFilter.of(ids, prefix);
+        response.setContentType(gzip ? "application/gzip" : NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"conversations.ndjson" + (gzip ? ".gz" : "") + "\"");
+        OutputStream out = response.getOutputStream();
+        if (!gzip) {
+            conversationMemoryService.exportConversations(filter, out);
+            return;
+        }
+        GZIPOutputStream compressed = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        conversationMemoryService.exportConversations(filter, compressed);
+        compressed.finish();
+    }
+    
+    /**
+     * 从 NDJSON 批量导入会话（格式与导出相同），同 ID 的已有会话会被替换
+     * 
+     * 请求体可用 gzip 压缩（Content-Encoding: gzip、Content-Type: application/gzip 或 gzip=true）
+     */
+    @PostMapping("/conversations/import")
+    public ResponseEntity<?> importConversations(
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) throws IOException {
+        boolean compressed = gzip || "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))
+                || "application/gzip".equalsIgnoreCase(request.getContentType());
+        try (InputStream body = compressed
+                ? new GZIPInputStream(request.getInputStream(), GZIP_BUFFER_SIZE)
+                : request.getInputStream()) {
+            return ResponseEntity.ok(conversationMemoryService.importConversations(body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (ZipException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Request body is not valid gzip: " + e.getMessage()));
+        }
+    }
+    
     /**
      * 获取会话消息数量
      */
     @GetMapping("/conversations/{conversationId}/count")
     public ResponseEntity<Map<String, Object>> getConversationMessageCount(@PathVariable String conversationId) {
         try {
-            int count = conversationMemoryService.getConversationMessageCount(conversationId);
-            boolean exists = conversationMemoryService.conversationExists(conversationId);
+            Optional<ConversationStats> stats = conversationMemoryService.getConversationStats(conversationId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("conversationId", conversationId);
-            response.put("messageCount", count);
-            response.put("exists", exists);
+            response.put("messageCount", stats.map(ConversationStats::messageCount).orElse(0));
+            response.put("exists", stats.isPresent());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -262,4 +536,98 @@ public class ChatController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
+    
+    /**
+     * 获取会话统计信息（消息数、字符数/Token 数、首次/最近活动时间）
+     */
+    @GetMapping("/conversations/{conversationId}/stats")
+    public ResponseEntity<ConversationStats> getConversationStats(@PathVariable String conversationId) {
+        return conversationMemoryService.getConversationStats(conversationId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 提交导入任务并返回 202；未启用任务返回 503，输入有误返回 400
+     */
+    private ResponseEntity<?> submitIngestionJob(Function<DocumentService, String> submit) {
+        if (documentService.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Document service is not available. Please configure PostgreSQL."));
+        }
+        try {
+            DocumentService service = documentService.get();
+            String jobId = submit.apply(service);
+            return ResponseEntity.accepted()
+                    .header("Location", "/api/v1/ingestion/jobs/" + jobId)
+                    .body(service.getIngestionJob(jobId).orElse(null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to submit ingestion job", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to submit ingestion job: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 依次读取各输入写入向量存储，并把累计进度逐行写出、立即刷新
+     */
+    private void ingestDocuments(List<? extends InputStreamSource> inputs, HttpServletResponse response)
+            throws IOException {
+        response.setCharacterEncoding("UTF-8");
+        if (documentService.isEmpty()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    Map.of("error", "Document service is not available. Please configure PostgreSQL."));
+            return;
+        }
+        response.setContentType(NDJSON);
+        OutputStream out = response.getOutputStream();
+        AtomicReference<DocumentIngestionProgress> total = new AtomicReference<>(DocumentIngestionProgress.running(0, 0));
+        try {
+            for (InputStreamSource input : inputs) {
+                DocumentIngestionProgress before = total.get();
+                try (InputStream in = input.getInputStream()) {
+                    documentService.get().ingestDocuments(in, progress -> {
+                        total.set(DocumentIngestionProgress.running(before.documents() + progress.documents(),
+                                before.batches() + progress.batches()));
+                        writeProgress(out, total.get());
+                    });
+                }
+            }
+            writeProgress(out, DocumentIngestionProgress.completed(total.get().documents(), total.get().batches()));
+        } catch (IllegalArgumentException | ZipException e) {
+            failIngestion(response, HttpStatus.BAD_REQUEST, total.get(), e.getMessage());
+        } catch (UncheckedIOException e) {
+            // The client went away while progress was being written
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            log.error("Failed to ingest streamed documents after {} documents", total.get().documents(), e);
+            failIngestion(response, HttpStatus.INTERNAL_SERVER_ERROR, total.get(),
+                    "Failed to upload documents: " + e.getMessage());
+        }
+    }
+    
+    private void failIngestion(HttpServletResponse response, HttpStatus status,
+                               DocumentIngestionProgress progress, String error) throws IOException {
+        if (!response.isCommitted()) {
+            response.setStatus(status.value());
+        }
+        writeProgress(response.getOutputStream(),
+                DocumentIngestionProgress.failed(progress.documents(), progress.batches(), error));
+    }
+    
+    private void writeProgress(OutputStream out, DocumentIngestionProgress progress) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(progress));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package dev.jackelyj.spring_agent.controller;
 
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
 import dev.jackelyj.spring_agent.mcp.service.McpClientService;
+import dev.jackelyj.spring_agent.warmup.StartupWarmupRunner;
+import dev.jackelyj.spring_agent.warmup.WarmupReport;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,9 +13,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
+@ConditionalOnFullAgentMode
 public class HealthController {
 
     @Autowired
@@ -21,6 +26,9 @@ public class HealthController {
     @Autowired(required = false)
     private McpClientService mcpClientService;
     
+    @Autowired(required = false)
+    private StartupWarmupRunner startupWarmupRunner;
+    
     @Value("${spring.ai.mcp.server.enabled:false}")
     private boolean mcpServerEnabled;
     
@@ -69,6 +77,7 @@ public class HealthController {
             "stream", "POST /api/v1/chat/stream - Streaming chat",
             "health", "GET /health - Health check",
             "mcp-health", "GET /health/mcp - MCP Server/Client health check",
+            "warmup", "GET /health/warmup - Startup warmup report",
             "clear", "DELETE /api/v1/chat/clear/{conversationId} - Clear conversation",
             "mcp-tools", "GET /api/v1/mcp/tools - List external MCP tools (if client enabled)"
         ));
@@ -76,6 +85,18 @@ public class HealthController {
         return info;
     }
     
+    /**
+     * Startup warmup report.
+     * Returns what was warmed and how long each step took, or DISABLED when warmup is off.
+     */
+    @GetMapping("/health/warmup")
+    public ResponseEntity<WarmupReport> warmup() {
+        if (startupWarmupRunner == null) {
+            return ResponseEntity.ok(new WarmupReport("DISABLED", null, null, 0, List.of()));
+        }
+        return ResponseEntity.ok(startupWarmupRunner.getReport());
+    }
+    
     /**
      * MCP Server and Client health check endpoint.
      * Returns information about MCP server status, available tools, and client connections.
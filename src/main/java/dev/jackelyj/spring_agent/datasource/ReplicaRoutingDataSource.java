@@ -0,0 +1,287 @@
+package dev.jackelyj.spring_agent.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * DataSource that sends read-only queries to PostgreSQL streaming replicas
+ * whose staleness is bounded, and everything else to the primary.
+ *
+ * Connections are routed to a replica only inside {@link #readOnly} or
+ * {@link #readOnlyFreshSince}; writes, and reads outside such a scope (such as
+ * those of the active chat turn), use the primary. A connection already bound
+ * to a transaction is reused, so a read-only scope inside a write transaction
+ * still reads its own writes.
+ *
+ * A background check samples the primary's WAL position and each replica's
+ * replay position. A replica has replayed every commit made before the newest
+ * primary sample at or below its replay position, so it is fresh as of that
+ * sample's time. A scope only uses replicas fresh as of {@code maxLag} ago, or
+ * as of the caller's last write when later; otherwise it falls back to the
+ * primary. A replica that cannot be reached stops being fresh and falls out.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource
+        implements SmartLifecycle, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    /**
+     * Oldest acceptable freshness (System.nanoTime) of the current read-only scope, or null outside one.
+     */
+    private static final ThreadLocal<Long> READ_ONLY_FRESH_SINCE = new ThreadLocal<>();
+
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas;
+    private final long maxLagNanos;
+    private final Duration checkInterval;
+    private final Deque<WalSample> samples = new ArrayDeque<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder primaryFallbacks = new LongAdder();
+
+    private ScheduledExecutorService monitor;
+    private volatile boolean running;
+
+    /**
+     * @param primary primary data source
+     * @param replicas replica data sources by name; closed with this data source
+     * @param maxLag maximum staleness of a replica serving read-only queries
+     * @param checkInterval delay between replication position checks
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                    Duration checkInterval) {
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = new ArrayList<>(replicas.size());
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            if (PRIMARY.equals(name)) {
+                throw new IllegalArgumentException("Replica name is reserved: " + name);
+            }
+            this.replicas.add(new Replica(name, dataSource));
+            targets.put(name, dataSource);
+        });
+        this.maxLagNanos = maxLag.toNanos();
+        this.checkInterval = checkInterval;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Run a read-only operation on a replica at most max-lag stale, or on the primary.
+     */
+    public static <T> T readOnly(Supplier<T> operation) {
+        return readOnlyFreshSince(UNKNOWN, operation);
+    }
+
+    /**
+     * Run a read-only operation on a replica that is at most max-lag stale and
+     * has replayed every commit made before {@code writtenAtNanos}, or on the primary.
+     *
+     * @param writtenAtNanos System.nanoTime() after the caller's last relevant write committed
+     */
+    public static <T> T readOnlyFreshSince(long writtenAtNanos, Supplier<T> operation) {
+        Long outer = READ_ONLY_FRESH_SINCE.get();
+        READ_ONLY_FRESH_SINCE.set(outer == null ? writtenAtNanos : Math.max(outer, writtenAtNanos));
+        try {
+            return operation.get();
+        } finally {
+            if (outer == null) {
+                READ_ONLY_FRESH_SINCE.remove();
+            } else {
+                READ_ONLY_FRESH_SINCE.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Run an operation on the primary, even inside a read-only scope.
+     */
+    public static <T> T onPrimary(Supplier<T> operation) {
+        Long outer = READ_ONLY_FRESH_SINCE.get();
+        READ_ONLY_FRESH_SINCE.remove();
+        try {
+            return operation.get();
+        } finally {
+            if (outer != null) {
+                READ_ONLY_FRESH_SINCE.set(outer);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long since = READ_ONLY_FRESH_SINCE.get();
+        if (since == null || replicas.isEmpty()) {
+            return PRIMARY;
+        }
+        long required = Math.max(System.nanoTime() - maxLagNanos, since);
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            long freshAsOf = replica.freshAsOf;
+            if (freshAsOf != UNKNOWN && freshAsOf - required >= 0) {
+                replicaRoutes.increment();
+                return replica.name;
+            }
+        }
+        primaryFallbacks.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Sample the primary's WAL position, then update every replica's freshness.
+     */
+    void checkReplicas() {
+        long sampledAt = System.nanoTime();
+        try {
+            Long lsn = primary.queryForObject("SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint",
+                    Long.class);
+            samples.addLast(new WalSample(sampledAt, lsn != null ? lsn : 0));
+        } catch (RuntimeException e) {
+            // Without new samples, replicas age out after max lag
+            log.warn("Could not read the primary WAL position", e);
+        }
+        while (samples.size() > 1 && sampledAt - samples.peekFirst().sampledAt() > 2 * maxLagNanos) {
+            samples.removeFirst();
+        }
+        for (Replica replica : replicas) {
+            try {
+                // Read after the sample, so a replay position at or past a sample covers every commit before it
+                Long replayed = replica.jdbcTemplate.queryForObject("SELECT pg_wal_lsn_diff("
+                        + "COALESCE(pg_last_wal_replay_lsn(), pg_current_wal_lsn()), '0/0')::bigint", Long.class);
+                replica.freshAsOf = freshAsOf(replayed != null ? replayed : 0);
+                replica.reachable = true;
+            } catch (RuntimeException e) {
+                if (replica.reachable) {
+                    log.warn("Replica {} is unreachable, routing its reads to the primary", replica.name, e);
+                }
+                replica.reachable = false;
+                replica.freshAsOf = UNKNOWN;
+            }
+        }
+    }
+
+    private long freshAsOf(long replayedLsn) {
+        Iterator<WalSample> newestFirst = samples.descendingIterator();
+        while (newestFirst.hasNext()) {
+            WalSample sample = newestFirst.next();
+            if (sample.lsn() <= replayedLsn) {
+                return sample.sampledAt();
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Seconds since the moment a replica is known to be fresh as of, or NaN if unknown.
+     */
+    private static double staleness(Replica replica) {
+        long freshAsOf = replica.freshAsOf;
+        return freshAsOf == UNKNOWN ? Double.NaN : (System.nanoTime() - freshAsOf) / 1e9;
+    }
+
+    @Override
+    public void start() {
+        monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datasource-replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(10, checkInterval.toMillis());
+        monitor.scheduleWithFixedDelay(this::checkReplicas, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (monitor != null) {
+            monitor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Could not close replica data source {}", replica.name, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("datasource.read-only.routes", replicaRoutes, LongAdder::sum)
+                .description("Read-only connections by target")
+                .tag("target", "replica")
+                .register(registry);
+        FunctionCounter.builder("datasource.read-only.routes", primaryFallbacks, LongAdder::sum)
+                .description("Read-only connections by target")
+                .tag("target", "primary")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.staleness", replica, ReplicaRoutingDataSource::staleness)
+                    .description("Seconds since the last primary commit known to be visible on the replica")
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile long freshAsOf = UNKNOWN;
+        private volatile boolean reachable = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+    }
+
+    private record WalSample(long sampledAt, long lsn) {
+    }
+}
@@ -0,0 +1,13 @@
+package dev.jackelyj.spring_agent.dto;
+
+/**
+ * 批量导入会话结果
+ *
+ * @param conversations 导入的会话数量
+ * @param messages 导入的消息数量
+ */
+public record ConversationImportResult(
+    long conversations,
+    long messages
+) {
+}
@@ -0,0 +1,23 @@
+package dev.jackelyj.spring_agent.dto;
+
+import dev.jackelyj.spring_agent.memory.ConversationStats;
+
+import java.util.List;
+
+/**
+ * 会话分页结果
+ *
+ * @param conversations 当前页的会话统计信息
+ * @param nextCursor 下一页游标；没有更多数据时为 null
+ */
+public record ConversationPage(
+    List<ConversationStats> conversations,
+    String nextCursor
+) {
+    /**
+     * 是否还有下一页
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
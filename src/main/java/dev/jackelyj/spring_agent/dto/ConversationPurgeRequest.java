@@ -0,0 +1,17 @@
+package dev.jackelyj.spring_agent.dto;
+
+import java.time.Instant;
+
+/**
+ * 批量清理会话请求
+ * 
+ * 所有给定条件同时满足的会话会被删除，至少需要提供一个条件
+ *
+ * @param idleBefore 删除最后活跃时间早于该时刻的会话
+ * @param idPrefix 删除 ID 以该前缀开头的会话（例如租户前缀）
+ */
+public record ConversationPurgeRequest(
+    Instant idleBefore,
+    String idPrefix
+) {
+}
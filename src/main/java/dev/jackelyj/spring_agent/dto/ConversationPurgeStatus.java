@@ -0,0 +1,33 @@
+package dev.jackelyj.spring_agent.dto;
+
+import java.time.Instant;
+
+/**
+ * 批量清理任务状态
+ *
+ * @param purgeId 任务 ID
+ * @param status 任务状态：RUNNING、COMPLETED 或 FAILED
+ * @param idleBefore 清理条件：最后活跃时间上限
+ * @param idPrefix 清理条件：会话 ID 前缀
+ * @param deletedConversations 已删除的会话数量（每批完成后更新）
+ * @param startedAt 开始时间
+ * @param finishedAt 结束时间，运行中为 null
+ * @param error 失败原因，未失败时为 null
+ */
+public record ConversationPurgeStatus(
+    String purgeId,
+    String status,
+    Instant idleBefore,
+    String idPrefix,
+    long deletedConversations,
+    Instant startedAt,
+    Instant finishedAt,
+    String error
+) {
+    /**
+     * 任务是否已结束
+     */
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+}
@@ -0,0 +1,40 @@
+package dev.jackelyj.spring_agent.dto;
+
+/**
+ * Progress of a streamed document upload, reported after every stored batch.
+ * 
+ * This record follows the Single Responsibility Principle (SRP)
+ * by only representing the upload progress.
+ * 
+ * @param documents documents stored so far
+ * @param batches batches stored so far
+ * @param done whether the whole upload has been stored
+ * @param error why the upload stopped, null unless it failed
+ */
+public record DocumentIngestionProgress(
+    long documents,
+    long batches,
+    boolean done,
+    String error
+) {
+    /**
+     * Progress after a stored batch.
+     */
+    public static DocumentIngestionProgress running(long documents, long batches) {
+        return new DocumentIngestionProgress(documents, batches, false, null);
+    }
+    
+    /**
+     * Final progress of a completed upload.
+     */
+    public static DocumentIngestionProgress completed(long documents, long batches) {
+        return new DocumentIngestionProgress(documents, batches, true, null);
+    }
+    
+    /**
+     * Final progress of a failed upload; the documents stored so far remain.
+     */
+    public static DocumentIngestionProgress failed(long documents, long batches, String error) {
+        return new DocumentIngestionProgress(documents, batches, false, error);
+    }
+}
@@ -0,0 +1,20 @@
+package dev.jackelyj.spring_agent.dto;
+
+import java.util.Map;
+
+/**
+ * One document of a streamed (NDJSON) upload.
+ * 
+ * This record follows the Single Responsibility Principle (SRP)
+ * by only representing a single uploaded document.
+ * 
+ * @param id optional document ID (UUID); re-sending a line with the same ID replaces the document
+ * @param text document text
+ * @param metadata document metadata
+ */
+public record DocumentLine(
+    String id,
+    String text,
+    Map<String, Object> metadata
+) {
+}
@@ -22,7 +22,20 @@ public record DocumentSearchRequest(
     @Max(value = 1, message = "Threshold must be between 0 and 1")
     Double threshold,
     
-    String filterExpression
+    String filterExpression,
+    
+    Boolean diversify,
+    
+    @Min(value = 1, message = "fetchK must be at least 1")
+    @Max(value = 500, message = "fetchK cannot exceed 500")
+    Integer fetchK,
+    
+    @Min(value = 0, message = "mmrLambda must be between 0 and 1")
+    @Max(value = 1, message = "mmrLambda must be between 0 and 1")
+    Double mmrLambda,
+    
+    @Min(value = 1, message = "tokenBudget must be at least 1")
+    Integer tokenBudget
 ) {
     /**
      * Default constructor with standard values.
@@ -37,5 +50,19 @@ public record DocumentSearchRequest(
     public DocumentSearchRequest(String query, Integer topK) {
         this(query, topK, 0.0, null);
     }
+    
+    /**
+     * Constructor for a plain similarity search without the retrieval stage.
+     */
+    public DocumentSearchRequest(String query, Integer topK, Double threshold, String filterExpression) {
+        this(query, topK, threshold, filterExpression, null, null, null, null);
+    }
+    
+    /**
+     * Whether the request asks for MMR reranking, de-duplication or token packing.
+     */
+    public boolean usesRetrievalStage() {
+        return Boolean.TRUE.equals(diversify) || mmrLambda != null || tokenBudget != null;
+    }
 }
 
@@ -0,0 +1,39 @@
+package dev.jackelyj.spring_agent.dto;
+
+import java.time.Instant;
+
+/**
+ * 后台文档导入任务状态
+ *
+ * @param jobId 任务 ID
+ * @param status 任务状态：QUEUED、RUNNING、COMPLETED 或 FAILED
+ * @param totalDocuments 任务包含的文档数量（开启切分时为片段数量）
+ * @param storedDocuments 已写入向量存储的文档数量（每批完成后更新，即断点位置）
+ * @param attempts 当前批次连续失败的次数，成功写入一批后归零
+ * @param lastError 最近一次失败的原因，从未失败时为 null
+ * @param createdAt 提交时间
+ * @param startedAt 首次开始处理的时间，排队中为 null
+ * @param finishedAt 结束时间，未结束时为 null
+ * @param documentsPerSecond 本次运行（最近一次开始或恢复以来）的写入速度，尚无数据时为 null
+ * @param etaSeconds 按当前速度估计的剩余秒数，已结束或尚无速度时为 null
+ */
+public record IngestionJobStatus(
+    String jobId,
+    String status,
+    long totalDocuments,
+    long storedDocuments,
+    int attempts,
+    String lastError,
+    Instant createdAt,
+    Instant startedAt,
+    Instant finishedAt,
+    Double documentsPerSecond,
+    Long etaSeconds
+) {
+    /**
+     * 任务是否已结束
+     */
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+}
@@ -0,0 +1,92 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import dev.jackelyj.spring_agent.embedding.EmbeddingCache.EmbeddingKey;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EmbeddingModel that serves repeated texts from an {@link EmbeddingCache}.
+ *
+ * Every embedding path of the vector store (document ingestion in batches,
+ * query embedding for similarity search) ends in {@link #call}, so caching
+ * there covers both. Only the texts missing from the cache are sent to the
+ * delegate, in one request that keeps the caller's options; duplicates
+ * within a request are embedded once. The model in the request options, if
+ * any, is part of the cache key, so switching models never returns stale
+ * vectors.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final String defaultModel;
+    private final int dimensions;
+
+    /**
+     * @param delegate model computing missing embeddings
+     * @param cache embedding cache
+     * @param defaultModel model name used when a request does not name one
+     * @param dimensions configured embedding dimensions, also part of the cache key
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache cache, String defaultModel, int dimensions) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.defaultModel = defaultModel;
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        EmbeddingOptions options = request.getOptions();
+        String model = options != null && options.getModel() != null ? options.getModel() : defaultModel;
+
+        List<EmbeddingKey> keys = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            keys.add(EmbeddingCache.key(model, dimensions, text));
+        }
+        Map<EmbeddingKey, float[]> embeddings = cache.getAll(keys);
+
+        Map<EmbeddingKey, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!embeddings.containsKey(keys.get(i))) {
+                missing.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(new ArrayList<>(missing.values()), options));
+            Map<EmbeddingKey, float[]> computed = new LinkedHashMap<>();
+            int index = 0;
+            for (EmbeddingKey key : missing.keySet()) {
+                computed.put(key, response.getResults().get(index++).getOutput());
+            }
+            cache.putAll(computed);
+            embeddings.putAll(computed);
+        }
+
+        List<Embedding> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(new Embedding(embeddings.get(keys.get(i)), i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+}
@@ -0,0 +1,219 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-level cache of embeddings keyed by (model, dimensions, SHA-256 of the text).
+ *
+ * The first level is a bounded in-process LRU. The optional second level is
+ * a PostgreSQL table shared by all nodes and kept across restarts; its hits
+ * are promoted to the first level. Embeddings are stored as little-endian
+ * float4 bytes, so the table does not depend on the vector extension.
+ *
+ * The second level is best effort: a failed lookup counts as a miss and a
+ * failed write is only logged, so the database never fails an embedding.
+ */
+public class EmbeddingCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private final Map<EmbeddingKey, float[]> local;
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries number of embeddings kept in process
+     * @param jdbcTemplate JDBC template of the shared table, or null for an in-process cache only
+     * @param tableName shared embedding cache table
+     */
+    public EmbeddingCache(int maxEntries, JdbcTemplate jdbcTemplate, String tableName) {
+        this.local = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EmbeddingKey, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Create the shared table if it does not exist.
+     */
+    public void initializeSchema() {
+        if (jdbcTemplate == null) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                + "model VARCHAR(255) NOT NULL, "
+                + "dimensions INT NOT NULL, "
+                + "content_sha256 BYTEA NOT NULL, "
+                + "embedding BYTEA NOT NULL, "
+                + "created_at TIMESTAMPTZ NOT NULL DEFAULT now(), "
+                + "PRIMARY KEY (model, dimensions, content_sha256))");
+    }
+
+    /**
+     * Cache key of a text embedded by a model.
+     */
+    public static EmbeddingKey key(String model, int dimensions, String text) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return new EmbeddingKey(model, dimensions,
+                    HexFormat.of().formatHex(sha256.digest(text.getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Cached embeddings of the given keys; keys not cached at either level are absent.
+     */
+    public Map<EmbeddingKey, float[]> getAll(Collection<EmbeddingKey> keys) {
+        Map<EmbeddingKey, float[]> found = new HashMap<>();
+        List<EmbeddingKey> missing = new ArrayList<>();
+        for (EmbeddingKey key : keys) {
+            float[] embedding = local.get(key);
+            if (embedding != null) {
+                found.put(key, embedding);
+                localHits.increment();
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty() && jdbcTemplate != null) {
+            Map<EmbeddingKey, float[]> stored = load(missing);
+            stored.forEach(local::put);
+            found.putAll(stored);
+            tableHits.add(stored.size());
+            missing.removeAll(stored.keySet());
+        }
+        misses.add(missing.size());
+        return found;
+    }
+
+    /**
+     * Cache freshly computed embeddings at both levels.
+     */
+    public void putAll(Map<EmbeddingKey, float[]> embeddings) {
+        embeddings.forEach(local::put);
+        if (jdbcTemplate == null || embeddings.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<EmbeddingKey, float[]>> entries = new ArrayList<>(embeddings.entrySet());
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO " + tableName
+                            + " (model, dimensions, content_sha256, embedding) VALUES (?, ?, ?, ?)"
+                            + " ON CONFLICT DO NOTHING",
+                    entries, entries.size(), (ps, entry) -> {
+                        EmbeddingKey key = entry.getKey();
+                        ps.setString(1, key.model());
+                        ps.setInt(2, key.dimensions());
+                        ps.setBytes(3, HexFormat.of().parseHex(key.sha256()));
+                        ps.setBytes(4, encode(entry.getValue()));
+                    });
+        } catch (DataAccessException e) {
+            log.warn("Could not store {} embeddings in {}", entries.size(), tableName, e);
+        }
+    }
+
+    private Map<EmbeddingKey, float[]> load(List<EmbeddingKey> keys) {
+        // One query per (model, dimensions); a request normally has a single one
+        Map<EmbeddingKey, List<EmbeddingKey>> byModel = new HashMap<>();
+        for (EmbeddingKey key : keys) {
+            byModel.computeIfAbsent(new EmbeddingKey(key.model(), key.dimensions(), ""), k -> new ArrayList<>())
+                    .add(key);
+        }
+        Map<EmbeddingKey, float[]> stored = new HashMap<>();
+        try {
+            for (Map.Entry<EmbeddingKey, List<EmbeddingKey>> group : byModel.entrySet()) {
+                EmbeddingKey model = group.getKey();
+                Object[] hashes = group.getValue().stream().map(key -> HexFormat.of().parseHex(key.sha256())).toArray();
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement("SELECT content_sha256, embedding FROM "
+                            + tableName + " WHERE model = ? AND dimensions = ? AND content_sha256 = ANY(?)");
+                    ps.setString(1, model.model());
+                    ps.setInt(2, model.dimensions());
+                    ps.setArray(3, connection.createArrayOf("bytea", hashes));
+                    return ps;
+                }, rs -> {
+                    stored.put(new EmbeddingKey(model.model(), model.dimensions(),
+                                    HexFormat.of().formatHex(rs.getBytes("content_sha256"))),
+                            decode(rs.getBytes("embedding")));
+                });
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not read cached embeddings from {}", tableName, e);
+        }
+        return stored;
+    }
+
+    static byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    static float[] decode(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("embedding.cache.requests", localHits, LongAdder::sum)
+                .description("Embedding cache lookups by result")
+                .tag("result", "hit")
+                .tag("level", "local")
+                .register(registry);
+        FunctionCounter.builder("embedding.cache.requests", tableHits, LongAdder::sum)
+                .description("Embedding cache lookups by result")
+                .tag("result", "hit")
+                .tag("level", "table")
+                .register(registry);
+        FunctionCounter.builder("embedding.cache.requests", misses, LongAdder::sum)
+                .description("Embedding cache lookups by result")
+                .tag("result", "miss")
+                .tag("level", "none")
+                .register(registry);
+        Gauge.builder("embedding.cache.size", local, Map::size)
+                .description("Embeddings held in process")
+                .register(registry);
+    }
+
+    /**
+     * @param model embedding model name
+     * @param dimensions embedding dimensions
+     * @param sha256 hex SHA-256 of the UTF-8 text
+     */
+    public record EmbeddingKey(String model, int dimensions, String sha256) {
+    }
+}
@@ -0,0 +1,177 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the embedding requests in flight across the application, keeping
+ * part of the budget for online requests.
+ *
+ * Every request to the embedding model holds one of {@code maxInFlight}
+ * permits while it runs. Requests made in background mode (ingestion jobs)
+ * also need one of {@code maxInFlight - reservedForOnline} background
+ * permits, so however many jobs are running, at least the reserved share of
+ * the embedding server stays available to query embeddings for similarity
+ * search and to synchronous uploads.
+ *
+ * {@link #limit} wraps the model that talks to the embedding server;
+ * {@link #background} wraps any model in the chain above it and marks the
+ * requests made through it as background work.
+ */
+public class EmbeddingConcurrencyBudget implements MeterBinder {
+
+    private static final ThreadLocal<Boolean> BACKGROUND = ThreadLocal.withInitial(() -> false);
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Semaphore backgroundPermits;
+
+    private Timer onlineWaitTimer;
+    private Timer backgroundWaitTimer;
+
+    /**
+     * @param maxInFlight embedding requests in flight at once, online and background together
+     * @param reservedForOnline permits background requests can never take
+     */
+    public EmbeddingConcurrencyBudget(int maxInFlight, int reservedForOnline) {
+        if (maxInFlight < 1 || reservedForOnline < 0 || reservedForOnline >= maxInFlight) {
+            throw new IllegalArgumentException("Need 0 <= reserved-for-online < max-in-flight, got "
+                    + reservedForOnline + " and " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.backgroundPermits = new Semaphore(maxInFlight - reservedForOnline, true);
+    }
+
+    /**
+     * The model with every request counted against the budget.
+     */
+    public EmbeddingModel limit(EmbeddingModel delegate) {
+        return new LimitedEmbeddingModel(delegate);
+    }
+
+    /**
+     * The model with every request made through it counted as background work.
+     */
+    public EmbeddingModel background(EmbeddingModel delegate) {
+        return new BackgroundEmbeddingModel(delegate);
+    }
+
+    private <T> T withPermit(Supplier<T> call) {
+        boolean background = BACKGROUND.get();
+        long start = System.nanoTime();
+        try {
+            if (background) {
+                backgroundPermits.acquire();
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                if (background) {
+                    backgroundPermits.release();
+                }
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an embedding slot", e);
+        }
+        Timer waitTimer = background ? backgroundWaitTimer : onlineWaitTimer;
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+            if (background) {
+                backgroundPermits.release();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        onlineWaitTimer = Timer.builder("embedding.concurrency.wait")
+                .description("Time embedding requests waited for a slot in the concurrency budget")
+                .tag("priority", "online")
+                .register(registry);
+        backgroundWaitTimer = Timer.builder("embedding.concurrency.wait")
+                .description("Time embedding requests waited for a slot in the concurrency budget")
+                .tag("priority", "background")
+                .register(registry);
+        Gauge.builder("embedding.concurrency.in.flight", permits, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Embedding requests in flight")
+                .register(registry);
+    }
+
+    /**
+     * Holds a permit for every request to the delegate.
+     */
+    private final class LimitedEmbeddingModel implements EmbeddingModel {
+
+        private final EmbeddingModel delegate;
+
+        private LimitedEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            return withPermit(() -> delegate.call(request));
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+
+    /**
+     * Marks requests to the delegate, on the calling thread, as background work.
+     */
+    private static final class BackgroundEmbeddingModel implements EmbeddingModel {
+
+        private final EmbeddingModel delegate;
+
+        private BackgroundEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            boolean previous = BACKGROUND.get();
+            BACKGROUND.set(true);
+            try {
+                return delegate.call(request);
+            } finally {
+                BACKGROUND.set(previous);
+            }
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Embeds documents in fixed-size batches, several batches in flight at once,
+ * and writes each batch to the pgvector table as soon as it is embedded.
+ *
+ * Each batch is one multi-input embedding request (Ollama's /api/embed takes
+ * a list of inputs), so a large upload costs batches instead of documents in
+ * round trips. Up to {@code concurrency} batches are embedded in parallel on
+ * a pool shared by all ingestions, which also caps the load on the embedding
+ * server. The calling thread inserts the batches in order; while it inserts
+ * batch k, batches k+1.. are already being embedded.
+ *
+ * Rows are written with the same upsert as PgVectorStore (one transaction
+ * per batch), so documents ingested here are indistinguishable from those
+ * added through the vector store. If a batch fails, batches already inserted
+ * stay and the remaining ones are cancelled.
+ *
+ * When a batch holds the first chunk of a split document, the document's
+ * previous rows (its old chunks or its whole text) are deleted in the same
+ * transaction before the upsert, so a re-ingested document never keeps
+ * chunks its new version does not have.
+ */
+public class EmbeddingIngestionPipeline implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingIngestionPipeline.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final String insertSql;
+    private final String deleteParentSql;
+    private final int batchSize;
+    private final int concurrency;
+    private final ExecutorService embeddingExecutor;
+
+    private final LongAdder ingestedDocuments = new LongAdder();
+    private Timer embeddingTimer;
+    private Timer insertTimer;
+
+    /**
+     * @param embeddingModel model embedding each batch with one request
+     * @param jdbcTemplate JDBC template of the vector store database
+     * @param transactionTemplate transaction wrapping each batch insert
+     * @param objectMapper mapper serializing document metadata
+     * @param schemaName vector store schema
+     * @param tableName vector store table
+     * @param batchSize documents per embedding request and insert
+     * @param concurrency embedding requests in flight at once
+     */
+    public EmbeddingIngestionPipeline(EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                                      String schemaName, String tableName, int batchSize, int concurrency) {
+        if (batchSize < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("Batch size and concurrency must be positive");
+        }
+        this.embeddingModel = embeddingModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.insertSql = "INSERT INTO " + schemaName + "." + tableName
+                + " (id, content, metadata, embedding) VALUES (?::uuid, ?, ?::jsonb, ?::vector)"
+                + " ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata,"
+                + " embedding = EXCLUDED.embedding";
+        this.deleteParentSql = "DELETE FROM " + schemaName + "." + tableName
+                + " WHERE metadata->>'" + TextChunker.PARENT_ID + "' = ? OR id = ?::uuid";
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        AtomicInteger threads = new AtomicInteger();
+        this.embeddingExecutor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Embed and store documents; returns when every batch is stored.
+     *
+     * @return IDs of the stored documents, in input order
+     */
+    public List<String> ingest(List<Document> documents) {
+        ingest(documents.iterator(), stored -> { });
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    /**
+     * Embed and store documents pulled from an iterator, batch by batch.
+     *
+     * The iterator is only advanced when an embedding slot is free, so at most
+     * {@code concurrency + 1} batches are held at a time whatever the number of
+     * documents, and a slow embedding server or database slows down the reading
+     * of the input rather than letting it pile up in memory.
+     *
+     * @param documents documents to store; read on the calling thread
+     * @param onBatchStored called on the calling thread with the size of each stored batch
+     * @return number of documents stored
+     */
+    public long ingest(Iterator<Document> documents, IntConsumer onBatchStored) {
+        Deque<Batch> inFlight = new ArrayDeque<>();
+        long stored = 0;
+        try {
+            fill(documents, inFlight);
+            while (!inFlight.isEmpty()) {
+                Batch batch = inFlight.removeFirst();
+                List<float[]> embeddings = batch.embeddings().get();
+                // Refill the freed slot before inserting, so embedding overlaps the insert
+                fill(documents, inFlight);
+                insert(batch.documents(), embeddings);
+                stored += batch.documents().size();
+                onBatchStored.accept(batch.documents().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ingesting documents", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new IllegalStateException("Embedding failed", e.getCause());
+        } finally {
+            inFlight.forEach(batch -> batch.embeddings().cancel(true));
+        }
+        return stored;
+    }
+
+    /**
+     * Start embedding further batches until all slots are taken or the input is exhausted.
+     */
+    private void fill(Iterator<Document> documents, Deque<Batch> inFlight) {
+        while (inFlight.size() < concurrency && documents.hasNext()) {
+            List<Document> next = new ArrayList<>(batchSize);
+            while (next.size() < batchSize && documents.hasNext()) {
+                next.add(documents.next());
+            }
+            inFlight.addLast(new Batch(next, embeddingExecutor.submit(() -> embed(next))));
+        }
+    }
+
+    private List<float[]> embed(List<Document> batch) {
+        long start = System.nanoTime();
+        EmbeddingResponse response = embeddingModel.embedForResponse(batch.stream().map(Document::getText).toList());
+        if (response.getResults().size() != batch.size()) {
+            throw new IllegalStateException("Embedding model returned " + response.getResults().size()
+                    + " embeddings for " + batch.size() + " documents");
+        }
+        List<float[]> embeddings = response.getResults().stream().map(Embedding::getOutput).toList();
+        record(embeddingTimer, start);
+        return embeddings;
+    }
+
+    private void insert(List<Document> batch, List<float[]> embeddings) {
+        long start = System.nanoTime();
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        List<Object[]> replacedParents = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Document document = batch.get(i);
+            rows.add(new Object[] {document.getId(), document.getText(), toJson(document),
+                    toVectorLiteral(embeddings.get(i))});
+            String parentId = TextChunker.replacedParentId(document);
+            if (parentId != null) {
+                replacedParents.add(new Object[] {parentId, parentId});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!replacedParents.isEmpty()) {
+                jdbcTemplate.batchUpdate(deleteParentSql, replacedParents);
+            }
+            jdbcTemplate.batchUpdate(insertSql, rows);
+        });
+        ingestedDocuments.add(batch.size());
+        record(insertTimer, start);
+        log.debug("Stored a batch of {} documents", batch.size());
+    }
+
+    private String toJson(Document document) {
+        try {
+            return objectMapper.writeValueAsString(document.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadata of document " + document.getId() + " is not serializable", e);
+        }
+    }
+
+    /**
+     * pgvector's text representation, e.g. {@code [0.1,-0.2,0.3]}.
+     */
+    static String toVectorLiteral(float[] embedding) {
+        StringBuilder literal = new StringBuilder(embedding.length * 12 + 2).append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(embedding[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    private static void record(Timer timer, long start) {
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        embeddingExecutor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, "online");
+    }
+
+    /**
+     * Register the meters tagged with the pipeline's priority: online for
+     * uploads, background for ingestion jobs.
+     */
+    public void bindTo(MeterRegistry registry, String priority) {
+        embeddingTimer = Timer.builder("ingestion.batch")
+                .description("Time per ingestion batch by stage")
+                .tag("stage", "embed")
+                .tag("priority", priority)
+                .register(registry);
+        insertTimer = Timer.builder("ingestion.batch")
+                .description("Time per ingestion batch by stage")
+                .tag("stage", "insert")
+                .tag("priority", priority)
+                .register(registry);
+        FunctionCounter.builder("ingestion.documents", ingestedDocuments, LongAdder::sum)
+                .description("Documents embedded and stored by the ingestion pipeline")
+                .tag("priority", priority)
+                .register(registry);
+    }
+
+    /**
+     * A batch of documents and its pending embeddings.
+     */
+    private record Batch(List<Document> documents, Future<List<float[]>> embeddings) {
+    }
+}
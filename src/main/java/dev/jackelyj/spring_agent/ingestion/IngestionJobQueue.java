@@ -0,0 +1,581 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.dto.IngestionJobStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background document ingestion jobs, persisted in PostgreSQL so they survive
+ * restarts.
+ *
+ * Submitting a job stages its documents and the job row in one transaction
+ * and returns the job ID straight away. Worker threads claim runnable jobs
+ * with FOR UPDATE SKIP LOCKED and a lease, so several nodes can share the
+ * queue, and feed the staged documents through an EmbeddingIngestionPipeline.
+ * After every stored batch the job's checkpoint (stored_documents) and lease
+ * are advanced. The pipeline stores batches in order and upserts by ID, so a
+ * job resumed from its checkpoint (after a failure, after a restart, or on
+ * another node once the lease has expired) neither loses nor duplicates
+ * documents.
+ *
+ * A failing batch is retried from the checkpoint with exponential backoff.
+ * After {@code maxAttempts} consecutive failures the job is marked FAILED; it
+ * keeps its staged documents so it can be retried. Completed jobs drop them.
+ */
+public class IngestionJobQueue implements SmartLifecycle, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobQueue.class);
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private static final int STAGE_BATCH_SIZE = 1000;
+    private static final int READ_PAGE_SIZE = 500;
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final TypeReference<Map<String, Object>> METADATA = new TypeReference<>() { };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final EmbeddingIngestionPipeline pipeline;
+    private final String jobTable;
+    private final String documentTable;
+    private final int workers;
+    private final Duration lease;
+    private final Duration pollInterval;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final Object wakeup = new Object();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder submittedJobs = new LongAdder();
+    private final LongAdder completedJobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder retriedBatches = new LongAdder();
+
+    /**
+     * @param jdbcTemplate JDBC template of the vector store database
+     * @param transactionTemplate transaction wrapping job submission and completion
+     * @param objectMapper mapper for staged document metadata
+     * @param pipeline pipeline embedding and storing the staged documents; closed with the queue
+     * @param tableName job table; staged documents go to {@code <tableName>_document}
+     * @param workers jobs processed at once by this node
+     * @param lease how long a claimed job stays with this node without progress
+     * @param pollInterval how often idle workers look for runnable jobs
+     * @param maxAttempts consecutive failed attempts before a job fails
+     * @param initialBackoff delay before the first retry, doubled on every further attempt
+     * @param maxBackoff upper bound of the retry delay
+     */
+    public IngestionJobQueue(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             ObjectMapper objectMapper, EmbeddingIngestionPipeline pipeline, String tableName,
+                             int workers, Duration lease, Duration pollInterval, int maxAttempts,
+                             Duration initialBackoff, Duration maxBackoff) {
+        if (workers < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Workers and max attempts must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.pipeline = pipeline;
+        this.jobTable = tableName;
+        this.documentTable = tableName + "_document";
+        this.workers = workers;
+        this.lease = lease;
+        this.pollInterval = pollInterval;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public void initializeSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + jobTable + " ("
+                + "id UUID PRIMARY KEY, "
+                + "status VARCHAR(16) NOT NULL, "
+                + "total_documents BIGINT NOT NULL, "
+                + "stored_documents BIGINT NOT NULL DEFAULT 0, "
+                + "attempts INT NOT NULL DEFAULT 0, "
+                + "last_error TEXT, "
+                + "claim UUID, "
+                + "lease_until TIMESTAMPTZ, "
+                + "created_at TIMESTAMPTZ NOT NULL DEFAULT now(), "
+                + "started_at TIMESTAMPTZ, "
+                + "run_started_at TIMESTAMPTZ, "
+                + "run_start_documents BIGINT NOT NULL DEFAULT 0, "
+                + "updated_at TIMESTAMPTZ NOT NULL DEFAULT now(), "
+                + "finished_at TIMESTAMPTZ)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + jobTable + "_runnable_idx ON " + jobTable
+                + " (created_at) WHERE status IN ('" + QUEUED + "', '" + RUNNING + "')");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + documentTable + " ("
+                + "job_id UUID NOT NULL REFERENCES " + jobTable + " (id) ON DELETE CASCADE, "
+                + "seq BIGINT NOT NULL, "
+                + "id UUID NOT NULL, "
+                + "content TEXT NOT NULL, "
+                + "metadata JSONB NOT NULL, "
+                + "PRIMARY KEY (job_id, seq))");
+    }
+
+    /**
+     * Stage documents as a new job; returns once they are durably queued.
+     *
+     * The documents are read once, in order, and written in batches, so the
+     * source can be a stream larger than memory. If reading fails, nothing
+     * is queued.
+     *
+     * @return ID of the job
+     */
+    public String submit(Iterator<Document> documents) {
+        String jobId = UUID.randomUUID().toString();
+        long total = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("INSERT INTO " + jobTable + " (id, status, total_documents) VALUES (?::uuid, ?, 0)",
+                    jobId, QUEUED);
+            String insert = "INSERT INTO " + documentTable + " (job_id, seq, id, content, metadata)"
+                    + " VALUES (?::uuid, ?, ?::uuid, ?, ?::jsonb)";
+            List<Object[]> rows = new ArrayList<>(STAGE_BATCH_SIZE);
+            long seq = 0;
+            while (documents.hasNext()) {
+                Document document = documents.next();
+                rows.add(new Object[] {jobId, seq++, document.getId(), document.getText(), toJson(document)});
+                if (rows.size() == STAGE_BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate(insert, rows);
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, rows);
+            }
+            jdbcTemplate.update("UPDATE " + jobTable + " SET total_documents = ? WHERE id = ?::uuid", seq, jobId);
+            return seq;
+        });
+        submittedJobs.increment();
+        log.info("Queued ingestion job {} with {} documents", jobId, total);
+        wakeWorkers();
+        return jobId;
+    }
+
+    /**
+     * Status of a job, or empty if there is no such job.
+     */
+    public Optional<IngestionJobStatus> status(String jobId) {
+        if (!isJobId(jobId)) {
+            return Optional.empty();
+        }
+        return jdbcTemplate.query(statusQuery() + " WHERE id = ?::uuid", this::mapStatus, jobId).stream().findFirst();
+    }
+
+    /**
+     * Most recently submitted jobs, newest first.
+     */
+    public List<IngestionJobStatus> recent(int limit) {
+        return jdbcTemplate.query(statusQuery() + " ORDER BY created_at DESC LIMIT ?", this::mapStatus, limit);
+    }
+
+    /**
+     * Queue a failed job again; it resumes from its checkpoint.
+     *
+     * @return false if the job does not exist or has not failed
+     */
+    public boolean retry(String jobId) {
+        if (!isJobId(jobId)) {
+            return false;
+        }
+        int updated = jdbcTemplate.update("UPDATE " + jobTable + " SET status = ?, attempts = 0, finished_at = NULL,"
+                + " updated_at = now() WHERE id = ?::uuid AND status = ?", QUEUED, jobId, FAILED);
+        if (updated > 0) {
+            wakeWorkers();
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Job IDs are UUIDs; anything else names no job rather than failing the ::uuid cast.
+     */
+    private static boolean isJobId(String jobId) {
+        try {
+            UUID.fromString(jobId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void work() {
+        while (running) {
+            Claim claim = null;
+            try {
+                claim = claim();
+            } catch (RuntimeException e) {
+                log.warn("Could not claim an ingestion job", e);
+            }
+            if (claim == null) {
+                awaitWork();
+                continue;
+            }
+            try {
+                process(claim);
+            } catch (RuntimeException e) {
+                log.error("Ingestion job {} stopped unexpectedly", claim.jobId(), e);
+            } finally {
+                // Clear a shutdown interrupt so the release still reaches the database
+                boolean interrupted = Thread.interrupted();
+                release(claim);
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the oldest runnable job: queued, or running with an expired lease.
+     */
+    private Claim claim() {
+        String token = UUID.randomUUID().toString();
+        List<Claim> claims = jdbcTemplate.query("UPDATE " + jobTable + " SET status = ?, claim = ?::uuid,"
+                        + " lease_until = now() + make_interval(secs => ?), started_at = COALESCE(started_at, now()),"
+                        + " run_started_at = now(), run_start_documents = stored_documents, updated_at = now()"
+                        + " WHERE id = (SELECT id FROM " + jobTable + " WHERE status IN (?, ?)"
+                        + " AND (lease_until IS NULL OR lease_until < now())"
+                        + " ORDER BY created_at LIMIT 1 FOR UPDATE SKIP LOCKED)"
+                        + " RETURNING id, stored_documents",
+                (rs, rowNum) -> new Claim(rs.getString("id"), token, rs.getLong("stored_documents")),
+                RUNNING, token, seconds(lease), QUEUED, RUNNING);
+        return claims.isEmpty() ? null : claims.get(0);
+    }
+
+    private void process(Claim claim) {
+        log.info("Running ingestion job {} from document {}", claim.jobId(), claim.storedDocuments());
+        AtomicLong stored = new AtomicLong(claim.storedDocuments());
+        while (running) {
+            try {
+                pipeline.ingest(new StagedDocuments(claim.jobId(), stored.get()), size -> {
+                    checkpoint(claim, size);
+                    stored.addAndGet(size);
+                });
+                complete(claim, stored.get());
+                return;
+            } catch (LeaseLostException e) {
+                log.warn("Ingestion job {} was taken over by another worker", claim.jobId());
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                Integer attempts = recordFailure(claim, e);
+                if (attempts == null) {
+                    log.warn("Ingestion job {} was taken over by another worker", claim.jobId());
+                    return;
+                }
+                if (attempts >= maxAttempts) {
+                    fail(claim, attempts, e);
+                    return;
+                }
+                retriedBatches.increment();
+                Duration backoff = backoff(attempts);
+                log.warn("Ingestion job {} failed at document {} (attempt {}/{}), retrying in {}",
+                        claim.jobId(), stored.get(), attempts, maxAttempts, backoff, e);
+                if (!sleep(backoff)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Advance the checkpoint past a stored batch and renew the lease.
+     */
+    private void checkpoint(Claim claim, int size) {
+        int updated = jdbcTemplate.update("UPDATE " + jobTable + " SET stored_documents = stored_documents + ?,"
+                        + " attempts = 0, lease_until = now() + make_interval(secs => ?), updated_at = now()"
+                        + " WHERE id = ?::uuid AND claim = ?::uuid",
+                size, seconds(lease), claim.jobId(), claim.token());
+        if (updated == 0) {
+            throw new LeaseLostException();
+        }
+    }
+
+    /**
+     * Count a failed attempt and keep the lease through the backoff.
+     *
+     * @return consecutive failed attempts, or null if the job is no longer ours
+     */
+    private Integer recordFailure(Claim claim, RuntimeException error) {
+        List<Integer> attempts = jdbcTemplate.queryForList("UPDATE " + jobTable
+                        + " SET attempts = attempts + 1, last_error = ?,"
+                        + " lease_until = now() + make_interval(secs => ?), updated_at = now()"
+                        + " WHERE id = ?::uuid AND claim = ?::uuid RETURNING attempts",
+                Integer.class, describe(error), seconds(lease.plus(maxBackoff)), claim.jobId(), claim.token());
+        return attempts.isEmpty() ? null : attempts.get(0);
+    }
+
+    private void complete(Claim claim, long stored) {
+        boolean completed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            int updated = jdbcTemplate.update("UPDATE " + jobTable + " SET status = ?, claim = NULL,"
+                            + " lease_until = NULL, finished_at = now(), updated_at = now()"
+                            + " WHERE id = ?::uuid AND claim = ?::uuid",
+                    COMPLETED, claim.jobId(), claim.token());
+            if (updated > 0) {
+                jdbcTemplate.update("DELETE FROM " + documentTable + " WHERE job_id = ?::uuid", claim.jobId());
+            }
+            return updated > 0;
+        }));
+        if (completed) {
+            completedJobs.increment();
+            log.info("Completed ingestion job {} with {} documents", claim.jobId(), stored);
+        }
+    }
+
+    private void fail(Claim claim, int attempts, RuntimeException error) {
+        jdbcTemplate.update("UPDATE " + jobTable + " SET status = ?, claim = NULL, lease_until = NULL,"
+                        + " finished_at = now(), updated_at = now() WHERE id = ?::uuid AND claim = ?::uuid",
+                FAILED, claim.jobId(), claim.token());
+        failedJobs.increment();
+        log.error("Ingestion job {} failed after {} attempts", claim.jobId(), attempts, error);
+    }
+
+    /**
+     * Give up a claimed job that is still running, so it is resumed at once after a restart.
+     */
+    private void release(Claim claim) {
+        try {
+            jdbcTemplate.update("UPDATE " + jobTable + " SET claim = NULL, lease_until = NULL, updated_at = now()"
+                    + " WHERE id = ?::uuid AND claim = ?::uuid AND status = ?", claim.jobId(), claim.token(), RUNNING);
+        } catch (RuntimeException e) {
+            log.warn("Could not release ingestion job {}; it resumes once its lease expires", claim.jobId(), e);
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void awaitWork() {
+        synchronized (wakeup) {
+            try {
+                wakeup.wait(Math.max(1, pollInterval.toMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void wakeWorkers() {
+        synchronized (wakeup) {
+            wakeup.notifyAll();
+        }
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String statusQuery() {
+        return "SELECT id, status, total_documents, stored_documents, attempts, last_error, created_at, started_at,"
+                + " finished_at, run_started_at, run_start_documents, now() AS db_now FROM " + jobTable;
+    }
+
+    private IngestionJobStatus mapStatus(ResultSet rs, int rowNum) throws SQLException {
+        String status = rs.getString("status");
+        long total = rs.getLong("total_documents");
+        long stored = rs.getLong("stored_documents");
+        Instant finishedAt = instant(rs.getTimestamp("finished_at"));
+        Instant runStartedAt = instant(rs.getTimestamp("run_started_at"));
+        Instant until = finishedAt != null ? finishedAt : instant(rs.getTimestamp("db_now"));
+
+        // Rate of the current (or last) run, so time spent queued or down does not count
+        Double documentsPerSecond = null;
+        Long etaSeconds = null;
+        long runDocuments = stored - rs.getLong("run_start_documents");
+        if (runStartedAt != null && runDocuments > 0) {
+            double seconds = Math.max(0.001, Duration.between(runStartedAt, until).toMillis() / 1000.0);
+            documentsPerSecond = runDocuments / seconds;
+            if (finishedAt == null) {
+                etaSeconds = (long) Math.ceil((total - stored) / documentsPerSecond);
+            }
+        }
+        return new IngestionJobStatus(rs.getString("id"), status, total, stored, rs.getInt("attempts"),
+                rs.getString("last_error"), instant(rs.getTimestamp("created_at")),
+                instant(rs.getTimestamp("started_at")), finishedAt, documentsPerSecond, etaSeconds);
+    }
+
+    private String toJson(Document document) {
+        try {
+            return objectMapper.writeValueAsString(document.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadata of document " + document.getId() + " is not serializable", e);
+        }
+    }
+
+    private static String describe(RuntimeException error) {
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toMillis() / 1000.0;
+    }
+
+    private static Instant instant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 1; i <= workers; i++) {
+            Thread thread = new Thread(this::work, "ingestion-job-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        for (Thread thread : workerThreads) {
+            try {
+                thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workerThreads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ingestion.jobs", submittedJobs, LongAdder::sum)
+                .description("Ingestion jobs by outcome")
+                .tag("outcome", "submitted")
+                .register(registry);
+        FunctionCounter.builder("ingestion.jobs", completedJobs, LongAdder::sum)
+                .description("Ingestion jobs by outcome")
+                .tag("outcome", "completed")
+                .register(registry);
+        FunctionCounter.builder("ingestion.jobs", failedJobs, LongAdder::sum)
+                .description("Ingestion jobs by outcome")
+                .tag("outcome", "failed")
+                .register(registry);
+        FunctionCounter.builder("ingestion.jobs.retries", retriedBatches, LongAdder::sum)
+                .description("Ingestion job batches retried after a failure")
+                .register(registry);
+        // The job pipeline is not a bean of its own
+        pipeline.bindTo(registry, "background");
+    }
+
+    /**
+     * A job claimed by this node; token identifies the claim in the job row.
+     */
+    private record Claim(String jobId, String token, long storedDocuments) {
+    }
+
+    /**
+     * The job row no longer carries our claim: the lease expired and another worker took the job.
+     */
+    private static final class LeaseLostException extends RuntimeException {
+
+        private LeaseLostException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Staged documents of a job from a sequence number on, read a page at a time.
+     */
+    private final class StagedDocuments implements Iterator<Document> {
+
+        private final String jobId;
+        private long nextSeq;
+        private Iterator<Document> page = Collections.emptyIterator();
+        private boolean exhausted;
+
+        private StagedDocuments(String jobId, long fromSeq) {
+            this.jobId = jobId;
+            this.nextSeq = fromSeq;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                List<Document> documents = jdbcTemplate.query("SELECT id, content, metadata::text AS metadata FROM "
+                                + documentTable + " WHERE job_id = ?::uuid AND seq >= ? ORDER BY seq LIMIT ?",
+                        (rs, rowNum) -> Document.builder()
+                                .id(rs.getString("id"))
+                                .text(rs.getString("content"))
+                                .metadata(fromJson(rs.getString("metadata")))
+                                .build(),
+                        jobId, nextSeq, READ_PAGE_SIZE);
+                nextSeq += documents.size();
+                exhausted = documents.size() < READ_PAGE_SIZE;
+                page = documents.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private Map<String, Object> fromJson(String json) {
+            try {
+                return objectMapper.readValue(json, METADATA);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Staged metadata of job " + jobId + " is not valid JSON", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import java.nio.CharBuffer;
+
+/**
+ * One chunk of a text, as character offsets into the text it was cut from.
+ *
+ * @param start offset of the first character (inclusive)
+ * @param end offset after the last character (exclusive)
+ * @param tokens estimated token count
+ */
+public record TextChunk(int start, int end, int tokens) {
+
+    /**
+     * The chunk as a view of the source text, without copying it.
+     */
+    public CharSequence in(String text) {
+        return CharBuffer.wrap(text, start, end);
+    }
+}
@@ -0,0 +1,391 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits long texts into overlapping chunks that fit the embedding model's
+ * context, cutting at sentence and paragraph boundaries.
+ *
+ * A text is first scanned into sentences: a sentence ends at . ! ? followed
+ * by whitespace, at CJK sentence punctuation, or at a line break, and a blank
+ * line ends a paragraph. Sentences over the token limit are cut at whitespace,
+ * or anywhere in text without spaces. Chunks are filled greedily with whole
+ * sentences; a chunk that is at least half full ends at a paragraph boundary
+ * rather than starting a paragraph it cannot finish. A chunk starting inside a
+ * paragraph repeats the trailing sentences of the previous chunk, up to the
+ * overlap budget, so context spanning a cut is embedded with both chunks.
+ *
+ * Sentences and chunks are kept as offsets into the text; only sentences
+ * (to count their tokens) and finished chunks are copied out. Lists of
+ * documents are split in parallel on the chunker's own fork-join pool.
+ */
+public class TextChunker implements MeterBinder, AutoCloseable {
+
+    public static final String PARENT_ID = "parent_id";
+    public static final String CHUNK_INDEX = "chunk_index";
+    public static final String CHUNK_COUNT = "chunk_count";
+    public static final String CHUNK_START = "chunk_start";
+    public static final String CHUNK_END = "chunk_end";
+
+    /**
+     * Documents read ahead per pool thread when splitting a stream.
+     */
+    private static final int WINDOW_PER_THREAD = 8;
+
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final ForkJoinPool pool;
+    private final int window;
+
+    private final LongAdder splitDocuments = new LongAdder();
+    private final LongAdder producedChunks = new LongAdder();
+
+    /**
+     * @param tokenCountEstimator estimator for the embedding model's tokens
+     * @param maxTokens maximum tokens per chunk
+     * @param overlapTokens maximum tokens repeated from the previous chunk
+     * @param parallelism threads splitting documents in parallel
+     */
+    public TextChunker(TokenCountEstimator tokenCountEstimator, int maxTokens, int overlapTokens, int parallelism) {
+        if (maxTokens < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Max tokens and parallelism must be positive");
+        }
+        if (overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("Overlap must be at least 0 and less than max tokens " + maxTokens);
+        }
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+        this.pool = new ForkJoinPool(parallelism);
+        this.window = parallelism * WINDOW_PER_THREAD;
+    }
+
+    /**
+     * Chunk boundaries of a text, in order; empty for blank text.
+     */
+    public List<TextChunk> chunk(String text) {
+        Sentences sentences = sentences(text);
+        int count = sentences.size;
+        int[] tokens = sentences.tokens;
+        // Tokens from each sentence to the end of its paragraph
+        int[] paragraphRest = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            paragraphRest[i] = tokens[i] + (sentences.paragraphEnd[i] || i == count - 1 ? 0 : paragraphRest[i + 1]);
+        }
+
+        List<TextChunk> chunks = new ArrayList<>();
+        int start = 0;
+        int stored = 0;
+        while (stored < count) {
+            int end = start;
+            int chunkTokens = 0;
+            while (end < count && chunkTokens + tokens[end] <= maxTokens) {
+                chunkTokens += tokens[end++];
+                if (end > stored && end < count && sentences.paragraphEnd[end - 1]
+                        && chunkTokens * 2 >= maxTokens && chunkTokens + paragraphRest[end] > maxTokens) {
+                    break;
+                }
+            }
+            if (end <= stored) {
+                if (start < stored) {
+                    // Only repeated sentences fit: start the chunk without overlap
+                    start = stored;
+                    continue;
+                }
+                // A single character over the limit
+                end = start + 1;
+                chunkTokens = tokens[start];
+            }
+            chunks.add(new TextChunk(sentences.start[start], sentences.end[end - 1], chunkTokens));
+            stored = end;
+
+            int next = end;
+            int overlap = 0;
+            // Overlap stays within the paragraph the next chunk starts in
+            while (next - 1 > start && !sentences.paragraphEnd[next - 1]
+                    && overlap + tokens[next - 1] <= overlapTokens) {
+                overlap += tokens[--next];
+            }
+            start = next;
+        }
+        return chunks;
+    }
+
+    /**
+     * Split a document into chunk documents.
+     *
+     * A document that fits in one chunk keeps its ID and text. Otherwise
+     * every chunk gets an ID derived from the parent ID and its index. All
+     * chunks carry the parent's metadata plus parent_id, chunk_index,
+     * chunk_count and the chunk's character range (chunk_start, chunk_end)
+     * in the parent text.
+     *
+     * Upserting the chunks alone does not replace an earlier version of the
+     * document, which may have had more chunks or been stored whole; writers
+     * delete the parent's rows when they store its first chunk, see
+     * {@link #replacedParentId}.
+     */
+    public List<Document> split(Document document) {
+        String text = document.getText();
+        if (text == null) {
+            return List.of(document);
+        }
+        List<TextChunk> chunks = chunk(text);
+        splitDocuments.increment();
+        if (chunks.size() <= 1) {
+            producedChunks.increment();
+            return List.of(Document.builder()
+                    .id(document.getId())
+                    .text(text)
+                    .metadata(chunkMetadata(document, 0, 1, 0, text.length()))
+                    .build());
+        }
+
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunk chunk = chunks.get(i);
+            documents.add(Document.builder()
+                    .id(chunkId(document.getId(), i))
+                    .text(text.substring(chunk.start(), chunk.end()))
+                    .metadata(chunkMetadata(document, i, chunks.size(), chunk.start(), chunk.end()))
+                    .build());
+        }
+        producedChunks.add(chunks.size());
+        return documents;
+    }
+
+    /**
+     * Split documents in parallel; chunks are returned in document order.
+     */
+    public List<Document> splitAll(List<Document> documents) {
+        if (documents.size() < 2) {
+            return documents.stream().flatMap(document -> split(document).stream()).toList();
+        }
+        return pool.submit(() -> documents.parallelStream()
+                .flatMap(document -> split(document).stream())
+                .toList()).join();
+    }
+
+    /**
+     * Split a stream of documents lazily, a window of documents at a time in parallel.
+     *
+     * Only {@code parallelism * 8} documents and their chunks are held at once,
+     * and the source is read only as fast as chunks are consumed.
+     */
+    public Iterator<Document> splitAll(Iterator<Document> documents) {
+        return new Iterator<>() {
+
+            private Iterator<Document> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && documents.hasNext()) {
+                    List<Document> next = new ArrayList<>(window);
+                    while (next.size() < window && documents.hasNext()) {
+                        next.add(documents.next());
+                    }
+                    current = splitAll(next).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Document next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private Sentences sentences(String text) {
+        Sentences sentences = new Sentences(text);
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                int next = i + 1;
+                boolean paragraphEnd = false;
+                while (next < length && Character.isWhitespace(text.charAt(next))) {
+                    paragraphEnd |= text.charAt(next) == '\n';
+                    next++;
+                }
+                sentences.add(start, i, paragraphEnd);
+                start = next;
+                i = next - 1;
+            } else if (c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？') {
+                int end = i + 1;
+                while (end < length && isClosing(text.charAt(end))) {
+                    end++;
+                }
+                // Latin punctuation only ends a sentence before whitespace, so 3.14 and e.g.x stay whole
+                if (c > 0x7f || end == length || Character.isWhitespace(text.charAt(end))) {
+                    sentences.add(start, end, false);
+                    start = end;
+                    i = end - 1;
+                }
+            }
+        }
+        sentences.add(start, length, true);
+        return sentences;
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '”' || c == '’' || c == '）' || c == '」'
+                || c == '』';
+    }
+
+    private int estimate(String text, int start, int end) {
+        return tokenCountEstimator.estimate(text.substring(start, end));
+    }
+
+    private static Map<String, Object> chunkMetadata(Document parent, int index, int count, int start, int end) {
+        Map<String, Object> metadata = new HashMap<>(parent.getMetadata());
+        metadata.put(PARENT_ID, parent.getId());
+        metadata.put(CHUNK_INDEX, index);
+        metadata.put(CHUNK_COUNT, count);
+        metadata.put(CHUNK_START, start);
+        metadata.put(CHUNK_END, end);
+        return metadata;
+    }
+
+    /**
+     * Parent ID of a first chunk (chunk_index 0), or null for other documents.
+     *
+     * Rows of that parent, its chunks ({@code metadata->>'parent_id'}) or the
+     * whole document stored under the parent ID, are stale once its first
+     * chunk is stored again. Chunks are stored in order, so deleting them
+     * right before that chunk never removes chunks of the new version.
+     */
+    public static String replacedParentId(Document document) {
+        Map<String, Object> metadata = document.getMetadata();
+        Object parentId = metadata.get(PARENT_ID);
+        // Metadata read back from JSON may hold the index as any number type
+        return parentId != null && metadata.get(CHUNK_INDEX) instanceof Number index && index.intValue() == 0
+                ? parentId.toString()
+                : null;
+    }
+
+    static String chunkId(String parentId, int index) {
+        return UUID.nameUUIDFromBytes((parentId + "#" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ingestion.chunking.documents", splitDocuments, LongAdder::sum)
+                .description("Documents split into chunks before embedding")
+                .register(registry);
+        FunctionCounter.builder("ingestion.chunking.chunks", producedChunks, LongAdder::sum)
+                .description("Chunks produced from split documents")
+                .register(registry);
+    }
+
+    /**
+     * Sentence ranges of a text with their token counts; sentences over the
+     * token limit are stored as several pieces.
+     */
+    private final class Sentences {
+
+        private final String text;
+        private int size;
+        private int[] start = new int[16];
+        private int[] end = new int[16];
+        private int[] tokens = new int[16];
+        private boolean[] paragraphEnd = new boolean[16];
+
+        private Sentences(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Add the range without surrounding whitespace; an empty range only ends the paragraph.
+         */
+        private void add(int from, int to, boolean endsParagraph) {
+            while (from < to && Character.isWhitespace(text.charAt(from))) {
+                from++;
+            }
+            while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+                to--;
+            }
+            if (from == to) {
+                if (endsParagraph && size > 0) {
+                    paragraphEnd[size - 1] = true;
+                }
+                return;
+            }
+            int count = estimate(text, from, to);
+            if (count > maxTokens && to - from > 1) {
+                cut(from, to, count, endsParagraph);
+            } else {
+                append(from, to, count, endsParagraph);
+            }
+        }
+
+        /**
+         * Cut an oversized sentence into pieces under the limit, at whitespace where there is any.
+         */
+        private void cut(int from, int to, int count, boolean endsParagraph) {
+            // Aim below the limit, as tokens are not spread evenly over the characters
+            int target = Math.max(1, (int) ((long) (to - from) * maxTokens * 9 / (10L * count)));
+            int pieceStart = from;
+            while (pieceStart < to) {
+                int pieceEnd = Math.min(to, pieceStart + target);
+                if (pieceEnd < to) {
+                    int space = pieceEnd;
+                    while (space > pieceStart && !Character.isWhitespace(text.charAt(space))) {
+                        space--;
+                    }
+                    if (space > pieceStart) {
+                        pieceEnd = space;
+                    } else if (Character.isHighSurrogate(text.charAt(pieceEnd - 1))) {
+                        pieceEnd = pieceEnd - 1 > pieceStart ? pieceEnd - 1 : pieceEnd + 1;
+                    }
+                }
+                add(pieceStart, pieceEnd, endsParagraph && pieceEnd == to);
+                pieceStart = pieceEnd;
+                while (pieceStart < to && Character.isWhitespace(text.charAt(pieceStart))) {
+                    pieceStart++;
+                }
+            }
+        }
+
+        private void append(int from, int to, int count, boolean endsParagraph) {
+            if (size == start.length) {
+                start = Arrays.copyOf(start, size * 2);
+                end = Arrays.copyOf(end, size * 2);
+                tokens = Arrays.copyOf(tokens, size * 2);
+                paragraphEnd = Arrays.copyOf(paragraphEnd, size * 2);
+            }
+            start[size] = from;
+            end[size] = to;
+            tokens[size] = count;
+            paragraphEnd[size] = endsParagraph;
+            size++;
+        }
+    }
+}
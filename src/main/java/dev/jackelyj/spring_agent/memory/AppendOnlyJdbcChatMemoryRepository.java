@@ -0,0 +1,793 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Append-only JDBC ChatMemoryRepository.
+ * 
+ * Every row carries a per-conversation sequence number. Instead of deleting
+ * and re-inserting the whole window on every turn, {@link #saveAll} diffs the
+ * new window against the stored rows:
+ * - messages that are new are batch-inserted with increasing sequence numbers;
+ * - messages trimmed from the front of the window are removed with a single
+ *   range delete ({@code seq < firstKept}); other removals (e.g. a replaced
+ *   system message) are deleted by sequence number.
+ * A typical turn therefore writes two rows and deletes two, independent of
+ * the window size.
+ * 
+ * The last stored rows of recently written conversations are cached, so a
+ * turn needs one cheap (max(seq), count) check instead of reloading the
+ * window. A concurrent writer from another node is detected by that check or
+ * by the primary key, and the window is reloaded and diffed again.
+ * 
+ * A companion statistics table (one row per conversation: message count,
+ * characters, estimated tokens, first/last activity) is upserted in the same
+ * transaction, so counts and existence checks are a primary key lookup, and
+ * conversation listings are keyset range scans over its primary key or its
+ * (last_activity, conversation_id) index.
+ * 
+ * Bulk deletes are set-based: delete-all truncates both tables, and ID lists
+ * and purges delete up to a batch of conversations per statement
+ * ({@code conversation_id = ANY(?)}), one transaction per batch.
+ * Bulk exports stream rows through a server-side cursor; bulk imports replace
+ * a batch of windows with one delete and multi-row inserts.
+ * 
+ * With a {@link ChatMemoryPartitionManager} the table is range-partitioned by
+ * row timestamp. The statistics row then also records the timestamp of the
+ * oldest row in the window, and every per-conversation query is bounded by
+ * it, so loads, checks and trims only scan the partitions the window spans.
+ * The primary key then includes the timestamp, so writers of the same
+ * conversation are serialized with a transaction-scoped advisory lock.
+ */
+public class AppendOnlyJdbcChatMemoryRepository
+        implements ChatMemoryRepository, ConversationStatsProvider, ConversationListing, BulkConversationDeletion,
+        MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AppendOnlyJdbcChatMemoryRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String tableName;
+    private final String statsTableName;
+    private final Clock clock;
+    private final Map<String, List<StoredRow>> knownWindows;
+    private final ChatMemoryPartitionManager partitions;
+
+    private static final String STATS_COLUMNS =
+            "conversation_id, message_count, total_chars, estimated_tokens, first_activity, last_activity";
+
+    private static final RowMapper<ConversationStats> STATS_ROW_MAPPER = (rs, rowNum) -> new ConversationStats(
+            rs.getString("conversation_id"), rs.getInt("message_count"),
+            rs.getLong("total_chars"), rs.getLong("estimated_tokens"),
+            rs.getTimestamp("first_activity").toInstant(), rs.getTimestamp("last_activity").toInstant());
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    /**
+     * Rows fetched per round trip by the export cursor.
+     */
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    /**
+     * Rows per multi-row insert of an import, well below the driver's bind parameter limit.
+     */
+    private static final int IMPORT_ROWS_PER_STATEMENT = 1000;
+
+    /**
+     * Advisory lock namespace for per-conversation writes in partitioned mode.
+     */
+    private static final int WRITE_LOCK_CLASS = 0x43484d57;
+
+    private final LongAdder insertedRows = new LongAdder();
+    private final LongAdder deletedRows = new LongAdder();
+
+    /**
+     * @param jdbcTemplate JDBC template
+     * @param transactionTemplate transaction wrapping each save
+     * @param tableName chat memory table
+     * @param statsTableName per-conversation statistics table
+     * @param maxCachedWindows number of conversations whose stored rows are cached
+     * @param clock clock for row timestamps
+     */
+    public AppendOnlyJdbcChatMemoryRepository(JdbcTemplate jdbcTemplate,
+                                              TransactionTemplate transactionTemplate,
+                                              String tableName,
+                                              String statsTableName,
+                                              int maxCachedWindows,
+                                              Clock clock) {
+        this(jdbcTemplate, transactionTemplate, tableName, statsTableName, maxCachedWindows, clock, null);
+    }
+
+    /**
+     * @param jdbcTemplate JDBC template
+     * @param transactionTemplate transaction wrapping each save
+     * @param tableName chat memory table
+     * @param statsTableName per-conversation statistics table
+     * @param maxCachedWindows number of conversations whose stored rows are cached
+     * @param clock clock for row timestamps
+     * @param partitions partition manager of the table, or null for an unpartitioned table
+     */
+    public AppendOnlyJdbcChatMemoryRepository(JdbcTemplate jdbcTemplate,
+                                              TransactionTemplate transactionTemplate,
+                                              String tableName,
+                                              String statsTableName,
+                                              int maxCachedWindows,
+                                              Clock clock,
+                                              ChatMemoryPartitionManager partitions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tableName = tableName;
+        this.statsTableName = statsTableName;
+        this.clock = clock;
+        this.partitions = partitions;
+        this.knownWindows = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<StoredRow>> eldest) {
+                return size() > maxCachedWindows;
+            }
+        });
+    }
+
+    /**
+     * Create the chat memory and statistics tables if they do not exist,
+     * backfilling statistics for conversations written before the statistics table existed.
+     * A table in Spring AI's JdbcChatMemoryRepository layout (no seq column) is
+     * migrated in place first, so existing history stays readable.
+     * In partitioned mode the table is created (or converted) partitioned and
+     * partitions are maintained once.
+     */
+    public void initializeSchema() {
+        migrateLegacyTable();
+        if (partitions != null) {
+            partitions.initializeTable();
+        } else {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                    + "conversation_id VARCHAR(255) NOT NULL, "
+                    + "seq BIGINT NOT NULL, "
+                    + "type VARCHAR(10) NOT NULL, "
+                    + "content TEXT NOT NULL, "
+                    + "\"timestamp\" TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (conversation_id, seq))");
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + statsTableName + " ("
+                + "conversation_id VARCHAR(255) PRIMARY KEY, "
+                + "message_count INT NOT NULL, "
+                + "total_chars BIGINT NOT NULL, "
+                + "estimated_tokens BIGINT NOT NULL, "
+                + "first_activity TIMESTAMP NOT NULL, "
+                + "last_activity TIMESTAMP NOT NULL, "
+                + "window_start TIMESTAMP)");
+        jdbcTemplate.execute("ALTER TABLE " + statsTableName + " ADD COLUMN IF NOT EXISTS window_start TIMESTAMP");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + statsTableName + "_last_activity_idx ON "
+                + statsTableName + " (last_activity DESC, conversation_id DESC)");
+        jdbcTemplate.update("INSERT INTO " + statsTableName
+                + " (conversation_id, message_count, total_chars, estimated_tokens, first_activity, last_activity,"
+                + " window_start)"
+                + " SELECT conversation_id, COUNT(*), SUM(length(content)), SUM(length(content)) / 4,"
+                + " MIN(\"timestamp\"), MAX(\"timestamp\"), MIN(\"timestamp\") FROM " + tableName
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + statsTableName + ")"
+                + " GROUP BY conversation_id");
+        if (partitions != null) {
+            partitions.maintain();
+        }
+    }
+
+    /**
+     * Add and backfill the seq column of a table written by Spring AI's
+     * JdbcChatMemoryRepository (conversation_id, content, type, timestamp).
+     * 
+     * Rows are numbered per conversation in timestamp order, which is the
+     * order Spring AI reads them back in. The table is locked for the
+     * migration, and nodes starting at the same time migrate it only once.
+     */
+    void migrateLegacyTable() {
+        if (!isLegacyTable()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + tableName + " IN ACCESS EXCLUSIVE MODE");
+            if (!isLegacyTable()) {
+                return;
+            }
+            log.info("Migrating {} from the Spring AI chat memory layout: adding and backfilling seq", tableName);
+            jdbcTemplate.execute("ALTER TABLE " + tableName + " ADD COLUMN seq BIGINT");
+            int rows = jdbcTemplate.update("UPDATE " + tableName + " t SET seq = n.seq FROM ("
+                    + "SELECT ctid AS row_id, row_number() OVER (PARTITION BY conversation_id"
+                    + " ORDER BY \"timestamp\", ctid) AS seq FROM " + tableName + ") n WHERE t.ctid = n.row_id");
+            jdbcTemplate.execute("ALTER TABLE " + tableName + " ALTER COLUMN seq SET NOT NULL, "
+                    + "ALTER COLUMN conversation_id TYPE VARCHAR(255), "
+                    + "ALTER COLUMN \"timestamp\" SET DEFAULT CURRENT_TIMESTAMP, "
+                    + "ADD PRIMARY KEY (conversation_id, seq)");
+            log.info("Migrated {} rows of {}", rows, tableName);
+        });
+    }
+
+    private boolean isLegacyTable() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL AND NOT EXISTS ("
+                + "SELECT 1 FROM pg_attribute WHERE attrelid = to_regclass(?) AND attname = 'seq'"
+                + " AND NOT attisdropped)", Boolean.class, tableName, tableName));
+    }
+
+    /**
+     * Forget cached windows, e.g. after rows were removed by dropping a partition.
+     */
+    public void invalidateWindows() {
+        knownWindows.clear();
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return jdbcTemplate.queryForList("SELECT conversation_id FROM " + statsTableName + " ORDER BY conversation_id",
+                String.class);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<StoredRow> rows = loadRows(conversationId);
+        if (rows.isEmpty()) {
+            knownWindows.remove(conversationId);
+        } else {
+            knownWindows.put(conversationId, rows);
+        }
+        List<Message> messages = new ArrayList<>(rows.size());
+        for (StoredRow row : rows) {
+            messages.add(toMessage(row));
+        }
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> save(conversationId, messages, false));
+        } catch (DuplicateKeyException e) {
+            log.debug("Concurrent write to conversation {}, retrying with a fresh window", conversationId);
+            knownWindows.remove(conversationId);
+            transactionTemplate.executeWithoutResult(status -> save(conversationId, messages, true));
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int deleted = jdbcTemplate.update("DELETE FROM " + tableName + " WHERE conversation_id = ?",
+                    conversationId);
+            jdbcTemplate.update("DELETE FROM " + statsTableName + " WHERE conversation_id = ?", conversationId);
+            deletedRows.add(deleted);
+        });
+        knownWindows.remove(conversationId);
+    }
+
+    @Override
+    public void deleteAllConversations() {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.execute("TRUNCATE TABLE " + tableName + ", " + statsTableName));
+        knownWindows.clear();
+    }
+
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        List<String> ids = List.copyOf(new LinkedHashSet<>(conversationIds));
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH_SIZE) {
+            deleted += deleteBatch(ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH_SIZE)), null).size();
+        }
+        return deleted;
+    }
+
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize,
+                                   Consumer<List<String>> deletedBatch) {
+        StringBuilder sql = new StringBuilder("SELECT conversation_id FROM " + statsTableName
+                + " WHERE conversation_id > ?");
+        if (criteria.idleBefore() != null) {
+            sql.append(" AND last_activity < ?");
+        }
+        if (criteria.idPrefix() != null) {
+            sql.append(" AND conversation_id LIKE ?");
+        }
+        sql.append(" ORDER BY conversation_id LIMIT ?");
+
+        long deleted = 0;
+        String after = "";
+        while (true) {
+            List<Object> args = new ArrayList<>(4);
+            args.add(after);
+            if (criteria.idleBefore() != null) {
+                args.add(Timestamp.from(criteria.idleBefore()));
+            }
+            if (criteria.idPrefix() != null) {
+                args.add(criteria.idLikePattern());
+            }
+            args.add(batchSize);
+            List<String> candidates = jdbcTemplate.queryForList(sql.toString(), String.class, args.toArray());
+            if (candidates.isEmpty()) {
+                break;
+            }
+            List<String> removed = deleteBatch(candidates, criteria);
+            if (!removed.isEmpty()) {
+                deleted += removed.size();
+                deletedBatch.accept(removed);
+            }
+            if (candidates.size() < batchSize) {
+                break;
+            }
+            after = candidates.get(candidates.size() - 1);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete one batch of conversations in a single transaction.
+     *
+     * @param criteria when not null, re-checked in the delete so that a
+     *                 conversation written since it was selected is kept
+     * @return IDs of the conversations whose statistics row was deleted
+     */
+    private List<String> deleteBatch(List<String> conversationIds, ConversationPurgeCriteria criteria) {
+        boolean recheckActivity = criteria != null && criteria.idleBefore() != null;
+        List<String> removed = transactionTemplate.execute(status -> {
+            List<String> deletedIds = jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement("DELETE FROM " + statsTableName
+                        + " WHERE conversation_id = ANY(?)" + (recheckActivity ? " AND last_activity < ?" : "")
+                        + " RETURNING conversation_id");
+                ps.setArray(1, connection.createArrayOf("varchar", conversationIds.toArray()));
+                if (recheckActivity) {
+                    ps.setTimestamp(2, Timestamp.from(criteria.idleBefore()));
+                }
+                return ps;
+            }, (rs, rowNum) -> rs.getString(1));
+            // Explicit ID lists also remove rows that have no statistics row
+            List<String> rowsToDelete = criteria == null ? conversationIds : deletedIds;
+            if (!rowsToDelete.isEmpty()) {
+                int deleted = jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "DELETE FROM " + tableName + " WHERE conversation_id = ANY(?)");
+                    ps.setArray(1, connection.createArrayOf("varchar", rowsToDelete.toArray()));
+                    return ps;
+                });
+                deletedRows.add(deleted);
+            }
+            return deletedIds;
+        });
+        conversationIds.forEach(knownWindows::remove);
+        return removed != null ? removed : List.of();
+    }
+
+    @Override
+    public Optional<ConversationStats> findStats(String conversationId) {
+        List<ConversationStats> stats = jdbcTemplate.query("SELECT " + STATS_COLUMNS + " FROM " + statsTableName
+                        + " WHERE conversation_id = ?",
+                STATS_ROW_MAPPER, conversationId);
+        return stats.stream().findFirst();
+    }
+
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        String select = "SELECT " + STATS_COLUMNS + " FROM " + statsTableName;
+        if (sort == ConversationSort.LAST_ACTIVITY) {
+            String order = " ORDER BY last_activity DESC, conversation_id DESC LIMIT ?";
+            if (after == null) {
+                return jdbcTemplate.query(select + order, STATS_ROW_MAPPER, limit);
+            }
+            if (after.lastActivity() == null) {
+                throw new IllegalArgumentException("Cursor does not match sort order " + sort);
+            }
+            return jdbcTemplate.query(select + " WHERE (last_activity, conversation_id) < (?, ?)" + order,
+                    STATS_ROW_MAPPER, Timestamp.from(after.lastActivity()), after.conversationId(), limit);
+        }
+        String order = " ORDER BY conversation_id LIMIT ?";
+        if (after == null) {
+            return jdbcTemplate.query(select + order, STATS_ROW_MAPPER, limit);
+        }
+        return jdbcTemplate.query(select + " WHERE conversation_id > ?" + order,
+                STATS_ROW_MAPPER, after.conversationId(), limit);
+    }
+
+    /**
+     * Stream the messages of the matching conversations through a server-side
+     * cursor, in conversation ID and sequence order, so memory use does not
+     * depend on the number of rows. The rows are read in one transaction, a
+     * consistent snapshot that stays open until the sink has consumed the last row.
+     *
+     * @return number of messages exported
+     */
+    public long exportMessages(ConversationFilter filter, Consumer<ConversationMessage> sink) {
+        StringBuilder sql = new StringBuilder("SELECT conversation_id, type, content FROM " + tableName);
+        List<String> conditions = new ArrayList<>(2);
+        if (filter.conversationIds() != null) {
+            conditions.add("conversation_id = ANY(?)");
+        }
+        if (filter.idPrefix() != null) {
+            conditions.add("conversation_id LIKE ?");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY conversation_id, seq");
+
+        LongAdder exported = new LongAdder();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString());
+            // With auto-commit off, a fetch size makes the driver read through a cursor
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            int index = 1;
+            if (filter.conversationIds() != null) {
+                ps.setArray(index++, connection.createArrayOf("varchar", filter.conversationIds().toArray()));
+            }
+            if (filter.idPrefix() != null) {
+                ps.setString(index, filter.idLikePattern());
+            }
+            return ps;
+        }, rs -> {
+            sink.accept(new ConversationMessage(rs.getString(1), MessageType.valueOf(rs.getString(2)),
+                    rs.getString(3)));
+            exported.increment();
+        }));
+        return exported.sum();
+    }
+
+    /**
+     * Replace the windows of a batch of conversations in one transaction: one
+     * set-based delete of their rows and statistics, then multi-row inserts of
+     * the new rows and statistics rows.
+     *
+     * @param windows messages per conversation, in window order; an empty window deletes the conversation
+     * @return number of messages imported
+     */
+    public long importWindows(Map<String, List<Message>> windows) {
+        if (windows.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.from(clock.instant().truncatedTo(ChronoUnit.MICROS));
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> stats = new ArrayList<>(windows.size());
+        windows.forEach((conversationId, messages) -> windowValues(conversationId, messages, now, rows, stats));
+        String[] ids = windows.keySet().stream().sorted().toArray(String[]::new);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (partitions != null) {
+                // Same per-conversation lock as a live write, taken in ID order
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "SELECT pg_advisory_xact_lock(?, hashtext(id)) FROM unnest(?) AS id");
+                    ps.setInt(1, WRITE_LOCK_CLASS);
+                    ps.setArray(2, connection.createArrayOf("varchar", ids));
+                    return ps;
+                }, rs -> { });
+            }
+            for (String table : List.of(statsTableName, tableName)) {
+                int deleted = jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "DELETE FROM " + table + " WHERE conversation_id = ANY(?)");
+                    ps.setArray(1, connection.createArrayOf("varchar", ids));
+                    return ps;
+                });
+                if (table.equals(tableName)) {
+                    deletedRows.add(deleted);
+                }
+            }
+            insertValues("INSERT INTO " + tableName + " (conversation_id, seq, type, content, \"timestamp\")", rows);
+            insertValues("INSERT INTO " + statsTableName + " (" + STATS_COLUMNS + ", window_start)", stats);
+        });
+        for (String conversationId : ids) {
+            knownWindows.remove(conversationId);
+        }
+        insertedRows.add(rows.size());
+        return rows.size();
+    }
+
+    /**
+     * Write a window to a conversation that has none, in one transaction; used
+     * to move conversations between stores without overwriting newer writes.
+     * A concurrent first write of the same conversation either commits first,
+     * and the copy is skipped, or collides with the copied rows and retries
+     * against them, as with any concurrent writer.
+     *
+     * @param conversationId the conversation ID
+     * @param messages window to write
+     * @return true if the window was written, false if the conversation already had one
+     */
+    public boolean copyWindowIfAbsent(String conversationId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return false;
+        }
+        Timestamp now = Timestamp.from(clock.instant().truncatedTo(ChronoUnit.MICROS));
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        List<Object[]> stats = new ArrayList<>(1);
+        windowValues(conversationId, messages, now, rows, stats);
+        Boolean copied;
+        try {
+            copied = transactionTemplate.execute(status -> {
+                if (partitions != null) {
+                    jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?, hashtext(?))",
+                            WRITE_LOCK_CLASS, conversationId);
+                }
+                Integer existing = jdbcTemplate.queryForObject("SELECT count(*) FROM " + statsTableName
+                        + " WHERE conversation_id = ?", Integer.class, conversationId);
+                if (existing != null && existing > 0) {
+                    return false;
+                }
+                // Rows before statistics: a concurrent first write starts at the same sequence number
+                insertValues("INSERT INTO " + tableName + " (conversation_id, seq, type, content, \"timestamp\")",
+                        rows);
+                insertValues("INSERT INTO " + statsTableName + " (" + STATS_COLUMNS + ", window_start)", stats);
+                return true;
+            });
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        knownWindows.remove(conversationId);
+        if (Boolean.TRUE.equals(copied)) {
+            insertedRows.add(rows.size());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Row and statistics values of a window written at one timestamp, with sequence numbers from 1.
+     */
+    private static void windowValues(String conversationId, List<Message> messages, Timestamp now,
+                                     List<Object[]> rows, List<Object[]> stats) {
+        long seq = 0;
+        long chars = 0;
+        long tokens = 0;
+        for (Message message : messages) {
+            String content = textOf(message);
+            rows.add(new Object[] {conversationId, ++seq, message.getMessageType().name(), content, now});
+            chars += content.length();
+            tokens += ConversationStats.estimateTokens(content);
+        }
+        if (seq > 0) {
+            stats.add(new Object[] {conversationId, (int) seq, chars, tokens, now, now, now});
+        }
+    }
+
+    /**
+     * Insert rows with multi-row {@code INSERT ... VALUES (...), (...)} statements
+     * of up to {@link #IMPORT_ROWS_PER_STATEMENT} rows each.
+     */
+    private void insertValues(String insert, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int columns = rows.get(0).length;
+        String placeholders = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        for (int from = 0; from < rows.size(); from += IMPORT_ROWS_PER_STATEMENT) {
+            List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + IMPORT_ROWS_PER_STATEMENT));
+            List<Object> args = new ArrayList<>(chunk.size() * columns);
+            chunk.forEach(row -> Collections.addAll(args, row));
+            jdbcTemplate.update(insert + " VALUES " + String.join(", ", Collections.nCopies(chunk.size(), placeholders)),
+                    args.toArray());
+        }
+    }
+
+    private void save(String conversationId, List<Message> messages, boolean reload) {
+        if (partitions != null) {
+            jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?, hashtext(?))", WRITE_LOCK_CLASS, conversationId);
+        }
+        List<StoredRow> stored = reload ? null : knownWindows.get(conversationId);
+        if (stored == null || !matchesDatabase(conversationId, stored)) {
+            stored = loadRows(conversationId);
+        }
+
+        // Greedy in-order match: stored rows that line up with the new window are kept,
+        // everything else is deleted, and the unmatched tail of the window is appended.
+        List<Long> deletes = new ArrayList<>();
+        List<StoredRow> kept = new ArrayList<>(messages.size());
+        int next = 0;
+        for (StoredRow row : stored) {
+            if (next < messages.size() && row.sameAs(messages.get(next))) {
+                kept.add(row);
+                next++;
+            } else {
+                deletes.add(row.seq());
+            }
+        }
+
+        long lastSeq = stored.isEmpty() ? 0 : stored.get(stored.size() - 1).seq();
+        deleteRows(conversationId, deletes, kept.isEmpty() ? lastSeq + 1 : kept.get(0).seq(),
+                stored.isEmpty() ? null : stored.get(0).timestamp());
+
+        // Microsecond precision, as stored, so row timestamps can bound later queries exactly
+        Instant now = clock.instant().truncatedTo(ChronoUnit.MICROS);
+        List<StoredRow> inserts = new ArrayList<>(messages.size() - next);
+        for (int i = next; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            inserts.add(new StoredRow(++lastSeq, message.getMessageType(), textOf(message), now));
+        }
+        insertRows(conversationId, inserts, now);
+
+        kept.addAll(inserts);
+        writeStats(conversationId, kept, now);
+        if (kept.isEmpty()) {
+            knownWindows.remove(conversationId);
+        } else {
+            knownWindows.put(conversationId, List.copyOf(kept));
+        }
+    }
+
+    private void writeStats(String conversationId, List<StoredRow> window, Instant now) {
+        if (window.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM " + statsTableName + " WHERE conversation_id = ?", conversationId);
+            return;
+        }
+        long chars = 0;
+        long tokens = 0;
+        for (StoredRow row : window) {
+            chars += row.content().length();
+            tokens += ConversationStats.estimateTokens(row.content());
+        }
+        Timestamp timestamp = Timestamp.from(now);
+        Instant windowStart = window.get(0).timestamp();
+        jdbcTemplate.update("INSERT INTO " + statsTableName
+                        + " (conversation_id, message_count, total_chars, estimated_tokens, first_activity, last_activity,"
+                        + " window_start)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?)"
+                        + " ON CONFLICT (conversation_id) DO UPDATE SET message_count = EXCLUDED.message_count,"
+                        + " total_chars = EXCLUDED.total_chars, estimated_tokens = EXCLUDED.estimated_tokens,"
+                        + " last_activity = EXCLUDED.last_activity, window_start = EXCLUDED.window_start",
+                conversationId, window.size(), chars, tokens, timestamp, timestamp,
+                windowStart != null ? Timestamp.from(windowStart) : null);
+    }
+
+    /**
+     * Delete rows by sequence number, using a range delete when they are all before the first kept row.
+     *
+     * @param windowStart timestamp of the oldest stored row, bounding the scan in partitioned mode
+     */
+    private void deleteRows(String conversationId, List<Long> seqs, long firstKeptSeq, Instant windowStart) {
+        if (seqs.isEmpty()) {
+            return;
+        }
+        Timestamp lowerBound = lowerBound(windowStart);
+        String bound = lowerBound != null ? " AND \"timestamp\" >= ?" : "";
+        int deleted = jdbcTemplate.update(connection -> {
+            PreparedStatement ps;
+            if (seqs.get(seqs.size() - 1) < firstKeptSeq) {
+                ps = connection.prepareStatement(
+                        "DELETE FROM " + tableName + " WHERE conversation_id = ? AND seq < ?" + bound);
+                ps.setLong(2, firstKeptSeq);
+            } else {
+                ps = connection.prepareStatement(
+                        "DELETE FROM " + tableName + " WHERE conversation_id = ? AND seq = ANY(?)" + bound);
+                ps.setArray(2, connection.createArrayOf("bigint", seqs.toArray()));
+            }
+            ps.setString(1, conversationId);
+            if (lowerBound != null) {
+                ps.setTimestamp(3, lowerBound);
+            }
+            return ps;
+        });
+        deletedRows.add(deleted);
+    }
+
+    /**
+     * Lower bound on row timestamps used to prune partitions, or null when the table is not
+     * partitioned or the window start is unknown.
+     */
+    private Timestamp lowerBound(Instant windowStart) {
+        return partitions != null && windowStart != null ? Timestamp.from(windowStart) : null;
+    }
+
+    private void insertRows(String conversationId, List<StoredRow> rows, Instant timestamp) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(timestamp);
+        jdbcTemplate.batchUpdate("INSERT INTO " + tableName
+                        + " (conversation_id, seq, type, content, \"timestamp\") VALUES (?, ?, ?, ?, ?)",
+                rows, rows.size(), (ps, row) -> {
+                    ps.setString(1, conversationId);
+                    ps.setLong(2, row.seq());
+                    ps.setString(3, row.type().name());
+                    ps.setString(4, row.content());
+                    ps.setTimestamp(5, now);
+                });
+        insertedRows.add(rows.size());
+    }
+
+    private boolean matchesDatabase(String conversationId, List<StoredRow> cached) {
+        ResultSetExtractor<Boolean> matches = rs -> rs.next()
+                && rs.getLong("max_seq") == cached.get(cached.size() - 1).seq()
+                && rs.getLong("row_count") == cached.size();
+        String sql = "SELECT COALESCE(MAX(seq), 0) AS max_seq, COUNT(*) AS row_count FROM " + tableName
+                + " WHERE conversation_id = ?";
+        Timestamp lowerBound = lowerBound(cached.get(0).timestamp());
+        if (lowerBound != null) {
+            // Writers only trim from the front, so no row of the window is older than its first row
+            return Boolean.TRUE.equals(jdbcTemplate.query(sql + " AND \"timestamp\" >= ?", matches,
+                    conversationId, lowerBound));
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.query(sql, matches, conversationId));
+    }
+
+    private List<StoredRow> loadRows(String conversationId) {
+        String sql = "SELECT seq, type, content, \"timestamp\" FROM " + tableName + " WHERE conversation_id = ?";
+        RowMapper<StoredRow> rowMapper = (rs, rowNum) -> new StoredRow(rs.getLong("seq"),
+                MessageType.valueOf(rs.getString("type")), rs.getString("content"),
+                rs.getTimestamp("timestamp").toInstant());
+        if (partitions != null) {
+            List<Timestamp> windowStart = jdbcTemplate.queryForList("SELECT window_start FROM " + statsTableName
+                    + " WHERE conversation_id = ?", Timestamp.class, conversationId);
+            if (windowStart.isEmpty()) {
+                // Statistics are written with every window, so there are no rows either
+                return List.of();
+            }
+            if (windowStart.get(0) != null) {
+                return jdbcTemplate.query(sql + " AND \"timestamp\" >= ? ORDER BY seq", rowMapper,
+                        conversationId, windowStart.get(0));
+            }
+        }
+        return jdbcTemplate.query(sql + " ORDER BY seq", rowMapper, conversationId);
+    }
+
+    private static Message toMessage(StoredRow row) {
+        return switch (row.type()) {
+            case USER -> new UserMessage(row.content());
+            case ASSISTANT -> new AssistantMessage(row.content());
+            case SYSTEM -> new SystemMessage(row.content());
+            case TOOL -> new ToolResponseMessage(List.of());
+        };
+    }
+
+    private static String textOf(Message message) {
+        return message.getText() != null ? message.getText() : "";
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.memory.jdbc.rows", insertedRows, LongAdder::sum)
+                .description("Chat memory rows written")
+                .tag("operation", "insert")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.jdbc.rows", deletedRows, LongAdder::sum)
+                .description("Chat memory rows written")
+                .tag("operation", "delete")
+                .register(registry);
+    }
+
+    /**
+     * A stored row: sequence number, message type, text and write time.
+     */
+    record StoredRow(long seq, MessageType type, String content, Instant timestamp) {
+
+        boolean sameAs(Message message) {
+            return type == message.getMessageType() && Objects.equals(content, textOf(message));
+        }
+    }
+}
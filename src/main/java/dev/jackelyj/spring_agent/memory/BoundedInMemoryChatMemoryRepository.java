@@ -0,0 +1,604 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-memory ChatMemoryRepository with an authoritative conversation index.
+ * 
+ * Every conversation written through {@link #saveAll} is tracked in a concurrent
+ * index together with its estimated heap footprint and last access time.
+ * Conversations are evicted when:
+ * - they have not been accessed for longer than the TTL (background sweep), or
+ * - the number of conversations or their estimated total bytes exceeds the limit,
+ *   in which case the least recently accessed conversations are evicted in one
+ *   batch down to a low watermark (90% of the limit), so the sort is amortised
+ *   over many writes.
+ * 
+ * Windows are held either as the Message objects themselves or, when a
+ * {@link MessageCodec} is supplied, as compact encoded byte arrays that are
+ * decoded on read. Windows the codec cannot encode (media attachments) are
+ * kept as objects.
+ * 
+ * Conversation statistics are computed once per write and kept with the window.
+ * Two skip-list indexes (by ID, and by last write time) are maintained on
+ * every write and removal, so listings are ordered range scans and prefix
+ * purges only visit the matching ID range.
+ * 
+ * Exposes conversation count, estimated bytes and eviction counters as Micrometer metrics.
+ */
+public class BoundedInMemoryChatMemoryRepository
+        implements ChatMemoryRepository, ConversationStatsProvider, ConversationListing, BulkConversationDeletion,
+        MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedInMemoryChatMemoryRepository.class);
+
+    private static final double LOW_WATERMARK = 0.9;
+
+    private final Map<String, ConversationEntry> index = new ConcurrentHashMap<>();
+    private final NavigableSet<String> idIndex = new ConcurrentSkipListSet<>();
+    private final NavigableSet<ActivityKey> activityIndex = new ConcurrentSkipListSet<>(ActivityKey.ORDER);
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final Duration ttl;
+    private final int maxConversations;
+    private final long maxBytes;
+    private final Clock clock;
+    private final MessageCodec codec;
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder bytesEvictions = new LongAdder();
+
+    /**
+     * @param ttl idle time after which a conversation is evicted, or zero/negative for no TTL
+     * @param maxConversations maximum number of conversations, or zero/negative for no limit
+     * @param maxBytes maximum estimated bytes across all conversations, or zero/negative for no limit
+     * @param clock clock used for access timestamps
+     */
+    public BoundedInMemoryChatMemoryRepository(Duration ttl, int maxConversations, long maxBytes, Clock clock) {
+        this(ttl, maxConversations, maxBytes, clock, null);
+    }
+
+    /**
+     * @param ttl idle time after which a conversation is evicted, or zero/negative for no TTL
+     * @param maxConversations maximum number of conversations, or zero/negative for no limit
+     * @param maxBytes maximum estimated bytes across all conversations, or zero/negative for no limit
+     * @param clock clock used for access timestamps
+     * @param codec codec for compact storage, or null to keep Message objects
+     */
+    public BoundedInMemoryChatMemoryRepository(Duration ttl, int maxConversations, long maxBytes, Clock clock,
+                                               MessageCodec codec) {
+        this.ttl = ttl;
+        this.maxConversations = maxConversations;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+        this.codec = codec;
+
+        if (ttl != null && !ttl.isZero() && !ttl.isNegative()) {
+            long sweepMillis = Math.max(1_000, Math.min(ttl.toMillis() / 4, 60_000));
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-memory-ttl-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.sweeper.scheduleWithFixedDelay(this::evictExpired, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return List.copyOf(idIndex);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        ConversationEntry entry = index.get(conversationId);
+        if (entry == null) {
+            return List.of();
+        }
+        entry.lastAccessMillis = clock.millis();
+        StoredWindow window = entry.window;
+        return window.encoded() != null ? codec.decode(window.encoded()) : window.messages();
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            deleteByConversationId(conversationId);
+            return;
+        }
+
+        long now = clock.millis();
+        ConversationStats stats = ConversationStats.of(conversationId, messages, null, null);
+        StoredWindow window;
+        long bytes;
+        if (codec != null && codec.canEncode(messages)) {
+            byte[] encoded = codec.encode(messages);
+            window = new StoredWindow(null, encoded, messages.size(), stats.totalChars(), stats.estimatedTokens(), now);
+            bytes = 96 + 2L * conversationId.length() + 48 + encoded.length;
+        } else {
+            List<Message> snapshot = List.copyOf(messages);
+            window = new StoredWindow(snapshot, null, snapshot.size(), stats.totalChars(), stats.estimatedTokens(), now);
+            bytes = estimateBytes(conversationId, snapshot);
+        }
+
+        ActivityKey activityKey = new ActivityKey(now, conversationId, writeSequence.incrementAndGet());
+        index.compute(conversationId, (id, existing) -> {
+            activityIndex.add(activityKey);
+            if (existing == null) {
+                totalBytes.addAndGet(bytes);
+                idIndex.add(id);
+                return new ConversationEntry(window, bytes, now, now, activityKey);
+            }
+            totalBytes.addAndGet(bytes - existing.sizeBytes);
+            activityIndex.remove(existing.activityKey);
+            existing.window = window;
+            existing.sizeBytes = bytes;
+            existing.lastAccessMillis = now;
+            existing.activityKey = activityKey;
+            return existing;
+        });
+
+        if (isOverCapacity()) {
+            evictToWatermark();
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        removeEntry(conversationId);
+    }
+
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        List<ConversationStats> page = new ArrayList<>(Math.min(limit, 1024));
+        if (sort == ConversationSort.LAST_ACTIVITY) {
+            NavigableSet<ActivityKey> view = activityIndex;
+            if (after != null) {
+                if (after.lastActivity() == null) {
+                    throw new IllegalArgumentException("Cursor does not match sort order " + sort);
+                }
+                view = activityIndex.tailSet(new ActivityKey(after.lastActivity().toEpochMilli(),
+                        after.conversationId(), Long.MIN_VALUE), false);
+            }
+            for (ActivityKey key : view) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                ConversationEntry entry = index.get(key.conversationId());
+                // Skip keys superseded by a concurrent write
+                if (entry != null && entry.activityKey == key) {
+                    page.add(statsOf(key.conversationId(), entry));
+                }
+            }
+        } else {
+            NavigableSet<String> view = after == null ? idIndex : idIndex.tailSet(after.conversationId(), false);
+            for (String conversationId : view) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                ConversationEntry entry = index.get(conversationId);
+                if (entry != null) {
+                    page.add(statsOf(conversationId, entry));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Number of stored messages without counting as an access.
+     */
+    public int messageCount(String conversationId) {
+        ConversationEntry entry = index.get(conversationId);
+        return entry == null ? 0 : entry.window.size();
+    }
+
+    /**
+     * Statistics of a conversation, without counting as an access.
+     */
+    @Override
+    public Optional<ConversationStats> findStats(String conversationId) {
+        ConversationEntry entry = index.get(conversationId);
+        return entry == null ? Optional.empty() : Optional.of(statsOf(conversationId, entry));
+    }
+
+    private static ConversationStats statsOf(String conversationId, ConversationEntry entry) {
+        StoredWindow window = entry.window;
+        return new ConversationStats(conversationId, window.size(), window.totalChars(),
+                window.estimatedTokens(), Instant.ofEpochMilli(entry.firstActivityMillis),
+                Instant.ofEpochMilli(window.writtenMillis()));
+    }
+
+    /**
+     * Whether the conversation is stored, without counting as an access.
+     */
+    public boolean containsConversation(String conversationId) {
+        return index.containsKey(conversationId);
+    }
+
+    @Override
+    public void deleteAllConversations() {
+        clear();
+    }
+
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        int deleted = 0;
+        for (String conversationId : conversationIds) {
+            if (removeEntry(conversationId)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize,
+                                   Consumer<List<String>> deletedBatch) {
+        String prefix = criteria.idPrefix();
+        NavigableSet<String> candidates = prefix == null ? idIndex : idIndex.tailSet(prefix, true);
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        for (String conversationId : candidates) {
+            if (prefix != null && !conversationId.startsWith(prefix)) {
+                break;
+            }
+            ConversationEntry entry = index.get(conversationId);
+            if (entry == null) {
+                continue;
+            }
+            // Evaluate against the current write and remove only if no write happened since
+            ActivityKey key = entry.activityKey;
+            if (criteria.matches(conversationId, Instant.ofEpochMilli(key.lastActivityMillis()))
+                    && removeEntryIf(conversationId, current -> current.activityKey == key)) {
+                batch.add(conversationId);
+                if (batch.size() >= batchSize) {
+                    deleted += batch.size();
+                    deletedBatch.accept(List.copyOf(batch));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += batch.size();
+            deletedBatch.accept(List.copyOf(batch));
+        }
+        return deleted;
+    }
+
+    /**
+     * Visit every stored window without locking. Windows are immutable and replaced
+     * on write, so each visited window is a consistent copy of its conversation even
+     * while writers keep going; conversations written during the visit may or may
+     * not be included.
+     */
+    void forEachWindow(Consumer<WindowSnapshot> visitor) {
+        for (Map.Entry<String, ConversationEntry> e : index.entrySet()) {
+            ConversationEntry entry = e.getValue();
+            StoredWindow window = entry.window;
+            visitor.accept(new WindowSnapshot(e.getKey(), window.messages(), window.encoded(), window.size(),
+                    window.totalChars(), window.estimatedTokens(), entry.firstActivityMillis, window.writtenMillis()));
+        }
+    }
+
+    /**
+     * Whether windows are held in encoded form, so snapshots can store them as they are.
+     */
+    boolean isCompact() {
+        return codec != null;
+    }
+
+    /**
+     * Insert a window captured by {@link #forEachWindow}, keeping its activity times.
+     * Conversations already written since startup are left untouched.
+     *
+     * @return whether the window was inserted
+     */
+    boolean restoreWindow(WindowSnapshot snapshot) {
+        String conversationId = snapshot.conversationId();
+        StoredWindow window;
+        long bytes;
+        if (snapshot.encoded() != null && codec != null) {
+            window = new StoredWindow(null, snapshot.encoded(), snapshot.size(), snapshot.totalChars(),
+                    snapshot.estimatedTokens(), snapshot.lastActivityMillis());
+            bytes = 96 + 2L * conversationId.length() + 48 + snapshot.encoded().length;
+        } else {
+            List<Message> messages = snapshot.messages() != null
+                    ? List.copyOf(snapshot.messages())
+                    : new MessageCodec(0).decode(snapshot.encoded());
+            window = new StoredWindow(messages, null, messages.size(), snapshot.totalChars(),
+                    snapshot.estimatedTokens(), snapshot.lastActivityMillis());
+            bytes = estimateBytes(conversationId, messages);
+        }
+
+        boolean[] restored = new boolean[1];
+        index.computeIfAbsent(conversationId, id -> {
+            ActivityKey activityKey = new ActivityKey(snapshot.lastActivityMillis(), id,
+                    writeSequence.incrementAndGet());
+            activityIndex.add(activityKey);
+            idIndex.add(id);
+            totalBytes.addAndGet(bytes);
+            restored[0] = true;
+            return new ConversationEntry(window, bytes, snapshot.firstActivityMillis(),
+                    snapshot.lastActivityMillis(), activityKey);
+        });
+        if (restored[0] && isOverCapacity()) {
+            evictToWatermark();
+        }
+        return restored[0];
+    }
+
+    /**
+     * Remove every conversation.
+     */
+    public void clear() {
+        for (String conversationId : List.copyOf(index.keySet())) {
+            deleteByConversationId(conversationId);
+        }
+    }
+
+    public int conversationCount() {
+        return index.size();
+    }
+
+    public long estimatedBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * Evict conversations idle for longer than the TTL.
+     */
+    void evictExpired() {
+        try {
+            long cutoff = clock.millis() - ttl.toMillis();
+            int evicted = 0;
+            for (Map.Entry<String, ConversationEntry> e : index.entrySet()) {
+                // Re-check inside compute: a write or read since this check makes the conversation active again
+                if (e.getValue().lastAccessMillis < cutoff
+                        && removeEntryIf(e.getKey(), current -> current.lastAccessMillis < cutoff)) {
+                    evicted++;
+                }
+            }
+            if (evicted > 0) {
+                expiredEvictions.add(evicted);
+                log.debug("Evicted {} idle conversations", evicted);
+            }
+        } catch (Exception e) {
+            log.warn("TTL sweep failed", e);
+        }
+    }
+
+    private boolean removeEntry(String conversationId) {
+        return removeEntryIf(conversationId, current -> true);
+    }
+
+    /**
+     * Remove a conversation and its index entries atomically with respect to writes of the same conversation.
+     * Writes update the stored entry in place, so the condition must test its current state, not its identity.
+     *
+     * @return whether an entry was removed
+     */
+    private boolean removeEntryIf(String conversationId, Predicate<ConversationEntry> condition) {
+        boolean[] removed = new boolean[1];
+        index.computeIfPresent(conversationId, (id, current) -> {
+            if (!condition.test(current)) {
+                return current;
+            }
+            totalBytes.addAndGet(-current.sizeBytes);
+            idIndex.remove(id);
+            activityIndex.remove(current.activityKey);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private boolean isOverCapacity() {
+        return (maxConversations > 0 && index.size() > maxConversations)
+                || (maxBytes > 0 && totalBytes.get() > maxBytes);
+    }
+
+    /**
+     * Evict least recently accessed conversations until both limits are below the low watermark.
+     * Only one thread sorts at a time; concurrent writers skip eviction while it runs.
+     */
+    private void evictToWatermark() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!isOverCapacity()) {
+                return;
+            }
+            evict(evictionCandidates());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Stored conversations, least recently accessed first.
+     *
+     * Readers keep touching lastAccessMillis, so this sorts a snapshot: a key that
+     * changes mid-sort breaks the comparator contract and TimSort may throw.
+     */
+    List<EvictionCandidate> evictionCandidates() {
+        List<EvictionCandidate> candidates = new ArrayList<>(index.size());
+        for (Map.Entry<String, ConversationEntry> e : index.entrySet()) {
+            ConversationEntry entry = e.getValue();
+            candidates.add(new EvictionCandidate(e.getKey(), entry.activityKey, entry.lastAccessMillis));
+        }
+        candidates.sort(Comparator.comparingLong(EvictionCandidate::lastAccessMillis));
+        return candidates;
+    }
+
+    /**
+     * Evict candidates in order until both limits are below the low watermark,
+     * skipping conversations written since the candidates were taken.
+     */
+    void evict(List<EvictionCandidate> candidates) {
+        long targetConversations = maxConversations > 0 ? (long) (maxConversations * LOW_WATERMARK) : Long.MAX_VALUE;
+        long targetBytes = maxBytes > 0 ? (long) (maxBytes * LOW_WATERMARK) : Long.MAX_VALUE;
+        for (EvictionCandidate candidate : candidates) {
+            boolean overSize = index.size() > targetConversations;
+            boolean overBytes = totalBytes.get() > targetBytes;
+            if (!overSize && !overBytes) {
+                break;
+            }
+            ActivityKey key = candidate.activityKey();
+            if (removeEntryIf(candidate.conversationId(), current -> current.activityKey == key)) {
+                if (overSize) {
+                    sizeEvictions.increment();
+                } else {
+                    bytesEvictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rough heap footprint of a stored conversation window.
+     */
+    static long estimateBytes(String conversationId, List<Message> messages) {
+        long bytes = 96 + 2L * conversationId.length();
+        for (Message message : messages) {
+            bytes += 64;
+            String text = message.getText();
+            if (text != null) {
+                bytes += 40 + 2L * text.length();
+            }
+            bytes += 48L * message.getMetadata().size();
+            if (message instanceof AssistantMessage assistant && assistant.hasToolCalls()) {
+                for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                    bytes += 64 + 2L * (call.name().length() + call.arguments().length());
+                }
+            }
+            if (message instanceof ToolResponseMessage toolResponse) {
+                for (ToolResponseMessage.ToolResponse response : toolResponse.getResponses()) {
+                    bytes += 64 + 2L * response.responseData().length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.memory.conversations", index, Map::size)
+                .description("Conversations held in the in-memory chat memory")
+                .register(registry);
+        Gauge.builder("chat.memory.bytes", totalBytes, AtomicLong::get)
+                .description("Estimated heap bytes held by the in-memory chat memory")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.evictions", expiredEvictions, LongAdder::sum)
+                .description("Conversations evicted from the in-memory chat memory")
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.evictions", sizeEvictions, LongAdder::sum)
+                .description("Conversations evicted from the in-memory chat memory")
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.evictions", bytesEvictions, LongAdder::sum)
+                .description("Conversations evicted from the in-memory chat memory")
+                .tag("cause", "bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * A stored window: either the messages or their encoded form, with its statistics.
+     */
+    private record StoredWindow(List<Message> messages, byte[] encoded, int size,
+                                long totalChars, long estimatedTokens, long writtenMillis) {
+    }
+
+    /**
+     * A window as seen by {@link #forEachWindow}: either the messages or their encoded form.
+     */
+    record WindowSnapshot(String conversationId, List<Message> messages, byte[] encoded, int size,
+                          long totalChars, long estimatedTokens, long firstActivityMillis,
+                          long lastActivityMillis) {
+    }
+
+    /**
+     * Key in the activity index. The write sequence keeps keys of successive
+     * writes distinct even within the same millisecond.
+     */
+    private record ActivityKey(long lastActivityMillis, String conversationId, long sequence) {
+
+        /**
+         * Most recent first, then descending conversation ID.
+         */
+        static final Comparator<ActivityKey> ORDER = Comparator
+                .comparingLong(ActivityKey::lastActivityMillis).reversed()
+                .thenComparing(ActivityKey::conversationId, Comparator.reverseOrder())
+                .thenComparing(Comparator.comparingLong(ActivityKey::sequence).reversed());
+    }
+
+    /**
+     * Conversation, its last write and its access time as read when an eviction pass started.
+     */
+    record EvictionCandidate(String conversationId, ActivityKey activityKey, long lastAccessMillis) {
+    }
+
+    private static final class ConversationEntry {
+
+        final long firstActivityMillis;
+        volatile StoredWindow window;
+        volatile long sizeBytes;
+        volatile long lastAccessMillis;
+        volatile ActivityKey activityKey;
+
+        ConversationEntry(StoredWindow window, long sizeBytes, long firstActivityMillis, long lastAccessMillis,
+                          ActivityKey activityKey) {
+            this.firstActivityMillis = firstActivityMillis;
+            this.activityKey = activityKey;
+            this.window = window;
+            this.sizeBytes = sizeBytes;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A chat memory store that deletes conversations as sets rather than one at a time.
+ * 
+ * Purges run in batches, each in its own transaction, so a large purge never
+ * holds locks for long; every deleted batch is reported to the caller, which
+ * uses it for progress reporting and to invalidate caches in front of the store.
+ */
+public interface BulkConversationDeletion {
+
+    /**
+     * Delete every conversation.
+     */
+    void deleteAllConversations();
+
+    /**
+     * Delete the given conversations.
+     *
+     * @param conversationIds conversation IDs; unknown IDs are ignored
+     * @return number of conversations deleted
+     */
+    int deleteConversations(Collection<String> conversationIds);
+
+    /**
+     * Delete every conversation matching the criteria, in batches.
+     *
+     * @param criteria conversations to delete
+     * @param batchSize maximum number of conversations deleted per batch
+     * @param deletedBatch called with the IDs deleted by each batch
+     * @return number of conversations deleted
+     */
+    long purgeConversations(ConversationPurgeCriteria criteria, int batchSize, Consumer<List<String>> deletedBatch);
+}
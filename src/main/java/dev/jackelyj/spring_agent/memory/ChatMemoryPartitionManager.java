@@ -0,0 +1,377 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Range partitioning and retention for the append-only chat memory table.
+ *
+ * The table is partitioned by row timestamp into day, week or month
+ * partitions (UTC boundaries). A background job keeps {@code premake}
+ * future partitions ahead of the clock and drops every partition whose
+ * upper bound is older than the retention period, so expired messages are
+ * removed with a single DROP instead of row deletes (no bloat, no vacuum).
+ *
+ * Dropping a partition removes the oldest rows of conversations that span
+ * its boundary, so statistics of those conversations (found through their
+ * window start) are recomputed, and conversations left without rows are
+ * removed, in the same transaction as the DROP.
+ *
+ * An existing unpartitioned table is converted in place: it is renamed and
+ * attached as the partition holding everything before the next boundary,
+ * and is dropped by retention like any other partition.
+ *
+ * Maintenance runs under a transaction-scoped advisory lock, so only one
+ * node maintains partitions at a time.
+ */
+public class ChatMemoryPartitionManager implements SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMemoryPartitionManager.class);
+
+    /**
+     * Advisory lock namespace for partition maintenance.
+     */
+    private static final int MAINTENANCE_LOCK_CLASS = 0x43484d50;
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    /**
+     * Partition width.
+     */
+    public enum Interval {
+        DAY, WEEK, MONTH;
+
+        /**
+         * Parse a configured interval name (day, week or month).
+         */
+        public static Interval of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+
+        Instant floor(Instant instant) {
+            ZonedDateTime day = instant.atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+            return switch (this) {
+                case DAY -> day.toInstant();
+                case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toInstant();
+                case MONTH -> day.withDayOfMonth(1).toInstant();
+            };
+        }
+
+        Instant next(Instant start) {
+            ZonedDateTime zoned = start.atZone(ZoneOffset.UTC);
+            return switch (this) {
+                case DAY -> zoned.plusDays(1).toInstant();
+                case WEEK -> zoned.plusWeeks(1).toInstant();
+                case MONTH -> zoned.plusMonths(1).toInstant();
+            };
+        }
+    }
+
+    /**
+     * An attached partition; a null bound is MINVALUE or MAXVALUE.
+     */
+    record Partition(String name, Instant from, Instant to) {
+
+        boolean overlaps(Instant start, Instant end) {
+            return (from == null || from.isBefore(end)) && (to == null || to.isAfter(start));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String tableName;
+    private final String statsTableName;
+    private final Interval interval;
+    private final Duration retention;
+    private final int premake;
+    private final Duration maintenanceInterval;
+    private final Clock clock;
+
+    private final List<Runnable> dropListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger partitionCount = new AtomicInteger();
+    private final LongAdder droppedPartitions = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * @param jdbcTemplate JDBC template
+     * @param transactionTemplate transaction wrapping each maintenance run
+     * @param tableName chat memory table
+     * @param statsTableName per-conversation statistics table
+     * @param interval partition width
+     * @param retention age after which a partition is dropped, or zero to keep everything
+     * @param premake number of future partitions to create ahead of time
+     * @param maintenanceInterval delay between maintenance runs
+     * @param clock clock deciding the current partition
+     */
+    public ChatMemoryPartitionManager(JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      String tableName,
+                                      String statsTableName,
+                                      Interval interval,
+                                      Duration retention,
+                                      int premake,
+                                      Duration maintenanceInterval,
+                                      Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tableName = tableName;
+        this.statsTableName = statsTableName;
+        this.interval = interval;
+        this.retention = retention;
+        this.premake = Math.max(1, premake);
+        this.maintenanceInterval = maintenanceInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Create the partitioned table, converting an existing unpartitioned table.
+     */
+    public void initializeTable() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, tableName);
+            if (!Boolean.TRUE.equals(exists)) {
+                createPartitionedTable();
+            } else if (!isPartitioned()) {
+                convertLegacyTable();
+            }
+        });
+    }
+
+    /**
+     * Register a callback run after partitions were dropped, e.g. to invalidate caches.
+     */
+    public void addDropListener(Runnable listener) {
+        dropListeners.add(listener);
+    }
+
+    /**
+     * Create upcoming partitions and drop expired ones.
+     *
+     * @return names of the dropped partitions; empty if another node holds the maintenance lock
+     */
+    public List<String> maintain() {
+        List<String> dropped = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, hashtext(?))",
+                    Boolean.class, MAINTENANCE_LOCK_CLASS, tableName);
+            if (!Boolean.TRUE.equals(locked)) {
+                log.debug("Partition maintenance of {} is running on another node", tableName);
+                return List.<String>of();
+            }
+            Instant now = clock.instant();
+            List<Partition> partitions = listPartitions();
+            createUpcomingPartitions(partitions, now);
+            return dropExpiredPartitions(partitions, now);
+        });
+        partitionCount.set(listPartitions().size());
+        if (dropped != null && !dropped.isEmpty()) {
+            droppedPartitions.add(dropped.size());
+            log.info("Dropped expired chat memory partitions {}", dropped);
+            dropListeners.forEach(Runnable::run);
+        }
+        return dropped != null ? dropped : List.of();
+    }
+
+    /**
+     * Partitions currently attached to the table, in no particular order.
+     */
+    List<Partition> listPartitions() {
+        return jdbcTemplate.query("SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound"
+                        + " FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                        + " WHERE i.inhparent = to_regclass(?)",
+                (rs, rowNum) -> parsePartition(rs.getString("name"), rs.getString("bound")), tableName)
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void createUpcomingPartitions(List<Partition> partitions, Instant now) {
+        Instant start = interval.floor(now);
+        for (int i = 0; i <= premake; i++) {
+            Instant end = interval.next(start);
+            Instant periodStart = start;
+            if (partitions.stream().noneMatch(partition -> partition.overlaps(periodStart, end))) {
+                String name = tableName + "_p" + SUFFIX.format(start);
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + tableName
+                        + " FOR VALUES FROM (" + literal(start) + ") TO (" + literal(end) + ")");
+                log.info("Created chat memory partition {}", name);
+            }
+            start = end;
+        }
+    }
+
+    private List<String> dropExpiredPartitions(List<Partition> partitions, Instant now) {
+        List<String> dropped = new ArrayList<>();
+        if (retention == null || retention.isZero() || retention.isNegative()) {
+            return dropped;
+        }
+        Instant cutoff = now.minus(retention);
+        for (Partition partition : partitions) {
+            if (partition.to() != null && !partition.to().isAfter(cutoff)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.name());
+                refreshStatsBefore(partition.to());
+                dropped.add(partition.name());
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Fix statistics of conversations whose window started before a dropped partition's upper bound.
+     */
+    private void refreshStatsBefore(Instant bound) {
+        Timestamp boundTimestamp = Timestamp.from(bound);
+        jdbcTemplate.update("DELETE FROM " + statsTableName + " s"
+                + " WHERE (s.window_start IS NULL OR s.window_start < ?)"
+                + " AND NOT EXISTS (SELECT 1 FROM " + tableName + " t WHERE t.conversation_id = s.conversation_id)",
+                boundTimestamp);
+        jdbcTemplate.update("UPDATE " + statsTableName + " s SET message_count = a.message_count,"
+                + " total_chars = a.total_chars, estimated_tokens = a.total_chars / 4, window_start = a.window_start"
+                + " FROM (SELECT t.conversation_id, COUNT(*) AS message_count, SUM(length(t.content)) AS total_chars,"
+                + " MIN(t.\"timestamp\") AS window_start FROM " + tableName + " t"
+                + " WHERE t.conversation_id IN (SELECT conversation_id FROM " + statsTableName
+                + " WHERE window_start IS NULL OR window_start < ?)"
+                + " GROUP BY t.conversation_id) a"
+                + " WHERE s.conversation_id = a.conversation_id",
+                boundTimestamp);
+    }
+
+    private boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))",
+                Boolean.class, tableName));
+    }
+
+    private void createPartitionedTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                + "conversation_id VARCHAR(255) NOT NULL, "
+                + "seq BIGINT NOT NULL, "
+                + "type VARCHAR(10) NOT NULL, "
+                + "content TEXT NOT NULL, "
+                + "\"timestamp\" TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                + "PRIMARY KEY (conversation_id, seq, \"timestamp\")) "
+                + "PARTITION BY RANGE (\"timestamp\")");
+    }
+
+    /**
+     * Rename the unpartitioned table and attach it as the partition before the next boundary.
+     * Attaching scans the old table once and builds the partitioned primary key index on it.
+     */
+    private void convertLegacyTable() {
+        String legacyName = tableName + "_legacy";
+        Instant bound = interval.next(interval.floor(clock.instant()));
+        log.info("Converting {} to a partitioned table; existing rows become partition {}", tableName, legacyName);
+
+        jdbcTemplate.execute("ALTER TABLE " + tableName + " RENAME TO " + legacyName);
+        List<String> primaryKeys = jdbcTemplate.queryForList("SELECT conname FROM pg_constraint"
+                + " WHERE conrelid = to_regclass(?) AND contype = 'p'", String.class, legacyName);
+        for (String primaryKey : primaryKeys) {
+            jdbcTemplate.execute("ALTER TABLE " + legacyName + " RENAME CONSTRAINT " + primaryKey
+                    + " TO " + legacyName + "_pkey");
+        }
+        createPartitionedTable();
+        jdbcTemplate.execute("ALTER TABLE " + tableName + " ATTACH PARTITION " + legacyName
+                + " FOR VALUES FROM (MINVALUE) TO (" + literal(bound) + ")");
+    }
+
+    /**
+     * Timestamp literal in the same local wall-clock form the JDBC driver uses for bound parameters.
+     */
+    private static String literal(Instant instant) {
+        return "'" + Timestamp.from(instant) + "'";
+    }
+
+    static Partition parsePartition(String name, String bound) {
+        if (bound == null) {
+            return null;
+        }
+        Matcher matcher = RANGE_BOUND.matcher(bound);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new Partition(name, parseBound(matcher.group(1)), parseBound(matcher.group(2)));
+    }
+
+    private static Instant parseBound(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("MINVALUE") || trimmed.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        return Timestamp.valueOf(trimmed.replace("'", "")).toInstant();
+    }
+
+    private void runMaintenance() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            log.warn("Chat memory partition maintenance failed, will retry", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1_000, maintenanceInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::runMaintenance, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.memory.jdbc.partitions", partitionCount, AtomicInteger::get)
+                .description("Chat memory table partitions")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.jdbc.partitions.dropped", droppedPartitions, LongAdder::sum)
+                .description("Expired chat memory partitions dropped by retention")
+                .register(registry);
+    }
+}
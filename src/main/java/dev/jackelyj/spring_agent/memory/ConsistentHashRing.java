@@ -0,0 +1,100 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consistent hash ring mapping keys to named nodes.
+ *
+ * Every node is placed on a 64-bit ring at a number of virtual points derived
+ * from its name; a key belongs to the node owning the first point at or after
+ * the key's hash. Adding or removing a node therefore only moves the keys of
+ * the ring segments it gains or loses (about 1/N of them), and the mapping
+ * depends only on the node names, not on their order.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param nodes distinct node names
+     * @param virtualNodes points per node; more points spread keys more evenly
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        Set<String> distinct = new LinkedHashSet<>(nodes);
+        if (distinct.isEmpty() || distinct.size() != nodes.size()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node and distinct node names: " + nodes);
+        }
+        int perNode = Math.max(1, virtualNodes);
+        this.nodes = List.copyOf(distinct);
+        long[] hashes = new long[distinct.size() * perNode];
+        String[] names = new String[hashes.length];
+        int i = 0;
+        for (String node : distinct) {
+            for (int v = 0; v < perNode; v++) {
+                hashes[i] = hash(node + "#" + v);
+                names[i++] = node;
+            }
+        }
+        Integer[] order = new Integer[hashes.length];
+        Arrays.setAll(order, index -> index);
+        // Ties between nodes are broken by name so the ring does not depend on configuration order
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b]
+                ? Long.compareUnsigned(hashes[a], hashes[b]) : names[a].compareTo(names[b]));
+        this.points = new long[hashes.length];
+        this.owners = new String[hashes.length];
+        for (int p = 0; p < order.length; p++) {
+            points[p] = hashes[order[p]];
+            owners[p] = names[order[p]];
+        }
+    }
+
+    /**
+     * The node owning a key.
+     */
+    public String nodeFor(String key) {
+        long hash = hash(key);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Node names, in configuration order.
+     */
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer
+     * so that similar keys (conv-1, conv-2) land far apart on the ring.
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
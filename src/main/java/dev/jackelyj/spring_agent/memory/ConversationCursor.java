@@ -0,0 +1,59 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a conversation listing: the sort key of the last returned conversation.
+ * 
+ * Encoded as an opaque URL-safe string so clients pass it back unchanged.
+ *
+ * @param conversationId conversation ID of the last returned conversation
+ * @param lastActivity its last activity (only used for {@link ConversationSort#LAST_ACTIVITY})
+ */
+public record ConversationCursor(String conversationId, Instant lastActivity) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Cursor positioned after the given conversation.
+     */
+    public static ConversationCursor after(ConversationStats stats) {
+        return new ConversationCursor(stats.conversationId(), stats.lastActivity());
+    }
+
+    /**
+     * Encode as an opaque token.
+     */
+    public String encode() {
+        String raw = (lastActivity != null ? lastActivity.toString() : "") + SEPARATOR + conversationId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}.
+     *
+     * @param token the token, may be null or blank
+     * @return the cursor, or null for a null/blank token
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static ConversationCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String activity = raw.substring(0, separator);
+            return new ConversationCursor(raw.substring(separator + 1),
+                    activity.isEmpty() ? null : Instant.parse(activity));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
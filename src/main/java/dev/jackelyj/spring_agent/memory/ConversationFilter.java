@@ -0,0 +1,59 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Selection of conversations for a bulk export.
+ * 
+ * All given criteria must match; with none, every conversation is selected.
+ *
+ * @param conversationIds export only these conversations, or null; kept sorted, the export order
+ * @param idPrefix export only conversations whose ID starts with this prefix (e.g. a tenant), or null
+ */
+public record ConversationFilter(Set<String> conversationIds, String idPrefix) {
+
+    public ConversationFilter {
+        if (conversationIds != null) {
+            conversationIds = conversationIds.isEmpty() ? null : new TreeSet<>(conversationIds);
+        }
+        if (idPrefix != null && idPrefix.isEmpty()) {
+            idPrefix = null;
+        }
+    }
+
+    /**
+     * Filter selecting every conversation.
+     */
+    public static ConversationFilter all() {
+        return new ConversationFilter(null, null);
+    }
+
+    /**
+     * Filter from optional request parameters.
+     *
+     * @param conversationIds conversation IDs, null or empty for all
+     * @param idPrefix ID prefix, null or empty for any
+     */
+    public static ConversationFilter of(Collection<String> conversationIds, String idPrefix) {
+        return new ConversationFilter(conversationIds != null ? new TreeSet<>(conversationIds) : null, idPrefix);
+    }
+
+    /**
+     * Whether a conversation matches every criterion.
+     */
+    public boolean matches(String conversationId) {
+        if (idPrefix != null && !conversationId.startsWith(idPrefix)) {
+            return false;
+        }
+        return conversationIds == null || conversationIds.contains(conversationId);
+    }
+
+    /**
+     * The ID prefix as a SQL LIKE pattern, with LIKE wildcards in the prefix escaped.
+     */
+    public String idLikePattern() {
+        return idPrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
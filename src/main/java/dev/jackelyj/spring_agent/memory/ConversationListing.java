@@ -0,0 +1,22 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.util.List;
+
+/**
+ * A chat memory store that can list conversations in pages using keyset pagination.
+ * 
+ * Each page costs an index range scan of {@code limit} entries, regardless of
+ * how many conversations exist or how deep into the listing the cursor is.
+ */
+public interface ConversationListing {
+
+    /**
+     * List one page of conversations.
+     *
+     * @param sort listing order
+     * @param after cursor of the last conversation of the previous page, or null for the first page
+     * @param limit maximum number of conversations to return
+     * @return conversations in listing order
+     */
+    List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit);
+}
@@ -0,0 +1,46 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * ChatMemory that runs every update of a conversation under its cross-node lock.
+ *
+ * MessageWindowChatMemory updates a conversation by reading its window,
+ * appending and saving the whole window back. Two nodes doing that for the
+ * same conversation at once both read the old window, and the later save
+ * drops the other node's messages. Holding the conversation's lock around
+ * each add and clear makes the read-modify-write run on one node at a time;
+ * other conversations proceed in parallel. Reads are not locked.
+ */
+public class ConversationLockingChatMemory implements ChatMemory {
+
+    private final ChatMemory delegate;
+    private final PostgresConversationLock lock;
+
+    /**
+     * @param delegate chat memory whose repository writes through the lock's data source
+     * @param lock per-conversation lock
+     */
+    public ConversationLockingChatMemory(ChatMemory delegate, PostgresConversationLock lock) {
+        this.delegate = delegate;
+        this.lock = lock;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        lock.run(conversationId, () -> delegate.add(conversationId, messages));
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return delegate.get(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        lock.run(conversationId, () -> delegate.clear(conversationId));
+    }
+}
@@ -0,0 +1,85 @@
+package dev.jackelyj.spring_agent.memory;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One message of a conversation, as exported and imported in bulk (one NDJSON line).
+ *
+ * Carries the message type and text, plus the tool calls of an assistant
+ * message and the responses of a tool message, so windows of stores that
+ * keep them can be replayed to the model after import. The JDBC stores keep
+ * neither; their tool messages are not exported (see {@link #isReplayable}).
+ * Media are not part of the export.
+ *
+ * @param conversationId conversation the message belongs to
+ * @param type message type
+ * @param content message text
+ * @param toolCalls tool calls of an ASSISTANT message, omitted when empty
+ * @param toolResponses responses of a TOOL message, omitted when empty
+ */
+public record ConversationMessage(
+        String conversationId,
+        MessageType type,
+        String content,
+        @JsonInclude(JsonInclude.Include.NON_EMPTY) List<AssistantMessage.ToolCall> toolCalls,
+        @JsonInclude(JsonInclude.Include.NON_EMPTY) List<ToolResponseMessage.ToolResponse> toolResponses) {
+
+    /**
+     * Line for a message stored as type and text only.
+     */
+    public ConversationMessage(String conversationId, MessageType type, String content) {
+        this(conversationId, type, content, null, null);
+    }
+
+    /**
+     * Export line for a message of a conversation.
+     */
+    public static ConversationMessage of(String conversationId, Message message) {
+        String text = message.getText() != null ? message.getText() : "";
+        if (message instanceof AssistantMessage assistant) {
+            return new ConversationMessage(conversationId, MessageType.ASSISTANT, text, assistant.getToolCalls(), null);
+        }
+        if (message instanceof ToolResponseMessage toolResponse) {
+            return new ConversationMessage(conversationId, MessageType.TOOL, text, null, toolResponse.getResponses());
+        }
+        return new ConversationMessage(conversationId, message.getMessageType(), text);
+    }
+
+    /**
+     * Whether the line can be imported as a message: a TOOL message needs the responses it answers with.
+     */
+    @JsonIgnore
+    public boolean isReplayable() {
+        return type != MessageType.TOOL || (toolResponses != null && !toolResponses.isEmpty());
+    }
+
+    /**
+     * The message this line describes.
+     *
+     * @throws IllegalArgumentException for a TOOL line without tool responses
+     */
+    public Message toMessage() {
+        String text = content != null ? content : "";
+        return switch (type) {
+            case USER -> new UserMessage(text);
+            case ASSISTANT -> new AssistantMessage(text, Map.of(), toolCalls != null ? toolCalls : List.of());
+            case SYSTEM -> new SystemMessage(text);
+            case TOOL -> {
+                if (!isReplayable()) {
+                    throw new IllegalArgumentException("TOOL message without toolResponses");
+                }
+                yield new ToolResponseMessage(toolResponses);
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.time.Instant;
+
+/**
+ * Predicate selecting conversations for a bulk purge.
+ * 
+ * All given criteria must match; at least one is required, use a
+ * delete-all for an unconditional purge.
+ *
+ * @param idleBefore purge conversations whose last activity is before this instant, or null
+ * @param idPrefix purge conversations whose ID starts with this prefix (e.g. a tenant), or null
+ */
+public record ConversationPurgeCriteria(Instant idleBefore, String idPrefix) {
+
+    public ConversationPurgeCriteria {
+        if (idPrefix != null && idPrefix.isEmpty()) {
+            idPrefix = null;
+        }
+        if (idleBefore == null && idPrefix == null) {
+            throw new IllegalArgumentException("At least one purge criterion is required");
+        }
+    }
+
+    /**
+     * Whether a conversation matches every criterion.
+     */
+    public boolean matches(String conversationId, Instant lastActivity) {
+        if (idPrefix != null && !conversationId.startsWith(idPrefix)) {
+            return false;
+        }
+        return idleBefore == null || (lastActivity != null && lastActivity.isBefore(idleBefore));
+    }
+
+    /**
+     * The ID prefix as a SQL LIKE pattern, with LIKE wildcards in the prefix escaped.
+     */
+    public String idLikePattern() {
+        return idPrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
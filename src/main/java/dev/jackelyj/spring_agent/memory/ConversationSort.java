@@ -0,0 +1,17 @@
+package dev.jackelyj.spring_agent.memory;
+
+/**
+ * Order of a conversation listing.
+ */
+public enum ConversationSort {
+
+    /**
+     * Ascending conversation ID.
+     */
+    ID,
+
+    /**
+     * Most recently active first; ties broken by descending conversation ID.
+     */
+    LAST_ACTIVITY
+}
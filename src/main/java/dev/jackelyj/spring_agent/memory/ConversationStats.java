@@ -0,0 +1,60 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Per-conversation statistics maintained by the chat memory stores on write.
+ *
+ * @param conversationId conversation ID
+ * @param messageCount messages currently in the conversation window
+ * @param totalChars characters across the window's message texts
+ * @param estimatedTokens approximate token count of the window
+ * @param firstActivity time of the first write to the conversation, if known
+ * @param lastActivity time of the latest write to the conversation, if known
+ */
+public record ConversationStats(
+    String conversationId,
+    int messageCount,
+    long totalChars,
+    long estimatedTokens,
+    Instant firstActivity,
+    Instant lastActivity
+) {
+
+    /**
+     * Compute statistics for a window.
+     */
+    public static ConversationStats of(String conversationId, List<Message> messages,
+                                       Instant firstActivity, Instant lastActivity) {
+        long chars = 0;
+        long tokens = 0;
+        for (Message message : messages) {
+            String text = message.getText();
+            if (text != null) {
+                chars += text.length();
+                tokens += estimateTokens(text);
+            }
+        }
+        return new ConversationStats(conversationId, messages.size(), chars, tokens, firstActivity, lastActivity);
+    }
+
+    /**
+     * Cheap token estimate without a tokenizer: about four characters per token
+     * for alphabetic scripts and one token per CJK character.
+     */
+    public static long estimateTokens(String text) {
+        long cjk = 0;
+        long other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= '\u2E80') {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.jackelyj.spring_agent.memory;
+
+import java.util.Optional;
+
+/**
+ * A chat memory store that maintains {@link ConversationStats} incrementally,
+ * so they can be read with a single lookup instead of loading the window.
+ */
+public interface ConversationStatsProvider {
+
+    /**
+     * Statistics of a conversation.
+     *
+     * @param conversationId the conversation ID
+     * @return statistics, or empty if the conversation does not exist
+     */
+    Optional<ConversationStats> findStats(String conversationId);
+}
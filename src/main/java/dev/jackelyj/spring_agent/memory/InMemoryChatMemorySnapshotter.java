@@ -0,0 +1,326 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Periodic snapshots of the bounded in-memory chat memory, restored on startup.
+ *
+ * Snapshots iterate the store without locking ({@link BoundedInMemoryChatMemoryRepository#forEachWindow}):
+ * windows are immutable and replaced on write, so request threads never wait for
+ * a snapshot, and each conversation is captured as of some point during the run.
+ * The file is written next to the target and atomically renamed over it, so a
+ * crash mid-snapshot leaves the previous snapshot intact.
+ *
+ * File layout (big-endian, {@link DataOutputStream} encoding):
+ * <pre>
+ * int    magic, int version, long createdAt (epoch millis)
+ * per window:
+ *   byte   1
+ *   UTF    conversation ID
+ *   long   firstActivity, lastActivity (epoch millis)
+ *   int    messageCount
+ *   long   totalChars, estimatedTokens
+ *   int    length, bytes: window encoded with {@link MessageCodec}
+ * byte   0, long windowCount (end marker)
+ * </pre>
+ * Compact stores write their encoded windows as they are; object stores encode on the fly.
+ * Windows the codec cannot encode (media attachments, unsupported metadata) are skipped.
+ *
+ * Restore streams the file back in record by record. A conversation already
+ * written since startup is not overwritten, and a truncated file restores the
+ * windows before the damage.
+ */
+public class InMemoryChatMemorySnapshotter implements SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryChatMemorySnapshotter.class);
+
+    private static final int MAGIC = 0x434D534E;
+    private static final int VERSION = 1;
+    private static final byte RECORD_WINDOW = 1;
+    private static final byte RECORD_END = 0;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final BoundedInMemoryChatMemoryRepository store;
+    private final Path path;
+    private final Duration interval;
+    private final MessageCodec codec;
+    private final Clock clock;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    private final AtomicLong lastSnapshotBytes = new AtomicLong();
+    private final AtomicLong lastSnapshotWindows = new AtomicLong();
+    private Timer snapshotTimer;
+    private Timer restoreTimer;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * @param store the store to snapshot and restore
+     * @param path snapshot file
+     * @param interval time between snapshots, or zero/negative to only snapshot on shutdown
+     * @param codec codec for windows held as objects
+     * @param clock clock for the snapshot timestamp
+     */
+    public InMemoryChatMemorySnapshotter(BoundedInMemoryChatMemoryRepository store, Path path, Duration interval,
+                                         MessageCodec codec, Clock clock) {
+        this.store = store;
+        this.path = path;
+        this.interval = interval;
+        this.codec = codec;
+        this.clock = clock;
+    }
+
+    /**
+     * Write a snapshot of the store.
+     *
+     * @return number of windows written
+     */
+    public long snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long start = System.nanoTime();
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            long[] counts = new long[2];
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(clock.millis());
+                store.forEachWindow(window -> {
+                    try {
+                        if (writeWindow(out, window)) {
+                            counts[0]++;
+                        } else {
+                            counts[1]++;
+                        }
+                    } catch (IOException e) {
+                        throw new SnapshotWriteException(e);
+                    }
+                });
+                out.writeByte(RECORD_END);
+                out.writeLong(counts[0]);
+                out.flush();
+                file.getChannel().force(true);
+            } catch (SnapshotWriteException e) {
+                Files.deleteIfExists(temp);
+                throw e.getCause();
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            long elapsedNanos = System.nanoTime() - start;
+            if (snapshotTimer != null) {
+                snapshotTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+            lastSnapshotBytes.set(Files.size(path));
+            lastSnapshotWindows.set(counts[0]);
+            if (counts[1] > 0) {
+                log.warn("Skipped {} conversations the codec cannot encode in the chat memory snapshot", counts[1]);
+            }
+            log.debug("Wrote chat memory snapshot of {} conversations to {} in {} ms",
+                    counts[0], path, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            return counts[0];
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private boolean writeWindow(DataOutputStream out, BoundedInMemoryChatMemoryRepository.WindowSnapshot window)
+            throws IOException {
+        byte[] encoded = window.encoded();
+        if (encoded == null) {
+            if (!codec.canEncode(window.messages())) {
+                return false;
+            }
+            encoded = codec.encode(window.messages());
+        }
+        out.writeByte(RECORD_WINDOW);
+        out.writeUTF(window.conversationId());
+        out.writeLong(window.firstActivityMillis());
+        out.writeLong(window.lastActivityMillis());
+        out.writeInt(window.size());
+        out.writeLong(window.totalChars());
+        out.writeLong(window.estimatedTokens());
+        out.writeInt(encoded.length);
+        out.write(encoded);
+        return true;
+    }
+
+    /**
+     * Restore the store from the snapshot file, if there is one.
+     *
+     * @return number of windows restored
+     */
+    public long restore() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long restored = 0;
+        long read = 0;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a chat memory snapshot: " + path);
+            }
+            in.readLong();
+            while (true) {
+                byte type = in.readByte();
+                if (type == RECORD_END) {
+                    long written = in.readLong();
+                    if (written != read) {
+                        log.warn("Chat memory snapshot {} lists {} conversations but contains {}", path, written, read);
+                    }
+                    break;
+                }
+                if (type != RECORD_WINDOW) {
+                    throw new IOException("Corrupt chat memory snapshot " + path + " after " + read + " conversations");
+                }
+                String conversationId = in.readUTF();
+                long firstActivity = in.readLong();
+                long lastActivity = in.readLong();
+                int size = in.readInt();
+                long totalChars = in.readLong();
+                long estimatedTokens = in.readLong();
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                read++;
+                if (store.restoreWindow(new BoundedInMemoryChatMemoryRepository.WindowSnapshot(conversationId, null,
+                        encoded, size, totalChars, estimatedTokens, firstActivity, lastActivity))) {
+                    restored++;
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Chat memory snapshot {} is truncated, restored the first {} conversations", path, read);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        if (restoreTimer != null) {
+            restoreTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        log.info("Restored {} conversations from chat memory snapshot {} in {} ms",
+                restored, path, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return restored;
+    }
+
+    private void runSnapshot() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.warn("Chat memory snapshot failed, will retry", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        try {
+            restore();
+        } catch (Exception e) {
+            log.warn("Could not restore chat memory snapshot {}, starting empty", path, e);
+        }
+        if (interval != null && !interval.isZero() && !interval.isNegative()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-memory-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = Math.max(1_000, interval.toMillis());
+            scheduler.scheduleWithFixedDelay(this::runSnapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    /**
+     * Take a final snapshot so a restart resumes from the state at shutdown.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        runSnapshot();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before the web server, so conversations are restored before the first
+     * request, and stop after it, so the final snapshot includes every request.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        snapshotTimer = Timer.builder("chat.memory.snapshot")
+                .description("Time to write a chat memory snapshot")
+                .tag("operation", "write")
+                .register(registry);
+        restoreTimer = Timer.builder("chat.memory.snapshot")
+                .description("Time to restore the chat memory snapshot")
+                .tag("operation", "restore")
+                .register(registry);
+        Gauge.builder("chat.memory.snapshot.bytes", lastSnapshotBytes, AtomicLong::get)
+                .description("Size of the latest chat memory snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("chat.memory.snapshot.conversations", lastSnapshotWindows, AtomicLong::get)
+                .description("Conversations in the latest chat memory snapshot")
+                .register(registry);
+    }
+
+    /**
+     * Carries an I/O failure out of the window visitor.
+     */
+    private static final class SnapshotWriteException extends RuntimeException {
+
+        SnapshotWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary codec for a conversation window.
+ * 
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ * byte    version
+ * byte    flags (bit 0: body is deflated)
+ * [varint rawLength]                      only when deflated
+ * body:
+ *   varint dictionarySize, dictionarySize x string
+ *   varint messageCount
+ *   per message:
+ *     byte   type (USER, ASSISTANT, SYSTEM, TOOL)
+ *     string text (length + 1, 0 means null)
+ *     varint metadataCount, per entry: varint keyRef, value
+ *       value: byte tag, then nothing (null, true, false), a zigzag varint (int, long),
+ *       raw bits (float, double), a string or string reference, or a count and entries (map, list)
+ *     ASSISTANT: varint toolCallCount, per call: string id, varint typeRef, varint nameRef, string arguments
+ *     TOOL:      varint responseCount, per response: string id, varint nameRef, string responseData
+ * </pre>
+ * Keys, tool names and short metadata values are written as references into
+ * a dictionary: references below {@link #WELL_KNOWN} point into the static
+ * dictionary shared by every payload, the rest into the payload's own
+ * dictionary. Each payload is self-contained, so it can be stored anywhere
+ * (heap arrays, files, database rows) and decoded without external state.
+ * 
+ * Metadata values keep their types: null, String, Boolean, Integer, Long,
+ * Float, Double, and Maps (String keys) and Lists of those. Messages with
+ * media attachments, other metadata types or tool calls without a type or
+ * name are not supported; check {@link #canEncode} first, and keep such
+ * windows as objects. Version 1 payloads (without Float, Map and List
+ * values) are still decoded.
+ */
+public class MessageCodec {
+
+    static final byte VERSION = 2;
+
+    private static final int FLAG_DEFLATED = 1;
+
+    /**
+     * Strings that appear in almost every payload and are never written out.
+     */
+    static final List<String> WELL_KNOWN = List.of(
+            "", "function", "id", "role", "index", "finishReason", "model", "conversationId",
+            "STOP", "TOOL_CALLS", "LENGTH", "toolName", "timestamp", "source");
+
+    private static final Map<String, Integer> WELL_KNOWN_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < WELL_KNOWN.size(); i++) {
+            WELL_KNOWN_INDEX.put(WELL_KNOWN.get(i), i);
+        }
+    }
+
+    private static final int MAX_DICTIONARY_VALUE_LENGTH = 64;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING_REF = 1;
+    private static final byte VALUE_STRING = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_INT = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_TRUE = 6;
+    private static final byte VALUE_FALSE = 7;
+    private static final byte VALUE_FLOAT = 8;
+    private static final byte VALUE_MAP = 9;
+    private static final byte VALUE_LIST = 10;
+
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold body size in bytes from which the body is deflated, or zero/negative to never compress
+     */
+    public MessageCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Whether every message in the window can be encoded and decodes to an equal message.
+     */
+    public boolean canEncode(List<Message> messages) {
+        for (Message message : messages) {
+            if (message instanceof UserMessage user && !user.getMedia().isEmpty()) {
+                return false;
+            }
+            if (message instanceof AssistantMessage assistant && !assistant.getMedia().isEmpty()) {
+                return false;
+            }
+            if (!(message instanceof UserMessage || message instanceof AssistantMessage
+                    || message instanceof SystemMessage || message instanceof ToolResponseMessage)) {
+                return false;
+            }
+            // Names are dictionary references, which have no null
+            if (message instanceof AssistantMessage assistant && assistant.getToolCalls().stream()
+                    .anyMatch(call -> call.type() == null || call.name() == null)) {
+                return false;
+            }
+            if (message instanceof ToolResponseMessage toolResponse && toolResponse.getResponses().stream()
+                    .anyMatch(response -> response.name() == null)) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : message.getMetadata().entrySet()) {
+                if (!AbstractMessage.MESSAGE_TYPE.equals(entry.getKey()) && !isEncodable(entry.getValue())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEncodable(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Float || value instanceof Double) {
+            return true;
+        }
+        if (value instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String) || !isEncodable(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof List<?> list) {
+            for (Object element : list) {
+                if (!isEncodable(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Encode a conversation window.
+     *
+     * @throws IllegalArgumentException if a message cannot be encoded
+     */
+    public byte[] encode(List<Message> messages) {
+        Dictionary dictionary = new Dictionary();
+        Writer body = new Writer(64 * messages.size() + 16);
+        body.varint(messages.size());
+        for (Message message : messages) {
+            writeMessage(body, dictionary, message);
+        }
+
+        Writer payload = new Writer(body.size() + dictionary.estimatedSize() + 8);
+        payload.varint(dictionary.entries.size());
+        for (String entry : dictionary.entries) {
+            payload.string(entry);
+        }
+        payload.bytes(body.buffer(), 0, body.size());
+
+        if (compressionThreshold > 0 && payload.size() >= compressionThreshold) {
+            byte[] deflated = deflate(payload.buffer(), payload.size());
+            if (deflated.length + 5 < payload.size()) {
+                Writer out = new Writer(deflated.length + 8);
+                out.raw(VERSION);
+                out.raw(FLAG_DEFLATED);
+                out.varint(payload.size());
+                out.bytes(deflated, 0, deflated.length);
+                return out.toByteArray();
+            }
+        }
+
+        Writer out = new Writer(payload.size() + 2);
+        out.raw(VERSION);
+        out.raw(0);
+        out.bytes(payload.buffer(), 0, payload.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * Number of messages in an encoded window, reading only the header when the body is not compressed.
+     */
+    public int messageCount(byte[] encoded) {
+        Reader reader = bodyReader(encoded);
+        int dictionarySize = reader.varint();
+        for (int i = 0; i < dictionarySize; i++) {
+            reader.skipString();
+        }
+        return reader.varint();
+    }
+
+    /**
+     * Decode a conversation window.
+     *
+     * @return unmodifiable list of the decoded messages
+     */
+    public List<Message> decode(byte[] encoded) {
+        Reader reader = bodyReader(encoded);
+        int dictionarySize = reader.varint();
+        String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = reader.string();
+        }
+
+        int count = reader.varint();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readMessage(reader, dictionary));
+        }
+        return Collections.unmodifiableList(messages);
+    }
+
+    private Reader bodyReader(byte[] encoded) {
+        if (encoded.length < 2 || encoded[0] < 1 || encoded[0] > VERSION) {
+            throw new IllegalArgumentException("Unsupported message payload version");
+        }
+        if ((encoded[1] & FLAG_DEFLATED) == 0) {
+            return new Reader(encoded, 2);
+        }
+        Reader header = new Reader(encoded, 2);
+        int rawLength = header.varint();
+        return new Reader(inflate(encoded, header.position, rawLength), 0);
+    }
+
+    private void writeMessage(Writer out, Dictionary dictionary, Message message) {
+        MessageType type = message.getMessageType();
+        out.raw(type.ordinal());
+        out.nullableString(message.getText());
+
+        Map<String, Object> metadata = message.getMetadata();
+        int metadataCount = 0;
+        for (String key : metadata.keySet()) {
+            if (!AbstractMessage.MESSAGE_TYPE.equals(key)) {
+                metadataCount++;
+            }
+        }
+        out.varint(metadataCount);
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            if (AbstractMessage.MESSAGE_TYPE.equals(entry.getKey())) {
+                continue;
+            }
+            out.varint(dictionary.ref(entry.getKey()));
+            writeValue(out, dictionary, entry.getValue());
+        }
+
+        if (message instanceof AssistantMessage assistant) {
+            List<AssistantMessage.ToolCall> toolCalls = assistant.getToolCalls();
+            out.varint(toolCalls.size());
+            for (AssistantMessage.ToolCall call : toolCalls) {
+                out.nullableString(call.id());
+                out.varint(dictionary.ref(call.type()));
+                out.varint(dictionary.ref(call.name()));
+                out.nullableString(call.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage toolResponse) {
+            List<ToolResponseMessage.ToolResponse> responses = toolResponse.getResponses();
+            out.varint(responses.size());
+            for (ToolResponseMessage.ToolResponse response : responses) {
+                out.nullableString(response.id());
+                out.varint(dictionary.ref(response.name()));
+                out.nullableString(response.responseData());
+            }
+        } else if (!(message instanceof UserMessage || message instanceof SystemMessage)) {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass().getName());
+        }
+    }
+
+    private Message readMessage(Reader in, String[] dictionary) {
+        MessageType type = MessageType.values()[in.raw()];
+        String text = in.nullableString();
+
+        int metadataCount = in.varint();
+        Map<String, Object> metadata = new LinkedHashMap<>(Math.max(4, metadataCount * 2));
+        for (int i = 0; i < metadataCount; i++) {
+            String key = lookup(dictionary, in.varint());
+            metadata.put(key, readValue(in, dictionary));
+        }
+
+        return switch (type) {
+            case USER -> UserMessage.builder().text(text).metadata(metadata).build();
+            case SYSTEM -> SystemMessage.builder().text(text).metadata(metadata).build();
+            case ASSISTANT -> {
+                int callCount = in.varint();
+                List<AssistantMessage.ToolCall> calls = new ArrayList<>(callCount);
+                for (int i = 0; i < callCount; i++) {
+                    String id = in.nullableString();
+                    String callType = lookup(dictionary, in.varint());
+                    String name = lookup(dictionary, in.varint());
+                    calls.add(new AssistantMessage.ToolCall(id, callType, name, in.nullableString()));
+                }
+                yield new AssistantMessage(text, metadata, calls);
+            }
+            case TOOL -> {
+                int responseCount = in.varint();
+                List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(responseCount);
+                for (int i = 0; i < responseCount; i++) {
+                    String id = in.nullableString();
+                    String name = lookup(dictionary, in.varint());
+                    responses.add(new ToolResponseMessage.ToolResponse(id, name, in.nullableString()));
+                }
+                yield new ToolResponseMessage(responses, metadata);
+            }
+        };
+    }
+
+    private static void writeValue(Writer out, Dictionary dictionary, Object value) {
+        if (value == null) {
+            out.raw(VALUE_NULL);
+        } else if (value instanceof Boolean b) {
+            out.raw(b ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Integer i) {
+            out.raw(VALUE_INT);
+            out.varint(zigZag(i));
+        } else if (value instanceof Long l) {
+            out.raw(VALUE_LONG);
+            out.varlong(zigZag(l));
+        } else if (value instanceof Double d) {
+            out.raw(VALUE_DOUBLE);
+            out.varlong(Double.doubleToRawLongBits(d));
+        } else if (value instanceof Float f) {
+            out.raw(VALUE_FLOAT);
+            out.varint(Float.floatToRawIntBits(f));
+        } else if (value instanceof String text) {
+            if (text.length() <= MAX_DICTIONARY_VALUE_LENGTH) {
+                out.raw(VALUE_STRING_REF);
+                out.varint(dictionary.ref(text));
+            } else {
+                out.raw(VALUE_STRING);
+                out.nullableString(text);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.raw(VALUE_MAP);
+            out.varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.varint(dictionary.ref((String) entry.getKey()));
+                writeValue(out, dictionary, entry.getValue());
+            }
+        } else if (value instanceof List<?> list) {
+            out.raw(VALUE_LIST);
+            out.varint(list.size());
+            for (Object element : list) {
+                writeValue(out, dictionary, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported metadata value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(Reader in, String[] dictionary) {
+        byte tag = in.raw();
+        return switch (tag) {
+            case VALUE_NULL -> null;
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_INT -> unZigZag(in.varint());
+            case VALUE_LONG -> unZigZag(in.varlong());
+            case VALUE_DOUBLE -> Double.longBitsToDouble(in.varlong());
+            case VALUE_STRING_REF -> lookup(dictionary, in.varint());
+            case VALUE_STRING -> in.nullableString();
+            case VALUE_FLOAT -> Float.intBitsToFloat(in.varint());
+            case VALUE_MAP -> {
+                int size = in.varint();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+                for (int i = 0; i < size; i++) {
+                    String key = lookup(dictionary, in.varint());
+                    map.put(key, readValue(in, dictionary));
+                }
+                yield map;
+            }
+            case VALUE_LIST -> {
+                int size = in.varint();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, dictionary));
+                }
+                yield list;
+            }
+            default -> throw new IllegalArgumentException("Unknown metadata value tag: " + tag);
+        };
+    }
+
+    private static String lookup(String[] dictionary, int ref) {
+        return ref < WELL_KNOWN.size() ? WELL_KNOWN.get(ref) : dictionary[ref - WELL_KNOWN.size()];
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] chunk = new byte[Math.min(8192, Math.max(64, length))];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, rawLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != rawLength) {
+                throw new IllegalArgumentException("Truncated message payload");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt message payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Per-payload dictionary of strings not in {@link #WELL_KNOWN}.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+
+        int ref(String value) {
+            Integer known = WELL_KNOWN_INDEX.get(value);
+            if (known != null) {
+                return known;
+            }
+            Integer existing = index.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int ref = WELL_KNOWN.size() + entries.size();
+            index.put(value, ref);
+            entries.add(value);
+            return ref;
+        }
+
+        int estimatedSize() {
+            int size = 0;
+            for (String entry : entries) {
+                size += entry.length() * 3 + 5;
+            }
+            return size;
+        }
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int size;
+
+        Writer(int capacity) {
+            this.buffer = new byte[Math.max(16, capacity)];
+        }
+
+        void raw(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void varlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            bytes(utf8, 0, utf8.length);
+        }
+
+        void nullableString(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1);
+            bytes(utf8, 0, utf8.length);
+        }
+
+        void bytes(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, buffer, size, length);
+            size += length;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte raw() {
+            return buffer[position++];
+        }
+
+        int varint() {
+            int result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        long varlong() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        String string() {
+            int length = varint();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        void skipString() {
+            position += varint();
+        }
+
+        String nullableString() {
+            int length = varint();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the read caches of several nodes sharing one PostgreSQL database
+ * coherent with LISTEN/NOTIFY.
+ *
+ * Writes and invalidations made through the local cache are published on a
+ * channel ({@code pg_notify}, after the write committed) with the ID of this
+ * node; a listener thread holding one dedicated connection evicts the
+ * conversations that other nodes changed. Large invalidations are published
+ * as a single evict-all. After (re)connecting, the whole cache is evicted,
+ * since notifications sent while not listening are lost.
+ *
+ * Between a commit on another node and the notification arriving, this node
+ * may still serve the previous window. When two nodes write the same
+ * conversation concurrently, the last window written wins, as without the cache.
+ *
+ * Payload: {@code <nodeId>|<conversationId>}, or {@code <nodeId>|*} for all conversations.
+ */
+public class PostgresChatMemoryInvalidationListener
+        implements VersionedCachingChatMemoryRepository.InvalidationPublisher, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresChatMemoryInvalidationListener.class);
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final String ALL = "*";
+    private static final int MAX_IDS_PER_NOTIFICATION_BATCH = 1000;
+    private static final int POLL_MILLIS = 500;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private final VersionedCachingChatMemoryRepository cache;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Thread listener;
+    private volatile boolean running;
+    private volatile boolean listening;
+
+    /**
+     * @param cache the local read cache
+     * @param dataSource data source of the shared database; one connection is held while running
+     * @param channel notification channel, a lower-case SQL identifier
+     */
+    public PostgresChatMemoryInvalidationListener(VersionedCachingChatMemoryRepository cache, DataSource dataSource,
+                                                  String channel) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel name: " + channel);
+        }
+        this.cache = cache;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.channel = channel;
+    }
+
+    @Override
+    public void conversationsChanged(Collection<String> conversationIds) {
+        if (conversationIds.size() > MAX_IDS_PER_NOTIFICATION_BATCH) {
+            allConversationsChanged();
+            return;
+        }
+        String[] payloads = conversationIds.stream().map(id -> nodeId + "|" + id).toArray(String[]::new);
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "SELECT pg_notify(?, payload) FROM unnest(?) AS payload");
+                ps.setString(1, channel);
+                ps.setArray(2, connection.createArrayOf("text", payloads));
+                return ps;
+            }, rs -> { });
+        } catch (RuntimeException e) {
+            // The write itself succeeded; other nodes catch up on their next reconnect or write
+            log.warn("Could not publish chat memory invalidation for {} conversations", payloads.length, e);
+        }
+    }
+
+    @Override
+    public void allConversationsChanged() {
+        try {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, nodeId + "|" + ALL);
+        } catch (RuntimeException e) {
+            log.warn("Could not publish chat memory invalidation of all conversations", e);
+        }
+    }
+
+    /**
+     * Whether the listener currently holds a connection subscribed to the channel.
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    private void listen() {
+        long reconnectDelay = 1_000;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                cache.evictAll();
+                listening = true;
+                reconnectDelay = 1_000;
+                log.info("Listening for chat memory invalidations on channel {}", channel);
+                while (running) {
+                    PGNotification[] received = notifications.getNotifications(POLL_MILLIS);
+                    if (received != null && received.length > 0) {
+                        apply(received);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                listening = false;
+                if (!running) {
+                    break;
+                }
+                log.warn("Chat memory invalidation listener lost its connection, retrying in {} ms",
+                        reconnectDelay, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                reconnectDelay = Math.min(MAX_RECONNECT_DELAY_MILLIS, reconnectDelay * 2);
+            }
+        }
+        listening = false;
+    }
+
+    private void apply(PGNotification[] received) {
+        List<String> changed = new ArrayList<>(received.length);
+        for (PGNotification notification : received) {
+            String payload = notification.getParameter();
+            int separator = payload.indexOf('|');
+            if (separator < 0 || payload.startsWith(nodeId + "|")) {
+                continue;
+            }
+            String conversationId = payload.substring(separator + 1);
+            if (ALL.equals(conversationId)) {
+                cache.evictAll();
+                return;
+            }
+            changed.add(conversationId);
+        }
+        if (!changed.isEmpty()) {
+            cache.evict(changed);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        cache.setInvalidationPublisher(this);
+        Thread thread = new Thread(this::listen, "chat-memory-invalidation");
+        thread.setDaemon(true);
+        thread.start();
+        listener = thread;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        cache.setInvalidationPublisher(null);
+        Thread thread = listener;
+        if (thread != null) {
+            try {
+                thread.join(POLL_MILLIS * 4L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
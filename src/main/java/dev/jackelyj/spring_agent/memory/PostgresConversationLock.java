@@ -0,0 +1,122 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross-node lock of a single conversation, backed by a PostgreSQL
+ * transaction-scoped advisory lock on the conversation ID's hash.
+ *
+ * {@link #run} opens a transaction, takes {@code pg_try_advisory_xact_lock}
+ * and runs the update inside it; JDBC writes through the same data source
+ * join the transaction, and the lock is released when it commits. Distinct
+ * IDs with the same hash are serialized too, which is harmless.
+ *
+ * The lock is polled with a short backoff rather than waited for in the
+ * database, so a wait is bounded by {@code maxWait} and the caller fails fast
+ * with {@link CannotAcquireLockException} instead of queueing behind a stuck
+ * writer. The polls run inside the update's transaction, since the lock is
+ * transaction-scoped, so a waiting caller holds a pooled connection for up to
+ * {@code maxWait}: size the pool for the updates that may wait at once.
+ */
+public class PostgresConversationLock implements MeterBinder {
+
+    /**
+     * Advisory lock namespace for per-conversation ChatMemory updates.
+     */
+    private static final int UPDATE_LOCK_CLASS = 0x43484d55;
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxWaitNanos;
+    private final VersionedCachingChatMemoryRepository readCache;
+
+    private Timer acquiredTimer;
+    private Timer timedOutTimer;
+
+    /**
+     * @param jdbcTemplate JDBC template taking the lock
+     * @param transactionTemplate transaction holding the lock around each update
+     * @param maxWait maximum time to wait for the lock
+     * @param readCache read cache in front of the chat memory repository, evicted once the lock is held; may be null
+     */
+    public PostgresConversationLock(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                    Duration maxWait, VersionedCachingChatMemoryRepository readCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.readCache = readCache;
+    }
+
+    /**
+     * Run an update of a conversation while holding its lock.
+     *
+     * @throws CannotAcquireLockException if the lock is not acquired within the maximum wait
+     */
+    public void run(String conversationId, Runnable update) {
+        transactionTemplate.executeWithoutResult(status -> {
+            lock(conversationId);
+            update.run();
+        });
+    }
+
+    private void lock(String conversationId) {
+        long start = System.nanoTime();
+        long backoff = MIN_BACKOFF_NANOS;
+        while (true) {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, hashtext(?))",
+                    Boolean.class, UPDATE_LOCK_CLASS, conversationId);
+            long waited = System.nanoTime() - start;
+            if (Boolean.TRUE.equals(locked)) {
+                record(acquiredTimer, waited);
+                break;
+            }
+            if (waited >= maxWaitNanos) {
+                record(timedOutTimer, waited);
+                throw new CannotAcquireLockException("Conversation " + conversationId
+                        + " is being updated elsewhere; gave up after " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms");
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(backoff, maxWaitNanos - waited));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotAcquireLockException("Interrupted waiting for the lock of conversation "
+                        + conversationId, e);
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+        }
+        if (readCache != null) {
+            // Another node may have written just before the lock was taken, ahead of its invalidation
+            readCache.evict(List.of(conversationId));
+        }
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        acquiredTimer = Timer.builder("chat.memory.lock.wait")
+                .description("Time waited for the cross-node lock of a conversation update")
+                .tag("outcome", "acquired")
+                .register(registry);
+        timedOutTimer = Timer.builder("chat.memory.lock.wait")
+                .description("Time waited for the cross-node lock of a conversation update")
+                .tag("outcome", "timeout")
+                .register(registry);
+    }
+}
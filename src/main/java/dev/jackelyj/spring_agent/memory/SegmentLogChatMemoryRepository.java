@@ -0,0 +1,919 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed ChatMemoryRepository built on memory-mapped, append-only segment files.
+ *
+ * Every write appends one record with the whole encoded window ({@link MessageCodec})
+ * and its statistics to the active segment; deletes append a tombstone. An in-memory
+ * index maps each conversation to the location of its latest record, so a read is
+ * one index lookup and one copy out of the mapped segment.
+ *
+ * Record layout (big-endian):
+ * <pre>
+ * int    bodyLength (0 marks the end of the segment's data)
+ * int    CRC32 of the body
+ * body:
+ *   byte   type (1 window, 2 tombstone, 3 truncate)
+ *   long   firstActivity, lastActivity (epoch millis)
+ *   int    messageCount
+ *   long   totalChars, estimatedTokens
+ *   short  conversation ID length, conversation ID (UTF-8)
+ *   payload: encoded window (window records only)
+ * </pre>
+ *
+ * Durability: with fsync enabled, a write returns once its record is on disk.
+ * Writers that arrive while a force is in flight wait for the next one, which
+ * covers all of them (group commit), so one fsync is shared by a whole batch of writers.
+ *
+ * Compaction: a record superseded by a later write or by a delete stops counting
+ * towards its segment's live bytes. A background job copies the live records of
+ * sealed segments whose live ratio fell below the threshold into the active
+ * segment and deletes the old file.
+ *
+ * Recovery: on startup the segments are scanned in order and the index is rebuilt
+ * from the record headers without decoding payloads. A torn or corrupt record
+ * ends the scan of its segment.
+ *
+ * Windows the codec cannot encode ({@link MessageCodec#canEncode}: media
+ * attachments, unsupported metadata types) cannot be stored.
+ */
+public class SegmentLogChatMemoryRepository
+        implements ChatMemoryRepository, ConversationStatsProvider, ConversationListing, BulkConversationDeletion,
+        MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentLogChatMemoryRepository.class);
+
+    private static final int SEGMENT_MAGIC = 0x434D4C47;
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_FIXED = 1 + 8 + 8 + 4 + 8 + 8 + 2;
+    private static final byte TYPE_WINDOW = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final byte TYPE_TRUNCATE = 3;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final NavigableMap<String, IndexEntry> index = new ConcurrentSkipListMap<>();
+    private final NavigableSet<ActivityKey> activityIndex = new ConcurrentSkipListSet<>(ActivityKey.ORDER);
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private boolean syncing;
+    private volatile long durablePosition;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final double compactionThreshold;
+    private final Clock clock;
+    private final MessageCodec codec;
+    private final ScheduledExecutorService compactor;
+
+    private volatile Segment active;
+    private volatile boolean closed;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    /**
+     * Open the log in the given directory, recovering the index from existing segments.
+     *
+     * @param directory directory holding the segment files; created if missing
+     * @param segmentSize size of each mapped segment file in bytes
+     * @param fsync whether writes return only once forced to disk (group commit)
+     * @param compactionInterval delay between compaction runs, or zero/negative to disable compaction
+     * @param compactionThreshold live-bytes ratio below which a sealed segment is compacted
+     * @param clock clock used for activity timestamps
+     * @param codec codec for the stored windows
+     * @throws UncheckedIOException if the directory or a segment cannot be read
+     */
+    public SegmentLogChatMemoryRepository(Path directory, int segmentSize, boolean fsync,
+                                          Duration compactionInterval, double compactionThreshold,
+                                          Clock clock, MessageCodec codec) {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.compactionThreshold = compactionThreshold;
+        this.clock = clock;
+        this.codec = codec;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open chat memory log in " + directory, e);
+        }
+
+        if (compactionInterval != null && !compactionInterval.isZero() && !compactionInterval.isNegative()) {
+            long intervalMillis = Math.max(1_000, compactionInterval.toMillis());
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-memory-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.compactor.scheduleWithFixedDelay(this::compact, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return List.copyOf(index.keySet());
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        IndexEntry entry = index.get(conversationId);
+        if (entry == null) {
+            return List.of();
+        }
+        int payloadLength = entry.offset() + entry.length() - entry.payloadOffset();
+        return codec.decode(entry.segment().read(entry.payloadOffset(), payloadLength));
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            deleteByConversationId(conversationId);
+            return;
+        }
+        if (!codec.canEncode(messages)) {
+            throw new IllegalArgumentException("Messages with media attachments or unsupported metadata cannot be stored in the chat memory log");
+        }
+        byte[] id = encodeId(conversationId);
+        byte[] payload = codec.encode(messages);
+        ConversationStats stats = ConversationStats.of(conversationId, messages, null, null);
+
+        long position;
+        appendLock.lock();
+        try {
+            ensureOpen();
+            long now = clock.millis();
+            IndexEntry previous = index.get(conversationId);
+            long firstActivity = previous != null ? previous.firstActivityMillis() : now;
+            byte[] record = encodeRecord(TYPE_WINDOW, id, firstActivity, now, stats.messageCount(),
+                    stats.totalChars(), stats.estimatedTokens(), payload);
+            int offset = append(record);
+            Segment segment = active;
+            install(conversationId, new IndexEntry(segment, offset, record.length,
+                    offset + RECORD_HEADER + BODY_FIXED + id.length, stats.messageCount(), stats.totalChars(),
+                    stats.estimatedTokens(), firstActivity, now));
+            position = positionOf(segment, segment.end);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position);
+        writes.increment();
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        deleteConversations(List.of(conversationId));
+    }
+
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        List<ConversationStats> page = new ArrayList<>(Math.min(limit, 1024));
+        if (sort == ConversationSort.LAST_ACTIVITY) {
+            NavigableSet<ActivityKey> view = activityIndex;
+            if (after != null) {
+                if (after.lastActivity() == null) {
+                    throw new IllegalArgumentException("Cursor does not match sort order " + sort);
+                }
+                view = activityIndex.tailSet(
+                        new ActivityKey(after.lastActivity().toEpochMilli(), after.conversationId()), false);
+            }
+            for (ActivityKey key : view) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                IndexEntry entry = index.get(key.conversationId());
+                // Skip keys superseded by a concurrent write
+                if (entry != null && entry.lastActivityMillis() == key.lastActivityMillis()) {
+                    page.add(entry.stats(key.conversationId()));
+                }
+            }
+        } else {
+            Map<String, IndexEntry> view = after == null ? index : index.tailMap(after.conversationId(), false);
+            for (Map.Entry<String, IndexEntry> e : view.entrySet()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(e.getValue().stats(e.getKey()));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Optional<ConversationStats> findStats(String conversationId) {
+        IndexEntry entry = index.get(conversationId);
+        return entry == null ? Optional.empty() : Optional.of(entry.stats(conversationId));
+    }
+
+    /**
+     * Number of stored messages, read from the index.
+     */
+    public int messageCount(String conversationId) {
+        IndexEntry entry = index.get(conversationId);
+        return entry == null ? 0 : entry.messageCount();
+    }
+
+    public boolean containsConversation(String conversationId) {
+        return index.containsKey(conversationId);
+    }
+
+    public int conversationCount() {
+        return index.size();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Bytes written to all segments, live or not.
+     */
+    public long writtenBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.end - SEGMENT_HEADER;
+        }
+        return bytes;
+    }
+
+    /**
+     * Bytes of the records the index still points to.
+     */
+    public long liveBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.liveBytes.get();
+        }
+        return bytes;
+    }
+
+    /**
+     * Delete every conversation: a truncate record is written to a fresh segment
+     * and every older segment file is deleted.
+     */
+    @Override
+    public void deleteAllConversations() {
+        appendLock.lock();
+        try {
+            ensureOpen();
+            Segment next = createSegment(active.id + 1, segmentSize);
+            segments.put(next.id, next);
+            active = next;
+            append(encodeRecord(TYPE_TRUNCATE, NO_PAYLOAD, 0, clock.millis(), 0, 0, 0, NO_PAYLOAD));
+            index.clear();
+            activityIndex.clear();
+            // The truncate record must be durable before the files it supersedes are gone
+            next.force(next.syncedEnd, next.end);
+            deleteSegmentsBefore(next.id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate chat memory log", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        int deleted = 0;
+        long position;
+        appendLock.lock();
+        try {
+            ensureOpen();
+            long now = clock.millis();
+            for (String conversationId : conversationIds) {
+                if (index.containsKey(conversationId)) {
+                    appendTombstone(conversationId, now);
+                    deleted++;
+                }
+            }
+            position = positionOf(active, active.end);
+        } finally {
+            appendLock.unlock();
+        }
+        if (deleted > 0) {
+            awaitDurable(position);
+        }
+        return deleted;
+    }
+
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize,
+                                   Consumer<List<String>> deletedBatch) {
+        String prefix = criteria.idPrefix();
+        Map<String, IndexEntry> candidates = prefix == null ? index : index.tailMap(prefix, true);
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        List<IndexEntry> expected = new ArrayList<>(Math.min(batchSize, 1024));
+        for (Map.Entry<String, IndexEntry> e : candidates.entrySet()) {
+            if (prefix != null && !e.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (criteria.matches(e.getKey(), Instant.ofEpochMilli(e.getValue().lastActivityMillis()))) {
+                batch.add(e.getKey());
+                expected.add(e.getValue());
+                if (batch.size() >= batchSize) {
+                    deleted += deleteUnchanged(batch, expected, deletedBatch);
+                    batch.clear();
+                    expected.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += deleteUnchanged(batch, expected, deletedBatch);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the conversations of a purge batch that were not written since they were matched.
+     */
+    private int deleteUnchanged(List<String> conversationIds, List<IndexEntry> expected,
+                                Consumer<List<String>> deletedBatch) {
+        List<String> deleted = new ArrayList<>(conversationIds.size());
+        long position;
+        appendLock.lock();
+        try {
+            ensureOpen();
+            long now = clock.millis();
+            for (int i = 0; i < conversationIds.size(); i++) {
+                String conversationId = conversationIds.get(i);
+                if (index.get(conversationId) == expected.get(i)) {
+                    appendTombstone(conversationId, now);
+                    deleted.add(conversationId);
+                }
+            }
+            position = positionOf(active, active.end);
+        } finally {
+            appendLock.unlock();
+        }
+        if (!deleted.isEmpty()) {
+            awaitDurable(position);
+            deletedBatch.accept(List.copyOf(deleted));
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Compact every sealed segment whose live ratio is below the threshold.
+     */
+    void compact() {
+        try {
+            for (Segment segment : List.copyOf(segments.values())) {
+                if (closed) {
+                    return;
+                }
+                long written = segment.end - SEGMENT_HEADER;
+                if (segment != active && written > 0 && segment.liveBytes.get() < written * compactionThreshold) {
+                    compactSegment(segment);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Chat memory log compaction failed", e);
+        }
+    }
+
+    /**
+     * Copy the live records of a sealed segment into the active segment and delete its file.
+     * Each record is checked and copied under the append lock, so a concurrent write of the
+     * same conversation always ends up after the copy in log order.
+     */
+    private void compactSegment(Segment segment) throws IOException {
+        long written = segment.end - SEGMENT_HEADER;
+        long live = segment.liveBytes.get();
+        int offset = SEGMENT_HEADER;
+        while (offset < segment.end) {
+            RecordHeader header = RecordHeader.read(segment, offset);
+            appendLock.lock();
+            try {
+                ensureOpen();
+                if (header.type() == TYPE_WINDOW) {
+                    IndexEntry entry = index.get(header.conversationId());
+                    if (entry != null && entry.segment() == segment && entry.offset() == offset) {
+                        int copied = append(segment.read(offset, header.length()));
+                        install(header.conversationId(), entry.relocate(active, copied));
+                    }
+                } else if (header.type() == TYPE_TOMBSTONE && !index.containsKey(header.conversationId())
+                        && segments.firstKey() < segment.id) {
+                    // Still needed to shadow older records of the conversation in older segments
+                    append(segment.read(offset, header.length()));
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            offset += header.length();
+        }
+
+        // The copies must be durable before the original records are gone
+        forceActive();
+        appendLock.lock();
+        try {
+            segments.remove(segment.id);
+        } finally {
+            appendLock.unlock();
+        }
+        Files.deleteIfExists(segment.file);
+        syncDirectory();
+        compactions.increment();
+        reclaimedBytes.add(written - live);
+        log.debug("Compacted chat memory segment {} ({} of {} bytes live)", segment.file.getFileName(), live, written);
+    }
+
+    private void appendTombstone(String conversationId, long now) {
+        append(encodeRecord(TYPE_TOMBSTONE, encodeId(conversationId), 0, now, 0, 0, 0, NO_PAYLOAD));
+        uninstall(conversationId);
+    }
+
+    /**
+     * Append a record to the active segment, rolling to a new segment when it does not fit.
+     * Called with the append lock held.
+     *
+     * @return offset of the record in the (possibly new) active segment
+     */
+    private int append(byte[] record) {
+        Segment segment = active;
+        if (segment.end + record.length + 4 > segment.capacity) {
+            segment = roll(record.length);
+        }
+        int offset = segment.end;
+        segment.buffer.put(offset, record);
+        segment.end = offset + record.length;
+        return offset;
+    }
+
+    /**
+     * Seal the active segment and start a new one large enough for the record.
+     * The sealed segment is forced first, so durability of a position in the new
+     * segment implies durability of everything before it.
+     */
+    private Segment roll(int recordLength) {
+        Segment sealed = active;
+        try {
+            sealed.force(sealed.syncedEnd, sealed.end);
+            Segment next = createSegment(sealed.id + 1, Math.max(segmentSize, SEGMENT_HEADER + recordLength + 4));
+            segments.put(next.id, next);
+            active = next;
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll chat memory log segment", e);
+        }
+    }
+
+    /**
+     * Wait until everything up to the position is on disk. The first waiter forces
+     * the active segment; waiters arriving meanwhile are covered by the next force.
+     */
+    private void awaitDurable(long position) {
+        if (!fsync) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durablePosition < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                syncLock.unlock();
+                long target = -1;
+                try {
+                    target = forceActive();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    if (target > durablePosition) {
+                        durablePosition = target;
+                    }
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Force the unsynced tail of the active segment.
+     *
+     * @return position up to which the log is now durable
+     */
+    private long forceActive() {
+        Segment segment;
+        int end;
+        appendLock.lock();
+        try {
+            segment = active;
+            end = segment.end;
+        } finally {
+            appendLock.unlock();
+        }
+        segment.force(segment.syncedEnd, end);
+        syncs.increment();
+        return positionOf(segment, end);
+    }
+
+    /**
+     * Log position of an offset: segment ID in the high bits, so positions grow across segments.
+     */
+    private static long positionOf(Segment segment, int offset) {
+        return (segment.id << 32) | offset;
+    }
+
+    private void install(String conversationId, IndexEntry entry) {
+        IndexEntry previous = index.put(conversationId, entry);
+        if (previous != null) {
+            previous.segment().liveBytes.addAndGet(-previous.length());
+            activityIndex.remove(new ActivityKey(previous.lastActivityMillis(), conversationId));
+        }
+        entry.segment().liveBytes.addAndGet(entry.length());
+        activityIndex.add(new ActivityKey(entry.lastActivityMillis(), conversationId));
+    }
+
+    private void uninstall(String conversationId) {
+        IndexEntry previous = index.remove(conversationId);
+        if (previous != null) {
+            previous.segment().liveBytes.addAndGet(-previous.length());
+            activityIndex.remove(new ActivityKey(previous.lastActivityMillis(), conversationId));
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Chat memory log is closed");
+        }
+    }
+
+    /**
+     * Rebuild the index by scanning every segment in order.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+        }
+
+        long truncatedAt = -1;
+        for (Path file : files) {
+            Segment segment = Segment.open(file, segmentId(file));
+            segments.put(segment.id, segment);
+            if (scan(segment)) {
+                truncatedAt = segment.id;
+            }
+        }
+        if (truncatedAt >= 0) {
+            // Finish a delete-all interrupted before the old segments were removed
+            deleteSegmentsBefore(truncatedAt);
+        }
+
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null ? last : createSegment(1, segmentSize);
+        segments.putIfAbsent(active.id, active);
+        durablePosition = positionOf(active, active.end);
+        log.info("Opened chat memory log in {}: {} conversations in {} segments",
+                directory, index.size(), segments.size());
+    }
+
+    /**
+     * Apply the records of a segment to the index.
+     *
+     * @return whether the segment contains a truncate record
+     */
+    private boolean scan(Segment segment) {
+        boolean truncated = false;
+        int offset = SEGMENT_HEADER;
+        while (offset + RECORD_HEADER <= segment.capacity) {
+            int bodyLength = segment.buffer.getInt(offset);
+            if (bodyLength == 0) {
+                break;
+            }
+            if (bodyLength < BODY_FIXED || bodyLength > segment.capacity - offset - RECORD_HEADER
+                    || !segment.checksumMatches(offset, bodyLength)) {
+                log.warn("Ignoring torn or corrupt record at offset {} of chat memory segment {} and everything after it",
+                        offset, segment.file.getFileName());
+                segment.clearFrom(offset);
+                break;
+            }
+
+            RecordHeader header = RecordHeader.read(segment, offset);
+            switch (header.type()) {
+                case TYPE_WINDOW -> install(header.conversationId(), new IndexEntry(segment, offset, header.length(),
+                        header.payloadOffset(), header.messageCount(), header.totalChars(),
+                        header.estimatedTokens(), header.firstActivityMillis(), header.lastActivityMillis()));
+                case TYPE_TOMBSTONE -> uninstall(header.conversationId());
+                case TYPE_TRUNCATE -> {
+                    for (String conversationId : List.copyOf(index.keySet())) {
+                        uninstall(conversationId);
+                    }
+                    truncated = true;
+                }
+                default -> log.warn("Skipping record of unknown type {} in chat memory segment {}",
+                        header.type(), segment.file.getFileName());
+            }
+            offset += header.length();
+        }
+        segment.end = offset;
+        segment.syncedEnd = offset;
+        return truncated;
+    }
+
+    private void deleteSegmentsBefore(long segmentId) throws IOException {
+        for (Segment segment : List.copyOf(segments.headMap(segmentId, false).values())) {
+            segments.remove(segment.id);
+            Files.deleteIfExists(segment.file);
+        }
+        syncDirectory();
+    }
+
+    private Segment createSegment(long id, int capacity) throws IOException {
+        Segment segment = Segment.create(directory.resolve(String.format("segment-%020d%s", id, SEGMENT_SUFFIX)),
+                id, capacity);
+        syncDirectory();
+        return segment;
+    }
+
+    /**
+     * Make file creations and deletions in the directory durable, where the platform supports it.
+     */
+    private void syncDirectory() {
+        if (!fsync) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory sync not supported for {}", directory, e);
+        }
+    }
+
+    private static long segmentId(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            throw new IOException("Unexpected segment file name: " + file, e);
+        }
+    }
+
+    private static byte[] encodeId(String conversationId) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > 0xFFFF) {
+            throw new IllegalArgumentException("Conversation ID is too long");
+        }
+        return id;
+    }
+
+    private static byte[] encodeRecord(byte type, byte[] id, long firstActivity, long lastActivity,
+                                       int messageCount, long totalChars, long estimatedTokens, byte[] payload) {
+        int bodyLength = BODY_FIXED + id.length + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+        record.putInt(bodyLength).putInt(0)
+                .put(type).putLong(firstActivity).putLong(lastActivity)
+                .putInt(messageCount).putLong(totalChars).putLong(estimatedTokens)
+                .putShort((short) id.length).put(id).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.memory.log.conversations", index, Map::size)
+                .description("Conversations held in the chat memory log")
+                .register(registry);
+        Gauge.builder("chat.memory.log.segments", segments, Map::size)
+                .description("Segment files of the chat memory log")
+                .register(registry);
+        Gauge.builder("chat.memory.log.bytes", this, SegmentLogChatMemoryRepository::writtenBytes)
+                .description("Bytes written to the chat memory log segments")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("chat.memory.log.live.bytes", this, SegmentLogChatMemoryRepository::liveBytes)
+                .description("Bytes of the chat memory log records that are still current")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.log.writes", writes, LongAdder::sum)
+                .description("Windows written to the chat memory log")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.log.syncs", syncs, LongAdder::sum)
+                .description("Forces of the chat memory log to disk, each shared by a group of writes")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.log.compactions", compactions, LongAdder::sum)
+                .description("Chat memory log segments compacted")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.log.reclaimed", reclaimedBytes, LongAdder::sum)
+                .description("Bytes reclaimed by chat memory log compaction")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Stop compaction and force every write to disk.
+     */
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        appendLock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                active.force(active.syncedEnd, active.end);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Location and statistics of a conversation's latest record.
+     */
+    private record IndexEntry(Segment segment, int offset, int length, int payloadOffset, int messageCount,
+                              long totalChars, long estimatedTokens, long firstActivityMillis,
+                              long lastActivityMillis) {
+
+        IndexEntry relocate(Segment target, int targetOffset) {
+            return new IndexEntry(target, targetOffset, length, targetOffset + (payloadOffset - offset),
+                    messageCount, totalChars, estimatedTokens, firstActivityMillis, lastActivityMillis);
+        }
+
+        ConversationStats stats(String conversationId) {
+            return new ConversationStats(conversationId, messageCount, totalChars, estimatedTokens,
+                    Instant.ofEpochMilli(firstActivityMillis), Instant.ofEpochMilli(lastActivityMillis));
+        }
+    }
+
+    /**
+     * Decoded header of a record, read from the mapped segment without copying the payload.
+     */
+    private record RecordHeader(byte type, String conversationId, int length, int payloadOffset, int messageCount,
+                                long totalChars, long estimatedTokens, long firstActivityMillis,
+                                long lastActivityMillis) {
+
+        static RecordHeader read(Segment segment, int offset) {
+            MappedByteBuffer buffer = segment.buffer;
+            int bodyLength = buffer.getInt(offset);
+            int body = offset + RECORD_HEADER;
+            int idLength = Short.toUnsignedInt(buffer.getShort(body + BODY_FIXED - 2));
+            String conversationId = new String(segment.read(body + BODY_FIXED, idLength), StandardCharsets.UTF_8);
+            return new RecordHeader(buffer.get(body), conversationId, RECORD_HEADER + bodyLength,
+                    body + BODY_FIXED + idLength, buffer.getInt(body + 17), buffer.getLong(body + 21),
+                    buffer.getLong(body + 29), buffer.getLong(body + 1), buffer.getLong(body + 9));
+        }
+    }
+
+    /**
+     * Key in the activity index: most recent first, then descending conversation ID.
+     */
+    private record ActivityKey(long lastActivityMillis, String conversationId) {
+
+        static final Comparator<ActivityKey> ORDER = Comparator
+                .comparingLong(ActivityKey::lastActivityMillis).reversed()
+                .thenComparing(ActivityKey::conversationId, Comparator.reverseOrder());
+    }
+
+    /**
+     * A mapped segment file. Appends happen under the append lock; reads use
+     * absolute accessors and see records published through the index.
+     */
+    private static final class Segment {
+
+        final long id;
+        final Path file;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile int end = SEGMENT_HEADER;
+        volatile int syncedEnd = SEGMENT_HEADER;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        static Segment create(Path file, long id, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                buffer.putInt(0, SEGMENT_MAGIC);
+                buffer.putInt(4, SEGMENT_VERSION);
+                Segment segment = new Segment(id, file, buffer);
+                // The header is forced together with the first records
+                segment.syncedEnd = 0;
+                return segment;
+            }
+        }
+
+        static Segment open(Path file, long id) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size < SEGMENT_HEADER + RECORD_HEADER || size > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid chat memory segment size: " + file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(4) != SEGMENT_VERSION) {
+                    throw new IOException("Not a chat memory segment: " + file);
+                }
+                return new Segment(id, file, buffer);
+            }
+        }
+
+        byte[] read(int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        boolean checksumMatches(int offset, int bodyLength) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + RECORD_HEADER, bodyLength));
+            return (int) crc.getValue() == buffer.getInt(offset + 4);
+        }
+
+        /**
+         * Zero everything from the offset, so a torn tail is never mistaken for records appended later.
+         */
+        void clearFrom(int offset) {
+            byte[] zeros = new byte[8192];
+            for (int position = offset; position < capacity; position += zeros.length) {
+                buffer.put(position, zeros, 0, Math.min(zeros.length, capacity - position));
+            }
+        }
+
+        void force(int from, int to) {
+            if (to > from) {
+                buffer.force(from, to - from);
+            }
+            syncedEnd = Math.max(syncedEnd, to);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Chat memory spread over several databases by conversation ID.
+ *
+ * Each shard is an {@link AppendOnlyJdbcChatMemoryRepository} on its own
+ * DataSource. A conversation lives on the shard that owns its ID on a
+ * {@link ConsistentHashRing} of the shard names, so every per-conversation
+ * read and write touches exactly one database. Operations over all
+ * conversations (ID lists, delete-all, listings) are scattered to the shards
+ * in parallel and their results merged; listings merge the shards' keyset
+ * pages, which are ordered the same way.
+ *
+ * Resharding is online. With the ring before the change configured as the
+ * previous ring, a conversation not found on its new owner is read from its
+ * previous owner (dual read), and a write to it moves it: the window is
+ * written to the new owner and removed from the previous one. A background
+ * migration walks every shard and moves the conversations it no longer owns
+ * with a copy that never overwrites a window written in the meantime; once it
+ * completes, dual reads stop. One resharding must complete before the next
+ * ring change, and every node must run with the same rings.
+ */
+public class ShardedChatMemoryRepository
+        implements ChatMemoryRepository, ConversationStatsProvider, ConversationListing, BulkConversationDeletion,
+        SmartLifecycle, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedChatMemoryRepository.class);
+
+    private static final long MAX_MIGRATION_RETRY_MILLIS = 60_000;
+
+    private static final Comparator<ConversationStats> BY_ID =
+            Comparator.comparing(ConversationStats::conversationId);
+
+    private static final Comparator<ConversationStats> BY_LAST_ACTIVITY =
+            Comparator.comparing(ConversationStats::lastActivity)
+                    .thenComparing(ConversationStats::conversationId)
+                    .reversed();
+
+    private final Map<String, AppendOnlyJdbcChatMemoryRepository> shards;
+    private final ConsistentHashRing ring;
+    private final ConsistentHashRing previousRing;
+    private final int migrationBatchSize;
+    private final List<? extends AutoCloseable> resources;
+    private final ExecutorService scatter;
+
+    private volatile boolean migrating;
+    private volatile boolean running;
+    private volatile Thread migrator;
+
+    private final LongAdder dualReads = new LongAdder();
+    private final LongAdder migratedConversations = new LongAdder();
+
+    /**
+     * @param shards repository of every shard, current or previous, by name
+     * @param shardNames shards of the current ring
+     * @param previousShardNames shards of the ring before the last change, or empty when not resharding
+     * @param virtualNodes points per shard on the rings
+     * @param migrationBatchSize conversations listed per step of the background migration
+     * @param resources closed with this repository, such as the shards' data sources
+     */
+    public ShardedChatMemoryRepository(Map<String, AppendOnlyJdbcChatMemoryRepository> shards,
+                                       List<String> shardNames,
+                                       List<String> previousShardNames,
+                                       int virtualNodes,
+                                       int migrationBatchSize,
+                                       List<? extends AutoCloseable> resources) {
+        for (String name : concat(shardNames, previousShardNames)) {
+            if (!shards.containsKey(name)) {
+                throw new IllegalArgumentException("No chat memory shard named " + name);
+            }
+        }
+        this.shards = Map.copyOf(shards);
+        this.ring = new ConsistentHashRing(shardNames, virtualNodes);
+        this.previousRing = previousShardNames.isEmpty() || Set.copyOf(previousShardNames).equals(Set.copyOf(shardNames))
+                ? null : new ConsistentHashRing(previousShardNames, virtualNodes);
+        this.migrating = previousRing != null;
+        this.migrationBatchSize = Math.max(1, migrationBatchSize);
+        this.resources = List.copyOf(resources);
+        AtomicInteger threads = new AtomicInteger();
+        this.scatter = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Name of the shard owning a conversation.
+     */
+    public String shardOf(String conversationId) {
+        return ring.nodeFor(conversationId);
+    }
+
+    /**
+     * Whether conversations are still being moved after a ring change.
+     */
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        // A conversation being moved may briefly exist on two shards
+        TreeSet<String> ids = new TreeSet<>();
+        gather(AppendOnlyJdbcChatMemoryRepository::findConversationIds).values().forEach(ids::addAll);
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        AppendOnlyJdbcChatMemoryRepository owner = owner(conversationId);
+        List<Message> messages = owner.findByConversationId(conversationId);
+        AppendOnlyJdbcChatMemoryRepository previous = previousOwner(conversationId);
+        if (!messages.isEmpty() || previous == null) {
+            return messages;
+        }
+        messages = previous.findByConversationId(conversationId);
+        if (!messages.isEmpty()) {
+            dualReads.increment();
+            return messages;
+        }
+        // The migration copies before it deletes, so a window that just left the previous owner is on the new one
+        return owner.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        owner(conversationId).saveAll(conversationId, messages);
+        AppendOnlyJdbcChatMemoryRepository previous = previousOwner(conversationId);
+        if (previous != null) {
+            previous.deleteByConversationId(conversationId);
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        owner(conversationId).deleteByConversationId(conversationId);
+        AppendOnlyJdbcChatMemoryRepository previous = previousOwner(conversationId);
+        if (previous != null) {
+            previous.deleteByConversationId(conversationId);
+        }
+    }
+
+    @Override
+    public Optional<ConversationStats> findStats(String conversationId) {
+        Optional<ConversationStats> stats = owner(conversationId).findStats(conversationId);
+        AppendOnlyJdbcChatMemoryRepository previous = previousOwner(conversationId);
+        if (stats.isPresent() || previous == null) {
+            return stats;
+        }
+        stats = previous.findStats(conversationId);
+        return stats.isPresent() ? stats : owner(conversationId).findStats(conversationId);
+    }
+
+    /**
+     * Merge the shards' pages after the same cursor; each is sorted, so the
+     * first {@code limit} of the merge are the next page of the whole listing.
+     */
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        Comparator<ConversationStats> order = sort == ConversationSort.LAST_ACTIVITY ? BY_LAST_ACTIVITY : BY_ID;
+        List<ConversationStats> merged = new ArrayList<>();
+        gather(shard -> shard.listConversations(sort, after, limit)).values().forEach(merged::addAll);
+        merged.sort(order);
+        Set<String> seen = new HashSet<>();
+        List<ConversationStats> page = new ArrayList<>(Math.min(limit, merged.size()));
+        for (ConversationStats stats : merged) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (seen.add(stats.conversationId())) {
+                page.add(stats);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void deleteAllConversations() {
+        gather(shard -> {
+            shard.deleteAllConversations();
+            return null;
+        });
+    }
+
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String conversationId : conversationIds) {
+            byShard.computeIfAbsent(ring.nodeFor(conversationId), name -> new ArrayList<>()).add(conversationId);
+            if (migrating) {
+                String previous = previousRing.nodeFor(conversationId);
+                if (!previous.equals(ring.nodeFor(conversationId))) {
+                    byShard.computeIfAbsent(previous, name -> new ArrayList<>()).add(conversationId);
+                }
+            }
+        }
+        List<CompletableFuture<Integer>> deletes = new ArrayList<>(byShard.size());
+        byShard.forEach((name, ids) -> deletes.add(
+                CompletableFuture.supplyAsync(() -> shards.get(name).deleteConversations(ids), scatter)));
+        return deletes.stream().mapToInt(ShardedChatMemoryRepository::join).sum();
+    }
+
+    /**
+     * Purge the shards one after another, so {@code deletedBatch} is never called concurrently.
+     */
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize,
+                                   Consumer<List<String>> deletedBatch) {
+        long deleted = 0;
+        for (AppendOnlyJdbcChatMemoryRepository shard : shards.values()) {
+            deleted += shard.purgeConversations(criteria, batchSize, deletedBatch);
+        }
+        return deleted;
+    }
+
+    /**
+     * Replace the windows of a batch of conversations, one set-based import per shard.
+     *
+     * @param windows messages per conversation, in window order; an empty window deletes the conversation
+     * @return number of messages imported
+     */
+    public long importWindows(Map<String, List<Message>> windows) {
+        Map<String, Map<String, List<Message>>> byShard = new LinkedHashMap<>();
+        List<String> moved = new ArrayList<>();
+        windows.forEach((conversationId, messages) -> {
+            byShard.computeIfAbsent(ring.nodeFor(conversationId), name -> new LinkedHashMap<>())
+                    .put(conversationId, messages);
+            if (previousOwner(conversationId) != null) {
+                moved.add(conversationId);
+            }
+        });
+        List<CompletableFuture<Long>> imports = new ArrayList<>(byShard.size());
+        byShard.forEach((name, shardWindows) -> imports.add(
+                CompletableFuture.supplyAsync(() -> shards.get(name).importWindows(shardWindows), scatter)));
+        long imported = imports.stream().mapToLong(ShardedChatMemoryRepository::join).sum();
+        if (!moved.isEmpty()) {
+            Map<String, List<String>> previousCopies = new LinkedHashMap<>();
+            moved.forEach(id -> previousCopies.computeIfAbsent(previousRing.nodeFor(id), name -> new ArrayList<>())
+                    .add(id));
+            previousCopies.forEach((name, ids) -> shards.get(name).deleteConversations(ids));
+        }
+        return imported;
+    }
+
+    /**
+     * Move every conversation stored on a shard that no longer owns it to its
+     * owner, then stop dual reads.
+     *
+     * @return number of conversations copied to their new owner
+     */
+    public long migrate() {
+        long copied = 0;
+        for (Map.Entry<String, AppendOnlyJdbcChatMemoryRepository> entry : shards.entrySet()) {
+            String source = entry.getKey();
+            ConversationCursor after = null;
+            List<ConversationStats> page;
+            do {
+                page = entry.getValue().listConversations(ConversationSort.ID, after, migrationBatchSize);
+                for (ConversationStats stats : page) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return copied;
+                    }
+                    String owner = ring.nodeFor(stats.conversationId());
+                    if (!owner.equals(source) && move(stats.conversationId(), entry.getValue(), shards.get(owner))) {
+                        copied++;
+                    }
+                }
+                if (!page.isEmpty()) {
+                    after = ConversationCursor.after(page.get(page.size() - 1));
+                }
+            } while (page.size() == migrationBatchSize);
+        }
+        if (migrating) {
+            migrating = false;
+            log.info("Chat memory resharding complete: {} conversations moved to {}; the previous shard list"
+                    + " can be removed from the configuration", copied, ring.nodes());
+        }
+        return copied;
+    }
+
+    /**
+     * Copy a window to its new owner unless a newer write got there first, then remove it from the old shard.
+     */
+    private boolean move(String conversationId, AppendOnlyJdbcChatMemoryRepository from,
+                         AppendOnlyJdbcChatMemoryRepository to) {
+        List<Message> window = from.findByConversationId(conversationId);
+        boolean copied = to.copyWindowIfAbsent(conversationId, window);
+        from.deleteByConversationId(conversationId);
+        if (copied) {
+            migratedConversations.increment();
+        }
+        return copied;
+    }
+
+    private AppendOnlyJdbcChatMemoryRepository owner(String conversationId) {
+        return shards.get(ring.nodeFor(conversationId));
+    }
+
+    /**
+     * The shard that owned a conversation before the ring change, if it differs from the owner.
+     */
+    private AppendOnlyJdbcChatMemoryRepository previousOwner(String conversationId) {
+        if (!migrating) {
+            return null;
+        }
+        String previous = previousRing.nodeFor(conversationId);
+        return previous.equals(ring.nodeFor(conversationId)) ? null : shards.get(previous);
+    }
+
+    /**
+     * Run an operation on every shard in parallel.
+     */
+    private <T> Map<String, T> gather(Function<AppendOnlyJdbcChatMemoryRepository, T> operation) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        shards.forEach((name, shard) -> futures.put(name,
+                CompletableFuture.supplyAsync(() -> operation.apply(shard), scatter)));
+        Map<String, T> results = new LinkedHashMap<>();
+        futures.forEach((name, future) -> results.put(name, join(future)));
+        return results;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private void runMigration() {
+        long retryDelay = 1_000;
+        while (running && migrating) {
+            try {
+                migrate();
+            } catch (RuntimeException e) {
+                log.warn("Chat memory resharding failed, retrying in {} ms", retryDelay, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                retryDelay = Math.min(MAX_MIGRATION_RETRY_MILLIS, retryDelay * 2);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (migrating) {
+            log.info("Chat memory resharding from {} to {}", previousRing.nodes(), ring.nodes());
+            Thread thread = new Thread(this::runMigration, "chat-memory-resharding");
+            thread.setDaemon(true);
+            thread.start();
+            migrator = thread;
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = migrator;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        scatter.shutdown();
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Could not close chat memory shard resource {}", resource, e);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.memory.shard.dual-reads", dualReads, LongAdder::sum)
+                .description("Conversations read from their previous shard during resharding")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.shard.migrated", migratedConversations, LongAdder::sum)
+                .description("Conversations moved to their new shard by the resharding migration")
+                .register(registry);
+    }
+}
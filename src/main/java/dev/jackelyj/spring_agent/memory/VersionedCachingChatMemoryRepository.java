@@ -0,0 +1,235 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Versioned per-conversation read cache in front of a ChatMemoryRepository.
+ *
+ * A turn reads the same window several times (the advisor's get, the get
+ * inside MessageWindowChatMemory.add, counts and existence checks); with this
+ * cache only the first read of a version reaches the delegate, and a write
+ * installs the window it wrote, so the next turn is served from memory too.
+ *
+ * Every conversation maps to one of a fixed number of version stripes. Writes
+ * and invalidations bump the stripe before and after touching the delegate,
+ * and a cached window is only served while its stripe still has the version
+ * it was loaded at. A load that overlaps a write is therefore never served,
+ * without holding a lock across the delegate call. Unrelated conversations
+ * sharing a stripe only cost an occasional extra load.
+ *
+ * Changes made around this cache (bulk deletes, imports, writes on other
+ * nodes) must be reported with {@link #invalidate} or {@link #evict}. Writes
+ * and invalidations made here are passed to the {@link InvalidationPublisher},
+ * if any, so other nodes can evict them.
+ */
+public class VersionedCachingChatMemoryRepository implements ChatMemoryRepository, MeterBinder {
+
+    private static final int STRIPES = 1 << 16;
+
+    private final ChatMemoryRepository delegate;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final Map<String, CachedWindow> windows;
+    private volatile InvalidationPublisher publisher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder localInvalidations = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    /**
+     * @param delegate repository holding the windows
+     * @param maxConversations number of conversations whose windows are cached
+     */
+    public VersionedCachingChatMemoryRepository(ChatMemoryRepository delegate, int maxConversations) {
+        this.delegate = delegate;
+        this.windows = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedWindow> eldest) {
+                return size() > maxConversations;
+            }
+        });
+    }
+
+    /**
+     * Set the publisher told about writes and invalidations made through this cache.
+     */
+    public void setInvalidationPublisher(InvalidationPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return delegate.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        int stripe = stripe(conversationId);
+        long version = versions.get(stripe);
+        CachedWindow cached = windows.get(conversationId);
+        if (cached != null && cached.version() == version) {
+            hits.increment();
+            return cached.messages();
+        }
+        misses.increment();
+        List<Message> messages = List.copyOf(delegate.findByConversationId(conversationId));
+        install(conversationId, stripe, version, messages);
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        int stripe = stripe(conversationId);
+        // Loads that start during the write read a version that is bumped again afterwards
+        versions.incrementAndGet(stripe);
+        try {
+            delegate.saveAll(conversationId, messages);
+        } catch (RuntimeException e) {
+            versions.incrementAndGet(stripe);
+            windows.remove(conversationId);
+            throw e;
+        }
+        install(conversationId, stripe, versions.incrementAndGet(stripe), List.copyOf(messages));
+        publishChanged(List.of(conversationId));
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        int stripe = stripe(conversationId);
+        versions.incrementAndGet(stripe);
+        try {
+            delegate.deleteByConversationId(conversationId);
+        } finally {
+            versions.incrementAndGet(stripe);
+            windows.remove(conversationId);
+        }
+        publishChanged(List.of(conversationId));
+    }
+
+    /**
+     * Evict conversations changed around this cache and tell other nodes.
+     */
+    public void invalidate(Collection<String> conversationIds) {
+        discard(conversationIds);
+        localInvalidations.add(conversationIds.size());
+        publishChanged(conversationIds);
+    }
+
+    /**
+     * Evict every conversation after a change around this cache and tell other nodes.
+     */
+    public void invalidateAll() {
+        discardAll();
+        localInvalidations.increment();
+        InvalidationPublisher current = publisher;
+        if (current != null) {
+            current.allConversationsChanged();
+        }
+    }
+
+    /**
+     * Evict conversations changed on another node, without publishing.
+     */
+    public void evict(Collection<String> conversationIds) {
+        discard(conversationIds);
+        remoteInvalidations.add(conversationIds.size());
+    }
+
+    /**
+     * Evict every conversation after a change on another node, or when changes
+     * from other nodes may have been missed, without publishing.
+     */
+    public void evictAll() {
+        discardAll();
+        remoteInvalidations.increment();
+    }
+
+    /**
+     * Number of cached windows.
+     */
+    public int cachedConversations() {
+        return windows.size();
+    }
+
+    private void discard(Collection<String> conversationIds) {
+        for (String conversationId : conversationIds) {
+            versions.incrementAndGet(stripe(conversationId));
+            windows.remove(conversationId);
+        }
+    }
+
+    private void discardAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            versions.incrementAndGet(stripe);
+        }
+        windows.clear();
+    }
+
+    private void install(String conversationId, int stripe, long version, List<Message> messages) {
+        // A read racing this check installs a window with an old version, which is never served
+        if (versions.get(stripe) == version) {
+            windows.put(conversationId, new CachedWindow(version, messages));
+        }
+    }
+
+    private void publishChanged(Collection<String> conversationIds) {
+        InvalidationPublisher current = publisher;
+        if (current != null && !conversationIds.isEmpty()) {
+            current.conversationsChanged(conversationIds);
+        }
+    }
+
+    private static int stripe(String conversationId) {
+        int hash = conversationId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.memory.cache.requests", hits, LongAdder::sum)
+                .description("Chat memory window reads")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.cache.requests", misses, LongAdder::sum)
+                .description("Chat memory window reads")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.cache.invalidations", localInvalidations, LongAdder::sum)
+                .description("Conversations evicted from the chat memory read cache")
+                .tag("source", "local")
+                .register(registry);
+        FunctionCounter.builder("chat.memory.cache.invalidations", remoteInvalidations, LongAdder::sum)
+                .description("Conversations evicted from the chat memory read cache")
+                .tag("source", "remote")
+                .register(registry);
+        Gauge.builder("chat.memory.cache.conversations", this, VersionedCachingChatMemoryRepository::cachedConversations)
+                .description("Conversations in the chat memory read cache")
+                .register(registry);
+    }
+
+    /**
+     * Tells other nodes about conversations written or invalidated through this cache.
+     */
+    public interface InvalidationPublisher {
+
+        void conversationsChanged(Collection<String> conversationIds);
+
+        void allConversationsChanged();
+    }
+
+    private record CachedWindow(long version, List<Message> messages) {
+    }
+}
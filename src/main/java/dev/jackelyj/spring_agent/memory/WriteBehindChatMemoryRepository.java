@@ -0,0 +1,563 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind ChatMemoryRepository: a hot in-process tier over a durable repository.
+ * 
+ * Writes are acknowledged once they are in memory and flushed to the
+ * durable repository by a background writer. Several turns of the same
+ * conversation between two flushes are coalesced into a single write of the
+ * latest window, and each flush writes up to {@code batchSize} conversations
+ * in one transaction.
+ * 
+ * Guarantees:
+ * - Max lag: if the oldest unflushed write is older than {@code maxLag}
+ *   (e.g. the database is slow), the writing thread flushes synchronously,
+ *   which bounds the amount of acknowledged-but-unpersisted data.
+ * - Flush on shutdown: {@link #stop()} drains every pending write before the
+ *   DataSource is closed.
+ * 
+ * Reads are served from pending writes, then the hot cache, and only go to
+ * the durable repository on a miss. Dirty windows are pinned in the pending
+ * map, so cache eviction never loses an unflushed write. A window loaded on a
+ * miss is only cached if no write or invalidation of its version stripe
+ * happened since the load started, so a slow load never replaces a newer
+ * window that has meanwhile been flushed.
+ * 
+ * Bulk deletes are delegated to the durable repository and invalidate the
+ * hot tier; conversations deleted behind its back (e.g. by direct SQL) must
+ * be reported through {@link #invalidate} or {@link #invalidateAll}.
+ */
+public class WriteBehindChatMemoryRepository
+        implements ChatMemoryRepository, ConversationStatsProvider, ConversationListing, BulkConversationDeletion,
+        SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindChatMemoryRepository.class);
+
+    private static final int STRIPES = 1 << 12;
+
+    private final ChatMemoryRepository delegate;
+    private final BoundedInMemoryChatMemoryRepository cache;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration flushInterval;
+    private final Duration maxLag;
+    private final int batchSize;
+    private final Clock clock;
+
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * One mark per pending conversation, ordered by when it became dirty, so the oldest is found in O(1).
+     */
+    private final ConcurrentSkipListSet<DirtyMark> dirtyMarks = new ConcurrentSkipListSet<>();
+    private final AtomicLong dirtySequence = new AtomicLong();
+
+    /**
+     * Versions of the cached windows by stripe; bumped, under the stripe's lock, by every change of the hot tier.
+     */
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final Object[] stripeLocks = new Object[STRIPES];
+
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private Counter flushFailures;
+    private Counter synchronousFlushes;
+
+    /**
+     * @param delegate durable repository
+     * @param cache hot tier for clean windows
+     * @param transactionTemplate transaction wrapping each flushed batch, or null to write without one
+     * @param flushInterval delay between background flushes
+     * @param maxLag maximum age of an unflushed write before writers flush synchronously
+     * @param batchSize maximum conversations written per transaction
+     * @param clock clock used for write timestamps
+     */
+    public WriteBehindChatMemoryRepository(ChatMemoryRepository delegate,
+                                           BoundedInMemoryChatMemoryRepository cache,
+                                           TransactionTemplate transactionTemplate,
+                                           Duration flushInterval,
+                                           Duration maxLag,
+                                           int batchSize,
+                                           Clock clock) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.transactionTemplate = transactionTemplate;
+        this.flushInterval = flushInterval;
+        this.maxLag = maxLag;
+        this.batchSize = Math.max(1, batchSize);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripeLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(delegate.findConversationIds());
+        for (Map.Entry<String, PendingWrite> entry : pending.entrySet()) {
+            if (entry.getValue().isDelete()) {
+                ids.remove(entry.getKey());
+            } else {
+                ids.add(entry.getKey());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        PendingWrite write = pending.get(conversationId);
+        if (write != null) {
+            return write.messages;
+        }
+        if (cache.containsConversation(conversationId)) {
+            return cache.findByConversationId(conversationId);
+        }
+
+        int stripe = stripe(conversationId);
+        long version = versions.get(stripe);
+        List<Message> messages = delegate.findByConversationId(conversationId);
+        if (!messages.isEmpty()) {
+            // Only populate the cache if no write raced with the load, even one flushed since
+            synchronized (stripeLocks[stripe]) {
+                if (versions.get(stripe) == version && !pending.containsKey(conversationId)) {
+                    cache.saveAll(conversationId, messages);
+                }
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Message> snapshot = List.copyOf(messages);
+        long now = clock.millis();
+        pending.compute(conversationId, (id, existing) -> {
+            if (existing != null) {
+                return new PendingWrite(snapshot, existing.dirtyMark, now);
+            }
+            DirtyMark mark = new DirtyMark(now, dirtySequence.incrementAndGet());
+            dirtyMarks.add(mark);
+            return new PendingWrite(snapshot, mark, now);
+        });
+        int stripe = stripe(conversationId);
+        synchronized (stripeLocks[stripe]) {
+            versions.incrementAndGet(stripe);
+            if (snapshot.isEmpty()) {
+                cache.deleteByConversationId(conversationId);
+            } else {
+                cache.saveAll(conversationId, snapshot);
+            }
+        }
+        enforceMaxLag(now);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        saveAll(conversationId, List.of());
+    }
+
+    /**
+     * Statistics including unflushed writes. First activity comes from the
+     * durable repository when it maintains statistics; otherwise statistics
+     * are computed from the (cached) window without activity times.
+     */
+    @Override
+    public Optional<ConversationStats> findStats(String conversationId) {
+        PendingWrite write = pending.get(conversationId);
+        if (!(delegate instanceof ConversationStatsProvider provider)) {
+            List<Message> messages = findByConversationId(conversationId);
+            return messages.isEmpty()
+                    ? Optional.empty()
+                    : Optional.of(ConversationStats.of(conversationId, messages, null,
+                            write != null ? Instant.ofEpochMilli(write.lastWriteMillis) : null));
+        }
+        Optional<ConversationStats> durable = provider.findStats(conversationId);
+        if (write == null) {
+            return durable;
+        }
+        if (write.isDelete()) {
+            return Optional.empty();
+        }
+        Instant firstActivity = durable.map(ConversationStats::firstActivity)
+                .orElse(Instant.ofEpochMilli(write.dirtyMark.millis()));
+        return Optional.of(ConversationStats.of(conversationId, write.messages, firstActivity,
+                Instant.ofEpochMilli(write.lastWriteMillis)));
+    }
+
+    /**
+     * List conversations from the durable repository after flushing pending writes.
+     *
+     * @throws UnsupportedOperationException if the durable repository cannot list conversations
+     */
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        if (!(delegate instanceof ConversationListing listing)) {
+            throw new UnsupportedOperationException("Durable chat memory repository does not support listing");
+        }
+        flush();
+        return listing.listConversations(sort, after, limit);
+    }
+
+    /**
+     * Whether {@link #listConversations} is supported by the durable repository.
+     */
+    public boolean supportsListing() {
+        return delegate instanceof ConversationListing;
+    }
+
+    /**
+     * Drop pending writes and the hot tier, then delete everything in the durable repository.
+     *
+     * @throws UnsupportedOperationException if the durable repository cannot delete in bulk
+     */
+    @Override
+    public void deleteAllConversations() {
+        BulkConversationDeletion bulk = bulkDelegate();
+        flushLock.lock();
+        try {
+            pending.clear();
+            dirtyMarks.clear();
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                versions.incrementAndGet(stripe);
+            }
+            cache.clear();
+            bulk.deleteAllConversations();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the durable repository cannot delete in bulk
+     */
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        BulkConversationDeletion bulk = bulkDelegate();
+        flushLock.lock();
+        try {
+            // Flush first so a conversation that only exists as a pending write is deleted too
+            flush();
+            int deleted = bulk.deleteConversations(conversationIds);
+            invalidate(conversationIds);
+            return deleted;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flush pending writes, then purge in the durable repository, invalidating
+     * the hot tier batch by batch. A conversation written during the purge
+     * keeps its pending write, which recreates it on the next flush.
+     *
+     * @throws UnsupportedOperationException if the durable repository cannot delete in bulk
+     */
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize,
+                                   Consumer<List<String>> deletedBatch) {
+        BulkConversationDeletion bulk = bulkDelegate();
+        flush();
+        return bulk.purgeConversations(criteria, batchSize, batch -> {
+            invalidate(batch);
+            deletedBatch.accept(batch);
+        });
+    }
+
+    /**
+     * Whether bulk deletion is supported by the durable repository.
+     */
+    public boolean supportsBulkDeletion() {
+        return delegate instanceof BulkConversationDeletion;
+    }
+
+    /**
+     * Drop cached windows of conversations deleted directly in the durable store.
+     * Conversations with a pending write keep it.
+     */
+    public void invalidate(Collection<String> conversationIds) {
+        for (String conversationId : conversationIds) {
+            int stripe = stripe(conversationId);
+            synchronized (stripeLocks[stripe]) {
+                versions.incrementAndGet(stripe);
+                if (!pending.containsKey(conversationId)) {
+                    cache.deleteByConversationId(conversationId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every cached window after the durable store was cleared directly.
+     * Pending writes are kept.
+     */
+    public void invalidateAll() {
+        invalidate(cache.findConversationIds());
+    }
+
+    private BulkConversationDeletion bulkDelegate() {
+        if (!(delegate instanceof BulkConversationDeletion bulk)) {
+            throw new UnsupportedOperationException("Durable chat memory repository does not support bulk deletion");
+        }
+        return bulk;
+    }
+
+    /**
+     * Flush every write pending at the time of the call.
+     * 
+     * @return number of conversations written
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int written = 0;
+            for (int batches = maxBatches(); batches > 0 && !pending.isEmpty(); batches--) {
+                int batch = flushBatch();
+                if (batch == 0) {
+                    break;
+                }
+                written += batch;
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Number of conversations with unflushed writes.
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void enforceMaxLag(long now) {
+        if (maxLag == null || maxLag.isZero() || maxLag.isNegative()) {
+            return;
+        }
+        DirtyMark oldest = firstOrNull();
+        if (oldest != null && now - oldest.millis() > maxLag.toMillis()) {
+            if (synchronousFlushes != null) {
+                synchronousFlushes.increment();
+            }
+            flush();
+        }
+    }
+
+    private DirtyMark firstOrNull() {
+        try {
+            return dirtyMarks.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private void backgroundFlush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int batches = maxBatches(); batches > 0 && flushBatch() == batchSize; batches--) {
+                // keep draining full batches
+            }
+        } catch (Exception e) {
+            log.warn("Background chat memory flush failed, will retry", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Batches needed for the current backlog, so writes arriving during a flush cannot keep it looping.
+     */
+    private int maxBatches() {
+        return pending.size() / batchSize + 1;
+    }
+
+    /**
+     * Write one batch of pending conversations. Must be called with the flush lock held.
+     * Entries are only removed if they were not rewritten during the flush.
+     */
+    private int flushBatch() {
+        List<Map.Entry<String, PendingWrite>> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Map.Entry<String, PendingWrite> entry : pending.entrySet()) {
+            batch.add(Map.entry(entry.getKey(), entry.getValue()));
+            if (batch.size() == batchSize) {
+                break;
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (transactionTemplate != null) {
+                transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            } else {
+                writeBatch(batch);
+            }
+        } catch (RuntimeException e) {
+            if (flushFailures != null) {
+                flushFailures.increment();
+            }
+            throw e;
+        }
+        if (flushTimer != null) {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (Map.Entry<String, PendingWrite> entry : batch) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                dirtyMarks.remove(entry.getValue().dirtyMark);
+            }
+        }
+        return batch.size();
+    }
+
+    private void writeBatch(List<Map.Entry<String, PendingWrite>> batch) {
+        for (Map.Entry<String, PendingWrite> entry : batch) {
+            if (entry.getValue().isDelete()) {
+                delegate.deleteByConversationId(entry.getKey());
+            } else {
+                delegate.saveAll(entry.getKey(), entry.getValue().messages);
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(10, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::backgroundFlush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(flushInterval.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int written = flush();
+        if (!pending.isEmpty()) {
+            log.error("{} conversations could not be flushed to the chat memory repository on shutdown",
+                    pending.size());
+        } else if (written > 0) {
+            log.info("Flushed {} pending conversations on shutdown", written);
+        }
+        cache.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop early in the shutdown sequence so the final flush runs while the DataSource is still open.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.memory.write-behind.pending", pending, Map::size)
+                .description("Conversations with writes not yet flushed to the database")
+                .register(registry);
+        flushTimer = Timer.builder("chat.memory.write-behind.flush")
+                .description("Time to flush one batch of conversations")
+                .register(registry);
+        flushFailures = Counter.builder("chat.memory.write-behind.flush.failures")
+                .description("Failed chat memory flushes (retried on the next cycle)")
+                .register(registry);
+        synchronousFlushes = Counter.builder("chat.memory.write-behind.sync-flushes")
+                .description("Flushes performed by a writer because max lag was exceeded")
+                .register(registry);
+    }
+
+    private static int stripe(String conversationId) {
+        int hash = conversationId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * When a conversation became dirty; the sequence number keeps marks of the same millisecond apart.
+     */
+    private record DirtyMark(long millis, long sequence) implements Comparable<DirtyMark> {
+
+        @Override
+        public int compareTo(DirtyMark other) {
+            int byTime = Long.compare(millis, other.millis);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Latest unflushed window of a conversation; an empty window is a delete.
+     * Compared by identity so a flush only clears the exact write it persisted.
+     * Rewrites before a flush keep the mark of the first unflushed write.
+     */
+    private static final class PendingWrite {
+
+        final List<Message> messages;
+        final DirtyMark dirtyMark;
+        final long lastWriteMillis;
+
+        PendingWrite(List<Message> messages, DirtyMark dirtyMark, long lastWriteMillis) {
+            this.messages = messages;
+            this.dirtyMark = dirtyMark;
+            this.lastWriteMillis = lastWriteMillis;
+        }
+
+        boolean isDelete() {
+            return messages.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records when each conversation was last written through this node, so that
+ * read-only queries about it are only routed to a replica that has replayed
+ * that write (read-your-own-writes).
+ *
+ * Only writes within the retention period are remembered; older writes are
+ * covered by the replicas' bounded staleness.
+ */
+public class WriteTrackingChatMemoryRepository implements ChatMemoryRepository {
+
+    private final ChatMemoryRepository delegate;
+    private final long retentionNanos;
+    private final Map<String, Long> lastWrites;
+
+    /**
+     * @param delegate repository holding the windows
+     * @param retention how long a write is remembered; the replicas' maximum lag
+     */
+    public WriteTrackingChatMemoryRepository(ChatMemoryRepository delegate, Duration retention) {
+        this.delegate = delegate;
+        this.retentionNanos = retention.toNanos();
+        // Insertion order is write order: expired writes are dropped from the front
+        this.lastWrites = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return System.nanoTime() - eldest.getValue() > retentionNanos;
+            }
+        };
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return delegate.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        return delegate.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        delegate.saveAll(conversationId, messages);
+        record(conversationId);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        delegate.deleteByConversationId(conversationId);
+        record(conversationId);
+    }
+
+    /**
+     * System.nanoTime() after the last write of a conversation through this node,
+     * or {@code Long.MIN_VALUE} if it was not written within the retention period.
+     */
+    public long lastWriteNanos(String conversationId) {
+        synchronized (lastWrites) {
+            Long writtenAt = lastWrites.get(conversationId);
+            return writtenAt != null ? writtenAt : Long.MIN_VALUE;
+        }
+    }
+
+    private void record(String conversationId) {
+        long now = System.nanoTime();
+        synchronized (lastWrites) {
+            lastWrites.remove(conversationId);
+            lastWrites.put(conversationId, now);
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package dev.jackelyj.spring_agent.repository;
 
+import dev.jackelyj.spring_agent.memory.ConversationCursor;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationMessage;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
 import org.springframework.ai.chat.messages.Message;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Chat memory repository interface for accessing conversation history.
@@ -23,6 +34,24 @@ public interface ChatMemoryRepository {
      */
     int getMessageCount(String conversationId);
     
+    /**
+     * Get conversation statistics (message count, size, activity) with a single lookup.
+     * 
+     * @param conversationId The conversation ID
+     * @return Statistics, or empty if the conversation does not exist
+     */
+    Optional<ConversationStats> getConversationStats(String conversationId);
+    
+    /**
+     * List one page of conversations using keyset pagination.
+     * 
+     * @param sort Listing order
+     * @param after Cursor of the last conversation of the previous page, or null for the first page
+     * @param limit Maximum number of conversations to return
+     * @return Conversations in listing order
+     */
+    List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit);
+    
     /**
      * Get all conversation IDs.
      * 
@@ -54,8 +83,78 @@ public interface ChatMemoryRepository {
     void clearConversation(String conversationId);
     
     /**
-     * Clear all conversations.
+     * Clear all conversations with a single set-based operation.
      */
     void clearAllConversations();
+    
+    /**
+     * Delete the given conversations in batches.
+     * 
+     * @param conversationIds The conversation IDs; unknown IDs are ignored
+     * @return Number of conversations deleted
+     */
+    int deleteConversations(Collection<String> conversationIds);
+    
+    /**
+     * Delete every conversation matching the criteria, in batches.
+     * 
+     * @param criteria Conversations to delete
+     * @param batchSize Maximum number of conversations deleted per batch
+     * @param progress Called with the running total of deleted conversations after each batch
+     * @return Number of conversations deleted
+     */
+    long purgeConversations(ConversationPurgeCriteria criteria, int batchSize, LongConsumer progress);
+    
+    /**
+     * Stream the messages of the matching conversations, in conversation ID
+     * order with each conversation's messages consecutive and in window order.
+     * 
+     * The default implementation reads one window at a time, paging through
+     * the listing, so memory use is bounded by a page and a window.
+     * 
+     * @param filter Conversations to export
+     * @param sink Receives each message
+     * @return Number of messages exported
+     */
+    default long exportConversations(ConversationFilter filter, Consumer<ConversationMessage> sink) {
+        long exported = 0;
+        if (filter.conversationIds() != null) {
+            for (String conversationId : filter.conversationIds()) {
+                if (filter.matches(conversationId)) {
+                    exported += exportWindow(conversationId, sink);
+                }
+            }
+            return exported;
+        }
+        int pageSize = 500;
+        ConversationCursor after = null;
+        while (true) {
+            List<ConversationStats> page = listConversations(ConversationSort.ID, after, pageSize);
+            for (ConversationStats stats : page) {
+                if (filter.matches(stats.conversationId())) {
+                    exported += exportWindow(stats.conversationId(), sink);
+                }
+            }
+            if (page.size() < pageSize) {
+                return exported;
+            }
+            after = ConversationCursor.after(page.get(page.size() - 1));
+        }
+    }
+    
+    private long exportWindow(String conversationId, Consumer<ConversationMessage> sink) {
+        List<Message> messages = getConversationHistory(conversationId);
+        for (Message message : messages) {
+            sink.accept(ConversationMessage.of(conversationId, message));
+        }
+        return messages.size();
+    }
+    
+    /**
+     * Replace the windows of a batch of conversations.
+     * 
+     * @param windows Messages per conversation, in window order; an empty window deletes the conversation
+     * @return Number of messages imported
+     */
+    long importConversations(Map<String, List<Message>> windows);
 }
-
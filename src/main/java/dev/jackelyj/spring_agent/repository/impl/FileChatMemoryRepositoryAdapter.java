@@ -0,0 +1,123 @@
+package dev.jackelyj.spring_agent.repository.impl;
+
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import dev.jackelyj.spring_agent.memory.ConversationCursor;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
+import dev.jackelyj.spring_agent.memory.SegmentLogChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.VersionedCachingChatMemoryRepository;
+import dev.jackelyj.spring_agent.repository.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * File adapter for ChatMemoryRepository.
+ * 
+ * This adapter reads from the segment log that backs ChatMemory. Counts,
+ * statistics and listings come from the log's in-memory index; only
+ * history reads touch the mapped segment files. Deletes and imports made
+ * here evict the affected windows from the read cache, if enabled.
+ * 
+ * SOLID Principles:
+ * - SRP: Only responsible for adapting file-backed chat memory to our interface
+ * - LSP: Can substitute any ChatMemoryRepository implementation
+ * - DIP: Depends on the store behind Spring AI's ChatMemoryRepository abstraction
+ */
+@Repository
+@ConditionalOnFullAgentMode
+@ConditionalOnProperty(name = "chat.memory.type", havingValue = "file")
+public class FileChatMemoryRepositoryAdapter implements ChatMemoryRepository {
+    
+    private final SegmentLogChatMemoryRepository store;
+    private final ObjectProvider<VersionedCachingChatMemoryRepository> readCache;
+    
+    public FileChatMemoryRepositoryAdapter(
+            SegmentLogChatMemoryRepository store,
+            ObjectProvider<VersionedCachingChatMemoryRepository> readCache) {
+        this.store = store;
+        this.readCache = readCache;
+    }
+    
+    @Override
+    public int getMessageCount(String conversationId) {
+        return store.messageCount(conversationId);
+    }
+    
+    @Override
+    public Optional<ConversationStats> getConversationStats(String conversationId) {
+        return store.findStats(conversationId);
+    }
+    
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        return store.listConversations(sort, after, limit);
+    }
+    
+    @Override
+    public List<String> getAllConversationIds() {
+        return store.findConversationIds();
+    }
+    
+    @Override
+    public List<Message> getConversationHistory(String conversationId) {
+        return store.findByConversationId(conversationId);
+    }
+    
+    @Override
+    public boolean conversationExists(String conversationId) {
+        return store.containsConversation(conversationId);
+    }
+    
+    @Override
+    public void clearConversation(String conversationId) {
+        store.deleteByConversationId(conversationId);
+        readCache.ifAvailable(cache -> cache.invalidate(List.of(conversationId)));
+    }
+    
+    @Override
+    public void clearAllConversations() {
+        store.deleteAllConversations();
+        readCache.ifAvailable(VersionedCachingChatMemoryRepository::invalidateAll);
+    }
+    
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        int deleted = store.deleteConversations(conversationIds);
+        readCache.ifAvailable(cache -> cache.invalidate(conversationIds));
+        return deleted;
+    }
+    
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize, LongConsumer progress) {
+        AtomicLong deleted = new AtomicLong();
+        return store.purgeConversations(criteria, batchSize, batch -> {
+            readCache.ifAvailable(cache -> cache.invalidate(batch));
+            progress.accept(deleted.addAndGet(batch.size()));
+        });
+    }
+    
+    @Override
+    public long importConversations(Map<String, List<Message>> windows) {
+        long imported = 0;
+        for (Map.Entry<String, List<Message>> window : windows.entrySet()) {
+            if (window.getValue().isEmpty()) {
+                store.deleteByConversationId(window.getKey());
+            } else {
+                store.saveAll(window.getKey(), window.getValue());
+            }
+            imported += window.getValue().size();
+        }
+        readCache.ifAvailable(cache -> cache.invalidate(windows.keySet()));
+        return imported;
+    }
+}
@@ -1,93 +1,109 @@
 package dev.jackelyj.spring_agent.repository.impl;
 
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import dev.jackelyj.spring_agent.memory.BoundedInMemoryChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.ConversationCursor;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
 import dev.jackelyj.spring_agent.repository.ChatMemoryRepository;
-import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 /**
  * In-memory adapter for ChatMemoryRepository.
  * 
- * This adapter wraps Spring AI's in-memory ChatMemory implementation
- * and provides our application-specific interface.
+ * This adapter reads from the bounded in-memory store that backs ChatMemory,
+ * whose index is authoritative: every conversation written by the chat flow
+ * is listed, and evicted conversations disappear from it.
  * 
  * SOLID Principles:
  * - SRP: Only responsible for adapting in-memory chat memory to our interface
  * - LSP: Can substitute any ChatMemoryRepository implementation
- * - DIP: Depends on Spring AI's ChatMemory abstraction
+ * - DIP: Depends on the store behind Spring AI's ChatMemoryRepository abstraction
  */
 @Repository
+@ConditionalOnFullAgentMode
 @ConditionalOnProperty(name = "chat.memory.type", havingValue = "in-memory", matchIfMissing = true)
 public class InMemoryChatMemoryRepository implements ChatMemoryRepository {
     
-    private final ChatMemory chatMemory;
+    private final BoundedInMemoryChatMemoryRepository store;
     
-    // Track conversation IDs manually since in-memory implementation doesn't expose them
-    private final Map<String, Integer> conversationTracker = new ConcurrentHashMap<>();
-    
-    public InMemoryChatMemoryRepository(ChatMemory chatMemory) {
-        this.chatMemory = chatMemory;
+    public InMemoryChatMemoryRepository(BoundedInMemoryChatMemoryRepository store) {
+        this.store = store;
     }
     
     @Override
     public int getMessageCount(String conversationId) {
-        List<Message> messages = chatMemory.get(conversationId);
-        int count = messages.size();
-        
-        // Track this conversation
-        if (count > 0) {
-            conversationTracker.put(conversationId, count);
-        }
-        
-        return count;
+        return store.messageCount(conversationId);
+    }
+    
+    @Override
+    public Optional<ConversationStats> getConversationStats(String conversationId) {
+        return store.findStats(conversationId);
+    }
+    
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        return store.listConversations(sort, after, limit);
     }
     
     @Override
     public List<String> getAllConversationIds() {
-        return new ArrayList<>(conversationTracker.keySet());
+        return store.findConversationIds();
     }
     
     @Override
     public List<Message> getConversationHistory(String conversationId) {
-        List<Message> messages = chatMemory.get(conversationId);
-        
-        // Track this conversation
-        if (!messages.isEmpty()) {
-            conversationTracker.put(conversationId, messages.size());
-        }
-        
-        return messages;
+        return store.findByConversationId(conversationId);
     }
     
     @Override
     public boolean conversationExists(String conversationId) {
-        List<Message> messages = chatMemory.get(conversationId);
-        boolean exists = !messages.isEmpty();
-        
-        if (exists) {
-            conversationTracker.put(conversationId, messages.size());
-        }
-        
-        return exists;
+        return store.containsConversation(conversationId);
     }
     
     @Override
     public void clearConversation(String conversationId) {
-        chatMemory.clear(conversationId);
-        conversationTracker.remove(conversationId);
+        store.deleteByConversationId(conversationId);
     }
     
     @Override
     public void clearAllConversations() {
-        // Clear all tracked conversations
-        conversationTracker.keySet().forEach(chatMemory::clear);
-        conversationTracker.clear();
+        store.deleteAllConversations();
+    }
+    
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        return store.deleteConversations(conversationIds);
+    }
+    
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize, LongConsumer progress) {
+        AtomicLong deleted = new AtomicLong();
+        return store.purgeConversations(criteria, batchSize,
+                batch -> progress.accept(deleted.addAndGet(batch.size())));
+    }
+    
+    @Override
+    public long importConversations(Map<String, List<Message>> windows) {
+        long imported = 0;
+        for (Map.Entry<String, List<Message>> window : windows.entrySet()) {
+            if (window.getValue().isEmpty()) {
+                store.deleteByConversationId(window.getKey());
+            } else {
+                store.saveAll(window.getKey(), window.getValue());
+            }
+            imported += window.getValue().size();
+        }
+        return imported;
     }
 }
-
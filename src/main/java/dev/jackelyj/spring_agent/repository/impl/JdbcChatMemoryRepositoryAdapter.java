@@ -1,13 +1,46 @@
 package dev.jackelyj.spring_agent.repository.impl;
 
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import dev.jackelyj.spring_agent.datasource.ReplicaRoutingDataSource;
+import dev.jackelyj.spring_agent.memory.AppendOnlyJdbcChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.BulkConversationDeletion;
+import dev.jackelyj.spring_agent.memory.ConversationCursor;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationListing;
+import dev.jackelyj.spring_agent.memory.ConversationMessage;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
+import dev.jackelyj.spring_agent.memory.ConversationStatsProvider;
+import dev.jackelyj.spring_agent.memory.ShardedChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.VersionedCachingChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.WriteBehindChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.WriteTrackingChatMemoryRepository;
 import dev.jackelyj.spring_agent.repository.ChatMemoryRepository;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * JDBC-based adapter for ChatMemoryRepository.
@@ -15,33 +48,174 @@ import java.util.List;
  * This adapter wraps Spring AI's ChatMemory and provides
  * our application-specific interface implementation with JDBC backend.
  * 
+ * When the write-behind tier is enabled, pending writes are flushed before
+ * queries that read ai_chat_memory directly, so they see every acknowledged turn.
+ * 
+ * Counts and existence checks use the statistics maintained by the configured
+ * store (write-behind or append-only) when available, and a COUNT(*) otherwise.
+ * Listings use the store's conversation table when available; the fallback
+ * aggregates ai_chat_memory per page.
+ * 
+ * Deletes are set-based: the configured store's bulk operations when
+ * available, otherwise TRUNCATE and batched {@code conversation_id = ANY(?)}
+ * deletes on ai_chat_memory, after which the write-behind tier is invalidated.
+ * 
+ * Bulk exports read through a server-side cursor and bulk imports replace a
+ * batch of windows with one delete and multi-row inserts, on the append-only
+ * store when configured and on ai_chat_memory otherwise.
+ * 
+ * With the sharded store, ID lists and listings are gathered from every
+ * shard, bulk operations run per shard, and exports page through the merged
+ * listing in conversation ID order.
+ * 
+ * With read replicas, read-only queries (history, counts, listings, ID lists,
+ * exports) run in a read-only scope of the routing DataSource: per-conversation
+ * reads only use a replica that has replayed this node's last write to the
+ * conversation, and window loads that an in-process tier would keep for later
+ * turns stay on the primary. Write-behind flushes happen before the scope.
+ * 
+ * With the read cache enabled, counts and existence checks without a
+ * statistics store are answered from the cached window, and every bulk
+ * change made here evicts the affected windows (on all nodes, with notify).
+ * 
  * SOLID Principles:
  * - SRP: Only responsible for adapting JDBC chat memory to our interface
  * - LSP: Can substitute any ChatMemoryRepository implementation
  * - DIP: Depends on Spring AI's ChatMemory abstraction
  */
 @Repository
+@ConditionalOnFullAgentMode
 @ConditionalOnProperty(name = "chat.memory.type", havingValue = "jdbc")
 public class JdbcChatMemoryRepositoryAdapter implements ChatMemoryRepository {
     
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int IMPORT_ROWS_PER_STATEMENT = 1000;
+    
     private final ChatMemory chatMemory;
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<WriteBehindChatMemoryRepository> writeBehind;
+    private final ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnly;
+    private final ObjectProvider<ShardedChatMemoryRepository> sharded;
+    private final ObjectProvider<VersionedCachingChatMemoryRepository> readCache;
+    private final ObjectProvider<WriteTrackingChatMemoryRepository> writeTracker;
     
     public JdbcChatMemoryRepositoryAdapter(
             ChatMemory chatMemory,
-            JdbcTemplate jdbcTemplate) {
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<WriteBehindChatMemoryRepository> writeBehind,
+            ObjectProvider<AppendOnlyJdbcChatMemoryRepository> appendOnly,
+            ObjectProvider<ShardedChatMemoryRepository> sharded,
+            ObjectProvider<VersionedCachingChatMemoryRepository> readCache,
+            ObjectProvider<WriteTrackingChatMemoryRepository> writeTracker) {
         this.chatMemory = chatMemory;
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeBehind = writeBehind;
+        this.appendOnly = appendOnly;
+        this.sharded = sharded;
+        this.readCache = readCache;
+        this.writeTracker = writeTracker;
     }
     
     @Override
     public int getMessageCount(String conversationId) {
+        return readConversation(conversationId, !hasStatsTable(), () -> countMessages(conversationId));
+    }
+    
+    private int countMessages(String conversationId) {
+        ConversationStatsProvider statsProvider = statsProvider();
+        if (statsProvider != null) {
+            return statsProvider.findStats(conversationId).map(ConversationStats::messageCount).orElse(0);
+        }
+        VersionedCachingChatMemoryRepository cache = readCache.getIfAvailable();
+        if (cache != null) {
+            return cache.findByConversationId(conversationId).size();
+        }
+        String sql = "SELECT COUNT(*) FROM ai_chat_memory WHERE conversation_id = ?";
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, conversationId);
+        return count != null ? count : 0;
+    }
+    
+    @Override
+    public Optional<ConversationStats> getConversationStats(String conversationId) {
+        return readConversation(conversationId, !hasStatsTable(), () -> findStats(conversationId));
+    }
+    
+    private Optional<ConversationStats> findStats(String conversationId) {
+        ConversationStatsProvider statsProvider = statsProvider();
+        if (statsProvider != null) {
+            return statsProvider.findStats(conversationId);
+        }
         List<Message> messages = chatMemory.get(conversationId);
-        return messages.size();
+        if (messages.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(ConversationStats.of(conversationId, messages, null, null));
+    }
+    
+    @Override
+    public List<ConversationStats> listConversations(ConversationSort sort, ConversationCursor after, int limit) {
+        ConversationListing listing = listing();
+        if (listing instanceof WriteBehindChatMemoryRepository writeBehindRepository) {
+            // Flush on the primary, then list from the durable store it delegates to
+            writeBehindRepository.flush();
+            listing = durableListing();
+        }
+        ConversationListing store = listing;
+        return ReplicaRoutingDataSource.readOnly(() -> list(store, sort, after, limit));
+    }
+    
+    private List<ConversationStats> list(ConversationListing listing, ConversationSort sort,
+                                         ConversationCursor after, int limit) {
+        if (listing != null) {
+            return listing.listConversations(sort, after, limit);
+        }
+        
+        String select = "SELECT conversation_id, COUNT(*) AS message_count, SUM(length(content)) AS total_chars,"
+                + " MIN(\"timestamp\") AS first_activity, MAX(\"timestamp\") AS last_activity FROM ai_chat_memory";
+        RowMapper<ConversationStats> rowMapper = (rs, rowNum) -> new ConversationStats(
+                rs.getString("conversation_id"), rs.getInt("message_count"), rs.getLong("total_chars"),
+                rs.getLong("total_chars") / 4, rs.getTimestamp("first_activity").toInstant(),
+                rs.getTimestamp("last_activity").toInstant());
+        if (sort == ConversationSort.LAST_ACTIVITY) {
+            String order = " ORDER BY MAX(\"timestamp\") DESC, conversation_id DESC LIMIT ?";
+            if (after == null) {
+                return jdbcTemplate.query(select + " GROUP BY conversation_id" + order, rowMapper, limit);
+            }
+            if (after.lastActivity() == null) {
+                throw new IllegalArgumentException("Cursor does not match sort order " + sort);
+            }
+            return jdbcTemplate.query(select + " GROUP BY conversation_id"
+                            + " HAVING (MAX(\"timestamp\"), conversation_id) < (?, ?)" + order,
+                    rowMapper, Timestamp.from(after.lastActivity()), after.conversationId(), limit);
+        }
+        String order = " GROUP BY conversation_id ORDER BY conversation_id LIMIT ?";
+        if (after == null) {
+            return jdbcTemplate.query(select + order, rowMapper, limit);
+        }
+        return jdbcTemplate.query(select + " WHERE conversation_id > ?" + order, rowMapper,
+                after.conversationId(), limit);
     }
     
     @Override
     public List<String> getAllConversationIds() {
+        writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+        return ReplicaRoutingDataSource.readOnly(this::findConversationIds);
+    }
+    
+    private List<String> findConversationIds() {
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        if (appendOnlyRepository != null) {
+            // One row per conversation, instead of a DISTINCT over every message partition
+            return appendOnlyRepository.findConversationIds();
+        }
+        ShardedChatMemoryRepository shardedRepository = sharded.getIfAvailable();
+        if (shardedRepository != null) {
+            return shardedRepository.findConversationIds();
+        }
         // Query the chat_memory table for distinct conversation IDs
         String sql = "SELECT DISTINCT conversation_id FROM ai_chat_memory ORDER BY conversation_id";
         return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("conversation_id"));
@@ -49,11 +223,23 @@ public class JdbcChatMemoryRepositoryAdapter implements ChatMemoryRepository {
     
     @Override
     public List<Message> getConversationHistory(String conversationId) {
-        return chatMemory.get(conversationId);
+        return readConversation(conversationId, true, () -> chatMemory.get(conversationId));
     }
     
     @Override
     public boolean conversationExists(String conversationId) {
+        return readConversation(conversationId, !hasStatsTable(), () -> exists(conversationId));
+    }
+    
+    private boolean exists(String conversationId) {
+        ConversationStatsProvider statsProvider = statsProvider();
+        if (statsProvider != null) {
+            return statsProvider.findStats(conversationId).isPresent();
+        }
+        VersionedCachingChatMemoryRepository cache = readCache.getIfAvailable();
+        if (cache != null) {
+            return !cache.findByConversationId(conversationId).isEmpty();
+        }
         String sql = "SELECT COUNT(*) FROM ai_chat_memory WHERE conversation_id = ?";
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, conversationId);
         return count != null && count > 0;
@@ -66,9 +252,271 @@ public class JdbcChatMemoryRepositoryAdapter implements ChatMemoryRepository {
     
     @Override
     public void clearAllConversations() {
-        // Get all conversation IDs and clear them one by one
-        List<String> conversationIds = getAllConversationIds();
-        conversationIds.forEach(chatMemory::clear);
+        BulkConversationDeletion bulk = bulkDeletion();
+        if (bulk != null) {
+            bulk.deleteAllConversations();
+        } else {
+            writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+            jdbcTemplate.execute("TRUNCATE TABLE ai_chat_memory");
+            writeBehind.ifAvailable(WriteBehindChatMemoryRepository::invalidateAll);
+        }
+        readCache.ifAvailable(VersionedCachingChatMemoryRepository::invalidateAll);
+    }
+    
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        BulkConversationDeletion bulk = bulkDeletion();
+        if (bulk != null) {
+            int deleted = bulk.deleteConversations(conversationIds);
+            readCache.ifAvailable(cache -> cache.invalidate(conversationIds));
+            return deleted;
+        }
+        writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+        List<String> ids = List.copyOf(new LinkedHashSet<>(conversationIds));
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH_SIZE) {
+            deleted += deleteBatch(ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH_SIZE))).size();
+        }
+        return deleted;
+    }
+    
+    @Override
+    public long purgeConversations(ConversationPurgeCriteria criteria, int batchSize, LongConsumer progress) {
+        AtomicLong deleted = new AtomicLong();
+        BulkConversationDeletion bulk = bulkDeletion();
+        if (bulk != null) {
+            return bulk.purgeConversations(criteria, batchSize, batch -> {
+                readCache.ifAvailable(cache -> cache.invalidate(batch));
+                progress.accept(deleted.addAndGet(batch.size()));
+            });
+        }
+        
+        writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+        StringBuilder sql = new StringBuilder("SELECT conversation_id FROM ai_chat_memory WHERE conversation_id > ?");
+        if (criteria.idPrefix() != null) {
+            sql.append(" AND conversation_id LIKE ?");
+        }
+        sql.append(" GROUP BY conversation_id");
+        if (criteria.idleBefore() != null) {
+            sql.append(" HAVING MAX(\"timestamp\") < ?");
+        }
+        sql.append(" ORDER BY conversation_id LIMIT ?");
+        
+        String after = "";
+        while (true) {
+            List<Object> args = new ArrayList<>(4);
+            args.add(after);
+            if (criteria.idPrefix() != null) {
+                args.add(criteria.idLikePattern());
+            }
+            if (criteria.idleBefore() != null) {
+                args.add(Timestamp.from(criteria.idleBefore()));
+            }
+            args.add(batchSize);
+            List<String> candidates = jdbcTemplate.queryForList(sql.toString(), String.class, args.toArray());
+            if (candidates.isEmpty()) {
+                break;
+            }
+            List<String> removed = deleteBatch(candidates);
+            if (!removed.isEmpty()) {
+                progress.accept(deleted.addAndGet(removed.size()));
+            }
+            if (candidates.size() < batchSize) {
+                break;
+            }
+            after = candidates.get(candidates.size() - 1);
+        }
+        return deleted.get();
+    }
+    
+    @Override
+    public long exportConversations(ConversationFilter filter, Consumer<ConversationMessage> sink) {
+        writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+        if (appendOnly.getIfAvailable() == null && sharded.getIfAvailable() != null) {
+            // One cursor per shard would not give a global ID order; page through the merged listing instead
+            return ChatMemoryRepository.super.exportConversations(filter, sink);
+        }
+        return ReplicaRoutingDataSource.readOnly(() -> export(filter, sink));
+    }
+    
+    private long export(ConversationFilter filter, Consumer<ConversationMessage> sink) {
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        if (appendOnlyRepository != null) {
+            return appendOnlyRepository.exportMessages(filter, sink);
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT conversation_id, type, content FROM ai_chat_memory");
+        List<String> conditions = new ArrayList<>(2);
+        if (filter.conversationIds() != null) {
+            conditions.add("conversation_id = ANY(?)");
+        }
+        if (filter.idPrefix() != null) {
+            conditions.add("conversation_id LIKE ?");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY conversation_id, \"timestamp\"");
+        
+        AtomicLong exported = new AtomicLong();
+        // A fetch size inside a transaction makes the driver read through a server-side cursor
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString());
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            int index = 1;
+            if (filter.conversationIds() != null) {
+                ps.setArray(index++, connection.createArrayOf("varchar", filter.conversationIds().toArray()));
+            }
+            if (filter.idPrefix() != null) {
+                ps.setString(index, filter.idLikePattern());
+            }
+            return ps;
+        }, rs -> {
+            sink.accept(new ConversationMessage(rs.getString(1), MessageType.valueOf(rs.getString(2)),
+                    rs.getString(3)));
+            exported.incrementAndGet();
+        }));
+        return exported.get();
+    }
+    
+    @Override
+    public long importConversations(Map<String, List<Message>> windows) {
+        if (windows.isEmpty()) {
+            return 0;
+        }
+        writeBehind.ifAvailable(WriteBehindChatMemoryRepository::flush);
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        ShardedChatMemoryRepository shardedRepository = sharded.getIfAvailable();
+        long imported;
+        if (appendOnlyRepository != null) {
+            imported = appendOnlyRepository.importWindows(windows);
+        } else if (shardedRepository != null) {
+            imported = shardedRepository.importWindows(windows);
+        } else {
+            imported = importIntoChatMemoryTable(windows);
+        }
+        writeBehind.ifAvailable(repository -> repository.invalidate(windows.keySet()));
+        readCache.ifAvailable(cache -> cache.invalidate(windows.keySet()));
+        return imported;
+    }
+    
+    /**
+     * Replace windows in ai_chat_memory in one transaction: one set-based delete,
+     * then multi-row inserts. Timestamps increase by a millisecond per message,
+     * as Spring AI writes them, to keep the window order.
+     */
+    private long importIntoChatMemoryTable(Map<String, List<Message>> windows) {
+        long base = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        windows.forEach((conversationId, messages) -> {
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                rows.add(new Object[] {conversationId, message.getText() != null ? message.getText() : "",
+                        message.getMessageType().name(), new Timestamp(base + i)});
+            }
+        });
+        List<String> ids = List.copyOf(windows.keySet());
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "DELETE FROM ai_chat_memory WHERE conversation_id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("varchar", ids.toArray()));
+                return ps;
+            });
+            String placeholders = "(?, ?, ?, ?)";
+            for (int from = 0; from < rows.size(); from += IMPORT_ROWS_PER_STATEMENT) {
+                List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + IMPORT_ROWS_PER_STATEMENT));
+                List<Object> args = new ArrayList<>(chunk.size() * 4);
+                chunk.forEach(row -> Collections.addAll(args, row));
+                jdbcTemplate.update("INSERT INTO ai_chat_memory (conversation_id, content, type, \"timestamp\") VALUES "
+                        + String.join(", ", Collections.nCopies(chunk.size(), placeholders)), args.toArray());
+            }
+        });
+        return rows.size();
+    }
+    
+    /**
+     * Delete one batch of conversations from ai_chat_memory with a single statement.
+     * 
+     * @return IDs of the conversations that had rows
+     */
+    private List<String> deleteBatch(List<String> conversationIds) {
+        List<String> removed = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("WITH deleted AS (DELETE FROM ai_chat_memory"
+                    + " WHERE conversation_id = ANY(?) RETURNING conversation_id)"
+                    + " SELECT DISTINCT conversation_id FROM deleted");
+            ps.setArray(1, connection.createArrayOf("varchar", conversationIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+        writeBehind.ifAvailable(repository -> repository.invalidate(conversationIds));
+        readCache.ifAvailable(cache -> cache.invalidate(conversationIds));
+        return removed;
+    }
+    
+    /**
+     * The store that deletes conversations in bulk, if any.
+     */
+    private BulkConversationDeletion bulkDeletion() {
+        WriteBehindChatMemoryRepository writeBehindRepository = writeBehind.getIfAvailable();
+        if (writeBehindRepository != null) {
+            return writeBehindRepository.supportsBulkDeletion() ? writeBehindRepository : null;
+        }
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        return appendOnlyRepository != null ? appendOnlyRepository : sharded.getIfAvailable();
+    }
+    
+    /**
+     * The store that lists conversations from its own conversation table, if any.
+     */
+    private ConversationListing listing() {
+        WriteBehindChatMemoryRepository writeBehindRepository = writeBehind.getIfAvailable();
+        if (writeBehindRepository != null && writeBehindRepository.supportsListing()) {
+            return writeBehindRepository;
+        }
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        return appendOnlyRepository != null ? appendOnlyRepository : sharded.getIfAvailable();
+    }
+    
+    /**
+     * The store that maintains conversation statistics, if any.
+     */
+    private ConversationStatsProvider statsProvider() {
+        WriteBehindChatMemoryRepository writeBehindRepository = writeBehind.getIfAvailable();
+        if (writeBehindRepository != null) {
+            return writeBehindRepository;
+        }
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        return appendOnlyRepository != null ? appendOnlyRepository : sharded.getIfAvailable();
+    }
+    
+    /**
+     * The append-only or sharded store's listing, below the write-behind tier.
+     */
+    private ConversationListing durableListing() {
+        AppendOnlyJdbcChatMemoryRepository appendOnlyRepository = appendOnly.getIfAvailable();
+        return appendOnlyRepository != null ? appendOnlyRepository : sharded.getIfAvailable();
+    }
+    
+    /**
+     * Whether counts and existence checks read a statistics table rather than loading the window.
+     */
+    private boolean hasStatsTable() {
+        return appendOnly.getIfAvailable() != null || sharded.getIfAvailable() != null;
+    }
+    
+    /**
+     * Run a read about one conversation in a read-only scope that only uses a
+     * replica which has replayed this node's last write to it. A read that
+     * loads the window stays on the primary when the write-behind tier or the
+     * read cache would keep the loaded window and serve it to later turns.
+     */
+    private <T> T readConversation(String conversationId, boolean loadsWindow, Supplier<T> read) {
+        if (loadsWindow && (writeBehind.getIfAvailable() != null || readCache.getIfAvailable() != null)) {
+            return ReplicaRoutingDataSource.onPrimary(read);
+        }
+        WriteTrackingChatMemoryRepository tracker = writeTracker.getIfAvailable();
+        long lastWrite = tracker != null ? tracker.lastWriteNanos(conversationId) : Long.MIN_VALUE;
+        return ReplicaRoutingDataSource.readOnlyFreshSince(lastWrite, read);
     }
 }
-
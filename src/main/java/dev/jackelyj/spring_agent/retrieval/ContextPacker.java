@@ -0,0 +1,166 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes near-duplicate chunks and packs the remainder into a token budget.
+ *
+ * Near-duplicates are detected with character 5-gram shingles over
+ * whitespace- and case-normalised text, which works for both space-delimited
+ * languages and CJK text. When two chunks overlap above the threshold only
+ * the first (higher ranked) one is kept.
+ */
+public class ContextPacker {
+
+    private static final int SHINGLE_SIZE = 5;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    public ContextPacker(TokenCountEstimator tokenCountEstimator) {
+        this.tokenCountEstimator = tokenCountEstimator;
+    }
+
+    /**
+     * Drop candidates whose text is a near-duplicate of a higher ranked candidate.
+     *
+     * @param candidates candidates in rank order
+     * @param threshold Jaccard similarity at or above which two texts are duplicates
+     * @return surviving candidates in their original order
+     */
+    public List<RetrievalCandidate> removeNearDuplicates(List<RetrievalCandidate> candidates, double threshold) {
+        if (threshold <= 0.0 || threshold > 1.0 || candidates.size() < 2) {
+            return candidates;
+        }
+
+        List<RetrievalCandidate> kept = new ArrayList<>(candidates.size());
+        List<int[]> keptShingles = new ArrayList<>(candidates.size());
+        for (RetrievalCandidate candidate : candidates) {
+            int[] shingles = shingles(candidate.text());
+            boolean duplicate = false;
+            for (int[] other : keptShingles) {
+                if (jaccard(shingles, other) >= threshold) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                kept.add(candidate);
+                keptShingles.add(shingles);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Greedily keep candidates in rank order while they fit in the token budget.
+     *
+     * A chunk that does not fit is skipped rather than ending the packing, so a
+     * smaller lower-ranked chunk can still use the remaining budget.
+     *
+     * @param candidates candidates in rank order
+     * @param maxItems maximum number of chunks to return
+     * @param tokenBudget total token budget, or 0 for no budget
+     * @return packed candidates in rank order
+     */
+    public List<RetrievalCandidate> pack(List<RetrievalCandidate> candidates, int maxItems, int tokenBudget) {
+        List<RetrievalCandidate> packed = new ArrayList<>(Math.min(maxItems, candidates.size()));
+        int remaining = tokenBudget;
+        for (RetrievalCandidate candidate : candidates) {
+            if (packed.size() >= maxItems) {
+                break;
+            }
+            if (tokenBudget > 0) {
+                int tokens = estimateTokens(candidate.text());
+                if (tokens > remaining) {
+                    continue;
+                }
+                remaining -= tokens;
+            }
+            packed.add(candidate);
+        }
+        return packed;
+    }
+
+    /**
+     * Estimate the number of tokens in a text.
+     */
+    public int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return tokenCountEstimator.estimate(text);
+    }
+
+    /**
+     * Hash every 5-character window of the normalised text into a sorted, distinct int array.
+     */
+    static int[] shingles(String text) {
+        if (text == null) {
+            return new int[0];
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean lastWasSpace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    normalized.append(' ');
+                    lastWasSpace = true;
+                }
+            } else {
+                normalized.append(Character.toLowerCase(c));
+                lastWasSpace = false;
+            }
+        }
+
+        int count = normalized.length() - SHINGLE_SIZE + 1;
+        if (count <= 0) {
+            return new int[]{normalized.toString().hashCode()};
+        }
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int h = 0;
+            for (int j = i; j < i + SHINGLE_SIZE; j++) {
+                h = 31 * h + normalized.charAt(j);
+            }
+            hashes[i] = h;
+        }
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, distinct);
+    }
+
+    /**
+     * Jaccard similarity of two sorted, distinct int arrays.
+     */
+    static double jaccard(int[] a, int[] b) {
+        if (a.length == 0 && b.length == 0) {
+            return 1.0;
+        }
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - intersection;
+        return (double) intersection / union;
+    }
+}
@@ -0,0 +1,104 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maximal Marginal Relevance reranker.
+ *
+ * Greedily picks the candidate that maximises
+ * {@code lambda * relevance - (1 - lambda) * maxSimilarityToAlreadySelected},
+ * where relevance is the vector store score and similarity is the cosine
+ * between stored embeddings. Candidates without an embedding only compete
+ * on relevance.
+ *
+ * Cost is O(k * n) cosine evaluations; each candidate's running maximum
+ * similarity is updated incrementally as selections are made.
+ */
+public class MmrReranker {
+
+    /**
+     * Select up to {@code k} candidates in MMR order.
+     *
+     * @param candidates candidates ordered by relevance (highest first)
+     * @param k number of candidates to select
+     * @param lambda relevance/diversity trade-off in [0, 1]
+     * @return selected candidates in selection order
+     */
+    public List<RetrievalCandidate> rerank(List<RetrievalCandidate> candidates, int k, double lambda) {
+        int n = candidates.size();
+        if (n <= 1 || k <= 0) {
+            return candidates.subList(0, Math.min(n, Math.max(k, 0)));
+        }
+
+        float[][] unit = new float[n][];
+        for (int i = 0; i < n; i++) {
+            unit[i] = normalize(candidates.get(i).embedding());
+        }
+
+        double[] maxSimilarity = new double[n];
+        Arrays.fill(maxSimilarity, 0.0);
+        boolean[] selected = new boolean[n];
+        List<RetrievalCandidate> result = new ArrayList<>(Math.min(k, n));
+
+        while (result.size() < k && result.size() < n) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (selected[i]) {
+                    continue;
+                }
+                double mmr = lambda * candidates.get(i).score() - (1.0 - lambda) * maxSimilarity[i];
+                if (mmr > bestScore) {
+                    bestScore = mmr;
+                    best = i;
+                }
+            }
+
+            selected[best] = true;
+            result.add(candidates.get(best));
+
+            if (unit[best] == null) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (!selected[i] && unit[i] != null) {
+                    double similarity = dot(unit[best], unit[i]);
+                    if (similarity > maxSimilarity[i]) {
+                        maxSimilarity[i] = similarity;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += (double) v * v;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        float inverse = (float) (1.0 / Math.sqrt(norm));
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = vector[i] * inverse;
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,25 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import java.util.Map;
+
+/**
+ * A document chunk returned by the vector store, together with the embedding
+ * that was stored for it.
+ *
+ * The embedding is loaded from the vector table rather than recomputed,
+ * so reranking never triggers an extra embedding round trip.
+ */
+public record RetrievalCandidate(
+    String id,
+    String text,
+    Map<String, Object> metadata,
+    double score,
+    float[] embedding
+) {
+    /**
+     * Whether a stored embedding is available for this candidate.
+     */
+    public boolean hasEmbedding() {
+        return embedding != null && embedding.length > 0;
+    }
+}
@@ -0,0 +1,120 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+/**
+ * Options for the post-retrieval stage (over-fetch, MMR, de-duplication, packing).
+ *
+ * @param topK maximum number of chunks to return
+ * @param threshold similarity threshold applied by the vector store
+ * @param filterExpression optional metadata filter expression
+ * @param fetchK number of candidates to over-fetch before reranking
+ * @param lambda MMR trade-off: 1.0 is pure relevance, 0.0 is pure diversity
+ * @param duplicateThreshold shingle Jaccard similarity above which two chunks are near-duplicates
+ * @param tokenBudget maximum total tokens of the returned chunks, or 0 for no budget
+ */
+public record RetrievalOptions(
+    int topK,
+    double threshold,
+    String filterExpression,
+    int fetchK,
+    double lambda,
+    double duplicateThreshold,
+    int tokenBudget
+) {
+    public static final int DEFAULT_FETCH_MULTIPLIER = 4;
+    public static final double DEFAULT_LAMBDA = 0.7;
+    public static final double DEFAULT_DUPLICATE_THRESHOLD = 0.9;
+
+    public RetrievalOptions {
+        if (topK < 1) {
+            throw new IllegalArgumentException("topK must be at least 1");
+        }
+        if (lambda < 0.0 || lambda > 1.0) {
+            throw new IllegalArgumentException("lambda must be between 0 and 1");
+        }
+        fetchK = Math.max(fetchK, topK);
+        tokenBudget = Math.max(tokenBudget, 0);
+    }
+
+    /**
+     * Whether a token budget was requested.
+     */
+    public boolean hasTokenBudget() {
+        return tokenBudget > 0;
+    }
+
+    /**
+     * Whether a metadata filter was requested.
+     */
+    public boolean hasFilter() {
+        return filterExpression != null && !filterExpression.isBlank();
+    }
+
+    /**
+     * Start building options for the given result size.
+     */
+    public static Builder builder(int topK) {
+        return new Builder(topK);
+    }
+
+    /**
+     * Builder with the default over-fetch factor, MMR lambda and duplicate threshold.
+     */
+    public static final class Builder {
+
+        private final int topK;
+        private double threshold = 0.0;
+        private String filterExpression;
+        private Integer fetchK;
+        private double lambda = DEFAULT_LAMBDA;
+        private double duplicateThreshold = DEFAULT_DUPLICATE_THRESHOLD;
+        private int tokenBudget;
+
+        private Builder(int topK) {
+            this.topK = topK;
+        }
+
+        public Builder threshold(Double threshold) {
+            if (threshold != null) {
+                this.threshold = threshold;
+            }
+            return this;
+        }
+
+        public Builder filterExpression(String filterExpression) {
+            this.filterExpression = filterExpression;
+            return this;
+        }
+
+        public Builder fetchK(Integer fetchK) {
+            this.fetchK = fetchK;
+            return this;
+        }
+
+        public Builder lambda(Double lambda) {
+            if (lambda != null) {
+                this.lambda = lambda;
+            }
+            return this;
+        }
+
+        public Builder duplicateThreshold(Double duplicateThreshold) {
+            if (duplicateThreshold != null) {
+                this.duplicateThreshold = duplicateThreshold;
+            }
+            return this;
+        }
+
+        public Builder tokenBudget(Integer tokenBudget) {
+            if (tokenBudget != null) {
+                this.tokenBudget = tokenBudget;
+            }
+            return this;
+        }
+
+        public RetrievalOptions build() {
+            int resolvedFetchK = fetchK != null ? fetchK : topK * DEFAULT_FETCH_MULTIPLIER;
+            return new RetrievalOptions(topK, threshold, filterExpression, resolvedFetchK,
+                    lambda, duplicateThreshold, tokenBudget);
+        }
+    }
+}
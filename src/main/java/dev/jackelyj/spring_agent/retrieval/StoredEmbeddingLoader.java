@@ -0,0 +1,84 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the embeddings already stored in the pgvector table for a set of document IDs.
+ *
+ * VectorStore#similaritySearch does not return embeddings, so reranking
+ * fetches them with one extra indexed lookup instead of re-embedding the texts.
+ */
+public class StoredEmbeddingLoader {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String qualifiedTableName;
+
+    public StoredEmbeddingLoader(JdbcTemplate jdbcTemplate, String schemaName, String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.qualifiedTableName = schemaName + "." + tableName;
+    }
+
+    /**
+     * Load embeddings for the given document IDs.
+     *
+     * @param documentIds document IDs (UUIDs)
+     * @return map of document ID to embedding; IDs without a stored row are absent
+     */
+    public Map<String, float[]> load(Collection<String> documentIds) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return embeddings;
+        }
+
+        String sql = "SELECT id::text AS id, embedding::text AS embedding FROM " + qualifiedTableName
+                + " WHERE id = ANY(?::uuid[])";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setArray(1, connection.createArrayOf("text", documentIds.toArray()));
+            return ps;
+        }, rs -> {
+            String vector = rs.getString("embedding");
+            if (vector != null) {
+                embeddings.put(rs.getString("id"), parseVector(vector));
+            }
+        });
+        return embeddings;
+    }
+
+    /**
+     * Parse pgvector's text representation, e.g. {@code [0.1,-0.2,0.3]}.
+     */
+    static float[] parseVector(String text) {
+        int start = text.indexOf('[') + 1;
+        int end = text.lastIndexOf(']');
+        if (end < 0) {
+            end = text.length();
+        }
+        if (end <= start) {
+            return new float[0];
+        }
+
+        int dimensions = 1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                dimensions++;
+            }
+        }
+
+        float[] vector = new float[dimensions];
+        int index = 0;
+        int tokenStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == ',') {
+                vector[index++] = Float.parseFloat(text.substring(tokenStart, i).trim());
+                tokenStart = i + 1;
+            }
+        }
+        return vector;
+    }
+}
@@ -1,8 +1,21 @@
 package dev.jackelyj.spring_agent.service;
 
+import dev.jackelyj.spring_agent.dto.ConversationImportResult;
+import dev.jackelyj.spring_agent.dto.ConversationPage;
+import dev.jackelyj.spring_agent.dto.ConversationPurgeStatus;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
 import org.springframework.ai.chat.messages.Message;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * 对话记忆管理服务接口
@@ -23,12 +36,38 @@ public interface ConversationMemoryService {
     boolean clearConversation(String conversationId);
 
     /**
-     * 清除所有对话记忆
+     * 清除所有对话记忆（单条集合操作，例如 TRUNCATE）
      *
      * @return 操作是否成功
      */
     boolean clearAllConversations();
     
+    /**
+     * 批量删除指定对话
+     *
+     * @param conversationIds 对话ID列表，不存在的 ID 会被忽略
+     * @return 实际删除的对话数量
+     */
+    int deleteConversations(Collection<String> conversationIds);
+    
+    /**
+     * 在后台按条件分批清理对话，立即返回任务状态
+     * 
+     * 清理任务串行执行，每批在独立事务中删除，进度可通过 {@link #getPurgeStatus} 查询
+     *
+     * @param criteria 清理条件
+     * @return 新任务的初始状态
+     */
+    ConversationPurgeStatus startPurge(ConversationPurgeCriteria criteria);
+    
+    /**
+     * 查询清理任务状态
+     *
+     * @param purgeId 任务 ID
+     * @return 任务状态；任务不存在或已过期时为空
+     */
+    Optional<ConversationPurgeStatus> getPurgeStatus(String purgeId);
+    
     /**
      * 获取会话消息数量
      *
@@ -37,13 +76,46 @@ public interface ConversationMemoryService {
      */
     int getConversationMessageCount(String conversationId);
     
+    /**
+     * 获取会话统计信息（消息数、字符数/Token 数、首次/最近活动时间）
+     * 
+     * 由存储层在写入时增量维护，单次查询即可返回，无需加载完整历史
+     *
+     * @param conversationId 对话ID
+     * @return 统计信息，会话不存在时为空
+     */
+    Optional<ConversationStats> getConversationStats(String conversationId);
+    
     /**
      * 获取所有会话 ID 列表
+     * 
+     * 会一次性物化全部 ID，大数据量时请使用 {@link #listConversations} 或 {@link #streamConversations}
      *
      * @return 会话 ID 列表
      */
     List<String> getAllConversationIds();
     
+    /**
+     * 分页获取会话列表（键集分页，每页开销与总会话数和翻页深度无关）
+     *
+     * @param limit 每页数量
+     * @param cursor 上一页返回的游标，首页为 null
+     * @param sort 排序方式
+     * @return 当前页及下一页游标
+     * @throws IllegalArgumentException 游标格式错误或与排序方式不匹配
+     */
+    ConversationPage listConversations(int limit, String cursor, ConversationSort sort);
+    
+    /**
+     * 以流的方式遍历所有会话，按页惰性加载，不会物化完整列表
+     * 
+     * 返回的流在遍历时才访问存储，调用方应在使用完毕后关闭或完整消费
+     *
+     * @param sort 排序方式
+     * @return 会话统计信息流
+     */
+    Stream<ConversationStats> streamConversations(ConversationSort sort);
+    
     /**
      * 导出会话历史（用于数据迁移或备份）
      *
@@ -52,6 +124,32 @@ public interface ConversationMemoryService {
      */
     List<Message> exportConversation(String conversationId);
     
+    /**
+     * 以 NDJSON 流式导出会话（每行一条消息：conversationId、type、content，
+     * 以及助手消息的 toolCalls、工具消息的 toolResponses）
+     * 
+     * 按会话 ID 排序，同一会话的消息连续且按窗口顺序排列；逐行写出，
+     * 内存占用与导出的消息总数无关。没有工具响应的工具消息（JDBC 存储不保存）
+     * 无法回放给模型，跳过并记录数量
+     *
+     * @param filter 导出范围（指定 ID 和/或 ID 前缀，均为空时导出全部）
+     * @param out 输出流，调用方负责关闭
+     * @return 导出的消息数量（不含跳过的工具消息）
+     */
+    long exportConversations(ConversationFilter filter, OutputStream out) throws IOException;
+    
+    /**
+     * 从 NDJSON 流批量导入会话（格式与 {@link #exportConversations} 相同）
+     * 
+     * 同一会话的行必须连续；导入的会话替换已有的同 ID 会话。按批写入存储，
+     * 已完成的批次在后续行出错时保留
+     *
+     * @param in 输入流，调用方负责关闭
+     * @return 导入的会话和消息数量
+     * @throws IllegalArgumentException 某一行格式错误，或工具消息缺少 toolResponses
+     */
+    ConversationImportResult importConversations(InputStream in) throws IOException;
+    
     /**
      * 检查会话是否存在
      *
@@ -1,9 +1,16 @@
 package dev.jackelyj.spring_agent.service;
 
+import dev.jackelyj.spring_agent.dto.DocumentIngestionProgress;
 import dev.jackelyj.spring_agent.dto.DocumentSearchResult;
+import dev.jackelyj.spring_agent.dto.IngestionJobStatus;
+import dev.jackelyj.spring_agent.retrieval.RetrievalOptions;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Document service interface for managing vector store documents.
@@ -21,10 +28,76 @@ public interface DocumentService {
      * 
      * @param texts List of document texts to add
      * @param metadata Common metadata to apply to all documents
-     * @return List of generated document IDs
+     * @return List of generated document IDs, one per text; chunks of a split text carry it as parent_id
      */
     List<String> addDocuments(List<String> texts, Map<String, Object> metadata);
     
+    /**
+     * Add documents read incrementally from an NDJSON stream (one {@code DocumentLine} per line).
+     * 
+     * Lines are read only as fast as documents are embedded and stored, and
+     * stored in batches, so memory use does not depend on the size of the
+     * upload. Batches stored before a failure remain.
+     * 
+     * @param in NDJSON input, closed by the caller
+     * @param onProgress called after every stored batch
+     * @return Final progress
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    DocumentIngestionProgress ingestDocuments(InputStream in, Consumer<DocumentIngestionProgress> onProgress)
+            throws IOException;
+    
+    /**
+     * Queue documents for background ingestion.
+     * 
+     * Returns once the documents are durably staged; a worker embeds and
+     * stores them later, checkpointing after every batch, retrying failed
+     * batches and resuming after a restart.
+     * 
+     * @param texts List of document texts to add
+     * @param metadata Common metadata to apply to all documents
+     * @return ID of the ingestion job
+     * @throws IllegalStateException if ingestion jobs are not enabled
+     */
+    String submitIngestionJob(List<String> texts, Map<String, Object> metadata);
+    
+    /**
+     * Queue documents read from an NDJSON stream (one {@code DocumentLine} per line) for background ingestion.
+     * 
+     * @param in NDJSON input, closed by the caller
+     * @return ID of the ingestion job
+     * @throws IllegalArgumentException if a line is malformed; nothing is queued then
+     * @throws IllegalStateException if ingestion jobs are not enabled
+     */
+    String submitIngestionJob(InputStream in) throws IOException;
+    
+    /**
+     * Get the progress of an ingestion job.
+     * 
+     * @param jobId Job ID returned on submission
+     * @return Job status, or empty if there is no such job
+     * @throws IllegalStateException if ingestion jobs are not enabled
+     */
+    Optional<IngestionJobStatus> getIngestionJob(String jobId);
+    
+    /**
+     * List the most recently submitted ingestion jobs, newest first.
+     * 
+     * @param limit Maximum number of jobs
+     * @return Job statuses
+     * @throws IllegalStateException if ingestion jobs are not enabled
+     */
+    List<IngestionJobStatus> listIngestionJobs(int limit);
+    
+    /**
+     * Queue a failed ingestion job again; it resumes from its last checkpoint.
+     * 
+     * @param jobId Job ID returned on submission
+     * @return false if there is no such job or it has not failed
+     * @throws IllegalStateException if ingestion jobs are not enabled
+     */
+    boolean retryIngestionJob(String jobId);
+    
     /**
      * Search for documents similar to the given query.
      * 
@@ -46,14 +119,29 @@ public interface DocumentService {
     List<DocumentSearchResult> searchWithFilter(String query, String filterExpression, int topK);
     
     /**
-     * Delete documents by their IDs.
+     * Retrieve context chunks for a query with diversification and packing.
+     * 
+     * Over-fetches candidates from the vector store, removes near-duplicate
+     * texts, reranks with Maximal Marginal Relevance using the stored
+     * embeddings, and packs the result into the requested token budget.
+     * This is the entry point RAG callers should use to build prompt context.
+     * 
+     * @param query Search query text
+     * @param options Retrieval options (topK, fetchK, lambda, token budget, filter)
+     * @return Selected chunks in rank order
+     */
+    List<DocumentSearchResult> retrieve(String query, RetrievalOptions options);
+    
+    /**
+     * Delete documents by their IDs, including the chunks of split documents.
      * 
-     * @param documentIds List of document IDs to delete
+     * @param documentIds List of document IDs to delete (as returned by addDocuments)
      */
     void deleteDocuments(List<String> documentIds);
     
     /**
      * Delete documents matching a filter expression.
+     * A split document is deleted whole when any of its chunks matches.
      * 
      * @param filterExpression Filter expression for documents to delete
      */
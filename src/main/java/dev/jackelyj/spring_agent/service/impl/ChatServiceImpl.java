@@ -1,5 +1,7 @@
 package dev.jackelyj.spring_agent.service.impl;
 
+import dev.jackelyj.spring_agent.cluster.ConversationOwnership;
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
 import dev.jackelyj.spring_agent.dto.ChatRequest;
 import dev.jackelyj.spring_agent.dto.ChatResponse;
 import dev.jackelyj.spring_agent.service.ChatService;
@@ -7,6 +9,7 @@ import dev.jackelyj.spring_agent.service.ConversationMemoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -19,6 +22,7 @@ import java.util.UUID;
  * 使用依赖注入，遵循依赖倒置原则
  */
 @Service
+@ConditionalOnFullAgentMode
 public class ChatServiceImpl implements ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
@@ -26,6 +30,7 @@ public class ChatServiceImpl implements ChatService {
     private final ChatClient chatClient;
     private final ChatClient streamingChatClient;
     private final ConversationMemoryService conversationMemoryService;
+    private final ConversationOwnership conversationOwnership;
 
     /**
      * 清理日志输入以防止日志注入攻击
@@ -49,10 +54,12 @@ public class ChatServiceImpl implements ChatService {
     @Autowired
     public ChatServiceImpl(ChatClient chatClient,
                            @Qualifier("streamingChatClient") ChatClient streamingChatClient,
-                           ConversationMemoryService conversationMemoryService) {
+                           ConversationMemoryService conversationMemoryService,
+                           ObjectProvider<ConversationOwnership> conversationOwnership) {
         this.chatClient = chatClient;
         this.streamingChatClient = streamingChatClient;
         this.conversationMemoryService = conversationMemoryService;
+        this.conversationOwnership = conversationOwnership.getIfAvailable();
     }
 
     @Override
@@ -131,10 +138,14 @@ public class ChatServiceImpl implements ChatService {
 
     /**
      * 获取或创建对话ID
+     * 集群模式下新建的对话ID归属于本节点，后续请求无需转发
      */
     private String getOrCreateConversationId(ChatRequest request) {
-        return request.getConversationId() != null
-            ? request.getConversationId()
+        if (request.getConversationId() != null) {
+            return request.getConversationId();
+        }
+        return conversationOwnership != null
+            ? conversationOwnership.newConversationId()
             : UUID.randomUUID().toString();
     }
 }
\ No newline at end of file
@@ -1,5 +1,22 @@
 package dev.jackelyj.spring_agent.service.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import dev.jackelyj.spring_agent.dto.ConversationImportResult;
+import dev.jackelyj.spring_agent.dto.ConversationPage;
+import dev.jackelyj.spring_agent.dto.ConversationPurgeStatus;
+import dev.jackelyj.spring_agent.memory.ConversationCursor;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationMessage;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
 import dev.jackelyj.spring_agent.repository.ChatMemoryRepository;
 import dev.jackelyj.spring_agent.service.ConversationMemoryService;
 import org.slf4j.Logger;
@@ -7,22 +24,74 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 对话记忆管理服务实现类
  * 
+ * 按条件清理对话在单个后台守护线程上串行执行，不占用请求线程；
+ * 最近的清理任务状态保存在内存中供查询。
+ * 
+ * 批量导出逐条消息写出 NDJSON，不在内存中物化会话列表或消息；
+ * 批量导入按批（会话数或消息数达到上限时，在会话边界处）写入存储。
+ * 
  * SOLID Principles:
  * - SRP: 只负责会话管理的业务逻辑
  * - DIP: 依赖 ChatMemoryRepository 抽象接口，而非具体实现
  * - LSP: 完全遵循 ConversationMemoryService 接口契约
  */
 @Service
+@ConditionalOnFullAgentMode
 public class ConversationMemoryServiceImpl implements ConversationMemoryService {
 
     private static final Logger log = LoggerFactory.getLogger(ConversationMemoryServiceImpl.class);
     
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final int MAX_TRACKED_PURGES = 100;
+    private static final int IMPORT_BATCH_CONVERSATIONS = 500;
+    private static final int IMPORT_BATCH_MESSAGES = 10_000;
+    
     private final ChatMemoryRepository chatMemoryRepository;
+    private final ObjectWriter lineWriter;
+    private final ObjectReader lineReader;
+    
+    private final ExecutorService purgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "conversation-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Map<String, ConversationPurgeStatus> purges = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ConversationPurgeStatus> eldest) {
+                    return size() > MAX_TRACKED_PURGES && eldest.getValue().isFinished();
+                }
+            });
 
     /**
      * 清理日志输入以防止日志注入攻击
@@ -43,8 +112,12 @@ public class ConversationMemoryServiceImpl implements ConversationMemoryService
         return result.toString();
     }
 
-    public ConversationMemoryServiceImpl(ChatMemoryRepository chatMemoryRepository) {
+    public ConversationMemoryServiceImpl(ChatMemoryRepository chatMemoryRepository, ObjectMapper objectMapper) {
         this.chatMemoryRepository = chatMemoryRepository;
+        // Flushing after every line would push each line to the client as its own chunk
+        this.lineWriter = objectMapper.writerFor(ConversationMessage.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.lineReader = objectMapper.readerFor(ConversationMessage.class);
     }
 
     @Override
@@ -73,6 +146,58 @@ public class ConversationMemoryServiceImpl implements ConversationMemoryService
         }
     }
     
+    @Override
+    public int deleteConversations(Collection<String> conversationIds) {
+        log.info("Deleting {} conversations", conversationIds.size());
+        int deleted = chatMemoryRepository.deleteConversations(conversationIds);
+        log.info("Deleted {} conversations", deleted);
+        return deleted;
+    }
+    
+    @Override
+    public ConversationPurgeStatus startPurge(ConversationPurgeCriteria criteria) {
+        String purgeId = UUID.randomUUID().toString();
+        ConversationPurgeStatus started = new ConversationPurgeStatus(purgeId, "RUNNING",
+                criteria.idleBefore(), criteria.idPrefix(), 0, Instant.now(), null, null);
+        purges.put(purgeId, started);
+        purgeExecutor.submit(() -> runPurge(started, criteria));
+        return started;
+    }
+    
+    @Override
+    public Optional<ConversationPurgeStatus> getPurgeStatus(String purgeId) {
+        return Optional.ofNullable(purges.get(purgeId));
+    }
+    
+    private void runPurge(ConversationPurgeStatus started, ConversationPurgeCriteria criteria) {
+        String purgeId = started.purgeId();
+        log.info("Purge {} started: idleBefore={}, idPrefix={}", purgeId, criteria.idleBefore(),
+                sanitizeForLog(criteria.idPrefix()));
+        try {
+            long deleted = chatMemoryRepository.purgeConversations(criteria, PURGE_BATCH_SIZE, total -> {
+                purges.put(purgeId, withProgress(started, "RUNNING", total, null, null));
+                log.debug("Purge {} deleted {} conversations so far", purgeId, total);
+            });
+            purges.put(purgeId, withProgress(started, "COMPLETED", deleted, Instant.now(), null));
+            log.info("Purge {} completed, deleted {} conversations", purgeId, deleted);
+        } catch (Exception e) {
+            long deleted = getPurgeStatus(purgeId).map(ConversationPurgeStatus::deletedConversations).orElse(0L);
+            purges.put(purgeId, withProgress(started, "FAILED", deleted, Instant.now(), e.getMessage()));
+            log.error("Purge {} failed after deleting {} conversations", purgeId, deleted, e);
+        }
+    }
+    
+    private static ConversationPurgeStatus withProgress(ConversationPurgeStatus started, String status,
+                                                        long deleted, Instant finishedAt, String error) {
+        return new ConversationPurgeStatus(started.purgeId(), status, started.idleBefore(), started.idPrefix(),
+                deleted, started.startedAt(), finishedAt, error);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdownNow();
+    }
+    
     @Override
     public int getConversationMessageCount(String conversationId) {
         try {
@@ -86,9 +211,19 @@ public class ConversationMemoryServiceImpl implements ConversationMemoryService
     }
     
     @Override
-    public List<String> getAllConversationIds() {
+    public Optional<ConversationStats> getConversationStats(String conversationId) {
         try {
-            List<String> ids = chatMemoryRepository.getAllConversationIds();
+            return chatMemoryRepository.getConversationStats(conversationId);
+        } catch (Exception e) {
+            log.error("Failed to get stats for conversation: {}", sanitizeForLog(conversationId), e);
+            return Optional.empty();
+        }
+    }
+    
+    @Override
+    public List<String> getAllConversationIds() {
+        try (Stream<ConversationStats> conversations = streamConversations(ConversationSort.ID)) {
+            List<String> ids = conversations.map(ConversationStats::conversationId).toList();
             log.debug("Found {} conversations", ids.size());
             return ids;
         } catch (Exception e) {
@@ -97,6 +232,50 @@ public class ConversationMemoryServiceImpl implements ConversationMemoryService
         }
     }
     
+    @Override
+    public ConversationPage listConversations(int limit, String cursor, ConversationSort sort) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ConversationCursor after = ConversationCursor.decode(cursor);
+        
+        // Fetch one extra row to know whether another page exists
+        List<ConversationStats> rows = chatMemoryRepository.listConversations(sort, after, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new ConversationPage(rows, null);
+        }
+        List<ConversationStats> page = rows.subList(0, pageSize);
+        return new ConversationPage(List.copyOf(page), ConversationCursor.after(page.get(pageSize - 1)).encode());
+    }
+    
+    @Override
+    public Stream<ConversationStats> streamConversations(ConversationSort sort) {
+        Spliterator<ConversationStats> pages = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            
+            private Iterator<ConversationStats> page = Collections.emptyIterator();
+            private ConversationCursor cursor;
+            private boolean lastPage;
+            
+            @Override
+            public boolean tryAdvance(Consumer<? super ConversationStats> action) {
+                if (!page.hasNext()) {
+                    if (lastPage) {
+                        return false;
+                    }
+                    List<ConversationStats> next = chatMemoryRepository.listConversations(sort, cursor, STREAM_PAGE_SIZE);
+                    lastPage = next.size() < STREAM_PAGE_SIZE;
+                    if (next.isEmpty()) {
+                        return false;
+                    }
+                    cursor = ConversationCursor.after(next.get(next.size() - 1));
+                    page = next.iterator();
+                }
+                action.accept(page.next());
+                return true;
+            }
+        };
+        return StreamSupport.stream(pages, false);
+    }
+    
     @Override
     public List<Message> exportConversation(String conversationId) {
         try {
@@ -110,6 +289,84 @@ public class ConversationMemoryServiceImpl implements ConversationMemoryService
         }
     }
     
+    @Override
+    public long exportConversations(ConversationFilter filter, OutputStream out) throws IOException {
+        log.info("Exporting conversations: ids={}, idPrefix={}",
+                filter.conversationIds() != null ? filter.conversationIds().size() : "all",
+                sanitizeForLog(filter.idPrefix()));
+        try (JsonGenerator generator = lineWriter.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            LongAdder skipped = new LongAdder();
+            long exported = chatMemoryRepository.exportConversations(filter, message -> {
+                // Tool messages without their responses (JDBC stores do not keep them) cannot be replayed
+                if (!message.isReplayable()) {
+                    skipped.increment();
+                    return;
+                }
+                try {
+                    lineWriter.writeValue(generator, message);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (skipped.sum() > 0) {
+                log.warn("Skipped {} tool messages without tool responses in the export", skipped.sum());
+            }
+            log.info("Exported {} messages", exported - skipped.sum());
+            return exported - skipped.sum();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    @Override
+    public ConversationImportResult importConversations(InputStream in) throws IOException {
+        long conversations = 0;
+        long messages = 0;
+        Map<String, List<Message>> batch = new LinkedHashMap<>();
+        int batchMessages = 0;
+        String current = null;
+        try (MappingIterator<ConversationMessage> lines = lineReader.readValues(in)) {
+            while (lines.hasNextValue()) {
+                ConversationMessage line = lines.nextValue();
+                if (line.conversationId() == null || line.conversationId().isBlank() || line.type() == null) {
+                    throw new IllegalArgumentException("Line " + lines.getCurrentLocation().getLineNr()
+                            + ": conversationId and type are required; imported " + conversations
+                            + " conversations before it");
+                }
+                if (!line.conversationId().equals(current)) {
+                    // Only cut batches between conversations, so a window is never split
+                    if (batch.size() >= IMPORT_BATCH_CONVERSATIONS || batchMessages >= IMPORT_BATCH_MESSAGES) {
+                        messages += chatMemoryRepository.importConversations(batch);
+                        conversations += batch.size();
+                        batch = new LinkedHashMap<>();
+                        batchMessages = 0;
+                    }
+                    current = line.conversationId();
+                }
+                if (!line.isReplayable()) {
+                    throw new IllegalArgumentException("Line " + lines.getCurrentLocation().getLineNr()
+                            + ": TOOL messages need toolResponses; imported " + conversations
+                            + " conversations before it");
+                }
+                batch.computeIfAbsent(current, id -> new ArrayList<>()).add(line.toMessage());
+                batchMessages++;
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed NDJSON"
+                    + (e.getLocation() != null ? " at line " + e.getLocation().getLineNr() : "")
+                    + ": " + e.getOriginalMessage() + "; imported " + conversations + " conversations before it", e);
+        }
+        if (!batch.isEmpty()) {
+            messages += chatMemoryRepository.importConversations(batch);
+            conversations += batch.size();
+        }
+        log.info("Imported {} messages in {} conversations", messages, conversations);
+        return new ConversationImportResult(conversations, messages);
+    }
+    
     @Override
     public boolean conversationExists(String conversationId) {
         try {
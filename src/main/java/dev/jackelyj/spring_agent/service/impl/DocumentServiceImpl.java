@@ -1,23 +1,68 @@
 package dev.jackelyj.spring_agent.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import dev.jackelyj.spring_agent.datasource.ReplicaRoutingDataSource;
+import dev.jackelyj.spring_agent.dto.DocumentIngestionProgress;
+import dev.jackelyj.spring_agent.dto.DocumentLine;
 import dev.jackelyj.spring_agent.dto.DocumentSearchResult;
+import dev.jackelyj.spring_agent.dto.IngestionJobStatus;
+import dev.jackelyj.spring_agent.ingestion.EmbeddingIngestionPipeline;
+import dev.jackelyj.spring_agent.ingestion.IngestionJobQueue;
+import dev.jackelyj.spring_agent.ingestion.TextChunker;
+import dev.jackelyj.spring_agent.retrieval.ContextPacker;
+import dev.jackelyj.spring_agent.retrieval.MmrReranker;
+import dev.jackelyj.spring_agent.retrieval.RetrievalCandidate;
+import dev.jackelyj.spring_agent.retrieval.RetrievalOptions;
+import dev.jackelyj.spring_agent.retrieval.StoredEmbeddingLoader;
 import dev.jackelyj.spring_agent.service.DocumentService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of DocumentService for managing vector store documents.
  * 
+ * Searches run in a read-only scope, so with read replicas configured they are
+ * served by a replica that has replayed this node's last document change.
+ * With the ingestion pipeline enabled, uploads are embedded in parallel
+ * batches and stored batch by batch instead of through VectorStore#add.
+ * Streamed (NDJSON) uploads are read only as fast as they are stored, in
+ * either mode, so they never need to fit in memory. With chunking enabled,
+ * long texts are stored as overlapping chunks linked to their parent, and
+ * re-ingesting or deleting a document by its ID also covers its chunks.
+ * Ingestion jobs stage uploads in PostgreSQL and store them in the background.
+ * 
  * SOLID Principles:
  * - SRP: Only responsible for document management logic
  * - OCP: Extensible through the DocumentService interface
@@ -25,22 +70,167 @@ import java.util.stream.Collectors;
  * - DIP: Depends on VectorStore abstraction, not concrete implementation
  */
 @Service
+@ConditionalOnFullAgentMode
 @ConditionalOnBean(VectorStore.class)
 public class DocumentServiceImpl implements DocumentService {
     
     private static final Logger log = LoggerFactory.getLogger(DocumentServiceImpl.class);
     
+    /**
+     * Documents per VectorStore#add call for streamed uploads without the ingestion pipeline.
+     */
+    private static final int STREAM_BATCH_SIZE = 64;
+    
     private final VectorStore vectorStore;
+    private final EmbeddingIngestionPipeline ingestionPipeline;
+    private final TextChunker textChunker;
+    private final IngestionJobQueue ingestionJobQueue;
+    private final StoredEmbeddingLoader embeddingLoader;
+    private final ObjectReader lineReader;
+    private final JdbcTemplate jdbcTemplate;
+    private final String deleteMatchingSql;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+    private final MmrReranker mmrReranker = new MmrReranker();
+    private final ContextPacker contextPacker = new ContextPacker(new JTokkitTokenCountEstimator());
+    private final AtomicLong lastWriteNanos = new AtomicLong(Long.MIN_VALUE);
     
-    public DocumentServiceImpl(VectorStore vectorStore) {
+    public DocumentServiceImpl(
+            VectorStore vectorStore,
+            ObjectProvider<EmbeddingIngestionPipeline> ingestionPipeline,
+            ObjectProvider<TextChunker> textChunker,
+            ObjectProvider<IngestionJobQueue> ingestionJobQueue,
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
         this.vectorStore = vectorStore;
+        this.ingestionPipeline = ingestionPipeline.getIfAvailable();
+        this.textChunker = textChunker.getIfAvailable();
+        this.ingestionJobQueue = ingestionJobQueue.getIfAvailable();
+        this.embeddingLoader = new StoredEmbeddingLoader(jdbcTemplate, schemaName, tableName);
+        this.lineReader = objectMapper.readerFor(DocumentLine.class);
+        this.jdbcTemplate = jdbcTemplate;
+        String table = schemaName + "." + tableName;
+        // Rows matching the filter, widened to every row of the documents they belong to
+        this.deleteMatchingSql = "WITH matched AS (SELECT DISTINCT coalesce(metadata->>'" + TextChunker.PARENT_ID
+                + "', id::text) AS parent_id FROM " + table + " WHERE metadata::jsonb @@ ?::jsonpath) "
+                + "DELETE FROM " + table + " WHERE id IN (SELECT parent_id::uuid FROM matched) "
+                + "OR metadata->>'" + TextChunker.PARENT_ID + "' IN (SELECT parent_id FROM matched)";
     }
     
     @Override
     public List<String> addDocuments(List<String> texts, Map<String, Object> metadata) {
         log.info("Adding {} documents to vector store", texts.size());
         
-        List<Document> documents = texts.stream()
+        List<Document> documents = toDocuments(texts, metadata);
+        List<Document> chunks = chunked(documents);
+        
+        if (ingestionPipeline != null) {
+            ingestionPipeline.ingest(chunks);
+        } else {
+            vectorStore.add(chunks);
+        }
+        lastWriteNanos.set(System.nanoTime());
+        
+        List<String> ids = documents.stream()
+                .map(Document::getId)
+                .collect(Collectors.toList());
+        
+        log.info("Successfully added {} documents with IDs: {}", ids.size(), ids);
+        return ids;
+    }
+    
+    @Override
+    public DocumentIngestionProgress ingestDocuments(InputStream in, Consumer<DocumentIngestionProgress> onProgress)
+            throws IOException {
+        AtomicLong storedDocuments = new AtomicLong();
+        AtomicLong storedBatches = new AtomicLong();
+        IntConsumer onBatchStored = size -> {
+            lastWriteNanos.set(System.nanoTime());
+            onProgress.accept(DocumentIngestionProgress.running(
+                    storedDocuments.addAndGet(size), storedBatches.incrementAndGet()));
+        };
+        
+        try (MappingIterator<DocumentLine> lines = lineReader.readValues(in)) {
+            Iterator<Document> documents = new DocumentLineIterator(lines, storedDocuments);
+            if (textChunker != null) {
+                documents = textChunker.splitAll(documents);
+            }
+            if (ingestionPipeline != null) {
+                ingestionPipeline.ingest(documents, onBatchStored);
+            } else {
+                while (documents.hasNext()) {
+                    List<Document> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+                    while (batch.size() < STREAM_BATCH_SIZE && documents.hasNext()) {
+                        batch.add(documents.next());
+                    }
+                    deleteReplacedDocuments(batch);
+                    vectorStore.add(batch);
+                    onBatchStored.accept(batch.size());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof JsonProcessingException json) {
+                throw malformed(json, storedDocuments.get());
+            }
+            throw e.getCause();
+        }
+        
+        log.info("Stored {} streamed documents in {} batches", storedDocuments.get(), storedBatches.get());
+        return DocumentIngestionProgress.completed(storedDocuments.get(), storedBatches.get());
+    }
+    
+    @Override
+    public String submitIngestionJob(List<String> texts, Map<String, Object> metadata) {
+        IngestionJobQueue queue = jobs();
+        return queue.submit(chunked(toDocuments(texts, metadata)).iterator());
+    }
+    
+    @Override
+    public String submitIngestionJob(InputStream in) throws IOException {
+        IngestionJobQueue queue = jobs();
+        try (MappingIterator<DocumentLine> lines = lineReader.readValues(in)) {
+            // Nothing is stored until the whole upload is staged, so errors report 0 stored documents
+            Iterator<Document> documents = new DocumentLineIterator(lines, new AtomicLong());
+            if (textChunker != null) {
+                documents = textChunker.splitAll(documents);
+            }
+            return queue.submit(documents);
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof JsonProcessingException json) {
+                throw malformed(json, 0);
+            }
+            throw e.getCause();
+        }
+    }
+    
+    @Override
+    public Optional<IngestionJobStatus> getIngestionJob(String jobId) {
+        return jobs().status(jobId);
+    }
+    
+    @Override
+    public List<IngestionJobStatus> listIngestionJobs(int limit) {
+        return jobs().recent(limit);
+    }
+    
+    @Override
+    public boolean retryIngestionJob(String jobId) {
+        return jobs().retry(jobId);
+    }
+    
+    private IngestionJobQueue jobs() {
+        if (ingestionJobQueue == null) {
+            throw new IllegalStateException("Ingestion jobs are not enabled (ingestion.jobs.enabled=false)");
+        }
+        return ingestionJobQueue;
+    }
+    
+    /**
+     * New documents for the given texts, one per text.
+     */
+    private List<Document> toDocuments(List<String> texts, Map<String, Object> metadata) {
+        return texts.stream()
                 .map(text -> {
                     String id = UUID.randomUUID().toString();
                     return Document.builder()
@@ -50,15 +240,42 @@ public class DocumentServiceImpl implements DocumentService {
                             .build();
                 })
                 .collect(Collectors.toList());
-        
-        vectorStore.add(documents);
-        
-        List<String> ids = documents.stream()
-                .map(Document::getId)
-                .collect(Collectors.toList());
-        
-        log.info("Successfully added {} documents with IDs: {}", ids.size(), ids);
-        return ids;
+    }
+    
+    /**
+     * Documents split into chunks when chunking is enabled.
+     */
+    private List<Document> chunked(List<Document> documents) {
+        return textChunker != null ? textChunker.splitAll(documents) : documents;
+    }
+    
+    /**
+     * Delete the stored rows of documents whose first chunk is in the batch,
+     * before VectorStore#add upserts the new chunks (the pipeline does this itself).
+     */
+    private void deleteReplacedDocuments(List<Document> batch) {
+        deleteWithChunks(batch.stream()
+                .map(TextChunker::replacedParentId)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+    
+    /**
+     * Delete documents by ID: rows stored under the ID and chunks whose parent_id is the ID.
+     */
+    private void deleteWithChunks(List<String> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        vectorStore.delete(new FilterExpressionBuilder().in(TextChunker.PARENT_ID, documentIds.toArray()).build());
+        vectorStore.delete(documentIds);
+    }
+    
+    private static IllegalArgumentException malformed(JsonProcessingException json, long storedDocuments) {
+        return new IllegalArgumentException("Malformed NDJSON"
+                + (json.getLocation() != null ? " at line " + json.getLocation().getLineNr() : "")
+                + ": " + json.getOriginalMessage() + "; stored " + storedDocuments
+                + " documents before it", json);
     }
     
     @Override
@@ -72,7 +289,7 @@ public class DocumentServiceImpl implements DocumentService {
                 .similarityThreshold(threshold)
                 .build();
         
-        List<Document> results = vectorStore.similaritySearch(request);
+        List<Document> results = search(request);
         
         log.debug("Found {} similar documents", results.size());
         
@@ -90,17 +307,68 @@ public class DocumentServiceImpl implements DocumentService {
                 .filterExpression(filterExpression)
                 .build();
         
-        List<Document> results = vectorStore.similaritySearch(request);
+        List<Document> results = search(request);
         
         log.debug("Found {} documents matching filter", results.size());
         
         return convertToSearchResults(results);
     }
     
+    @Override
+    public List<DocumentSearchResult> retrieve(String query, RetrievalOptions options) {
+        log.debug("Retrieving context: query='{}', topK={}, fetchK={}, lambda={}, tokenBudget={}",
+                 query, options.topK(), options.fetchK(), options.lambda(), options.tokenBudget());
+        
+        SearchRequest.Builder requestBuilder = SearchRequest.builder()
+                .query(query)
+                .topK(options.fetchK())
+                .similarityThreshold(options.threshold());
+        if (options.hasFilter()) {
+            requestBuilder.filterExpression(options.filterExpression());
+        }
+        
+        List<Document> documents = search(requestBuilder.build());
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        
+        // Reuse the embeddings already stored in pgvector instead of re-embedding the texts
+        Map<String, float[]> embeddings = ReplicaRoutingDataSource.readOnlyFreshSince(lastWriteNanos.get(),
+                () -> embeddingLoader.load(documents.stream().map(Document::getId).toList()));
+        List<RetrievalCandidate> candidates = documents.stream()
+                .map(doc -> new RetrievalCandidate(
+                        doc.getId(),
+                        doc.getText(),
+                        doc.getMetadata(),
+                        Objects.requireNonNullElse(similarityOf(doc), 0.0),
+                        embeddings.get(doc.getId())))
+                .toList();
+        
+        List<RetrievalCandidate> unique = contextPacker.removeNearDuplicates(
+                candidates, options.duplicateThreshold());
+        
+        // With a budget, rank everything so packing can fall back to smaller chunks
+        int rankCount = options.hasTokenBudget() ? unique.size() : options.topK();
+        List<RetrievalCandidate> ranked = mmrReranker.rerank(unique, rankCount, options.lambda());
+        List<RetrievalCandidate> packed = contextPacker.pack(ranked, options.topK(), options.tokenBudget());
+        
+        log.debug("Retrieved {} candidates, {} after de-duplication, {} packed",
+                 documents.size(), unique.size(), packed.size());
+        
+        return packed.stream()
+                .map(candidate -> DocumentSearchResult.of(
+                        candidate.id(),
+                        candidate.text(),
+                        candidate.metadata(),
+                        candidate.score()))
+                .collect(Collectors.toList());
+    }
+    
     @Override
     public void deleteDocuments(List<String> documentIds) {
         log.info("Deleting {} documents by IDs", documentIds.size());
-        vectorStore.delete(documentIds);
+        deleteWithChunks(documentIds);
+        lastWriteNanos.set(System.nanoTime());
         log.info("Successfully deleted documents");
     }
     
@@ -108,22 +376,14 @@ public class DocumentServiceImpl implements DocumentService {
     public void deleteByFilter(String filterExpression) {
         log.info("Deleting documents by filter: {}", filterExpression);
         
-        // First, search for documents matching the filter to get their IDs
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query("")  // Empty query to match all
-                .topK(10000)  // Large number to get all matches
-                .filterExpression(filterExpression)
-                .build();
-        
-        List<Document> matchingDocs = vectorStore.similaritySearch(searchRequest);
+        // Delete in the database rather than through a capped similarity search, so every match goes,
+        // together with the other chunks of the documents it belongs to
+        String jsonPath = filterConverter.convertExpression(new FilterExpressionTextParser().parse(filterExpression));
+        int deleted = jdbcTemplate.update(deleteMatchingSql, jsonPath);
         
-        if (!matchingDocs.isEmpty()) {
-            List<String> ids = matchingDocs.stream()
-                    .map(Document::getId)
-                    .collect(Collectors.toList());
-            
-            vectorStore.delete(ids);
-            log.info("Deleted {} documents matching filter", ids.size());
+        if (deleted > 0) {
+            lastWriteNanos.set(System.nanoTime());
+            log.info("Deleted {} documents matching filter", deleted);
         } else {
             log.info("No documents found matching filter");
         }
@@ -137,30 +397,99 @@ public class DocumentServiceImpl implements DocumentService {
         return -1;  // Indicates not available
     }
     
+    /**
+     * Similarity search on a replica that has seen this node's document changes, or on the primary.
+     */
+    private List<Document> search(SearchRequest request) {
+        return ReplicaRoutingDataSource.readOnlyFreshSince(lastWriteNanos.get(),
+                () -> vectorStore.similaritySearch(request));
+    }
+    
     /**
      * Convert Spring AI Documents to our DTO.
      */
     private List<DocumentSearchResult> convertToSearchResults(List<Document> documents) {
         return documents.stream()
-                .map(doc -> {
-                    // Extract similarity score from metadata if available
-                    Double score = null;
-                    if (doc.getMetadata() != null && doc.getMetadata().containsKey("distance")) {
-                        Object distance = doc.getMetadata().get("distance");
-                        if (distance instanceof Number) {
-                            // Convert distance to similarity (1 - distance for cosine)
-                            score = 1.0 - ((Number) distance).doubleValue();
-                        }
-                    }
-                    
-                    return DocumentSearchResult.of(
-                            doc.getId(),
-                            doc.getText(),
-                            doc.getMetadata(),
-                            score
-                    );
-                })
+                .map(doc -> DocumentSearchResult.of(
+                        doc.getId(),
+                        doc.getText(),
+                        doc.getMetadata(),
+                        similarityOf(doc)
+                ))
                 .collect(Collectors.toList());
     }
+    
+    /**
+     * Extract the similarity score from document metadata if available.
+     */
+    private Double similarityOf(Document doc) {
+        if (doc.getMetadata() != null && doc.getMetadata().containsKey("distance")) {
+            Object distance = doc.getMetadata().get("distance");
+            if (distance instanceof Number) {
+                // Convert distance to similarity (1 - distance for cosine)
+                return 1.0 - ((Number) distance).doubleValue();
+            }
+        }
+        return doc.getScore();
+    }
+    
+    /**
+     * Documents of an NDJSON upload, parsed one line at a time as the consumer asks for them.
+     */
+    private static final class DocumentLineIterator implements Iterator<Document> {
+        
+        private final MappingIterator<DocumentLine> lines;
+        private final AtomicLong storedDocuments;
+        
+        private DocumentLineIterator(MappingIterator<DocumentLine> lines, AtomicLong storedDocuments) {
+            this.lines = lines;
+            this.storedDocuments = storedDocuments;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                return lines.hasNextValue();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DocumentLine line;
+            try {
+                line = lines.nextValue();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int lineNr = lines.getCurrentLocation().getLineNr();
+            if (line.text() == null || line.text().isBlank()) {
+                throw invalid(lineNr, "text is required");
+            }
+            String id = line.id();
+            if (id == null || id.isBlank()) {
+                id = UUID.randomUUID().toString();
+            } else {
+                try {
+                    id = UUID.fromString(id).toString();
+                } catch (IllegalArgumentException e) {
+                    throw invalid(lineNr, "id must be a UUID");
+                }
+            }
+            return Document.builder()
+                    .id(id)
+                    .text(line.text())
+                    .metadata(line.metadata() != null ? line.metadata() : Map.of())
+                    .build();
+        }
+        
+        private IllegalArgumentException invalid(int lineNr, String reason) {
+            return new IllegalArgumentException("Line " + lineNr + ": " + reason + "; stored "
+                    + storedDocuments.get() + " documents before it");
+        }
+    }
 }
-
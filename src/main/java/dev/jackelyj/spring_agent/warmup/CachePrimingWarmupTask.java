@@ -0,0 +1,44 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import dev.jackelyj.spring_agent.service.DocumentService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primes connection pools and index caches.
+ * 
+ * Opens a database connection (filling the pool) and runs one similarity
+ * search so the query embedding path and the HNSW index pages are warm.
+ * Each step is skipped when the corresponding bean is not available.
+ */
+public class CachePrimingWarmupTask implements WarmupTask {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentService documentService;
+
+    public CachePrimingWarmupTask(JdbcTemplate jdbcTemplate, DocumentService documentService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.documentService = documentService;
+    }
+
+    @Override
+    public String name() {
+        return "caches";
+    }
+
+    @Override
+    public String run() {
+        List<String> primed = new ArrayList<>();
+        if (jdbcTemplate != null) {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            primed.add("database connection pool");
+        }
+        if (documentService != null) {
+            documentService.searchSimilar("warmup", 1, 0.0);
+            primed.add("vector index");
+        }
+        return primed.isEmpty() ? "nothing to prime" : "primed " + String.join(", ", primed);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.dto.ChatRequest;
+import dev.jackelyj.spring_agent.dto.ChatResponse;
+import dev.jackelyj.spring_agent.dto.DocumentSearchRequest;
+import dev.jackelyj.spring_agent.dto.DocumentSearchResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms Jackson serializers and the JIT on the request/response JSON paths.
+ * 
+ * Round-trips the chat and document DTOs through the application's
+ * ObjectMapper so their (de)serializers are built and compiled up front.
+ */
+public class JsonWarmupTask implements WarmupTask {
+
+    private final ObjectMapper objectMapper;
+    private final int iterations;
+
+    public JsonWarmupTask(ObjectMapper objectMapper, int iterations) {
+        this.objectMapper = objectMapper;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public String run() throws Exception {
+        ChatRequest chatRequest = new ChatRequest("warmup", "warmup-conversation", "system");
+        ChatResponse chatResponse = new ChatResponse("warmup", "warmup-conversation", true);
+        DocumentSearchRequest searchRequest = new DocumentSearchRequest("warmup", 5);
+        List<DocumentSearchResult> searchResults = List.of(
+                DocumentSearchResult.of("id", "content", Map.of("source", "warmup"), 0.9));
+
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(chatRequest), ChatRequest.class);
+            objectMapper.readValue(objectMapper.writeValueAsBytes(chatResponse), ChatResponse.class);
+            objectMapper.readValue(objectMapper.writeValueAsBytes(searchRequest), DocumentSearchRequest.class);
+            objectMapper.writeValueAsBytes(searchResults);
+        }
+        return "4 DTO types round-tripped " + iterations + " times";
+    }
+}
@@ -0,0 +1,49 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+/**
+ * Loads the chat and embedding model weights in Ollama.
+ * 
+ * Sends a one-token generation with {@code keep_alive} so the model stays
+ * resident, and a single embedding request when an embedding model is configured.
+ */
+public class ModelWarmupTask implements WarmupTask {
+
+    private final ChatModel chatModel;
+    private final EmbeddingModel embeddingModel;
+    private final String modelName;
+    private final String keepAlive;
+
+    public ModelWarmupTask(ChatModel chatModel, EmbeddingModel embeddingModel,
+                           String modelName, String keepAlive) {
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+        this.modelName = modelName;
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public String name() {
+        return "model";
+    }
+
+    @Override
+    public String run() {
+        chatModel.call(new Prompt("ping", OllamaOptions.builder()
+                .model(modelName)
+                .keepAlive(keepAlive)
+                .numPredict(1)
+                .build()));
+        String detail = "chat model '" + modelName + "' loaded (keep_alive=" + keepAlive + ")";
+
+        if (embeddingModel != null) {
+            float[] embedding = embeddingModel.embed("warmup");
+            detail += ", embedding model loaded (" + embedding.length + " dimensions)";
+        }
+        return detail;
+    }
+}
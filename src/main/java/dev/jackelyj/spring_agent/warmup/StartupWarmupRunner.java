@@ -0,0 +1,96 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import dev.jackelyj.spring_agent.config.ConditionalOnFullAgentMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the registered {@link WarmupTask}s in the background once the application is ready.
+ * 
+ * Warmup never delays readiness: it starts on {@link ApplicationReadyEvent}
+ * and runs on a single daemon thread, so health checks and traffic are
+ * served while the model, JIT and caches are being warmed.
+ * 
+ * Disabled by default; enable with {@code warmup.enabled=true}.
+ */
+@Component
+@ConditionalOnFullAgentMode
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+public class StartupWarmupRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmupRunner.class);
+
+    private final List<WarmupTask> tasks;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "startup-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile WarmupReport report = WarmupReport.pending();
+
+    public StartupWarmupRunner(List<WarmupTask> tasks) {
+        this.tasks = tasks;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        log.info("Scheduling startup warmup with {} tasks", tasks.size());
+        executor.submit(this::runAll);
+    }
+
+    /**
+     * Current warmup report; updated as each task finishes.
+     */
+    public WarmupReport getReport() {
+        return report;
+    }
+
+    private void runAll() {
+        Instant startedAt = Instant.now();
+        List<WarmupReport.TaskResult> results = new ArrayList<>();
+        report = new WarmupReport("RUNNING", startedAt, null, 0, List.copyOf(results));
+
+        for (WarmupTask task : tasks) {
+            long start = System.nanoTime();
+            WarmupReport.TaskResult result;
+            try {
+                String detail = task.run();
+                result = new WarmupReport.TaskResult(task.name(), true, elapsedMillis(start), detail);
+                log.info("Warmup task '{}' completed in {} ms: {}", task.name(), result.durationMillis(), detail);
+            } catch (Exception e) {
+                result = new WarmupReport.TaskResult(task.name(), false, elapsedMillis(start), e.getMessage());
+                log.warn("Warmup task '{}' failed after {} ms: {}", task.name(), result.durationMillis(), e.getMessage());
+            }
+            results.add(result);
+            report = new WarmupReport("RUNNING", startedAt, null,
+                    Duration.between(startedAt, Instant.now()).toMillis(), List.copyOf(results));
+        }
+
+        Instant finishedAt = Instant.now();
+        report = new WarmupReport("COMPLETED", startedAt, finishedAt,
+                Duration.between(startedAt, finishedAt).toMillis(), List.copyOf(results));
+        log.info("Startup warmup completed in {} ms", report.totalMillis());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
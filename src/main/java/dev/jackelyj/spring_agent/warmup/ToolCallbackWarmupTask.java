@@ -0,0 +1,63 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.Map;
+
+/**
+ * Warms the JIT on the tool-calling path.
+ * 
+ * Resolves the tool callbacks and their JSON schemas, then repeatedly invokes
+ * a set of side-effect free tools with sample arguments so argument parsing,
+ * reflection and result conversion are compiled before real traffic arrives.
+ * Tools with side effects (e.g. garbage collection) are never invoked.
+ */
+public class ToolCallbackWarmupTask implements WarmupTask {
+
+    private static final Map<String, String> SAMPLE_INPUTS = Map.of(
+            "getCurrentDateTime", "{}",
+            "calculateDaysBetween", "{\"startDate\":\"2024-01-01\",\"endDate\":\"2024-12-31\"}",
+            "isLeapYear", "{\"year\":2024}",
+            "calculate", "{\"num1\":123,\"operator\":\"+\",\"num2\":456}",
+            "squareRoot", "{\"number\":144}",
+            "average", "{\"numbers\":\"10,20,30,40,50\"}",
+            "convertTemperature", "{\"value\":25,\"fromUnit\":\"C\",\"toUnit\":\"F\"}",
+            "getMemoryUsage", "{}"
+    );
+
+    private final Object[] toolObjects;
+    private final int iterations;
+
+    public ToolCallbackWarmupTask(Object[] toolObjects, int iterations) {
+        this.toolObjects = toolObjects;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String name() {
+        return "tool-callbacks";
+    }
+
+    @Override
+    public String run() {
+        ToolCallback[] callbacks = ToolCallbacks.from(toolObjects);
+
+        int invoked = 0;
+        for (ToolCallback callback : callbacks) {
+            // Building the definition generates the JSON schema for the tool
+            callback.getToolDefinition().inputSchema();
+
+            String input = SAMPLE_INPUTS.get(callback.getToolDefinition().name());
+            if (input == null) {
+                continue;
+            }
+            for (int i = 0; i < iterations; i++) {
+                callback.call(input);
+            }
+            invoked++;
+        }
+        return callbacks.length + " tool definitions resolved, " + invoked
+                + " tools invoked " + iterations + " times each";
+    }
+}
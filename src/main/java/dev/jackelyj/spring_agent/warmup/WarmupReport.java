@@ -0,0 +1,36 @@
+package dev.jackelyj.spring_agent.warmup;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of the startup warmup.
+ *
+ * @param status overall status: PENDING, RUNNING, COMPLETED or DISABLED
+ * @param startedAt when the warmup started, or null if it has not started
+ * @param finishedAt when the warmup finished, or null if still running
+ * @param totalMillis total wall-clock time spent warming
+ * @param tasks per-task results in execution order
+ */
+public record WarmupReport(
+    String status,
+    Instant startedAt,
+    Instant finishedAt,
+    long totalMillis,
+    List<TaskResult> tasks
+) {
+    /**
+     * Result of a single warmup task.
+     *
+     * @param name task name
+     * @param success whether the task completed without error
+     * @param durationMillis time spent in the task
+     * @param detail what was warmed, or the error message on failure
+     */
+    public record TaskResult(String name, boolean success, long durationMillis, String detail) {
+    }
+
+    public static WarmupReport pending() {
+        return new WarmupReport("PENDING", null, null, 0, List.of());
+    }
+}
@@ -0,0 +1,24 @@
+package dev.jackelyj.spring_agent.warmup;
+
+/**
+ * A single unit of startup warmup work.
+ * 
+ * Implementations are discovered as beans and executed in order by
+ * {@link StartupWarmupRunner} after the application reports ready.
+ * A failing task is recorded in the report and never fails startup.
+ */
+public interface WarmupTask {
+
+    /**
+     * Short name used in logs and the warmup report.
+     */
+    String name();
+
+    /**
+     * Execute the warmup.
+     *
+     * @return human-readable summary of what was warmed
+     * @throws Exception if the warmup failed
+     */
+    String run() throws Exception;
+}
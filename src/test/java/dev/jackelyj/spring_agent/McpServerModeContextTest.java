@@ -0,0 +1,64 @@
+package dev.jackelyj.spring_agent;
+
+import dev.jackelyj.spring_agent.service.ChatService;
+import dev.jackelyj.spring_agent.service.ConversationMemoryService;
+import dev.jackelyj.spring_agent.tools.CalculatorTools;
+import dev.jackelyj.spring_agent.tools.DateTimeTools;
+import dev.jackelyj.spring_agent.tools.SystemInfoTools;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies the lean bean graph of the mcp-stdio profile (agent.mode=mcp-server).
+ * 
+ * The context must contain the tool beans and the MCP server, none of the
+ * chat, memory, document or datasource beans, and must stay within a bean
+ * count budget. Startup time is measured by scripts/benchmark-mcp-stdio-startup.sh,
+ * not asserted here. No Ollama or PostgreSQL is required.
+ */
+class McpServerModeContextTest {
+
+    /** Bean definitions budget for the server-only context. */
+    private static final int MAX_BEAN_DEFINITIONS = 300;
+
+    @Test
+    void testServerOnlyContext_StaysWithinBudget() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringAgentApplication.class)
+                .profiles("mcp-stdio")
+                .web(WebApplicationType.NONE)
+                // Keep the test JVM's stdin free; the transport choice does not change the bean graph under test
+                .properties("spring.ai.mcp.server.stdio=false")
+                .run()) {
+            // Tools and MCP server are present
+            assertThat(context.getBeansOfType(DateTimeTools.class)).hasSize(1);
+            assertThat(context.getBeansOfType(CalculatorTools.class)).hasSize(1);
+            assertThat(context.getBeansOfType(SystemInfoTools.class)).hasSize(1);
+            assertThat(context.getBeansOfType(ToolCallbackProvider.class)).isNotEmpty();
+            // The profile configures a SYNC server
+            assertThat(context.getBeansOfType(McpSyncServer.class)).hasSize(1);
+            assertThat(context.getBeanNamesForType(McpAsyncServer.class)).isEmpty();
+
+            // Chat, memory, document and datasource subsystems are absent
+            assertThat(context.getBeanNamesForType(ChatModel.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(ChatClient.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(ChatMemory.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(ChatService.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(ConversationMemoryService.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(DataSource.class)).isEmpty();
+
+            assertThat(context.getBeanDefinitionCount()).isLessThanOrEqualTo(MAX_BEAN_DEFINITIONS);
+        }
+    }
+}
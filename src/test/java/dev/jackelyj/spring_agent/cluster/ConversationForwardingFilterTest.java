@@ -0,0 +1,176 @@
+package dev.jackelyj.spring_agent.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ConversationForwardingFilter 单元测试
+ *
+ * The owning node is a JDK HTTP server recording what it receives.
+ */
+class ConversationForwardingFilterTest {
+
+    private static final String SELF = "http://node-1:8080";
+    private static final String EVENTS = "data:{\"content\":\"Hel\"}\n\ndata:{\"content\":\"lo\"}\n\n";
+
+    private HttpServer owner;
+    private String ownerUrl;
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedForwardedBy = new AtomicReference<>();
+    private final AtomicReference<String> receivedUri = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        owner = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        owner.createContext("/", exchange -> {
+            receivedUri.set(exchange.getRequestURI().toString());
+            receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedForwardedBy.set(exchange.getRequestHeaders().getFirst(ConversationForwardingFilter.FORWARDED_BY));
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(EVENTS.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        owner.start();
+        ownerUrl = "http://127.0.0.1:" + owner.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        owner.stop(0);
+    }
+
+    @Test
+    void testStreamForRemoteConversation_IsRelayedFromOwner() throws Exception {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(SELF, List.of(SELF, ownerUrl));
+        String conversationId = conversationOwnedBy(ownership, ownerUrl);
+        String body = "{\"message\":\"Hello\",\"conversationId\":\"" + conversationId + "\"}";
+        MockHttpServletRequest request = post("/api/v1/chat/stream", body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter(ownership).doFilter(request, response, chain);
+
+        // Assert
+        assertThat(chain.getRequest()).isNull();
+        assertThat(receivedUri.get()).isEqualTo("/api/v1/chat/stream");
+        assertThat(receivedBody.get()).isEqualTo(body);
+        assertThat(receivedForwardedBy.get()).isEqualTo(SELF);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith("text/event-stream");
+        assertThat(response.getContentAsString()).isEqualTo(EVENTS);
+    }
+
+    @Test
+    void testPathConversationId_IsForwardedWithQuery() throws Exception {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(SELF, List.of(SELF, ownerUrl));
+        String conversationId = conversationOwnedBy(ownership, ownerUrl);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                "/api/v1/conversations/" + conversationId + "/stats");
+        request.setQueryString("verbose=true");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter(ownership).doFilter(request, response, new MockFilterChain());
+
+        // Assert
+        assertThat(receivedUri.get()).isEqualTo("/api/v1/conversations/" + conversationId + "/stats?verbose=true");
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void testLocalConversation_ReachesHandlerWithBody() throws Exception {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(SELF, List.of(SELF, ownerUrl));
+        String conversationId = conversationOwnedBy(ownership, SELF);
+        String body = "{\"message\":\"Hello\",\"conversationId\":\"" + conversationId + "\"}";
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter(ownership).doFilter(post("/api/v1/chat", body), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(receivedUri.get()).isNull();
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo(body);
+    }
+
+    @Test
+    void testForwardedRequest_IsHandledLocally() throws Exception {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(SELF, List.of(SELF, ownerUrl));
+        String conversationId = conversationOwnedBy(ownership, ownerUrl);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/chat");
+        request.setParameter("message", "Hello");
+        request.setParameter("conversationId", conversationId);
+        request.addHeader(ConversationForwardingFilter.FORWARDED_BY, ownerUrl);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter(ownership).doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertThat(receivedUri.get()).isNull();
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    @Test
+    void testUnreachableOwner_ReturnsBadGateway() throws Exception {
+        // Arrange
+        String unreachable = "http://127.0.0.1:1";
+        ConversationOwnership ownership = new ConversationOwnership(SELF, List.of(SELF, unreachable));
+        String conversationId = conversationOwnedBy(ownership, unreachable);
+        MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/api/v1/chat/clear/" + conversationId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter(ownership).doFilter(request, response, chain);
+
+        // Assert
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(502);
+        assertThat(response.getContentAsString()).contains(unreachable);
+    }
+
+    private static ConversationForwardingFilter filter(ConversationOwnership ownership) {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        return new ConversationForwardingFilter(ownership, new ObjectMapper(), httpClient, Duration.ofSeconds(10));
+    }
+
+    private static MockHttpServletRequest post(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static String conversationOwnedBy(ConversationOwnership ownership, String node) {
+        for (int i = 0; ; i++) {
+            if (ownership.ownerOf("conv-" + i).equals(node)) {
+                return "conv-" + i;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dev.jackelyj.spring_agent.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ConversationOwnership 单元测试
+ */
+class ConversationOwnershipTest {
+
+    private static final int KEYS = 100_000;
+    private static final List<String> MEMBERS = List.of("http://node-1:8080", "http://node-2:8080",
+            "http://node-3:8080");
+
+    @Test
+    void testOwnerOf_SpreadsConversationsEvenly() {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(MEMBERS.get(0), MEMBERS);
+        Map<String, Integer> counts = new HashMap<>();
+
+        // Act
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ownership.ownerOf("conv-" + i), 1, Integer::sum);
+        }
+
+        // Assert
+        assertThat(counts).hasSize(3);
+        assertThat(counts.values()).allMatch(count -> Math.abs(count - KEYS / 3) < KEYS / 3 * 0.05);
+    }
+
+    @Test
+    void testRemovingNode_OnlyMovesItsConversations() {
+        // Arrange
+        ConversationOwnership before = new ConversationOwnership(MEMBERS.get(0), MEMBERS);
+        ConversationOwnership after = new ConversationOwnership(MEMBERS.get(0), MEMBERS.subList(0, 2));
+
+        // Act & Assert
+        for (int i = 0; i < KEYS; i++) {
+            String owner = before.ownerOf("conv-" + i);
+            if (!owner.equals(MEMBERS.get(2))) {
+                assertThat(after.ownerOf("conv-" + i)).isEqualTo(owner);
+            }
+        }
+    }
+
+    @Test
+    void testOwnerOf_SameOnEveryNode() {
+        // Arrange
+        ConversationOwnership node1 = new ConversationOwnership(MEMBERS.get(0), MEMBERS);
+        ConversationOwnership node3 = new ConversationOwnership(MEMBERS.get(2), List.of(MEMBERS.get(2),
+                MEMBERS.get(0), MEMBERS.get(1)));
+
+        // Act & Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(node3.ownerOf("conv-" + i)).isEqualTo(node1.ownerOf("conv-" + i));
+        }
+    }
+
+    @Test
+    void testNewConversationId_IsOwnedLocally() {
+        // Arrange
+        ConversationOwnership ownership = new ConversationOwnership(MEMBERS.get(1), MEMBERS);
+
+        // Act & Assert
+        for (int i = 0; i < 100; i++) {
+            assertThat(ownership.ownerOf(ownership.newConversationId())).isEqualTo(MEMBERS.get(1));
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsSelfOutsideMembers() {
+        // Act & Assert
+        assertThatThrownBy(() -> new ConversationOwnership("http://other:8080", MEMBERS))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,33 @@
+package dev.jackelyj.spring_agent.config;
+
+import dev.jackelyj.spring_agent.tools.CalculatorTools;
+import dev.jackelyj.spring_agent.tools.DateTimeTools;
+import dev.jackelyj.spring_agent.tools.SystemInfoTools;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * McpToolRuntimeHints 单元测试
+ */
+class McpToolRuntimeHintsTest {
+
+    @Test
+    void testRegisterHints_ToolMethodsAreInvocable() throws Exception {
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+
+        // Act
+        new McpToolRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Assert
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(DateTimeTools.class.getMethod("getCurrentDateTime"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(CalculatorTools.class.getMethod("squareRoot", double.class))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(SystemInfoTools.class.getMethod("getMemoryUsage"))).accepts(hints);
+    }
+}
@@ -2,18 +2,43 @@ package dev.jackelyj.spring_agent.controller;
 
 import dev.jackelyj.spring_agent.dto.ChatRequest;
 import dev.jackelyj.spring_agent.dto.ChatResponse;
+import dev.jackelyj.spring_agent.dto.ConversationImportResult;
+import dev.jackelyj.spring_agent.dto.ConversationPage;
+import dev.jackelyj.spring_agent.dto.ConversationPurgeStatus;
+import dev.jackelyj.spring_agent.dto.DocumentIngestionProgress;
+import dev.jackelyj.spring_agent.dto.IngestionJobStatus;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.memory.ConversationPurgeCriteria;
+import dev.jackelyj.spring_agent.memory.ConversationSort;
+import dev.jackelyj.spring_agent.memory.ConversationStats;
 import dev.jackelyj.spring_agent.service.ChatService;
 import dev.jackelyj.spring_agent.service.ConversationMemoryService;
+import dev.jackelyj.spring_agent.service.DocumentService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import reactor.core.publisher.Flux;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +58,9 @@ class ChatControllerTest {
     @MockBean
     private ConversationMemoryService conversationMemoryService;
 
+    @MockBean
+    private DocumentService documentService;
+
     private ChatResponse testResponse;
 
     @BeforeEach
@@ -175,4 +203,274 @@ class ChatControllerTest {
 
         verify(chatService, times(1)).chat(any(ChatRequest.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetConversationMessageCount_UsesSingleStatsLookup() throws Exception {
+        // Arrange
+        ConversationStats stats = new ConversationStats("test-conversation", 4, 120, 30,
+                Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:05:00Z"));
+        when(conversationMemoryService.getConversationStats("test-conversation")).thenReturn(Optional.of(stats));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations/test-conversation/count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messageCount").value(4))
+                .andExpect(jsonPath("$.exists").value(true));
+
+        verify(conversationMemoryService, times(1)).getConversationStats("test-conversation");
+        verify(conversationMemoryService, never()).conversationExists(any());
+        verify(conversationMemoryService, never()).getConversationMessageCount(any());
+    }
+
+    @Test
+    void testGetConversationStats_NotFound() throws Exception {
+        // Arrange
+        when(conversationMemoryService.getConversationStats("missing")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations/missing/stats"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetAllConversations_ReturnsPageWithCursor() throws Exception {
+        // Arrange
+        ConversationStats stats = new ConversationStats("conv-2", 2, 40, 10,
+                Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:05:00Z"));
+        when(conversationMemoryService.listConversations(1, "cursor-1", ConversationSort.LAST_ACTIVITY))
+                .thenReturn(new ConversationPage(List.of(stats), "cursor-2"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations")
+                .param("limit", "1")
+                .param("after", "cursor-1")
+                .param("sort", "last-activity"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0]").value("conv-2"))
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("cursor-2"))
+                .andExpect(jsonPath("$.hasMore").value(true));
+    }
+
+    @Test
+    void testGetAllConversations_InvalidCursor() throws Exception {
+        // Arrange
+        when(conversationMemoryService.listConversations(anyInt(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Malformed conversation cursor"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations").param("after", "garbage"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStartPurge_ReturnsAcceptedWithStatus() throws Exception {
+        // Arrange
+        ConversationPurgeStatus status = new ConversationPurgeStatus("purge-1", "RUNNING", null, "tenant-a:",
+                0, Instant.parse("2025-01-01T00:00:00Z"), null, null);
+        when(conversationMemoryService.startPurge(new ConversationPurgeCriteria(null, "tenant-a:"))).thenReturn(status);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/conversations/purges")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"idPrefix\":\"tenant-a:\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/conversations/purges/purge-1"))
+                .andExpect(jsonPath("$.status").value("RUNNING"));
+    }
+
+    @Test
+    void testStartPurge_RequiresCriteria() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/conversations/purges")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        verify(conversationMemoryService, never()).startPurge(any());
+    }
+
+    @Test
+    void testExportConversations_StreamsNdjsonForFilter() throws Exception {
+        // Arrange
+        ConversationFilter filter = new ConversationFilter(Set.of("conv-1", "conv-2"), null);
+        when(conversationMemoryService.exportConversations(eq(filter), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(
+                    "{\"conversationId\":\"conv-1\",\"type\":\"USER\",\"content\":\"hi\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations/export").param("ids", "conv-2", "conv-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"conversations.ndjson\""))
+                .andExpect(content().string("{\"conversationId\":\"conv-1\",\"type\":\"USER\",\"content\":\"hi\"}\n"));
+    }
+
+    @Test
+    void testImportConversations_AcceptsGzipBody() throws Exception {
+        // Arrange
+        String ndjson = "{\"conversationId\":\"conv-1\",\"type\":\"USER\",\"content\":\"hi\"}\n";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(ndjson.getBytes(StandardCharsets.UTF_8));
+        }
+        when(conversationMemoryService.importConversations(any(InputStream.class))).thenAnswer(invocation -> {
+            String body = new String(invocation.<InputStream>getArgument(0).readAllBytes(), StandardCharsets.UTF_8);
+            return body.equals(ndjson) ? new ConversationImportResult(1, 1) : new ConversationImportResult(0, 0);
+        });
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/conversations/import")
+                .contentType("application/x-ndjson")
+                .header("Content-Encoding", "gzip")
+                .content(compressed.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations").value(1))
+                .andExpect(jsonPath("$.messages").value(1));
+    }
+
+    @Test
+    void testImportConversations_MalformedLine() throws Exception {
+        // Arrange
+        when(conversationMemoryService.importConversations(any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("Malformed NDJSON at line 1"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/conversations/import")
+                .contentType("application/x-ndjson")
+                .content("not json"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Malformed NDJSON at line 1"));
+    }
+
+    @Test
+    void testStreamDocuments_WritesProgressLinePerBatch() throws Exception {
+        // Arrange
+        when(documentService.ingestDocuments(any(InputStream.class), any())).thenAnswer(invocation -> {
+            Consumer<DocumentIngestionProgress> onProgress = invocation.getArgument(1);
+            onProgress.accept(DocumentIngestionProgress.running(64, 1));
+            onProgress.accept(DocumentIngestionProgress.running(100, 2));
+            return DocumentIngestionProgress.completed(100, 2);
+        });
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/documents/stream")
+                .contentType("application/x-ndjson")
+                .content("{\"text\":\"hello\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"documents\":64,\"batches\":1,\"done\":false,\"error\":null}\n"
+                        + "{\"documents\":100,\"batches\":2,\"done\":false,\"error\":null}\n"
+                        + "{\"documents\":100,\"batches\":2,\"done\":true,\"error\":null}\n"));
+    }
+
+    @Test
+    void testStreamDocuments_InvalidLineEndsWithError() throws Exception {
+        // Arrange
+        when(documentService.ingestDocuments(any(InputStream.class), any()))
+                .thenThrow(new IllegalArgumentException("Line 1: text is required; stored 0 documents before it"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/documents/stream")
+                .contentType("application/x-ndjson")
+                .content("{}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.done").value(false))
+                .andExpect(jsonPath("$.error").value("Line 1: text is required; stored 0 documents before it"));
+    }
+
+    @Test
+    void testStreamDocumentFiles_AccumulatesProgressAcrossFiles() throws Exception {
+        // Arrange
+        when(documentService.ingestDocuments(any(InputStream.class), any())).thenAnswer(invocation -> {
+            Consumer<DocumentIngestionProgress> onProgress = invocation.getArgument(1);
+            onProgress.accept(DocumentIngestionProgress.running(10, 1));
+            return DocumentIngestionProgress.completed(10, 1);
+        });
+        byte[] ndjson = "{\"text\":\"hello\"}\n".getBytes(StandardCharsets.UTF_8);
+
+        // Act & Assert
+        mockMvc.perform(multipart("/api/v1/documents/stream")
+                .file(new MockMultipartFile("files", "a.ndjson", "application/x-ndjson", ndjson))
+                .file(new MockMultipartFile("files", "b.ndjson", "application/x-ndjson", ndjson)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"documents\":10,\"batches\":1,\"done\":false,\"error\":null}\n"
+                        + "{\"documents\":20,\"batches\":2,\"done\":false,\"error\":null}\n"
+                        + "{\"documents\":20,\"batches\":2,\"done\":true,\"error\":null}\n"));
+        verify(documentService, times(2)).ingestDocuments(any(InputStream.class), any());
+    }
+
+    @Test
+    void testSubmitIngestionJob_ReturnsAcceptedWithLocation() throws Exception {
+        // Arrange
+        when(documentService.submitIngestionJob(List.of("first", "second"), Map.of("source", "wiki")))
+                .thenReturn("job-1");
+        when(documentService.getIngestionJob("job-1")).thenReturn(Optional.of(new IngestionJobStatus("job-1",
+                "QUEUED", 2, 0, 0, null, Instant.parse("2025-01-01T00:00:00Z"), null, null, null, null)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ingestion/jobs")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"texts\":[\"first\",\"second\"],\"metadata\":{\"source\":\"wiki\"}}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/ingestion/jobs/job-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andExpect(jsonPath("$.totalDocuments").value(2));
+    }
+
+    @Test
+    void testSubmitIngestionJob_JobsDisabled() throws Exception {
+        // Arrange
+        when(documentService.submitIngestionJob(any(InputStream.class)))
+                .thenThrow(new IllegalStateException("Ingestion jobs are not enabled"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ingestion/jobs")
+                .contentType("application/x-ndjson")
+                .content("{\"text\":\"hello\"}\n"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Ingestion jobs are not enabled"));
+    }
+
+    @Test
+    void testGetIngestionJob_ReportsRateAndEta() throws Exception {
+        // Arrange
+        when(documentService.getIngestionJob("job-1")).thenReturn(Optional.of(new IngestionJobStatus("job-1",
+                "RUNNING", 1000, 250, 1, "IllegalStateException: embedding server unavailable",
+                Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:01Z"), null, 50.0, 15L)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ingestion/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.storedDocuments").value(250))
+                .andExpect(jsonPath("$.documentsPerSecond").value(50.0))
+                .andExpect(jsonPath("$.etaSeconds").value(15))
+                .andExpect(jsonPath("$.lastError").value("IllegalStateException: embedding server unavailable"));
+    }
+
+    @Test
+    void testGetIngestionJob_NotFound() throws Exception {
+        // Arrange
+        when(documentService.getIngestionJob("missing")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ingestion/jobs/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testRetryIngestionJob_OnlyFailedJobs() throws Exception {
+        // Arrange
+        when(documentService.retryIngestionJob("job-1")).thenReturn(false);
+        when(documentService.getIngestionJob("job-1")).thenReturn(Optional.of(new IngestionJobStatus("job-1",
+                "RUNNING", 10, 5, 0, null, Instant.parse("2025-01-01T00:00:00Z"), null, null, null, null)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ingestion/jobs/job-1/retry"))
+                .andExpect(status().isConflict());
+    }
+}
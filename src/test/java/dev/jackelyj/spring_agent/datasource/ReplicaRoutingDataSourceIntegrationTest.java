@@ -0,0 +1,120 @@
+package dev.jackelyj.spring_agent.datasource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReplicaRoutingDataSource 集成测试
+ *
+ * The "replica" is a second connection to the same database, told apart by
+ * its application_name; it is not in recovery, so its replay position is the
+ * primary's current position.
+ *
+ * Run with: ./gradlew integrationTest --tests ReplicaRoutingDataSourceIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class ReplicaRoutingDataSourceIntegrationTest {
+
+    private static final String APPLICATION_NAME = "SELECT current_setting('application_name')";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    @Test
+    void testReadOnly_UsesFreshReplica() {
+        // Arrange
+        ReplicaRoutingDataSource routing = routing(postgres.getJdbcUrl());
+        routing.checkReplicas();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+
+        // Act
+        String readOnly = ReplicaRoutingDataSource.readOnly(() -> queryApplicationName(jdbcTemplate));
+        String outside = queryApplicationName(jdbcTemplate);
+
+        // Assert
+        assertThat(readOnly).isEqualTo("replica");
+        assertThat(outside).isEqualTo("primary");
+    }
+
+    @Test
+    void testReadOnlyFreshSince_WriteAfterLastCheckUsesPrimary() {
+        // Arrange
+        ReplicaRoutingDataSource routing = routing(postgres.getJdbcUrl());
+        routing.checkReplicas();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+        long writtenAt = System.nanoTime();
+
+        // Act
+        String beforeCheck = ReplicaRoutingDataSource.readOnlyFreshSince(writtenAt,
+                () -> queryApplicationName(jdbcTemplate));
+        routing.checkReplicas();
+        String afterCheck = ReplicaRoutingDataSource.readOnlyFreshSince(writtenAt,
+                () -> queryApplicationName(jdbcTemplate));
+
+        // Assert
+        assertThat(beforeCheck).isEqualTo("primary");
+        assertThat(afterCheck).isEqualTo("replica");
+    }
+
+    @Test
+    void testReadOnly_UnreachableReplicaFallsBackToPrimary() {
+        // Arrange
+        ReplicaRoutingDataSource routing = routing(postgres.getJdbcUrl().replace(
+                ":" + postgres.getMappedPort(5432) + "/", ":1/"));
+        routing.checkReplicas();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+
+        // Act
+        String readOnly = ReplicaRoutingDataSource.readOnly(() -> queryApplicationName(jdbcTemplate));
+
+        // Assert
+        assertThat(readOnly).isEqualTo("primary");
+    }
+
+    @Test
+    void testReadOnly_InsideWriteTransactionReusesPrimaryConnection() {
+        // Arrange
+        ReplicaRoutingDataSource routing = routing(postgres.getJdbcUrl());
+        routing.checkReplicas();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routing));
+
+        // Act
+        String readOnly = transactionTemplate.execute(status ->
+                ReplicaRoutingDataSource.readOnly(() -> queryApplicationName(jdbcTemplate)));
+
+        // Assert
+        assertThat(readOnly).isEqualTo("primary");
+    }
+
+    private static ReplicaRoutingDataSource routing(String replicaUrl) {
+        return new ReplicaRoutingDataSource(dataSource(postgres.getJdbcUrl(), "primary"),
+                Map.of("replica", dataSource(replicaUrl, "replica")), Duration.ofSeconds(5), Duration.ofSeconds(1));
+    }
+
+    private static DataSource dataSource(String url, String applicationName) {
+        String separator = url.contains("?") ? "&" : "?";
+        return new DriverManagerDataSource(url + separator + "ApplicationName=" + applicationName
+                + "&connectTimeout=2", postgres.getUsername(), postgres.getPassword());
+    }
+
+    private static String queryApplicationName(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(APPLICATION_NAME, String.class);
+    }
+}
@@ -0,0 +1,119 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CachingEmbeddingModel 单元测试
+ */
+class CachingEmbeddingModelTest {
+
+    @Test
+    void testEmbed_RepeatedTextSkipsTheModel() {
+        // Arrange
+        RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, new EmbeddingCache(100, null, null),
+                "test-model", 3);
+
+        // Act
+        float[] first = model.embed("hello");
+        float[] second = model.embed("hello");
+
+        // Assert
+        assertThat(second).containsExactly(first);
+        assertThat(delegate.requests).containsExactly(List.of("hello"));
+    }
+
+    @Test
+    void testCall_OnlySendsMissingTextsOnce() {
+        // Arrange
+        RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, new EmbeddingCache(100, null, null),
+                "test-model", 3);
+        model.embed("a");
+
+        // Act
+        List<float[]> embeddings = model.embed(List.of("b", "a", "c", "b"));
+
+        // Assert
+        assertThat(delegate.requests).containsExactly(List.of("a"), List.of("b", "c"));
+        assertThat(embeddings).hasSize(4);
+        assertThat(embeddings.get(0)).containsExactly(RecordingEmbeddingModel.vector("b"));
+        assertThat(embeddings.get(1)).containsExactly(RecordingEmbeddingModel.vector("a"));
+        assertThat(embeddings.get(2)).containsExactly(RecordingEmbeddingModel.vector("c"));
+        assertThat(embeddings.get(3)).containsExactly(RecordingEmbeddingModel.vector("b"));
+    }
+
+    @Test
+    void testCall_RequestModelIsPartOfTheKey() {
+        // Arrange
+        RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, new EmbeddingCache(100, null, null),
+                "test-model", 3);
+        model.embed("hello");
+
+        // Act
+        model.call(new EmbeddingRequest(List.of("hello"), OllamaOptions.builder().model("other").build()));
+
+        // Assert
+        assertThat(delegate.requests).hasSize(2);
+    }
+
+    @Test
+    void testBindTo_ReportsHitsAndMisses() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCache cache = new EmbeddingCache(100, null, null);
+        cache.bindTo(registry);
+        CachingEmbeddingModel model = new CachingEmbeddingModel(new RecordingEmbeddingModel(), cache, "test-model", 3);
+
+        // Act
+        model.embed(new Document("hello"));
+        model.embed("hello");
+        model.embed("hello");
+
+        // Assert
+        assertThat(registry.get("embedding.cache.requests").tag("result", "hit").functionCounter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("embedding.cache.requests").tag("result", "miss").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * Deterministic model recording the texts of every request.
+     */
+    private static final class RecordingEmbeddingModel implements EmbeddingModel {
+
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(List.copyOf(request.getInstructions()));
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                results.add(new Embedding(vector(text), results.size()));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        static float[] vector(String text) {
+            return new float[] {text.length(), text.hashCode(), 1f};
+        }
+    }
+}
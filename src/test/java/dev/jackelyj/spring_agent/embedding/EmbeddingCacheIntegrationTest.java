@@ -0,0 +1,109 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import dev.jackelyj.spring_agent.embedding.EmbeddingCache.EmbeddingKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EmbeddingCache 集成测试
+ *
+ * Two caches over one table stand for two nodes (or one node before and after a restart).
+ *
+ * Run with: ./gradlew integrationTest --tests EmbeddingCacheIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class EmbeddingCacheIntegrationTest {
+
+    private static final String TABLE = "test_embedding_cache";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword()));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    @Test
+    void testGetAll_ReadsEmbeddingsStoredByAnotherNode() {
+        // Arrange
+        EmbeddingCache writer = cache();
+        EmbeddingCache reader = cache();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        reader.bindTo(registry);
+        EmbeddingKey hello = EmbeddingCache.key("nomic-embed-text", 3, "hello");
+        EmbeddingKey world = EmbeddingCache.key("nomic-embed-text", 3, "world");
+        writer.putAll(Map.of(hello, new float[] {0.25f, -1.5f, 3f}));
+
+        // Act
+        Map<EmbeddingKey, float[]> fromTable = reader.getAll(List.of(hello, world));
+        Map<EmbeddingKey, float[]> fromProcess = reader.getAll(List.of(hello));
+
+        // Assert
+        assertThat(fromTable).containsOnlyKeys(hello);
+        assertThat(fromTable.get(hello)).containsExactly(0.25f, -1.5f, 3f);
+        assertThat(fromProcess.get(hello)).containsExactly(0.25f, -1.5f, 3f);
+        assertThat(registry.get("embedding.cache.requests").tag("level", "table").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("embedding.cache.requests").tag("level", "local").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("embedding.cache.requests").tag("result", "miss").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testGetAll_KeysDifferByModelAndDimensions() {
+        // Arrange
+        EmbeddingCache cache = cache();
+        cache.putAll(Map.of(EmbeddingCache.key("model-a", 3, "hello"), new float[] {1f, 2f, 3f}));
+        EmbeddingCache restarted = cache();
+
+        // Act
+        Map<EmbeddingKey, float[]> found = restarted.getAll(List.of(
+                EmbeddingCache.key("model-b", 3, "hello"),
+                EmbeddingCache.key("model-a", 4, "hello"),
+                EmbeddingCache.key("model-a", 3, "hello")));
+
+        // Assert
+        assertThat(found).containsOnlyKeys(EmbeddingCache.key("model-a", 3, "hello"));
+    }
+
+    @Test
+    void testPutAll_IgnoresEmbeddingsAlreadyStored() {
+        // Arrange
+        EmbeddingCache cache = cache();
+        EmbeddingKey key = EmbeddingCache.key("nomic-embed-text", 2, "hello");
+        cache.putAll(Map.of(key, new float[] {1f, 2f}));
+
+        // Act
+        cache().putAll(Map.of(key, new float[] {1f, 2f}));
+
+        // Assert
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + TABLE, Integer.class)).isEqualTo(1);
+    }
+
+    private EmbeddingCache cache() {
+        EmbeddingCache cache = new EmbeddingCache(100, jdbcTemplate, TABLE);
+        cache.initializeSchema();
+        return cache;
+    }
+}
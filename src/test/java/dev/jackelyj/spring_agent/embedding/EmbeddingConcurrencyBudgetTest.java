@@ -0,0 +1,137 @@
+package dev.jackelyj.spring_agent.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * EmbeddingConcurrencyBudget 单元测试
+ */
+class EmbeddingConcurrencyBudgetTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testLimit_BoundsRequestsInFlight() throws Exception {
+        // Arrange
+        EmbeddingConcurrencyBudget budget = new EmbeddingConcurrencyBudget(2, 0);
+        BlockingEmbeddingModel delegate = new BlockingEmbeddingModel();
+        EmbeddingModel model = budget.limit(delegate);
+
+        // Act
+        List<Future<float[]>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(executor.submit(() -> model.embed("block")));
+        }
+        assertThat(delegate.entered.tryAcquire(2, 5, TimeUnit.SECONDS)).isTrue();
+        boolean thirdEntered = delegate.entered.tryAcquire(200, TimeUnit.MILLISECONDS);
+        delegate.release.countDown();
+        for (Future<float[]> call : calls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+
+        // Assert
+        assertThat(thirdEntered).isFalse();
+        assertThat(delegate.maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testBackground_LeavesReservedPermitsToOnlineRequests() throws Exception {
+        // Arrange
+        EmbeddingConcurrencyBudget budget = new EmbeddingConcurrencyBudget(3, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        budget.bindTo(registry);
+        BlockingEmbeddingModel delegate = new BlockingEmbeddingModel();
+        EmbeddingModel online = budget.limit(delegate);
+        EmbeddingModel background = budget.background(online);
+        List<Future<float[]>> backgroundCalls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            backgroundCalls.add(executor.submit(() -> background.embed("block")));
+        }
+        assertThat(delegate.entered.tryAcquire(2, 5, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        float[] onlineEmbedding = executor.submit(() -> online.embed("fast")).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(onlineEmbedding).hasSize(1);
+        assertThat(delegate.entered.tryAcquire(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(registry.get("embedding.concurrency.in.flight").gauge().value()).isEqualTo(2);
+        delegate.release.countDown();
+        for (Future<float[]> call : backgroundCalls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(delegate.maxInFlight.get()).isEqualTo(2);
+        assertThat(registry.get("embedding.concurrency.wait").tag("priority", "background").timer().count())
+                .isEqualTo(3);
+        assertThat(registry.get("embedding.concurrency.wait").tag("priority", "online").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testConstructor_RequiresPermitsForBackgroundWork() {
+        // Act & Assert
+        assertThatThrownBy(() -> new EmbeddingConcurrencyBudget(2, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Requests for "block" wait until released; every other text is embedded at once.
+     */
+    private static final class BlockingEmbeddingModel implements EmbeddingModel {
+
+        private final Semaphore entered = new Semaphore(0);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            boolean block = request.getInstructions().contains("block");
+            if (block) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                entered.release();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                results.add(new Embedding(new float[] {text.length()}, results.size()));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EmbeddingIngestionPipeline 集成测试
+ *
+ * Re-ingests split documents into a pgvector table in a real PostgreSQL, with
+ * batches small enough that a document's chunks span several of them.
+ *
+ * Run with: ./gradlew integrationTest --tests EmbeddingIngestionPipelineIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class EmbeddingIngestionPipelineIntegrationTest {
+
+    private static final String VECTOR_TABLE = "test_pipeline_vector_store";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final TextChunker chunker = new TextChunker(new JTokkitTokenCountEstimator(), 60, 15, 2);
+    private JdbcTemplate jdbcTemplate;
+    private EmbeddingIngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + VECTOR_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + VECTOR_TABLE
+                + " (id UUID PRIMARY KEY, content TEXT, metadata JSONB, embedding vector(3))");
+        pipeline = new EmbeddingIngestionPipeline(new LengthEmbeddingModel(), jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new ObjectMapper(), "public",
+                VECTOR_TABLE, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.close();
+        chunker.close();
+    }
+
+    @Test
+    void testIngest_ShorterVersionDropsStaleChunks() {
+        // Arrange
+        String parentId = UUID.randomUUID().toString();
+        String otherId = UUID.randomUUID().toString();
+        pipeline.ingest(chunker.splitAll(List.of(document(parentId, sentences(20)), document(otherId, sentences(10)))));
+        int otherChunks = rowsOf(otherId);
+
+        // Act
+        List<Document> shorter = chunker.split(document(parentId, sentences(8)));
+        pipeline.ingest(shorter);
+
+        // Assert
+        assertThat(shorter).hasSizeGreaterThan(1);
+        assertThat(rowsOf(parentId)).isEqualTo(shorter.size());
+        assertThat(jdbcTemplate.queryForList("SELECT id::text FROM " + VECTOR_TABLE
+                + " WHERE metadata->>'parent_id' = ?", String.class, parentId))
+                .containsExactlyInAnyOrderElementsOf(shorter.stream().map(Document::getId).toList());
+        assertThat(rowsOf(otherId)).isEqualTo(otherChunks);
+    }
+
+    @Test
+    void testIngest_DocumentGrowingIntoChunksReplacesWholeRow() {
+        // Arrange: stored whole, once before chunking was enabled and once as a single chunk
+        String unchunkedId = UUID.randomUUID().toString();
+        String singleChunkId = UUID.randomUUID().toString();
+        pipeline.ingest(List.of(document(unchunkedId, "A short note.")));
+        pipeline.ingest(chunker.split(document(singleChunkId, "Another short note.")));
+
+        // Act
+        List<Document> chunks = chunker.splitAll(List.of(document(unchunkedId, sentences(12)),
+                document(singleChunkId, sentences(12))));
+        pipeline.ingest(chunks);
+
+        // Assert
+        assertThat(count("id IN (?::uuid, ?::uuid)", unchunkedId, singleChunkId)).isZero();
+        assertThat(rowsOf(unchunkedId) + rowsOf(singleChunkId)).isEqualTo(chunks.size());
+        assertThat(count("TRUE")).isEqualTo(chunks.size());
+    }
+
+    private int rowsOf(String parentId) {
+        return count("metadata->>'parent_id' = ?", parentId);
+    }
+
+    private int count(String condition, Object... args) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + VECTOR_TABLE + " WHERE " + condition,
+                Integer.class, args);
+    }
+
+    private static Document document(String id, String text) {
+        return Document.builder().id(id).text(text).metadata(Map.of("source", "test")).build();
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("Sentence ").append(i).append(" explains how embeddings are stored in pgvector.");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Deterministic model embedding each text by its length and hash.
+     */
+    private static final class LengthEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                results.add(new Embedding(new float[] {text.length(), text.hashCode(), 1f}, results.size()));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
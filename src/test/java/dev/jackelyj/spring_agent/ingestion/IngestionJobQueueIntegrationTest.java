@@ -0,0 +1,269 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.dto.IngestionJobStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * IngestionJobQueue 集成测试
+ *
+ * Embeddings come from an in-process model that can be told to fail; documents
+ * are stored in a pgvector table in a real PostgreSQL.
+ *
+ * Run with: ./gradlew integrationTest --tests IngestionJobQueueIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class IngestionJobQueueIntegrationTest {
+
+    private static final String VECTOR_TABLE = "test_vector_store";
+    private static final String JOB_TABLE = "test_ingestion_job";
+    private static final int DOCUMENTS = 250;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FlakyEmbeddingModel embeddingModel = new FlakyEmbeddingModel();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private IngestionJobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + JOB_TABLE + "_document, " + JOB_TABLE + ", " + VECTOR_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + VECTOR_TABLE
+                + " (id UUID PRIMARY KEY, content TEXT, metadata JSONB, embedding vector(3))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+            queue.close();
+        }
+    }
+
+    @Test
+    void testSubmit_StoresAllDocumentsAndDropsStagedCopies() throws Exception {
+        // Arrange
+        queue = queue(5);
+        queue.start();
+
+        // Act
+        String jobId = queue.submit(documents().iterator());
+        IngestionJobStatus status = awaitFinished(jobId);
+
+        // Assert
+        assertThat(status.status()).isEqualTo(IngestionJobQueue.COMPLETED);
+        assertThat(status.totalDocuments()).isEqualTo(DOCUMENTS);
+        assertThat(status.storedDocuments()).isEqualTo(DOCUMENTS);
+        assertThat(status.documentsPerSecond()).isPositive();
+        assertThat(status.etaSeconds()).isNull();
+        assertThat(count(VECTOR_TABLE)).isEqualTo(DOCUMENTS);
+        assertThat(count(JOB_TABLE + "_document")).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT metadata->>'source' FROM " + VECTOR_TABLE
+                + " WHERE content = 'document 7'", String.class)).isEqualTo("test");
+        assertThat(registry.get("ingestion.jobs").tag("outcome", "completed").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("ingestion.documents").tag("priority", "background").functionCounter().count())
+                .isEqualTo(DOCUMENTS);
+    }
+
+    @Test
+    void testSubmit_RetriesFailedBatchFromCheckpoint() throws Exception {
+        // Arrange
+        queue = queue(5);
+        embeddingModel.failCalls(4, 2);
+        queue.start();
+
+        // Act
+        String jobId = queue.submit(documents().iterator());
+        IngestionJobStatus status = awaitFinished(jobId);
+
+        // Assert
+        assertThat(status.status()).isEqualTo(IngestionJobQueue.COMPLETED);
+        assertThat(status.storedDocuments()).isEqualTo(DOCUMENTS);
+        assertThat(status.attempts()).isZero();
+        assertThat(status.lastError()).contains("embedding server unavailable");
+        assertThat(count(VECTOR_TABLE)).isEqualTo(DOCUMENTS);
+        // Batches stored before the failures are not embedded again
+        assertThat(embeddingModel.embeddedTexts.get()).isEqualTo(DOCUMENTS);
+        assertThat(registry.get("ingestion.jobs.retries").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testSubmit_FailsAfterMaxAttemptsAndCanBeRetried() throws Exception {
+        // Arrange
+        queue = queue(3);
+        embeddingModel.failCalls(1, Integer.MAX_VALUE);
+        queue.start();
+        String jobId = queue.submit(documents().iterator());
+        IngestionJobStatus failed = awaitFinished(jobId);
+
+        // Act
+        embeddingModel.failCalls(0, 0);
+        boolean retried = queue.retry(jobId);
+        IngestionJobStatus completed = awaitFinished(jobId);
+
+        // Assert
+        assertThat(failed.status()).isEqualTo(IngestionJobQueue.FAILED);
+        assertThat(failed.attempts()).isEqualTo(3);
+        assertThat(failed.storedDocuments()).isZero();
+        assertThat(retried).isTrue();
+        assertThat(completed.status()).isEqualTo(IngestionJobQueue.COMPLETED);
+        assertThat(count(VECTOR_TABLE)).isEqualTo(DOCUMENTS);
+        assertThat(queue.retry(jobId)).isFalse();
+        assertThat(registry.get("ingestion.jobs").tag("outcome", "failed").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testStart_ResumesJobOfCrashedWorkerFromCheckpoint() throws Exception {
+        // Arrange: a worker stored 100 documents, then died holding the lease
+        queue = queue(5);
+        String jobId = queue.submit(documents().iterator());
+        jdbcTemplate.update("UPDATE " + JOB_TABLE + " SET status = ?, stored_documents = 100, claim = ?::uuid,"
+                        + " started_at = now(), lease_until = now() - interval '1 second' WHERE id = ?::uuid",
+                IngestionJobQueue.RUNNING, UUID.randomUUID().toString(), jobId);
+
+        // Act
+        queue.start();
+        IngestionJobStatus status = awaitFinished(jobId);
+
+        // Assert
+        assertThat(status.status()).isEqualTo(IngestionJobQueue.COMPLETED);
+        assertThat(status.storedDocuments()).isEqualTo(DOCUMENTS);
+        assertThat(count(VECTOR_TABLE)).isEqualTo(DOCUMENTS - 100);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + VECTOR_TABLE
+                + " WHERE content IN ('document 99', 'document 100')", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void testStatusAndRetry_UnknownOrMalformedJobId() {
+        // Arrange
+        queue = queue(5);
+
+        // Act & Assert
+        assertThat(queue.status(UUID.randomUUID().toString())).isEmpty();
+        assertThat(queue.status("not-a-uuid")).isEmpty();
+        assertThat(queue.retry(UUID.randomUUID().toString())).isFalse();
+        assertThat(queue.retry("not-a-uuid")).isFalse();
+    }
+
+    private IngestionJobQueue queue(int maxAttempts) {
+        EmbeddingIngestionPipeline pipeline = new EmbeddingIngestionPipeline(embeddingModel, jdbcTemplate,
+                transactionTemplate, objectMapper, "public", VECTOR_TABLE, 20, 1);
+        IngestionJobQueue created = new IngestionJobQueue(jdbcTemplate, transactionTemplate, objectMapper, pipeline,
+                JOB_TABLE, 1, Duration.ofMinutes(1), Duration.ofMillis(50), maxAttempts, Duration.ofMillis(10),
+                Duration.ofMillis(50));
+        created.initializeSchema();
+        created.bindTo(registry);
+        return created;
+    }
+
+    private static List<Document> documents() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            documents.add(Document.builder()
+                    .id(UUID.randomUUID().toString())
+                    .text("document " + i)
+                    .metadata(Map.of("source", "test"))
+                    .build());
+        }
+        return documents;
+    }
+
+    private IngestionJobStatus awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (System.nanoTime() < deadline) {
+            IngestionJobStatus status = queue.status(jobId).orElseThrow();
+            if (status.isFinished()) {
+                return status;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Job " + jobId + " did not finish");
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Integer.class);
+    }
+
+    /**
+     * Deterministic model whose calls can be made to fail, counting the texts it embedded.
+     */
+    private static final class FlakyEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger embeddedTexts = new AtomicInteger();
+        private volatile int firstFailingCall;
+        private volatile int failingCalls;
+
+        /**
+         * Fail {@code count} calls starting with call number {@code first} (1-based, counted from now).
+         */
+        void failCalls(int first, int count) {
+            calls.set(0);
+            firstFailingCall = first;
+            failingCalls = count;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            int call = calls.incrementAndGet();
+            if (failingCalls > 0 && call >= firstFailingCall && call - firstFailingCall < failingCalls) {
+                throw new IllegalStateException("embedding server unavailable");
+            }
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                results.add(new Embedding(new float[] {text.length(), text.hashCode(), 1f}, results.size()));
+            }
+            embeddedTexts.addAndGet(results.size());
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
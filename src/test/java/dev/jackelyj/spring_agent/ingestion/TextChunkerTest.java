@@ -0,0 +1,215 @@
+package dev.jackelyj.spring_agent.ingestion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TextChunker 单元测试
+ */
+class TextChunkerTest {
+
+    private static final int MAX_TOKENS = 60;
+    private static final int OVERLAP_TOKENS = 15;
+
+    private final JTokkitTokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+    private final TextChunker chunker = new TextChunker(estimator, MAX_TOKENS, OVERLAP_TOKENS, 4);
+
+    @AfterEach
+    void tearDown() {
+        chunker.close();
+    }
+
+    @Test
+    void testSplit_ShortDocumentKeepsIdAndText() {
+        // Arrange
+        Document document = Document.builder()
+                .id("doc-1")
+                .text("A short note about pgvector.")
+                .metadata(Map.of("source", "notes"))
+                .build();
+
+        // Act
+        List<Document> chunks = chunker.split(document);
+
+        // Assert
+        assertThat(chunks).hasSize(1);
+        assertThat(chunks.get(0).getId()).isEqualTo("doc-1");
+        assertThat(chunks.get(0).getText()).isEqualTo("A short note about pgvector.");
+        assertThat(chunks.get(0).getMetadata()).containsEntry("source", "notes")
+                .containsEntry(TextChunker.PARENT_ID, "doc-1")
+                .containsEntry(TextChunker.CHUNK_INDEX, 0)
+                .containsEntry(TextChunker.CHUNK_COUNT, 1);
+    }
+
+    @Test
+    void testChunk_WholeSentencesWithinLimitAndOverlapping() {
+        // Arrange
+        String text = sentences(40);
+
+        // Act
+        List<TextChunk> chunks = chunker.chunk(text);
+
+        // Assert
+        assertThat(chunks).hasSizeGreaterThan(3);
+        assertThat(chunks.get(0).start()).isZero();
+        assertThat(chunks.get(chunks.size() - 1).end()).isEqualTo(text.length());
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunk chunk = chunks.get(i);
+            assertThat(chunk.tokens()).isLessThanOrEqualTo(MAX_TOKENS);
+            assertThat(chunk.in(text).toString()).startsWith("Sentence").endsWith(".");
+            if (i > 0) {
+                // The previous chunk's last sentence is repeated, and nothing is skipped
+                assertThat(chunk.start()).isLessThan(chunks.get(i - 1).end());
+                assertThat(chunk.start()).isGreaterThan(chunks.get(i - 1).start());
+            }
+        }
+    }
+
+    @Test
+    void testChunk_EndsAtParagraphBoundary() {
+        // Arrange
+        String first = sentences(4);
+        String second = sentences(4).replace("Sentence", "Paragraph");
+        String text = first + "\n\n" + second;
+
+        // Act
+        List<TextChunk> chunks = chunker.chunk(text);
+
+        // Assert
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks.get(0).in(text).toString()).isEqualTo(first);
+        assertThat(chunks.get(1).in(text).toString()).isEqualTo(second);
+    }
+
+    @Test
+    void testChunk_CutsOversizedSentenceAtWhitespace() {
+        // Arrange
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            words.append("word").append(i).append(' ');
+        }
+        String text = words.toString().trim();
+
+        // Act
+        List<TextChunk> chunks = chunker.chunk(text);
+
+        // Assert
+        assertThat(chunks).hasSizeGreaterThan(4);
+        for (TextChunk chunk : chunks) {
+            assertThat(chunk.tokens()).isLessThanOrEqualTo(MAX_TOKENS);
+            assertThat(chunk.start() == 0 || text.charAt(chunk.start() - 1) == ' ').isTrue();
+            assertThat(chunk.end() == text.length() || text.charAt(chunk.end()) == ' ').isTrue();
+        }
+    }
+
+    @Test
+    void testChunk_SplitsCjkTextWithoutSpaces() {
+        // Arrange
+        String text = "向量数据库把文本的嵌入向量存储在表中。".repeat(30);
+
+        // Act
+        List<TextChunk> chunks = chunker.chunk(text);
+
+        // Assert
+        assertThat(chunks).hasSizeGreaterThan(1);
+        for (TextChunk chunk : chunks) {
+            assertThat(chunk.tokens()).isLessThanOrEqualTo(MAX_TOKENS);
+            assertThat(chunk.in(text).toString()).startsWith("向量").endsWith("。");
+        }
+        assertThat(chunks.get(chunks.size() - 1).end()).isEqualTo(text.length());
+    }
+
+    @Test
+    void testSplitAll_KeepsOrderAndDerivesStableIds() {
+        // Arrange
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(Document.builder().id("doc-" + i).text(sentences(10 + i)).metadata(Map.of("n", i)).build());
+        }
+
+        // Act
+        List<Document> chunks = chunker.splitAll(documents);
+        List<Document> again = chunker.splitAll(documents);
+
+        // Assert
+        assertThat(chunks).extracting(Document::getId).containsExactlyElementsOf(
+                again.stream().map(Document::getId).toList());
+        List<Object> parents = chunks.stream().map(chunk -> chunk.getMetadata().get(TextChunker.PARENT_ID)).toList();
+        assertThat(parents).isSortedAccordingTo((a, b) -> Integer.compare(index(a), index(b)));
+        Document second = chunks.get(1);
+        assertThat(second.getId()).isEqualTo(TextChunker.chunkId("doc-0", 1));
+        assertThat(second.getMetadata()).containsEntry("n", 0).containsEntry(TextChunker.CHUNK_INDEX, 1);
+        int start = (int) second.getMetadata().get(TextChunker.CHUNK_START);
+        int end = (int) second.getMetadata().get(TextChunker.CHUNK_END);
+        assertThat(second.getText()).isEqualTo(documents.get(0).getText().substring(start, end));
+    }
+
+    @Test
+    void testSplitAll_ReadsStreamOneWindowAhead() {
+        // Arrange
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Document> source = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < 1_000;
+            }
+
+            @Override
+            public Document next() {
+                return Document.builder().id("doc-" + read.getAndIncrement()).text("Short document.").build();
+            }
+        };
+
+        // Act
+        Iterator<Document> chunks = chunker.splitAll(source);
+        Document first = chunks.next();
+
+        // Assert
+        assertThat(first.getId()).isEqualTo("doc-0");
+        assertThat(read.get()).isEqualTo(4 * 8);
+    }
+
+    @Test
+    void testReplacedParentId_OnlyFirstChunk() {
+        // Arrange
+        List<Document> chunks = chunker.split(Document.builder().id("doc-1").text(sentences(20)).build());
+        Document unchunked = Document.builder().id("doc-2").text("Not split.").build();
+        // Metadata read back from a JSON column
+        Document fromJson = Document.builder().id("doc-3").text("Staged.")
+                .metadata(Map.of(TextChunker.PARENT_ID, "doc-3", TextChunker.CHUNK_INDEX, 0L))
+                .build();
+
+        // Act & Assert
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(TextChunker.replacedParentId(chunks.get(0))).isEqualTo("doc-1");
+        assertThat(chunks.subList(1, chunks.size())).allSatisfy(
+                chunk -> assertThat(TextChunker.replacedParentId(chunk)).isNull());
+        assertThat(TextChunker.replacedParentId(unchunked)).isNull();
+        assertThat(TextChunker.replacedParentId(fromJson)).isEqualTo("doc-3");
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("Sentence ").append(i).append(" explains how embeddings are stored in pgvector.");
+        }
+        return text.toString();
+    }
+
+    private static int index(Object parentId) {
+        return Integer.parseInt(((String) parentId).substring("doc-".length()));
+    }
+}
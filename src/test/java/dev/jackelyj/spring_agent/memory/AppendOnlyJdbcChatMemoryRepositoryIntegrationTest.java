@@ -0,0 +1,156 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AppendOnlyJdbcChatMemoryRepository 集成测试
+ *
+ * Starts the repository against a table written by Spring AI's
+ * JdbcChatMemoryRepository, as every deployment upgrading from the spring-ai
+ * repository has one.
+ *
+ * Run with: ./gradlew integrationTest --tests AppendOnlyJdbcChatMemoryRepositoryIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class AppendOnlyJdbcChatMemoryRepositoryIntegrationTest {
+
+    private static final String TABLE = "legacy_chat_memory";
+    private static final String STATS_TABLE = "legacy_chat_conversation";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE + ", " + STATS_TABLE);
+        // Spring AI's schema-postgresql.sql for JdbcChatMemoryRepository
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " ("
+                + "conversation_id VARCHAR(36) NOT NULL, "
+                + "content TEXT NOT NULL, "
+                + "type VARCHAR(10) NOT NULL CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL')), "
+                + "\"timestamp\" TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX " + TABLE + "_conversation_id_timestamp_idx ON " + TABLE
+                + " (conversation_id, \"timestamp\")");
+        insertLegacy("conv-1", "USER", "first question", "2025-01-01 10:00:00");
+        insertLegacy("conv-1", "ASSISTANT", "first answer", "2025-01-01 10:00:01");
+        insertLegacy("conv-2", "USER", "other conversation", "2025-01-01 09:00:00");
+        insertLegacy("conv-1", "USER", "second question", "2025-01-01 10:00:02");
+    }
+
+    @Test
+    void testInitializeSchema_MigratesSpringAiLayout() {
+        // Arrange
+        AppendOnlyJdbcChatMemoryRepository repository = repository();
+
+        // Act
+        repository.initializeSchema();
+        List<Message> history = repository.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(history).extracting(Message::getText)
+                .containsExactly("first question", "first answer", "second question");
+        assertThat(jdbcTemplate.queryForList("SELECT seq FROM " + TABLE + " WHERE conversation_id = 'conv-1'"
+                + " ORDER BY seq", Long.class)).containsExactly(1L, 2L, 3L);
+        assertThat(repository.findConversationIds()).containsExactly("conv-1", "conv-2");
+    }
+
+    @Test
+    void testSaveAll_AppendsToMigratedHistory() {
+        // Arrange
+        AppendOnlyJdbcChatMemoryRepository repository = repository();
+        repository.initializeSchema();
+        List<Message> window = new ArrayList<>(repository.findByConversationId("conv-1"));
+        window.add(new AssistantMessage("second answer"));
+        window.add(new UserMessage("third question"));
+
+        // Act
+        repository.saveAll("conv-1", window);
+
+        // Assert
+        assertThat(repository().findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("first question", "first answer", "second question", "second answer",
+                        "third question");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + TABLE + " WHERE conversation_id = 'conv-1'",
+                Integer.class)).isEqualTo(5);
+    }
+
+    @Test
+    void testInitializeSchema_MigratesOnlyOnce() {
+        // Arrange
+        repository().initializeSchema();
+
+        // Act
+        AppendOnlyJdbcChatMemoryRepository restarted = repository();
+        restarted.initializeSchema();
+
+        // Assert
+        assertThat(restarted.findByConversationId("conv-2")).extracting(Message::getText)
+                .containsExactly("other conversation");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM pg_attribute WHERE attrelid = to_regclass(?)"
+                + " AND attname = 'seq' AND NOT attisdropped", Integer.class, TABLE)).isEqualTo(1);
+    }
+
+    @Test
+    void testSaveAll_KeepsSlidingWindowOfChatTurns() {
+        // Arrange
+        AppendOnlyJdbcChatMemoryRepository repository = repository();
+        repository.initializeSchema();
+        ChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(repository)
+                .maxMessages(6)
+                .build();
+
+        // Act
+        for (int turn = 0; turn < 10; turn++) {
+            chatMemory.get("conv-window");
+            chatMemory.add("conv-window", List.of(new UserMessage("question " + turn),
+                    new AssistantMessage("answer " + turn)));
+        }
+
+        // Assert
+        assertThat(repository().findByConversationId("conv-window")).extracting(Message::getText)
+                .containsExactly("question 7", "answer 7", "question 8", "answer 8", "question 9", "answer 9");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM " + TABLE
+                + " WHERE conversation_id = 'conv-window'", Integer.class)).isEqualTo(6);
+    }
+
+    private AppendOnlyJdbcChatMemoryRepository repository() {
+        return new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate, transactionTemplate, TABLE, STATS_TABLE, 100,
+                Clock.systemUTC());
+    }
+
+    private void insertLegacy(String conversationId, String type, String content, String timestamp) {
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (conversation_id, content, type, \"timestamp\")"
+                + " VALUES (?, ?, ?, ?::timestamp)", conversationId, content, type, timestamp);
+    }
+}
@@ -0,0 +1,350 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * BoundedInMemoryChatMemoryRepository 单元测试
+ */
+class BoundedInMemoryChatMemoryRepositoryTest {
+
+    private final MutableClock clock = new MutableClock();
+    private BoundedInMemoryChatMemoryRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    void testSaveAll_IndexesConversationWithoutPriorRead() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+
+        // Act
+        repository.saveAll("conv-1", conversation("hello"));
+
+        // Assert
+        assertThat(repository.findConversationIds()).containsExactly("conv-1");
+        assertThat(repository.messageCount("conv-1")).isEqualTo(2);
+        assertThat(repository.estimatedBytes()).isPositive();
+    }
+
+    @Test
+    void testDeleteByConversationId_ReleasesBytes() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+        repository.saveAll("conv-1", conversation("hello"));
+
+        // Act
+        repository.deleteByConversationId("conv-1");
+
+        // Assert
+        assertThat(repository.findConversationIds()).isEmpty();
+        assertThat(repository.estimatedBytes()).isZero();
+    }
+
+    @Test
+    void testEvictExpired_RemovesIdleConversations() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ofMinutes(30), 0, 0, clock);
+        repository.saveAll("idle", conversation("hello"));
+        clock.advance(Duration.ofMinutes(20));
+        repository.saveAll("active", conversation("hello"));
+        clock.advance(Duration.ofMinutes(20));
+
+        // Act
+        repository.evictExpired();
+
+        // Assert
+        assertThat(repository.findConversationIds()).containsExactly("active");
+    }
+
+    @Test
+    void testSaveAll_EvictsLeastRecentlyAccessedWhenOverConversationLimit() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 10, 0, clock);
+        for (int i = 0; i < 10; i++) {
+            repository.saveAll("conv-" + i, conversation("message " + i));
+            clock.advance(Duration.ofSeconds(1));
+        }
+        repository.findByConversationId("conv-0");
+
+        // Act
+        repository.saveAll("conv-10", conversation("overflow"));
+
+        // Assert
+        assertThat(repository.conversationCount()).isEqualTo(9);
+        assertThat(repository.containsConversation("conv-0")).isTrue();
+        assertThat(repository.containsConversation("conv-1")).isFalse();
+        assertThat(repository.containsConversation("conv-10")).isTrue();
+    }
+
+    @Test
+    void testEvict_SkipsConversationWrittenAfterSnapshot() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 10, 0, clock);
+        for (int i = 0; i < 10; i++) {
+            repository.saveAll("conv-" + i, conversation("message " + i));
+            clock.advance(Duration.ofSeconds(1));
+        }
+        List<BoundedInMemoryChatMemoryRepository.EvictionCandidate> candidates = repository.evictionCandidates();
+        repository.saveAll("conv-0", List.of(new UserMessage("message 0"), new AssistantMessage("reply"),
+                new UserMessage("acknowledged turn")));
+
+        // Act
+        repository.evict(candidates);
+
+        // Assert
+        assertThat(repository.conversationCount()).isEqualTo(9);
+        assertThat(repository.messageCount("conv-0")).isEqualTo(3);
+        assertThat(repository.containsConversation("conv-1")).isFalse();
+    }
+
+    @Test
+    void testSaveAll_EvictsWhileReadersTouchConversations() throws Exception {
+        // Arrange: every clock read moves time forward, so each read changes an access time
+        AtomicLong millis = new AtomicLong();
+        Clock ticking = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 200, 0, new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return ticking.instant().plusMillis(millis.incrementAndGet());
+            }
+        });
+        for (int i = 0; i < 200; i++) {
+            repository.saveAll("conv-" + i, conversation("message " + i));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> reads = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            reads.add(readers.submit(() -> {
+                while (writing.get()) {
+                    repository.findByConversationId("conv-" + ThreadLocalRandom.current().nextInt(2_000));
+                }
+            }));
+        }
+
+        // Act
+        try {
+            for (int i = 200; i < 2_000; i++) {
+                repository.saveAll("conv-" + i, conversation("message " + i));
+            }
+        } finally {
+            writing.set(false);
+            for (Future<?> read : reads) {
+                read.get(5, TimeUnit.SECONDS);
+            }
+            readers.shutdownNow();
+        }
+
+        // Assert
+        assertThat(repository.conversationCount()).isLessThanOrEqualTo(200);
+        assertThat(repository.containsConversation("conv-1999")).isTrue();
+    }
+
+    @Test
+    void testSaveAll_EvictsWhenOverByteLimit() {
+        // Arrange
+        long oneConversation = BoundedInMemoryChatMemoryRepository.estimateBytes("conv-0", conversation("x".repeat(1000)));
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, oneConversation * 3, clock);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            repository.saveAll("conv-" + i, conversation("x".repeat(1000)));
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        // Assert
+        assertThat(repository.estimatedBytes()).isLessThanOrEqualTo(oneConversation * 3);
+        assertThat(repository.containsConversation("conv-0")).isFalse();
+        assertThat(repository.containsConversation("conv-3")).isTrue();
+    }
+
+    @Test
+    void testCompactStorage_DecodesWindowOnRead() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock, new MessageCodec(1024));
+        List<Message> messages = conversation("hello");
+
+        // Act
+        repository.saveAll("conv-1", messages);
+        List<Message> stored = repository.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(stored).extracting(Message::getText).containsExactly("hello", "reply to hello");
+        assertThat(repository.messageCount("conv-1")).isEqualTo(2);
+        assertThat(repository.estimatedBytes())
+                .isLessThan(BoundedInMemoryChatMemoryRepository.estimateBytes("conv-1", messages));
+    }
+
+    @Test
+    void testCompactStorage_KeepsMetadataTypesAndNullToolNames() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock, new MessageCodec(1024));
+        Map<String, Object> metadata = Map.of("score", 0.5f, "usage", Map.of("details", Map.of("cachedTokens", 4)));
+        List<Message> typed = List.of(new UserMessage("hello"), new AssistantMessage("hi", metadata));
+        List<Message> unnamedTool = List.of(new UserMessage("hello"), new AssistantMessage("", metadata,
+                List.of(new AssistantMessage.ToolCall("call-1", "function", null, "{}"))));
+
+        // Act
+        repository.saveAll("typed", typed);
+        repository.saveAll("unnamed-tool", unnamedTool);
+
+        // Assert
+        assertThat(repository.findByConversationId("typed").get(1).getMetadata()).isEqualTo(metadata);
+        AssistantMessage stored = (AssistantMessage) repository.findByConversationId("unnamed-tool").get(1);
+        assertThat(stored.getMetadata()).isEqualTo(metadata);
+        assertThat(stored.getToolCalls()).singleElement()
+                .satisfies(call -> assertThat(call.name()).isNull());
+    }
+
+    @Test
+    void testFindStats_TracksWindowSizeAndActivity() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+        Instant created = clock.instant();
+        repository.saveAll("conv-1", conversation("hello"));
+        clock.advance(Duration.ofMinutes(5));
+
+        // Act
+        repository.saveAll("conv-1", List.of(new UserMessage("hello"), new AssistantMessage("reply to hello"),
+                new UserMessage("你好")));
+        ConversationStats stats = repository.findStats("conv-1").orElseThrow();
+
+        // Assert
+        assertThat(stats.messageCount()).isEqualTo(3);
+        assertThat(stats.totalChars()).isEqualTo("hello".length() + "reply to hello".length() + 2);
+        assertThat(stats.estimatedTokens()).isPositive();
+        assertThat(stats.firstActivity()).isEqualTo(created);
+        assertThat(stats.lastActivity()).isEqualTo(created.plus(Duration.ofMinutes(5)));
+        assertThat(repository.findStats("missing")).isEmpty();
+    }
+
+    @Test
+    void testBindTo_ExposesEvictionCounters() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ofMinutes(1), 0, 0, clock);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repository.bindTo(registry);
+        repository.saveAll("conv-1", conversation("hello"));
+        clock.advance(Duration.ofMinutes(2));
+
+        // Act
+        repository.evictExpired();
+
+        // Assert
+        assertThat(registry.get("chat.memory.evictions").tag("cause", "expired").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("chat.memory.conversations").gauge().value()).isZero();
+    }
+
+    @Test
+    void testListConversations_PagesByIdAndLastActivity() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+        for (String id : List.of("conv-c", "conv-a", "conv-b")) {
+            repository.saveAll(id, conversation(id));
+            clock.advance(Duration.ofSeconds(1));
+        }
+        repository.saveAll("conv-a", conversation("again"));
+
+        // Act
+        List<ConversationStats> firstById = repository.listConversations(ConversationSort.ID, null, 2);
+        List<ConversationStats> nextById = repository.listConversations(ConversationSort.ID,
+                ConversationCursor.after(firstById.get(1)), 2);
+        List<ConversationStats> firstByActivity = repository.listConversations(ConversationSort.LAST_ACTIVITY, null, 2);
+        List<ConversationStats> nextByActivity = repository.listConversations(ConversationSort.LAST_ACTIVITY,
+                ConversationCursor.decode(ConversationCursor.after(firstByActivity.get(1)).encode()), 2);
+
+        // Assert
+        assertThat(firstById).extracting(ConversationStats::conversationId).containsExactly("conv-a", "conv-b");
+        assertThat(nextById).extracting(ConversationStats::conversationId).containsExactly("conv-c");
+        assertThat(firstByActivity).extracting(ConversationStats::conversationId).containsExactly("conv-a", "conv-b");
+        assertThat(nextByActivity).extracting(ConversationStats::conversationId).containsExactly("conv-c");
+    }
+
+    @Test
+    void testPurgeConversations_DeletesOnlyIdleConversationsWithPrefix() {
+        // Arrange
+        repository = new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+        repository.saveAll("tenant-a:old", conversation("old"));
+        repository.saveAll("tenant-b:old", conversation("old"));
+        clock.advance(Duration.ofHours(2));
+        Instant cutoff = clock.instant().minus(Duration.ofHours(1));
+        repository.saveAll("tenant-a:new", conversation("new"));
+
+        // Act
+        long deleted = repository.purgeConversations(new ConversationPurgeCriteria(cutoff, "tenant-a:"), 100,
+                batch -> { });
+        int deletedById = repository.deleteConversations(List.of("tenant-b:old", "missing"));
+
+        // Assert
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedById).isEqualTo(1);
+        assertThat(repository.findConversationIds()).containsExactly("tenant-a:new");
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
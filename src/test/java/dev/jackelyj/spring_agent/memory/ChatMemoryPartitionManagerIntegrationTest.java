@@ -0,0 +1,141 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ChatMemoryPartitionManager 集成测试
+ *
+ * Verifies partition pruning of the append-only store's per-conversation
+ * queries and retention by partition drop against a real PostgreSQL.
+ *
+ * Run with: ./gradlew integrationTest --tests ChatMemoryPartitionManagerIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class ChatMemoryPartitionManagerIntegrationTest {
+
+    private static final String TABLE = "pt_chat_memory";
+    private static final String STATS_TABLE = "pt_chat_conversation";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final MutableClock clock = new MutableClock();
+    private JdbcTemplate jdbcTemplate;
+    private ChatMemoryPartitionManager partitions;
+    private AppendOnlyJdbcChatMemoryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE + ", " + STATS_TABLE + " CASCADE");
+
+        partitions = new ChatMemoryPartitionManager(jdbcTemplate, transactionTemplate, TABLE, STATS_TABLE,
+                ChatMemoryPartitionManager.Interval.DAY, Duration.ofDays(2), 1, Duration.ofHours(1), clock);
+        repository = new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate, transactionTemplate, TABLE, STATS_TABLE,
+                100, clock, partitions);
+        repository.initializeSchema();
+    }
+
+    @Test
+    void testLoadQuery_OnlyScansPartitionsOfTheWindow() {
+        // Arrange
+        repository.saveAll("conv-old", window("day one"));
+        clock.advance(Duration.ofDays(2));
+        partitions.maintain();
+        repository.saveAll("conv-new", window("day three"));
+        Timestamp windowStart = jdbcTemplate.queryForObject("SELECT window_start FROM " + STATS_TABLE
+                + " WHERE conversation_id = 'conv-new'", Timestamp.class);
+
+        // Act
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN SELECT seq, type, content FROM " + TABLE
+                + " WHERE conversation_id = 'conv-new' AND \"timestamp\" >= '" + windowStart + "' ORDER BY seq",
+                String.class));
+
+        // Assert
+        assertThat(partitions.listPartitions()).hasSizeGreaterThanOrEqualTo(3);
+        assertThat(plan).contains(TABLE + "_p20250103").doesNotContain(TABLE + "_p20250101");
+        assertThat(repository.findByConversationId("conv-new")).extracting(Message::getText)
+                .containsExactly("day three", "reply to day three");
+    }
+
+    @Test
+    void testMaintain_DropsExpiredPartitionsAndRefreshesStats() {
+        // Arrange
+        repository.saveAll("conv-old", window("day one"));
+        repository.saveAll("conv-span", window("day one"));
+        clock.advance(Duration.ofDays(2));
+        partitions.maintain();
+        List<Message> spanning = new ArrayList<>(window("day one"));
+        spanning.addAll(window("day three"));
+        repository.saveAll("conv-span", spanning);
+        clock.advance(Duration.ofDays(2));
+
+        // Act
+        List<String> dropped = partitions.maintain();
+
+        // Assert
+        assertThat(dropped).contains(TABLE + "_p20250101");
+        assertThat(repository.findStats("conv-old")).isEmpty();
+        assertThat(repository.findByConversationId("conv-old")).isEmpty();
+        assertThat(repository.findStats("conv-span").orElseThrow().messageCount()).isEqualTo(2);
+        assertThat(repository.findByConversationId("conv-span")).extracting(Message::getText)
+                .containsExactly("day three", "reply to day three");
+    }
+
+    private static List<Message> window(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T12:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ConsistentHashRing 单元测试
+ */
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void testNodeFor_SpreadsKeysEvenly() {
+        // Arrange
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c", "d"), 160);
+        Map<String, Integer> counts = new HashMap<>();
+
+        // Act
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("conv-" + i), 1, Integer::sum);
+        }
+
+        // Assert
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allMatch(count -> Math.abs(count - KEYS / 4) < KEYS / 4 * 0.15);
+    }
+
+    @Test
+    void testAddingNode_OnlyMovesKeysToTheNewNode() {
+        // Arrange
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 160);
+        int moved = 0;
+
+        // Act
+        for (int i = 0; i < KEYS; i++) {
+            String key = "conv-" + i;
+            String owner = after.nodeFor(key);
+            if (!owner.equals(before.nodeFor(key))) {
+                assertThat(owner).isEqualTo("d");
+                moved++;
+            }
+        }
+
+        // Assert
+        assertThat(moved).isBetween((int) (KEYS / 4 * 0.85), (int) (KEYS / 4 * 1.15));
+    }
+
+    @Test
+    void testNodeFor_IndependentOfNodeOrder() {
+        // Arrange
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), 64);
+
+        // Act & Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(reordered.nodeFor("conv-" + i)).isEqualTo(ring.nodeFor("conv-" + i));
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsDuplicateNames() {
+        // Act & Assert
+        assertThatThrownBy(() -> new ConsistentHashRing(List.of("a", "a"), 16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,156 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InMemoryChatMemorySnapshotter 单元测试
+ */
+class InMemoryChatMemorySnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    private final MutableClock clock = new MutableClock();
+    private final List<BoundedInMemoryChatMemoryRepository> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(BoundedInMemoryChatMemoryRepository::close);
+    }
+
+    @Test
+    void testRestore_RecreatesConversationsWithActivityTimes() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store(null);
+        source.saveAll("conv-1", conversation("hello"));
+        clock.advance(Duration.ofMinutes(5));
+        source.saveAll("conv-2", conversation("world"));
+        source.saveAll("conv-1", conversation("again"));
+        snapshotter(source).snapshot();
+        BoundedInMemoryChatMemoryRepository target = store(null);
+
+        // Act
+        long restored = snapshotter(target).restore();
+
+        // Assert
+        assertThat(restored).isEqualTo(2);
+        assertThat(target.findConversationIds()).containsExactly("conv-1", "conv-2");
+        assertThat(target.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("again", "reply to again");
+        assertThat(target.findStats("conv-1")).isEqualTo(source.findStats("conv-1"));
+    }
+
+    @Test
+    void testRestore_CompactStoreKeepsEncodedWindows() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store(new MessageCodec(64));
+        source.saveAll("conv-1", conversation("x".repeat(500)));
+        snapshotter(source).snapshot();
+        BoundedInMemoryChatMemoryRepository target = store(new MessageCodec(64));
+
+        // Act
+        snapshotter(target).restore();
+
+        // Assert
+        assertThat(target.estimatedBytes()).isEqualTo(source.estimatedBytes());
+        assertThat(target.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("x".repeat(500), "reply to " + "x".repeat(500));
+    }
+
+    @Test
+    void testRestore_KeepsConversationsWrittenSinceStartup() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store(null);
+        source.saveAll("conv-1", conversation("old"));
+        snapshotter(source).snapshot();
+        BoundedInMemoryChatMemoryRepository target = store(null);
+        target.saveAll("conv-1", conversation("new"));
+
+        // Act
+        long restored = snapshotter(target).restore();
+
+        // Assert
+        assertThat(restored).isZero();
+        assertThat(target.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("new", "reply to new");
+    }
+
+    @Test
+    void testRestore_TruncatedSnapshotRestoresCompleteWindows() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store(null);
+        source.saveAll("conv-1", conversation("first"));
+        source.saveAll("conv-2", conversation("second"));
+        snapshotter(source).snapshot();
+        Path snapshot = directory.resolve("chat-memory.snapshot");
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.setLength(file.length() - 20);
+        }
+        BoundedInMemoryChatMemoryRepository target = store(null);
+
+        // Act
+        long restored = snapshotter(target).restore();
+
+        // Assert
+        assertThat(restored).isEqualTo(1);
+        assertThat(target.findConversationIds()).hasSize(1);
+    }
+
+    private BoundedInMemoryChatMemoryRepository store(MessageCodec codec) {
+        BoundedInMemoryChatMemoryRepository store = new BoundedInMemoryChatMemoryRepository(
+                Duration.ZERO, 0, 0, clock, codec);
+        stores.add(store);
+        return store;
+    }
+
+    private InMemoryChatMemorySnapshotter snapshotter(BoundedInMemoryChatMemoryRepository store) {
+        return new InMemoryChatMemorySnapshotter(store, directory.resolve("chat-memory.snapshot"), Duration.ZERO,
+                new MessageCodec(1024), clock);
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
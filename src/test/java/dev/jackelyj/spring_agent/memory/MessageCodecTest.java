@@ -0,0 +1,132 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.content.Media;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.MimeTypeUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MessageCodec 单元测试
+ */
+class MessageCodecTest {
+
+    private final MessageCodec codec = new MessageCodec(256);
+
+    @Test
+    void testEncodeDecode_RoundTripsAllMessageTypes() {
+        // Arrange
+        List<Message> messages = List.of(
+                new SystemMessage("You are a helpful assistant."),
+                UserMessage.builder().text("16的平方根是多少？").metadata(Map.of("source", "web")).build(),
+                new AssistantMessage("", Map.of("finishReason", "TOOL_CALLS", "index", 0),
+                        List.of(new AssistantMessage.ToolCall("call-1", "function", "sqrt", "{\"value\":16}"))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-1", "sqrt", "4.0")), Map.of()),
+                new AssistantMessage("16 的平方根是 4。", Map.of("latencyMs", 1234L, "temperature", 0.7, "cached", true)));
+
+        // Act
+        List<Message> decoded = codec.decode(codec.encode(messages));
+
+        // Assert
+        assertThat(decoded).hasSize(5);
+        for (int i = 0; i < messages.size(); i++) {
+            assertThat(decoded.get(i).getMessageType()).isEqualTo(messages.get(i).getMessageType());
+            assertThat(decoded.get(i).getText()).isEqualTo(messages.get(i).getText());
+            assertThat(decoded.get(i).getMetadata()).isEqualTo(messages.get(i).getMetadata());
+        }
+        assertThat(((AssistantMessage) decoded.get(2)).getToolCalls())
+                .isEqualTo(((AssistantMessage) messages.get(2)).getToolCalls());
+        assertThat(((ToolResponseMessage) decoded.get(3)).getResponses())
+                .isEqualTo(((ToolResponseMessage) messages.get(3)).getResponses());
+    }
+
+    @Test
+    void testEncode_CompressesLargeWindowsAndStaysRoundTrippable() {
+        // Arrange
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(new UserMessage("Please summarise the quarterly report for region " + i + " in detail."));
+            messages.add(new AssistantMessage("The quarterly report for region " + i
+                    + " shows steady growth in revenue and a small decline in operating costs."));
+        }
+        MessageCodec uncompressed = new MessageCodec(0);
+
+        // Act
+        byte[] compressed = codec.encode(messages);
+        byte[] plain = uncompressed.encode(messages);
+
+        // Assert
+        assertThat(compressed.length).isLessThan(plain.length);
+        assertThat(codec.decode(compressed)).extracting(Message::getText)
+                .containsExactlyElementsOf(messages.stream().map(Message::getText).toList());
+        assertThat(codec.messageCount(compressed)).isEqualTo(20);
+        assertThat(uncompressed.messageCount(plain)).isEqualTo(20);
+    }
+
+    @Test
+    void testCanEncode_RejectsMessagesWithMedia() {
+        // Arrange
+        Message withMedia = UserMessage.builder()
+                .text("describe this")
+                .media(List.of(new Media(MimeTypeUtils.IMAGE_PNG, new ByteArrayResource(new byte[]{1, 2, 3}))))
+                .build();
+
+        // Act & Assert
+        assertThat(codec.canEncode(List.of(new UserMessage("hello")))).isTrue();
+        assertThat(codec.canEncode(List.of(withMedia))).isFalse();
+    }
+
+    @Test
+    void testEncodeDecode_KeepsFloatMapAndListMetadataTypes() {
+        // Arrange
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("promptTokens", 12);
+        usage.put("details", Map.of("cachedTokens", 4L, "ratio", 0.25f));
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("score", 0.5f);
+        metadata.put("usage", usage);
+        metadata.put("citations", List.of("doc-1", 2, Map.of("page", 3)));
+        metadata.put("refusal", null);
+        List<Message> messages = List.of(new AssistantMessage("4", metadata));
+
+        // Act
+        boolean encodable = codec.canEncode(messages);
+        List<Message> decoded = codec.decode(codec.encode(messages));
+
+        // Assert
+        assertThat(encodable).isTrue();
+        assertThat(decoded.get(0).getMetadata()).isEqualTo(messages.get(0).getMetadata());
+        assertThat(decoded.get(0).getMetadata().get("score")).isInstanceOf(Float.class);
+    }
+
+    @Test
+    void testCanEncode_RejectsUnsupportedMetadataAndNullToolNames() {
+        // Arrange
+        Message withInstant = UserMessage.builder().text("hello").metadata(Map.of("sentAt", Instant.EPOCH)).build();
+        Message withNestedDecimal = UserMessage.builder().text("hello")
+                .metadata(Map.of("usage", Map.of("cost", BigDecimal.ONE))).build();
+        Message withNullToolName = new AssistantMessage("", Map.of(),
+                List.of(new AssistantMessage.ToolCall("call-1", "function", null, "{}")));
+        Message withNullResponseName = new ToolResponseMessage(
+                List.of(new ToolResponseMessage.ToolResponse("call-1", null, "4.0")), Map.of());
+
+        // Act & Assert
+        assertThat(codec.canEncode(List.of(withInstant))).isFalse();
+        assertThat(codec.canEncode(List.of(withNestedDecimal))).isFalse();
+        assertThat(codec.canEncode(List.of(withNullToolName))).isFalse();
+        assertThat(codec.canEncode(List.of(withNullResponseName))).isFalse();
+    }
+}
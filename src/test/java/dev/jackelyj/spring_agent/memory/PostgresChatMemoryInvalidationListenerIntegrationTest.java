@@ -0,0 +1,120 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PostgresChatMemoryInvalidationListener 集成测试
+ *
+ * Two nodes, each with its own read cache and listener, share one append-only
+ * store; a write through one node must evict the window cached by the other.
+ *
+ * Run with: ./gradlew integrationTest --tests PostgresChatMemoryInvalidationListenerIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class PostgresChatMemoryInvalidationListenerIntegrationTest {
+
+    private static final String TABLE = "inv_chat_memory";
+    private static final String STATS_TABLE = "inv_chat_conversation";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final List<PostgresChatMemoryInvalidationListener> listeners = new ArrayList<>();
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE + ", " + STATS_TABLE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listeners.forEach(PostgresChatMemoryInvalidationListener::stop);
+    }
+
+    @Test
+    void testWriteOnOneNode_EvictsWindowCachedByOther() throws InterruptedException {
+        // Arrange
+        VersionedCachingChatMemoryRepository nodeA = node();
+        VersionedCachingChatMemoryRepository nodeB = node();
+        nodeA.saveAll("conv-1", conversation("first"));
+        assertThat(nodeB.findByConversationId("conv-1")).extracting(Message::getText).first().isEqualTo("first");
+
+        // Act
+        nodeA.saveAll("conv-1", conversation("second"));
+
+        // Assert
+        await(() -> "second".equals(nodeB.findByConversationId("conv-1").get(0).getText()));
+        assertThat(nodeB.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("second", "reply to second");
+    }
+
+    @Test
+    void testInvalidateAll_EvictsEveryWindowOnOtherNodes() throws InterruptedException {
+        // Arrange
+        VersionedCachingChatMemoryRepository nodeA = node();
+        VersionedCachingChatMemoryRepository nodeB = node();
+        nodeA.saveAll("conv-1", conversation("hello"));
+        nodeB.findByConversationId("conv-1");
+        jdbcTemplate.execute("TRUNCATE TABLE " + TABLE + ", " + STATS_TABLE);
+
+        // Act
+        nodeA.invalidateAll();
+
+        // Assert
+        await(() -> nodeB.findByConversationId("conv-1").isEmpty());
+    }
+
+    private VersionedCachingChatMemoryRepository node() throws InterruptedException {
+        AppendOnlyJdbcChatMemoryRepository store = new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate,
+                transactionTemplate, TABLE, STATS_TABLE, 0, Clock.systemUTC());
+        store.initializeSchema();
+        VersionedCachingChatMemoryRepository cache = new VersionedCachingChatMemoryRepository(store, 100);
+        PostgresChatMemoryInvalidationListener listener = new PostgresChatMemoryInvalidationListener(
+                cache, dataSource, "test_chat_memory_invalidation");
+        listener.start();
+        listeners.add(listener);
+        await(listener::isListening);
+        return cache;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition within 10s").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+}
@@ -0,0 +1,170 @@
+package dev.jackelyj.spring_agent.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * PostgresConversationLock 集成测试
+ *
+ * Each "node" has its own append-only store, window memory and lock over one
+ * database, as separate application instances would.
+ *
+ * Run with: ./gradlew integrationTest --tests PostgresConversationLockIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class PostgresConversationLockIntegrationTest {
+
+    private static final String TABLE = "lock_chat_memory";
+    private static final String STATS_TABLE = "lock_chat_conversation";
+    private static final int TURNS_PER_NODE = 50;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE + ", " + STATS_TABLE);
+    }
+
+    @Test
+    void testConcurrentAddsFromTwoNodes_KeepEveryMessage() throws Exception {
+        // Arrange
+        ChatMemory nodeA = node(new PostgresConversationLock(jdbcTemplate, transactionTemplate,
+                Duration.ofSeconds(10), null));
+        ChatMemory nodeB = node(new PostgresConversationLock(jdbcTemplate, transactionTemplate,
+                Duration.ofSeconds(10), null));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        try {
+            Future<?> a = executor.submit(() -> addTurns(nodeA, "a"));
+            Future<?> b = executor.submit(() -> addTurns(nodeB, "b"));
+            a.get(60, TimeUnit.SECONDS);
+            b.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        List<Message> window = nodeA.get("conv-1");
+        assertThat(window).hasSize(2 * TURNS_PER_NODE);
+        assertThat(window).extracting(Message::getText).filteredOn(text -> text.startsWith("a-"))
+                .containsExactlyElementsOf(texts("a"));
+        assertThat(window).extracting(Message::getText).filteredOn(text -> text.startsWith("b-"))
+                .containsExactlyElementsOf(texts("b"));
+    }
+
+    @Test
+    void testRun_FailsFastWhileAnotherNodeHoldsTheLock() throws Exception {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PostgresConversationLock holder = new PostgresConversationLock(jdbcTemplate, transactionTemplate,
+                Duration.ofSeconds(1), null);
+        PostgresConversationLock waiter = new PostgresConversationLock(jdbcTemplate, transactionTemplate,
+                Duration.ofMillis(200), null);
+        waiter.bindTo(registry);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> holding = executor.submit(() -> holder.run("conv-1", () -> {
+                held.countDown();
+                awaitQuietly(release);
+            }));
+            assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // Act
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> waiter.run("conv-1", () -> { }))
+                    .isInstanceOf(CannotAcquireLockException.class);
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            List<String> other = new ArrayList<>();
+            waiter.run("conv-2", () -> other.add("updated"));
+            release.countDown();
+            holding.get(10, TimeUnit.SECONDS);
+            waiter.run("conv-1", () -> other.add("updated after release"));
+
+            // Assert
+            assertThat(waitedMillis).isBetween(200L, 1_000L);
+            assertThat(other).containsExactly("updated", "updated after release");
+            assertThat(registry.get("chat.memory.lock.wait").tag("outcome", "timeout").timer().count())
+                    .isEqualTo(1);
+            assertThat(registry.get("chat.memory.lock.wait").tag("outcome", "acquired").timer().count())
+                    .isEqualTo(2);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private ChatMemory node(PostgresConversationLock lock) {
+        AppendOnlyJdbcChatMemoryRepository store = new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate,
+                transactionTemplate, TABLE, STATS_TABLE, 100, Clock.systemUTC());
+        store.initializeSchema();
+        ChatMemory window = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(store)
+                .maxMessages(4 * TURNS_PER_NODE)
+                .build();
+        return new ConversationLockingChatMemory(window, lock);
+    }
+
+    private static void addTurns(ChatMemory chatMemory, String node) {
+        for (String text : texts(node)) {
+            chatMemory.add("conv-1", new UserMessage(text));
+        }
+    }
+
+    private static List<String> texts(String node) {
+        List<String> texts = new ArrayList<>(TURNS_PER_NODE);
+        for (int i = 0; i < TURNS_PER_NODE; i++) {
+            texts.add(node + "-" + i);
+        }
+        return texts;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
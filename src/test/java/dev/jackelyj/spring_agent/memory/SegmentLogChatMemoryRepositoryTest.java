@@ -0,0 +1,172 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SegmentLogChatMemoryRepository 单元测试
+ */
+class SegmentLogChatMemoryRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentLogChatMemoryRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    void testReopen_RebuildsIndexFromSegments() {
+        // Arrange
+        repository = open();
+        repository.saveAll("conv-1", conversation("first"));
+        repository.saveAll("conv-2", conversation("other"));
+        repository.saveAll("conv-1", conversation("second"));
+        repository.deleteByConversationId("conv-2");
+        repository.close();
+
+        // Act
+        repository = open();
+
+        // Assert
+        assertThat(repository.findConversationIds()).containsExactly("conv-1");
+        assertThat(repository.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("second", "reply to second");
+        assertThat(repository.findStats("conv-1").orElseThrow().messageCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testReopen_IgnoresTornTail() throws IOException {
+        // Arrange
+        repository = open();
+        repository.saveAll("conv-1", conversation("first"));
+        repository.saveAll("conv-1", conversation("second"));
+        repository.close();
+        corruptLastWrittenByte(singleSegment());
+
+        // Act
+        repository = open();
+        repository.saveAll("conv-2", conversation("after recovery"));
+        repository.close();
+        repository = open();
+
+        // Assert
+        assertThat(repository.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("first", "reply to first");
+        assertThat(repository.findConversationIds()).containsExactly("conv-1", "conv-2");
+    }
+
+    @Test
+    void testCompact_RewritesLiveRecordsAndDeletesSealedSegments() {
+        // Arrange
+        repository = open();
+        String text = "x".repeat(2_000);
+        for (int turn = 0; turn < 100; turn++) {
+            repository.saveAll("conv-hot", conversation(text + turn));
+        }
+        repository.saveAll("conv-cold", conversation("cold"));
+        int segmentsBefore = repository.segmentCount();
+
+        // Act
+        repository.compact();
+
+        // Assert
+        assertThat(segmentsBefore).isGreaterThan(2);
+        assertThat(repository.segmentCount()).isLessThan(segmentsBefore);
+        assertThat(repository.writtenBytes()).isLessThan(100L * text.length());
+        assertThat(repository.findByConversationId("conv-hot").get(0).getText()).isEqualTo(text + 99);
+        repository.close();
+        repository = open();
+        assertThat(repository.findByConversationId("conv-hot").get(0).getText()).isEqualTo(text + 99);
+        assertThat(repository.findByConversationId("conv-cold")).hasSize(2);
+    }
+
+    @Test
+    void testDeleteAllConversations_SurvivesRestart() {
+        // Arrange
+        repository = open();
+        repository.saveAll("conv-1", conversation("hello"));
+        repository.saveAll("conv-2", conversation("hello"));
+
+        // Act
+        repository.deleteAllConversations();
+        repository.close();
+        repository = open();
+
+        // Assert
+        assertThat(repository.findConversationIds()).isEmpty();
+        assertThat(repository.segmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testPurgeConversations_WritesTombstonesForMatchingPrefix() {
+        // Arrange
+        repository = open();
+        repository.saveAll("tenant-a:1", conversation("hello"));
+        repository.saveAll("tenant-a:2", conversation("hello"));
+        repository.saveAll("tenant-b:1", conversation("hello"));
+
+        // Act
+        long deleted = repository.purgeConversations(new ConversationPurgeCriteria(null, "tenant-a:"), 1, batch -> { });
+        repository.close();
+        repository = open();
+
+        // Assert
+        assertThat(deleted).isEqualTo(2);
+        assertThat(repository.findConversationIds()).containsExactly("tenant-b:1");
+    }
+
+    private SegmentLogChatMemoryRepository open() {
+        return new SegmentLogChatMemoryRepository(directory, SegmentLogChatMemoryRepository.MIN_SEGMENT_SIZE, true,
+                Duration.ZERO, 0.5, Clock.systemUTC(), new MessageCodec(0));
+    }
+
+    private Path singleSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+
+    /**
+     * Flip the last non-zero byte of the file, which belongs to the last record.
+     */
+    private static void corruptLastWrittenByte(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            for (long position = raf.length() - 1; position >= 0; position--) {
+                raf.seek(position);
+                int value = raf.read();
+                if (value != 0) {
+                    raf.seek(position);
+                    raf.write(value ^ 0xFF);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+}
@@ -0,0 +1,212 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ShardedChatMemoryRepository 集成测试
+ *
+ * Three databases in one PostgreSQL container act as shards: conversations
+ * must be stored on their owner only, scatter-gather operations must see all
+ * of them, and a ring change must keep every window readable while the
+ * migration moves it.
+ *
+ * Run with: ./gradlew integrationTest --tests ShardedChatMemoryRepositoryIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class ShardedChatMemoryRepositoryIntegrationTest {
+
+    private static final String TABLE = "shard_chat_memory";
+    private static final String STATS_TABLE = "shard_chat_conversation";
+    private static final List<String> SHARDS = List.of("shard_a", "shard_b", "shard_c");
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final Map<String, JdbcTemplate> databases = new LinkedHashMap<>();
+    private final List<ShardedChatMemoryRepository> repositories = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate admin = new JdbcTemplate(new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+        for (String shard : SHARDS) {
+            Integer exists = admin.queryForObject("SELECT count(*) FROM pg_database WHERE datname = ?",
+                    Integer.class, shard);
+            if (exists == null || exists == 0) {
+                admin.execute("CREATE DATABASE " + shard);
+            }
+            String url = postgres.getJdbcUrl().replace("/" + postgres.getDatabaseName(), "/" + shard);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                    url, postgres.getUsername(), postgres.getPassword()));
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE + ", " + STATS_TABLE);
+            databases.put(shard, jdbcTemplate);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(ShardedChatMemoryRepository::close);
+    }
+
+    @Test
+    void testSaveAll_StoresEachConversationOnItsOwnerOnly() {
+        // Arrange
+        ShardedChatMemoryRepository repository = repository(SHARDS, List.of());
+
+        // Act
+        for (int i = 0; i < 30; i++) {
+            repository.saveAll("conv-" + i, conversation("hello " + i));
+        }
+
+        // Assert
+        int stored = 0;
+        for (String shard : SHARDS) {
+            List<String> ids = storedIds(shard);
+            assertThat(ids).allMatch(id -> repository.shardOf(id).equals(shard));
+            stored += ids.size();
+        }
+        assertThat(stored).isEqualTo(30);
+        assertThat(SHARDS).allMatch(shard -> !storedIds(shard).isEmpty());
+        assertThat(repository.findByConversationId("conv-7")).extracting(Message::getText)
+                .containsExactly("hello 7", "reply to hello 7");
+    }
+
+    @Test
+    void testScatterGather_ListsAndDeletesAcrossShards() {
+        // Arrange
+        ShardedChatMemoryRepository repository = repository(SHARDS, List.of());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String id = String.format("conv-%02d", i);
+            repository.saveAll(id, conversation("hello " + i));
+            expected.add(id);
+        }
+
+        // Act
+        List<String> ids = repository.findConversationIds();
+        List<String> listed = new ArrayList<>();
+        ConversationCursor after = null;
+        List<ConversationStats> page;
+        do {
+            page = repository.listConversations(ConversationSort.ID, after, 7);
+            page.forEach(stats -> listed.add(stats.conversationId()));
+            if (!page.isEmpty()) {
+                after = ConversationCursor.after(page.get(page.size() - 1));
+            }
+        } while (page.size() == 7);
+        repository.deleteAllConversations();
+
+        // Assert
+        assertThat(ids).containsExactlyElementsOf(expected);
+        assertThat(listed).containsExactlyElementsOf(expected);
+        assertThat(repository.findConversationIds()).isEmpty();
+    }
+
+    @Test
+    void testResharding_DualReadsUntilMigratedToNewOwners() {
+        // Arrange
+        List<String> oldRing = List.of("shard_a", "shard_b");
+        ShardedChatMemoryRepository before = repository(oldRing, List.of());
+        for (int i = 0; i < 60; i++) {
+            before.saveAll("conv-" + i, conversation("hello " + i));
+        }
+        ShardedChatMemoryRepository after = repository(SHARDS, oldRing);
+        List<String> moving = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            if (!after.shardOf("conv-" + i).equals(before.shardOf("conv-" + i))) {
+                moving.add("conv-" + i);
+            }
+        }
+        assertThat(moving).isNotEmpty();
+        String written = moving.get(0);
+
+        // Act
+        List<Message> dualRead = after.findByConversationId(moving.get(moving.size() - 1));
+        after.saveAll(written, conversation("moved by a write"));
+        long migrated = after.migrate();
+
+        // Assert
+        assertThat(dualRead).isNotEmpty();
+        assertThat(migrated).isEqualTo(moving.size() - 1);
+        assertThat(after.isMigrating()).isFalse();
+        for (String shard : SHARDS) {
+            assertThat(storedIds(shard)).allMatch(id -> after.shardOf(id).equals(shard));
+        }
+        assertThat(after.findConversationIds()).hasSize(60);
+        assertThat(after.findByConversationId(written)).extracting(Message::getText)
+                .containsExactly("moved by a write", "reply to moved by a write");
+        assertThat(after.findByConversationId(moving.get(1))).hasSize(2);
+    }
+
+    @Test
+    void testMigrate_KeepsWindowWrittenToNewOwnerMeanwhile() {
+        // Arrange
+        List<String> oldRing = List.of("shard_a", "shard_b");
+        ShardedChatMemoryRepository before = repository(oldRing, List.of());
+        ShardedChatMemoryRepository after = repository(SHARDS, oldRing);
+        String id = null;
+        for (int i = 0; id == null; i++) {
+            if (after.shardOf("conv-" + i).equals("shard_c")) {
+                id = "conv-" + i;
+            }
+        }
+        before.saveAll(id, conversation("old"));
+        // Another node already running the new ring writes without having seen the old window
+        repository(List.of("shard_c"), List.of()).saveAll(id, conversation("new"));
+
+        // Act
+        long migrated = after.migrate();
+
+        // Assert
+        assertThat(migrated).isZero();
+        assertThat(storedIds(before.shardOf(id))).doesNotContain(id);
+        assertThat(after.findByConversationId(id)).extracting(Message::getText).containsExactly("new", "reply to new");
+    }
+
+    private ShardedChatMemoryRepository repository(List<String> ring, List<String> previousRing) {
+        Map<String, AppendOnlyJdbcChatMemoryRepository> shards = new LinkedHashMap<>();
+        databases.forEach((name, jdbcTemplate) -> {
+            AppendOnlyJdbcChatMemoryRepository shard = new AppendOnlyJdbcChatMemoryRepository(jdbcTemplate,
+                    new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                    TABLE, STATS_TABLE, 100, Clock.systemUTC());
+            shard.initializeSchema();
+            shards.put(name, shard);
+        });
+        ShardedChatMemoryRepository repository = new ShardedChatMemoryRepository(shards, ring, previousRing, 160, 10,
+                List.of());
+        repositories.add(repository);
+        return repository;
+    }
+
+    private List<String> storedIds(String shard) {
+        return databases.get(shard).queryForList("SELECT conversation_id FROM " + STATS_TABLE, String.class);
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+}
@@ -0,0 +1,151 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * VersionedCachingChatMemoryRepository 单元测试
+ */
+class VersionedCachingChatMemoryRepositoryTest {
+
+    private final CountingRepository delegate = new CountingRepository();
+    private final VersionedCachingChatMemoryRepository cache = new VersionedCachingChatMemoryRepository(delegate, 100);
+
+    @Test
+    void testFindByConversationId_LoadsOncePerVersion() {
+        // Arrange
+        delegate.windows.put("conv-1", conversation("hello"));
+
+        // Act
+        cache.findByConversationId("conv-1");
+        cache.findByConversationId("conv-1");
+        List<Message> messages = cache.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(delegate.loads.get()).isEqualTo(1);
+        assertThat(messages).extracting(Message::getText).containsExactly("hello", "reply to hello");
+    }
+
+    @Test
+    void testSaveAll_ServesWrittenWindowWithoutLoading() {
+        // Arrange
+        cache.findByConversationId("conv-1");
+
+        // Act
+        cache.saveAll("conv-1", conversation("new"));
+        List<Message> messages = cache.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(delegate.loads.get()).isEqualTo(1);
+        assertThat(messages).extracting(Message::getText).containsExactly("new", "reply to new");
+    }
+
+    @Test
+    void testFindByConversationId_LoadOverlappingWriteIsNotServed() {
+        // Arrange
+        delegate.windows.put("conv-1", conversation("old"));
+        delegate.duringNextLoad = () -> cache.saveAll("conv-1", conversation("new"));
+
+        // Act
+        List<Message> overlapping = cache.findByConversationId("conv-1");
+        List<Message> next = cache.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(overlapping).extracting(Message::getText).containsExactly("old", "reply to old");
+        assertThat(next).extracting(Message::getText).containsExactly("new", "reply to new");
+    }
+
+    @Test
+    void testEvict_ReloadsFromDelegate() {
+        // Arrange
+        delegate.windows.put("conv-1", conversation("old"));
+        cache.findByConversationId("conv-1");
+        delegate.windows.put("conv-1", conversation("changed elsewhere"));
+
+        // Act
+        cache.evict(List.of("conv-1"));
+        List<Message> messages = cache.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(delegate.loads.get()).isEqualTo(2);
+        assertThat(messages).extracting(Message::getText).first().isEqualTo("changed elsewhere");
+    }
+
+    @Test
+    void testWrites_ArePublishedButRemoteEvictionsAreNot() {
+        // Arrange
+        List<String> published = new ArrayList<>();
+        cache.setInvalidationPublisher(new VersionedCachingChatMemoryRepository.InvalidationPublisher() {
+            @Override
+            public void conversationsChanged(Collection<String> conversationIds) {
+                published.addAll(conversationIds);
+            }
+
+            @Override
+            public void allConversationsChanged() {
+                published.add("*");
+            }
+        });
+
+        // Act
+        cache.saveAll("conv-1", conversation("hello"));
+        cache.deleteByConversationId("conv-2");
+        cache.invalidate(List.of("conv-3"));
+        cache.evict(List.of("conv-4"));
+        cache.evictAll();
+        cache.invalidateAll();
+
+        // Assert
+        assertThat(published).containsExactly("conv-1", "conv-2", "conv-3", "*");
+    }
+
+    private static List<Message> conversation(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+
+    private static final class CountingRepository implements ChatMemoryRepository {
+
+        private final Map<String, List<Message>> windows = new ConcurrentHashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+        private Runnable duringNextLoad;
+
+        @Override
+        public List<String> findConversationIds() {
+            return List.copyOf(windows.keySet());
+        }
+
+        @Override
+        public List<Message> findByConversationId(String conversationId) {
+            loads.incrementAndGet();
+            List<Message> messages = windows.getOrDefault(conversationId, List.of());
+            Runnable hook = duringNextLoad;
+            duringNextLoad = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return messages;
+        }
+
+        @Override
+        public void saveAll(String conversationId, List<Message> messages) {
+            windows.put(conversationId, messages);
+        }
+
+        @Override
+        public void deleteByConversationId(String conversationId) {
+            windows.remove(conversationId);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package dev.jackelyj.spring_agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * WriteBehindChatMemoryRepository 单元测试
+ */
+class WriteBehindChatMemoryRepositoryTest {
+
+    private final CountingRepository database = new CountingRepository();
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void testSaveAll_CoalescesTurnsIntoOneWrite() {
+        // Arrange
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+
+        // Act
+        repository.saveAll("conv-1", window("first"));
+        repository.saveAll("conv-1", window("second"));
+        int saveCallsBeforeFlush = database.saveCalls;
+        int written = repository.flush();
+
+        // Assert
+        assertThat(saveCallsBeforeFlush).isZero();
+        assertThat(written).isEqualTo(1);
+        assertThat(database.saveCalls).isEqualTo(1);
+        assertThat(database.findByConversationId("conv-1")).extracting(Message::getText)
+                .containsExactly("second", "reply to second");
+        assertThat(repository.pendingCount()).isZero();
+    }
+
+    @Test
+    void testFindByConversationId_ServesPendingAndCachedWindowsWithoutDatabase() {
+        // Arrange
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+        repository.saveAll("conv-1", window("hello"));
+
+        // Act
+        List<Message> beforeFlush = repository.findByConversationId("conv-1");
+        repository.flush();
+        List<Message> afterFlush = repository.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(beforeFlush).hasSize(2);
+        assertThat(afterFlush).hasSize(2);
+        assertThat(database.findCalls).isZero();
+    }
+
+    @Test
+    void testFindByConversationId_LoadsFromDatabaseOnMiss() {
+        // Arrange
+        database.saveAll("conv-1", window("stored"));
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+
+        // Act
+        repository.findByConversationId("conv-1");
+        List<Message> second = repository.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(second).extracting(Message::getText).containsExactly("stored", "reply to stored");
+        assertThat(database.findCalls).isEqualTo(1);
+    }
+
+    @Test
+    void testSaveAll_FlushesSynchronouslyWhenMaxLagExceeded() {
+        // Arrange
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofSeconds(2));
+        repository.saveAll("conv-1", window("first"));
+        clock.advance(Duration.ofSeconds(3));
+
+        // Act
+        repository.saveAll("conv-2", window("second"));
+
+        // Assert
+        assertThat(repository.pendingCount()).isZero();
+        assertThat(database.findConversationIds()).containsExactlyInAnyOrder("conv-1", "conv-2");
+    }
+
+    @Test
+    void testSaveAll_MaxLagCountsFromFirstUnflushedWrite() {
+        // Arrange
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofSeconds(2));
+        repository.saveAll("conv-1", window("first"));
+        clock.advance(Duration.ofMillis(1500));
+        repository.saveAll("conv-1", window("second"));
+        int pendingBeforeLag = repository.pendingCount();
+        clock.advance(Duration.ofSeconds(1));
+
+        // Act
+        repository.saveAll("conv-2", window("third"));
+        int pendingAfterLag = repository.pendingCount();
+        clock.advance(Duration.ofSeconds(3));
+        repository.saveAll("conv-3", window("fourth"));
+
+        // Assert
+        assertThat(pendingBeforeLag).isEqualTo(1);
+        assertThat(pendingAfterLag).isZero();
+        assertThat(repository.pendingCount()).isEqualTo(1);
+        assertThat(database.findConversationIds()).containsExactlyInAnyOrder("conv-1", "conv-2");
+    }
+
+    @Test
+    void testFindByConversationId_SlowLoadDoesNotReplaceNewerFlushedWindow() {
+        // Arrange
+        database.saveAll("conv-1", window("old"));
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+        // A writer saves and flushes a newer window while the load is in flight
+        database.afterFind = () -> {
+            repository.saveAll("conv-1", window("new"));
+            repository.flush();
+        };
+
+        // Act
+        List<Message> loaded = repository.findByConversationId("conv-1");
+        List<Message> next = repository.findByConversationId("conv-1");
+
+        // Assert
+        assertThat(loaded).extracting(Message::getText).containsExactly("old", "reply to old");
+        assertThat(repository.pendingCount()).isZero();
+        assertThat(next).extracting(Message::getText).containsExactly("new", "reply to new");
+    }
+
+    @Test
+    void testDeleteByConversationId_HidesConversationAndDeletesOnFlush() {
+        // Arrange
+        database.saveAll("conv-1", window("stored"));
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+
+        // Act
+        repository.deleteByConversationId("conv-1");
+        List<String> idsBeforeFlush = repository.findConversationIds();
+        repository.flush();
+
+        // Assert
+        assertThat(idsBeforeFlush).doesNotContain("conv-1");
+        assertThat(repository.findByConversationId("conv-1")).isEmpty();
+        assertThat(database.findConversationIds()).isEmpty();
+    }
+
+    @Test
+    void testStop_FlushesPendingWrites() {
+        // Arrange
+        WriteBehindChatMemoryRepository repository = repository(Duration.ofMinutes(1));
+        repository.start();
+        repository.saveAll("conv-1", window("hello"));
+
+        // Act
+        repository.stop();
+
+        // Assert
+        assertThat(repository.isRunning()).isFalse();
+        assertThat(database.findConversationIds()).containsExactly("conv-1");
+    }
+
+    @Test
+    void testPurgeConversations_DeletesDurableRowsAndInvalidatesCache() {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository durable =
+                new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 0, 0, clock);
+        BoundedInMemoryChatMemoryRepository cache =
+                new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 100, 0, clock);
+        WriteBehindChatMemoryRepository repository = new WriteBehindChatMemoryRepository(durable, cache, null,
+                Duration.ofHours(1), Duration.ofMinutes(1), 100, clock);
+        repository.saveAll("tenant-a:1", window("a1"));
+        repository.saveAll("tenant-a:2", window("a2"));
+        repository.saveAll("tenant-b:1", window("b1"));
+        List<List<String>> batches = new ArrayList<>();
+
+        // Act
+        long deleted = repository.purgeConversations(new ConversationPurgeCriteria(null, "tenant-a:"), 1,
+                batches::add);
+
+        // Assert
+        assertThat(deleted).isEqualTo(2);
+        assertThat(batches).containsExactly(List.of("tenant-a:1"), List.of("tenant-a:2"));
+        assertThat(durable.findConversationIds()).containsExactly("tenant-b:1");
+        assertThat(cache.containsConversation("tenant-a:1")).isFalse();
+        assertThat(repository.findByConversationId("tenant-a:2")).isEmpty();
+        assertThat(repository.findByConversationId("tenant-b:1")).hasSize(2);
+    }
+
+    private WriteBehindChatMemoryRepository repository(Duration maxLag) {
+        BoundedInMemoryChatMemoryRepository cache =
+                new BoundedInMemoryChatMemoryRepository(Duration.ZERO, 100, 0, clock);
+        return new WriteBehindChatMemoryRepository(database, cache, null,
+                Duration.ofHours(1), maxLag, 100, clock);
+    }
+
+    private static List<Message> window(String text) {
+        return List.of(new UserMessage(text), new AssistantMessage("reply to " + text));
+    }
+
+    private static final class CountingRepository implements ChatMemoryRepository {
+
+        private final InMemoryChatMemoryRepository store = new InMemoryChatMemoryRepository();
+        int saveCalls;
+        int findCalls;
+        Runnable afterFind;
+
+        @Override
+        public List<String> findConversationIds() {
+            return store.findConversationIds();
+        }
+
+        @Override
+        public List<Message> findByConversationId(String conversationId) {
+            findCalls++;
+            List<Message> messages = store.findByConversationId(conversationId);
+            Runnable hook = afterFind;
+            afterFind = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return messages;
+        }
+
+        @Override
+        public void saveAll(String conversationId, List<Message> messages) {
+            saveCalls++;
+            store.saveAll(conversationId, messages);
+        }
+
+        @Override
+        public void deleteByConversationId(String conversationId) {
+            store.deleteByConversationId(conversationId);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
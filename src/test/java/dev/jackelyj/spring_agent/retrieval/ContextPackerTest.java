@@ -0,0 +1,72 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ContextPacker 单元测试
+ */
+class ContextPackerTest {
+
+    private final ContextPacker packer = new ContextPacker(new JTokkitTokenCountEstimator());
+
+    @Test
+    void testRemoveNearDuplicates_KeepsHigherRankedCopy() {
+        // Arrange
+        RetrievalCandidate first = candidate("1", "Spring AI is a framework for building AI applications with Java.");
+        RetrievalCandidate copy = candidate("2", "Spring AI is a framework for building  AI applications with Java!");
+        RetrievalCandidate other = candidate("3", "pgvector adds vector similarity search to PostgreSQL.");
+
+        // Act
+        List<RetrievalCandidate> result = packer.removeNearDuplicates(List.of(first, copy, other), 0.8);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("1", "3");
+    }
+
+    @Test
+    void testRemoveNearDuplicates_HandlesCjkText() {
+        // Arrange
+        RetrievalCandidate first = candidate("1", "PostgreSQL 是一个强大的开源关系型数据库。");
+        RetrievalCandidate copy = candidate("2", "PostgreSQL 是一个强大的开源关系型数据库");
+
+        // Act
+        List<RetrievalCandidate> result = packer.removeNearDuplicates(List.of(first, copy), 0.8);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("1");
+    }
+
+    @Test
+    void testPack_SkipsChunksThatDoNotFitBudget() {
+        // Arrange
+        RetrievalCandidate large = candidate("large", "word ".repeat(200));
+        RetrievalCandidate small = candidate("small", "a short chunk");
+        int budget = packer.estimateTokens(small.text()) + 5;
+
+        // Act
+        List<RetrievalCandidate> result = packer.pack(List.of(large, small), 5, budget);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("small");
+    }
+
+    @Test
+    void testPack_WithoutBudgetLimitsItemCount() {
+        // Act
+        List<RetrievalCandidate> result = packer.pack(
+                List.of(candidate("1", "a"), candidate("2", "b"), candidate("3", "c")), 2, 0);
+
+        // Assert
+        assertThat(result).hasSize(2);
+    }
+
+    private static RetrievalCandidate candidate(String id, String text) {
+        return new RetrievalCandidate(id, text, Map.of(), 1.0, null);
+    }
+}
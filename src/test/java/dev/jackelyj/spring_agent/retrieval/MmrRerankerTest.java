@@ -0,0 +1,61 @@
+package dev.jackelyj.spring_agent.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MmrReranker 单元测试
+ */
+class MmrRerankerTest {
+
+    private final MmrReranker reranker = new MmrReranker();
+
+    @Test
+    void testRerank_PrefersDiverseCandidateOverNearDuplicate() {
+        // Arrange: a and b point the same way, c is orthogonal but slightly less relevant
+        RetrievalCandidate a = candidate("a", 0.95, 1f, 0f);
+        RetrievalCandidate b = candidate("b", 0.94, 0.99f, 0.01f);
+        RetrievalCandidate c = candidate("c", 0.80, 0f, 1f);
+
+        // Act
+        List<RetrievalCandidate> result = reranker.rerank(List.of(a, b, c), 2, 0.5);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("a", "c");
+    }
+
+    @Test
+    void testRerank_LambdaOneIsPureRelevance() {
+        // Arrange
+        RetrievalCandidate a = candidate("a", 0.95, 1f, 0f);
+        RetrievalCandidate b = candidate("b", 0.94, 1f, 0f);
+        RetrievalCandidate c = candidate("c", 0.80, 0f, 1f);
+
+        // Act
+        List<RetrievalCandidate> result = reranker.rerank(List.of(a, b, c), 2, 1.0);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("a", "b");
+    }
+
+    @Test
+    void testRerank_CandidatesWithoutEmbeddingCompeteOnRelevance() {
+        // Arrange
+        RetrievalCandidate a = candidate("a", 0.9, 1f, 0f);
+        RetrievalCandidate b = new RetrievalCandidate("b", "text b", Map.of(), 0.8, null);
+
+        // Act
+        List<RetrievalCandidate> result = reranker.rerank(List.of(a, b), 5, 0.5);
+
+        // Assert
+        assertThat(result).extracting(RetrievalCandidate::id).containsExactly("a", "b");
+    }
+
+    private static RetrievalCandidate candidate(String id, double score, float... embedding) {
+        return new RetrievalCandidate(id, "text " + id, Map.of(), score, embedding);
+    }
+}
@@ -0,0 +1,195 @@
+package dev.jackelyj.spring_agent.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.dto.ConversationImportResult;
+import dev.jackelyj.spring_agent.memory.BoundedInMemoryChatMemoryRepository;
+import dev.jackelyj.spring_agent.memory.ConversationFilter;
+import dev.jackelyj.spring_agent.repository.impl.InMemoryChatMemoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ConversationMemoryServiceImpl 批量导出/导入单元测试
+ */
+class ConversationMemoryServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<BoundedInMemoryChatMemoryRepository> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(BoundedInMemoryChatMemoryRepository::close);
+    }
+
+    @Test
+    void testExportConversations_WritesOneLinePerMessageInIdOrder() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository store = store();
+        store.saveAll("conv-b", List.of(new UserMessage("hi"), new AssistantMessage("hello")));
+        store.saveAll("conv-a", List.of(new SystemMessage("be brief"), new UserMessage("line\nbreak")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long exported = service(store).exportConversations(ConversationFilter.all(), out);
+
+        // Assert
+        assertThat(exported).isEqualTo(4);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "{\"conversationId\":\"conv-a\",\"type\":\"SYSTEM\",\"content\":\"be brief\"}",
+                "{\"conversationId\":\"conv-a\",\"type\":\"USER\",\"content\":\"line\\nbreak\"}",
+                "{\"conversationId\":\"conv-b\",\"type\":\"USER\",\"content\":\"hi\"}",
+                "{\"conversationId\":\"conv-b\",\"type\":\"ASSISTANT\",\"content\":\"hello\"}");
+    }
+
+    @Test
+    void testExportConversations_AppliesFilter() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository store = store();
+        store.saveAll("tenant-1:a", List.of(new UserMessage("one")));
+        store.saveAll("tenant-1:b", List.of(new UserMessage("two")));
+        store.saveAll("tenant-2:a", List.of(new UserMessage("three")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long exported = service(store).exportConversations(
+                new ConversationFilter(Set.of("tenant-1:b", "tenant-2:a"), "tenant-1:"), out);
+
+        // Assert
+        assertThat(exported).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("\"content\":\"two\"").doesNotContain("three");
+    }
+
+    @Test
+    void testImportConversations_RoundTripsExport() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store();
+        for (int c = 0; c < 1200; c++) {
+            source.saveAll("conv-" + c, List.of(new UserMessage("question " + c), new AssistantMessage("answer " + c)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service(source).exportConversations(ConversationFilter.all(), out);
+        BoundedInMemoryChatMemoryRepository target = store();
+        target.saveAll("conv-7", List.of(new UserMessage("stale")));
+
+        // Act
+        ConversationImportResult result = service(target).importConversations(
+                new ByteArrayInputStream(out.toByteArray()));
+
+        // Assert
+        assertThat(result).isEqualTo(new ConversationImportResult(1200, 2400));
+        assertThat(target.findConversationIds()).hasSize(1200);
+        assertThat(target.findByConversationId("conv-7")).extracting(Message::getText)
+                .containsExactly("question 7", "answer 7");
+    }
+
+    @Test
+    void testImportConversations_RejectsLineWithoutConversationId() {
+        // Arrange
+        String ndjson = "{\"conversationId\":\"conv-1\",\"type\":\"USER\",\"content\":\"ok\"}\n"
+                + "{\"type\":\"USER\",\"content\":\"orphan\"}\n";
+
+        // Act & Assert
+        assertThatThrownBy(() -> service(store()).importConversations(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Line 2");
+    }
+
+    @Test
+    void testImportConversations_RejectsUnknownMessageType() {
+        // Arrange
+        String ndjson = "{\"conversationId\":\"conv-1\",\"type\":\"ROBOT\",\"content\":\"beep\"}\n";
+
+        // Act & Assert
+        assertThatThrownBy(() -> service(store()).importConversations(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Malformed NDJSON");
+    }
+
+    @Test
+    void testImportConversations_RoundTripsToolCallsAndResponses() throws IOException {
+        // Arrange
+        BoundedInMemoryChatMemoryRepository source = store();
+        source.saveAll("conv-1", List.of(
+                new UserMessage("what is the square root of 16?"),
+                new AssistantMessage("", Map.of(),
+                        List.of(new AssistantMessage.ToolCall("call-1", "function", "sqrt", "{\"value\":16}"))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-1", "sqrt", "4.0"))),
+                new AssistantMessage("4")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service(source).exportConversations(ConversationFilter.all(), out);
+        BoundedInMemoryChatMemoryRepository target = store();
+
+        // Act
+        service(target).importConversations(new ByteArrayInputStream(out.toByteArray()));
+
+        // Assert
+        List<Message> imported = target.findByConversationId("conv-1");
+        assertThat(imported).hasSize(4);
+        assertThat(((AssistantMessage) imported.get(1)).getToolCalls())
+                .containsExactly(new AssistantMessage.ToolCall("call-1", "function", "sqrt", "{\"value\":16}"));
+        assertThat(((ToolResponseMessage) imported.get(2)).getResponses())
+                .containsExactly(new ToolResponseMessage.ToolResponse("call-1", "sqrt", "4.0"));
+    }
+
+    @Test
+    void testExportConversations_SkipsToolMessagesWithoutResponses() throws IOException {
+        // Arrange: what a JDBC store returns for a tool message
+        BoundedInMemoryChatMemoryRepository store = store();
+        store.saveAll("conv-1", List.of(new UserMessage("hi"), new ToolResponseMessage(List.of()),
+                new AssistantMessage("hello")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long exported = service(store).exportConversations(ConversationFilter.all(), out);
+
+        // Assert
+        assertThat(exported).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).doesNotContain("TOOL");
+    }
+
+    @Test
+    void testImportConversations_RejectsToolLineWithoutResponses() {
+        // Arrange
+        String ndjson = "{\"conversationId\":\"conv-1\",\"type\":\"USER\",\"content\":\"ok\"}\n"
+                + "{\"conversationId\":\"conv-1\",\"type\":\"TOOL\",\"content\":\"\"}\n";
+
+        // Act & Assert
+        assertThatThrownBy(() -> service(store()).importConversations(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Line 2")
+                .hasMessageContaining("toolResponses");
+    }
+
+    private BoundedInMemoryChatMemoryRepository store() {
+        BoundedInMemoryChatMemoryRepository store = new BoundedInMemoryChatMemoryRepository(
+                Duration.ZERO, 0, 0, Clock.systemUTC(), null);
+        stores.add(store);
+        return store;
+    }
+
+    private ConversationMemoryServiceImpl service(BoundedInMemoryChatMemoryRepository store) {
+        return new ConversationMemoryServiceImpl(new InMemoryChatMemoryRepository(store), objectMapper);
+    }
+}
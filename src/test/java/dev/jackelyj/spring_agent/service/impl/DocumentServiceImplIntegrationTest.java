@@ -0,0 +1,163 @@
+package dev.jackelyj.spring_agent.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.ingestion.EmbeddingIngestionPipeline;
+import dev.jackelyj.spring_agent.ingestion.IngestionJobQueue;
+import dev.jackelyj.spring_agent.ingestion.TextChunker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * DocumentServiceImpl 删除集成测试
+ *
+ * Adds long documents through a PgVectorStore in a real PostgreSQL, so they
+ * are stored as chunks, and deletes them by the IDs addDocuments returned or
+ * by a filter.
+ *
+ * Run with: ./gradlew integrationTest --tests DocumentServiceImplIntegrationTest (requires Docker)
+ */
+@Tag("integration")
+@Testcontainers
+class DocumentServiceImplIntegrationTest {
+
+    private static final String VECTOR_TABLE = "test_document_vector_store";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private final TextChunker chunker = new TextChunker(new JTokkitTokenCountEstimator(), 60, 15, 2);
+    private JdbcTemplate jdbcTemplate;
+    private DocumentServiceImpl documentService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + VECTOR_TABLE);
+        PgVectorStore vectorStore = PgVectorStore.builder(jdbcTemplate, new LengthEmbeddingModel())
+                .dimensions(3)
+                .distanceType(PgVectorStore.PgDistanceType.COSINE_DISTANCE)
+                .indexType(PgVectorStore.PgIndexType.NONE)
+                .initializeSchema(true)
+                .vectorTableName(VECTOR_TABLE)
+                .build();
+        vectorStore.afterPropertiesSet();
+
+        ObjectProvider<EmbeddingIngestionPipeline> noPipeline = mock(ObjectProvider.class);
+        ObjectProvider<TextChunker> chunkerProvider = mock(ObjectProvider.class);
+        when(chunkerProvider.getIfAvailable()).thenReturn(chunker);
+        ObjectProvider<IngestionJobQueue> noJobs = mock(ObjectProvider.class);
+        documentService = new DocumentServiceImpl(vectorStore, noPipeline, chunkerProvider, noJobs,
+                jdbcTemplate, new ObjectMapper(), "public", VECTOR_TABLE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunker.close();
+    }
+
+    @Test
+    void testDeleteDocuments_ReturnedIdDeletesAllChunks() {
+        // Arrange
+        List<String> ids = documentService.addDocuments(List.of(sentences(20), sentences(10)), Map.of());
+        int otherChunks = rowsOf(ids.get(1));
+
+        // Act
+        documentService.deleteDocuments(List.of(ids.get(0)));
+
+        // Assert
+        assertThat(otherChunks).isGreaterThan(1);
+        assertThat(rowsOf(ids.get(0))).isZero();
+        assertThat(count("id = ?::uuid", ids.get(0))).isZero();
+        assertThat(rowsOf(ids.get(1))).isEqualTo(otherChunks);
+    }
+
+    @Test
+    void testDeleteByFilter_MatchingChunkDeletesWholeDocument() {
+        // Arrange
+        List<String> ids = documentService.addDocuments(List.of(sentences(20)), Map.of("source", "old"));
+        List<String> kept = documentService.addDocuments(List.of(sentences(10), "A short note."),
+                Map.of("source", "new"));
+
+        // Act: matches only the first chunk of the old document
+        documentService.deleteByFilter("source == 'old' && chunk_index == 0");
+
+        // Assert
+        assertThat(rowsOf(ids.get(0))).isZero();
+        assertThat(rowsOf(kept.get(0))).isGreaterThan(1);
+        assertThat(count("id = ?::uuid", kept.get(1))).isOne();
+        assertThat(count("TRUE")).isEqualTo(rowsOf(kept.get(0)) + 1);
+    }
+
+    private int rowsOf(String parentId) {
+        return count("metadata->>'parent_id' = ?", parentId);
+    }
+
+    private int count(String condition, Object... args) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + VECTOR_TABLE + " WHERE " + condition,
+                Integer.class, args);
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("Sentence ").append(i).append(" explains how embeddings are stored in pgvector.");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Deterministic model embedding each text by its length and hash.
+     */
+    private static final class LengthEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                results.add(new Embedding(new float[] {text.length(), text.hashCode(), 1f}, results.size()));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package dev.jackelyj.spring_agent.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.jackelyj.spring_agent.dto.DocumentIngestionProgress;
+import dev.jackelyj.spring_agent.ingestion.EmbeddingIngestionPipeline;
+import dev.jackelyj.spring_agent.ingestion.IngestionJobQueue;
+import dev.jackelyj.spring_agent.ingestion.TextChunker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * DocumentServiceImpl 流式导入单元测试
+ */
+class DocumentServiceImplTest {
+
+    private static final String ID = "3f2b8c1e-5d4a-4b6f-9e7d-1a2b3c4d5e6f";
+
+    private VectorStore vectorStore;
+    private List<List<Document>> storedBatches;
+    private DocumentServiceImpl documentService;
+    private TextChunker chunker;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = mock(VectorStore.class);
+        storedBatches = new ArrayList<>();
+        doAnswer(invocation -> storedBatches.add(List.copyOf(invocation.<List<Document>>getArgument(0))))
+                .when(vectorStore).add(anyList());
+        documentService = documentService(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (chunker != null) {
+            chunker.close();
+        }
+    }
+
+    @Test
+    void testIngestDocuments_StoresInBatchesAndReportsProgress() throws IOException {
+        // Arrange
+        StringBuilder ndjson = new StringBuilder("{\"id\":\"" + ID + "\",\"text\":\"first\",\"metadata\":{\"source\":\"a\"}}\n");
+        for (int i = 1; i < 130; i++) {
+            ndjson.append("{\"text\":\"doc ").append(i).append("\"}\n");
+        }
+        List<DocumentIngestionProgress> progress = new ArrayList<>();
+
+        // Act
+        DocumentIngestionProgress result = documentService.ingestDocuments(stream(ndjson.toString()), progress::add);
+
+        // Assert
+        assertThat(storedBatches).extracting(List::size).containsExactly(64, 64, 2);
+        Document first = storedBatches.get(0).get(0);
+        assertThat(first.getId()).isEqualTo(ID);
+        assertThat(first.getMetadata()).isEqualTo(Map.of("source", "a"));
+        assertThat(storedBatches.get(2).get(1).getText()).isEqualTo("doc 129");
+        assertThat(progress).containsExactly(
+                DocumentIngestionProgress.running(64, 1),
+                DocumentIngestionProgress.running(128, 2),
+                DocumentIngestionProgress.running(130, 3));
+        assertThat(result).isEqualTo(DocumentIngestionProgress.completed(130, 3));
+    }
+
+    @Test
+    void testIngestDocuments_ReadsInputOnlyAsFastAsItIsStored() throws IOException {
+        // Arrange
+        String text = "x".repeat(1000);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            ndjson.append("{\"text\":\"").append(text).append("\"}\n");
+        }
+        CountingInputStream in = new CountingInputStream(stream(ndjson.toString()));
+        List<Long> readAtFirstBatch = new ArrayList<>();
+        doAnswer(invocation -> readAtFirstBatch.isEmpty() && readAtFirstBatch.add(in.count))
+                .when(vectorStore).add(anyList());
+
+        // Act
+        documentService.ingestDocuments(in, progress -> { });
+
+        // Assert
+        assertThat(readAtFirstBatch.get(0)).isLessThan(ndjson.length() / 10L);
+        assertThat(in.count).isEqualTo(ndjson.length());
+    }
+
+    @Test
+    void testIngestDocuments_InvalidLineKeepsEarlierBatches() {
+        // Arrange
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            ndjson.append("{\"text\":\"doc ").append(i).append("\"}\n");
+        }
+        ndjson.append("{\"id\":\"not-a-uuid\",\"text\":\"bad\"}\n");
+
+        // Act & Assert
+        assertThatThrownBy(() -> documentService.ingestDocuments(stream(ndjson.toString()), progress -> { }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Line 65: id must be a UUID; stored 64 documents before it");
+        assertThat(storedBatches).hasSize(1);
+    }
+
+    @Test
+    void testIngestDocuments_MalformedJson() {
+        // Act & Assert
+        assertThatThrownBy(() -> documentService.ingestDocuments(stream("{\"text\":\"ok\"}\n{\"text\": \n"),
+                progress -> { }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Malformed NDJSON at line");
+        verify(vectorStore, never()).add(anyList());
+    }
+
+    @Test
+    void testSubmitIngestionJob_JobsDisabled() {
+        // Act & Assert
+        assertThatThrownBy(() -> documentService.submitIngestionJob(List.of("text"), Map.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ingestion.jobs.enabled");
+        verify(vectorStore, never()).add(anyList());
+    }
+
+    @Test
+    void testIngestDocuments_ChunkedDocumentDeletesStoredRowsBeforeAdd() throws IOException {
+        // Arrange
+        chunker = new TextChunker(new JTokkitTokenCountEstimator(), 60, 15, 1);
+        documentService = documentService(chunker);
+        String ndjson = "{\"id\":\"" + ID + "\",\"text\":\"" + sentences(12) + "\"}\n";
+
+        // Act
+        documentService.ingestDocuments(stream(ndjson), progress -> { });
+
+        // Assert
+        InOrder order = inOrder(vectorStore);
+        order.verify(vectorStore).delete(any(Filter.Expression.class));
+        order.verify(vectorStore).delete(List.of(ID));
+        order.verify(vectorStore, atLeastOnce()).add(anyList());
+        List<Document> stored = storedBatches.stream().flatMap(List::stream).toList();
+        assertThat(stored).hasSizeGreaterThan(1);
+        assertThat(stored).allSatisfy(chunk -> assertThat(chunk.getMetadata()).containsEntry(TextChunker.PARENT_ID, ID));
+    }
+
+    @Test
+    void testAddDocuments_ReturnsOneParentIdPerText() {
+        // Arrange
+        chunker = new TextChunker(new JTokkitTokenCountEstimator(), 60, 15, 1);
+        documentService = documentService(chunker);
+
+        // Act
+        List<String> ids = documentService.addDocuments(List.of(sentences(12), "Short text."), Map.of());
+
+        // Assert
+        assertThat(ids).hasSize(2);
+        List<Document> stored = storedBatches.get(0);
+        assertThat(stored).hasSizeGreaterThan(2);
+        assertThat(stored).extracting(chunk -> chunk.getMetadata().get(TextChunker.PARENT_ID))
+                .containsOnlyElementsOf(ids)
+                .contains(ids.get(0), ids.get(1));
+        assertThat(stored.get(stored.size() - 1).getId()).isEqualTo(ids.get(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private DocumentServiceImpl documentService(TextChunker textChunker) {
+        ObjectProvider<EmbeddingIngestionPipeline> noPipeline = mock(ObjectProvider.class);
+        when(noPipeline.getIfAvailable()).thenReturn(null);
+        ObjectProvider<TextChunker> chunkerProvider = mock(ObjectProvider.class);
+        when(chunkerProvider.getIfAvailable()).thenReturn(textChunker);
+        ObjectProvider<IngestionJobQueue> noJobs = mock(ObjectProvider.class);
+        when(noJobs.getIfAvailable()).thenReturn(null);
+        return new DocumentServiceImpl(vectorStore, noPipeline, chunkerProvider, noJobs,
+                mock(JdbcTemplate.class), new ObjectMapper(), "public", "vector_store");
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("Sentence ").append(i).append(" explains how embeddings are stored in pgvector.");
+        }
+        return text.toString();
+    }
+
+    private static InputStream stream(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}